@@ -0,0 +1,102 @@
+package com.example.talkingplayer;
+
+/**
+ * Turns drags across a view into rotations of an object, as if the finger were rolling a ball that fills
+ * the view. A drag across the middle turns the object around the axis in the screen plane perpendicular
+ * to the drag; circling near the rim turns it around the line of sight. Orientation is kept as a unit
+ * quaternion, so rotations compose without gimbal lock or drift.
+ * <p>
+ * View coordinates are pixels, y growing downwards; rotations are in eye space, where the viewer looks
+ * down the negative z axis. Nothing here allocates.
+ */
+public class Arcball {
+    private final Quaternion orientation = new Quaternion();
+    private final Quaternion rotation = new Quaternion();
+    private final float[] from = new float[3];
+    private final float[] to = new float[3];
+    private float centerX;
+    private float centerY;
+    private float radius = 1f;
+    private boolean dragging;
+
+    /**
+     * The ball fills the smaller of the view's sides, call it whenever the view changes size.
+     */
+    public void setViewport(int width, int height) {
+        centerX = width / 2f;
+        centerY = height / 2f;
+        radius = Math.max(1f, Math.min(width, height) / 2f);
+    }
+
+    /**
+     * @return the ball's radius in pixels
+     */
+    public float getRadius() {
+        return radius;
+    }
+
+    public Quaternion getOrientation() {
+        return orientation;
+    }
+
+    public void setOrientation(Quaternion orientation) {
+        this.orientation.set(orientation).normalize();
+    }
+
+    public boolean isDragging() {
+        return dragging;
+    }
+
+    public void beginDrag(float x, float y) {
+        mapToSphere(x, y, from);
+        dragging = true;
+    }
+
+    /**
+     * Rotates by the arc from where the drag was to {@code x}, {@code y}.
+     */
+    public void drag(float x, float y) {
+        if (!dragging) {
+            beginDrag(x, y);
+            return;
+        }
+        mapToSphere(x, y, to);
+        rotation.setArc(from, to);
+        orientation.multiply(rotation, orientation).normalize();
+        from[0] = to[0];
+        from[1] = to[1];
+        from[2] = to[2];
+    }
+
+    public void endDrag() {
+        dragging = false;
+    }
+
+    /**
+     * Rotates by {@code degrees} around an eye space axis, e.g. to carry on a fling.
+     */
+    public void rotate(float axisX, float axisY, float axisZ, float degrees) {
+        rotation.setAxisAngle(axisX, axisY, axisZ, degrees);
+        orientation.multiply(rotation, orientation).normalize();
+    }
+
+    /**
+     * Where a view position touches the ball, as a unit vector. Outside the ball it slides down to the
+     * rim, so dragging along there turns around the line of sight.
+     */
+    void mapToSphere(float x, float y, float[] point) {
+        float px = (x - centerX) / radius;
+        float py = (centerY - y) / radius;
+        float lengthSquared = px * px + py * py;
+        if (lengthSquared <= 1f) {
+            point[0] = px;
+            point[1] = py;
+            point[2] = (float) Math.sqrt(1f - lengthSquared);
+        } else {
+            float length = (float) Math.sqrt(lengthSquared);
+            point[0] = px / length;
+            point[1] = py / length;
+            point[2] = 0f;
+        }
+    }
+}
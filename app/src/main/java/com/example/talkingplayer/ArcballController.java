@@ -0,0 +1,110 @@
+package com.example.talkingplayer;
+
+import android.view.MotionEvent;
+import android.view.View;
+
+/**
+ * Turns an object on an {@link Arcball} dragged across a view, and hands the orientation to a
+ * {@link CameraState} once per rendered frame. Every touch sample turns the ball, including the historical
+ * ones a move event batches. Lifting the finger while dragging flings the object on around the last axis
+ * it turned around, slowing down exponentially. A second finger, e.g. to pinch, stops the drag until only
+ * one is left.
+ */
+public class ArcballController implements RenderScheduler.FrameListener, View.OnLayoutChangeListener {
+    private final RenderScheduler renderScheduler;
+    private final CameraState cameraState;
+    private final Arcball arcball = new Arcball();
+    private final FlingTracker flingTracker;
+    // eye space axis the fling turns around
+    private float flingAxisX;
+    private float flingAxisY;
+    private boolean changed;
+
+    public ArcballController(View view, RenderScheduler renderScheduler, CameraState cameraState) {
+        this.renderScheduler = renderScheduler;
+        this.cameraState = cameraState;
+        cameraState.getOrientation(arcball.getOrientation());
+        arcball.setViewport(view.getWidth(), view.getHeight());
+        flingTracker = new FlingTracker(view, renderScheduler);
+        view.addOnLayoutChangeListener(this);
+        renderScheduler.addFrameListener(this);
+    }
+
+    @Override
+    public void onLayoutChange(View v, int left, int top, int right, int bottom,
+                               int oldLeft, int oldTop, int oldRight, int oldBottom) {
+        arcball.setViewport(right - left, bottom - top);
+    }
+
+    /**
+     * Call from the view's onTouchEvent with every event.
+     */
+    public void onTouchEvent(MotionEvent e) {
+        switch (e.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                flingTracker.down(e);
+                arcball.beginDrag(e.getX(), e.getY());
+                break;
+            case MotionEvent.ACTION_POINTER_DOWN:
+                arcball.endDrag();
+                break;
+            case MotionEvent.ACTION_POINTER_UP:
+                if (e.getPointerCount() == 2) {
+                    // carry on with whichever finger is left
+                    int remaining = e.getActionIndex() == 0 ? 1 : 0;
+                    arcball.beginDrag(e.getX(remaining), e.getY(remaining));
+                }
+                flingTracker.clearMovement();
+                break;
+            case MotionEvent.ACTION_MOVE:
+                if (e.getPointerCount() > 1 || !arcball.isDragging()) {
+                    break;
+                }
+                for (int i = 0; i < e.getHistorySize(); i++) {
+                    arcball.drag(e.getHistoricalX(i), e.getHistoricalY(i));
+                }
+                arcball.drag(e.getX(), e.getY());
+                flingTracker.addMovement(e);
+                changed = true;
+                renderScheduler.requestFrame();
+                break;
+            case MotionEvent.ACTION_UP:
+                if (arcball.isDragging() && flingTracker.up(e)) {
+                    fling(flingTracker.getXVelocity(), flingTracker.getYVelocity());
+                }
+                arcball.endDrag();
+                flingTracker.recycle();
+                break;
+            case MotionEvent.ACTION_CANCEL:
+                arcball.endDrag();
+                flingTracker.recycle();
+                break;
+        }
+    }
+
+    /**
+     * @param vx horizontal velocity in pixels per second
+     * @param vy vertical velocity in pixels per second, downwards
+     */
+    private void fling(float vx, float vy) {
+        float speed = (float) Math.hypot(vx, vy);
+        // moving right turns around the y axis, moving down around the x axis, the rim of the ball
+        // moves by its radius per radian
+        flingAxisX = vy / speed;
+        flingAxisY = vx / speed;
+        flingTracker.fling((float) Math.toDegrees(speed / arcball.getRadius()));
+    }
+
+    @Override
+    public void onFrame(long frameTimeNanos) {
+        float degrees = flingTracker.consume(frameTimeNanos);
+        if (degrees != 0) {
+            arcball.rotate(flingAxisX, flingAxisY, 0f, degrees);
+            changed = true;
+        }
+        if (changed) {
+            cameraState.setOrientation(arcball.getOrientation());
+            changed = false;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.talkingplayer;
+
+import android.util.Log;
+
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Prepares the CPU side of GL resources (geometry, decoded pixels) on background threads and hands the
+ * results to the GL thread, which only has to upload them.
+ * <p>
+ * Finished payloads wait in a lock-free queue until the renderer calls {@link #drainUploads(long)} from
+ * the GL thread, typically at the start of every frame. {@code onPayloadReady} is called from the
+ * worker thread whenever something is waiting, so a view that renders only when dirty can request a frame.
+ */
+public class AssetLoader {
+    private final static String TAG = AssetLoader.class.getSimpleName();
+    private static final int MAX_THREADS = 4;
+    private static final long IDLE_THREAD_TIMEOUT_SECONDS = 2;
+
+    private final Executor executor;
+    private final Queue<PendingUpload<?>> uploads = new ConcurrentLinkedQueue<>();
+    private final Runnable onPayloadReady;
+    private final AtomicInteger generation = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    public AssetLoader(Runnable onPayloadReady) {
+        this(onPayloadReady, createExecutor());
+    }
+
+    /**
+     * @param executor prepares every load, e.g. one that never gets to them in tests that hand assets in
+     *                 themselves
+     */
+    AssetLoader(Runnable onPayloadReady, Executor executor) {
+        this.onPayloadReady = onPayloadReady;
+        this.executor = executor;
+    }
+
+    private static Executor createExecutor() {
+        int threads = Math.max(1, Math.min(MAX_THREADS, Runtime.getRuntime().availableProcessors() - 1));
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, IDLE_THREAD_TIMEOUT_SECONDS,
+                TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "AssetLoader-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                // stay out of the way of the UI and GL threads
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        });
+        // the loader lives as long as its renderer, don't keep threads around once everything is loaded
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Runs {@code prepare} on a background thread, then {@code upload} with its result on the GL thread.
+     * If preparing fails nothing is uploaded and the object keeps drawing its placeholder.
+     */
+    public <T> void load(final Callable<T> prepare, final Upload<T> upload) {
+        final int loadGeneration = generation.get();
+        inFlight.incrementAndGet();
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                T payload;
+                try {
+                    payload = prepare.call();
+                } catch (Exception e) {
+                    inFlight.decrementAndGet();
+                    Log.e(TAG, "Could not prepare asset", e);
+                    return;
+                }
+                uploads.add(new PendingUpload<>(loadGeneration, payload, upload));
+                onPayloadReady.run();
+            }
+        });
+    }
+
+    /**
+     * Uploads waiting payloads on the GL thread until the queue is empty or {@code budgetNanos} is spent,
+     * so a burst of finished assets can't stall a frame. Anything left is uploaded on the next frame.
+     *
+     * @return the number of payloads uploaded
+     */
+    public int drainUploads(long budgetNanos) {
+        long start = System.nanoTime();
+        int uploaded = 0;
+        PendingUpload<?> pending;
+        while ((pending = uploads.poll()) != null) {
+            inFlight.decrementAndGet();
+            // anything prepared for a GL context that has since been lost is useless
+            if (pending.generation == generation.get()) {
+                pending.upload();
+                uploaded++;
+            }
+            if (System.nanoTime() - start >= budgetNanos) {
+                break;
+            }
+        }
+        if (!uploads.isEmpty()) {
+            onPayloadReady.run();
+        }
+        return uploaded;
+    }
+
+    /**
+     * Forgets every pending upload, call it when the GL context is recreated.
+     */
+    public void reset() {
+        generation.incrementAndGet();
+    }
+
+    /**
+     * @return true once everything requested has been uploaded
+     */
+    public boolean isIdle() {
+        return inFlight.get() == 0;
+    }
+
+    /**
+     * The GL half of a load, always called on the GL thread.
+     */
+    public interface Upload<T> {
+        void upload(T payload);
+    }
+
+    private static final class PendingUpload<T> {
+        final int generation;
+        final T payload;
+        final Upload<T> upload;
+
+        PendingUpload(int generation, T payload, Upload<T> upload) {
+            this.generation = generation;
+            this.payload = payload;
+            this.upload = upload;
+        }
+
+        void upload() {
+            upload.upload(payload);
+        }
+    }
+}
@@ -0,0 +1,302 @@
+package com.example.talkingplayer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Read side of the binary asset pack written at build time by {@link AssetPackWriter}.
+ * <p>
+ * The pack is memory mapped and every payload is handed out as a slice of the mapping, so meshes and
+ * pixels go to glBufferData / glTexImage2D without being copied or decoded. Layout, all little endian:
+ * <pre>
+ * header   magic "TPAK", version, entry count, reserved            4 ints
+ * index    per entry: name length, UTF-8 name padded to 4 bytes,
+ *          type, data offset, data length, 4 type specific params
+ * data     payloads, each starting on a {@link #DATA_ALIGNMENT} byte boundary
+ * </pre>
+ * Payloads are stored in the byte order of every Android device (little endian) so they can be used in place.
+ */
+public class AssetPack {
+    public static final int MAGIC = 'T' | ('P' << 8) | ('A' << 16) | ('K' << 24);
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 16;
+    public static final int DATA_ALIGNMENT = 16;
+    public static final int PARAM_COUNT = 4;
+    // type, data offset, data length and params, after an entry's name
+    private static final int ENTRY_FIELDS_SIZE = (3 + PARAM_COUNT) * 4;
+
+    /**
+     * Interleaved float vertices followed by short indices.
+     * Params: vertex count, index count, floats per vertex.
+     */
+    public static final int TYPE_MESH = 1;
+    /**
+     * A texture image followed by its smaller mip levels, if any.
+     * Params: width, height, pixel format, level count (0 is read as 1).
+     */
+    public static final int TYPE_TEXTURE = 2;
+    /**
+     * Where each cell's stars start, followed by the star count, then the stars, see {@link StarCatalog}.
+     * Params: star count, cell count, floats per star.
+     */
+    public static final int TYPE_STAR_CATALOG = 3;
+
+    /**
+     * Tightly packed R, G, B, A bytes.
+     */
+    public static final int TEXTURE_FORMAT_RGBA8 = 0;
+    /**
+     * ETC1 blocks, see {@link EtcCodec}.
+     */
+    public static final int TEXTURE_FORMAT_ETC1_RGB8 = 1;
+    /**
+     * ETC2 RGB8 blocks, readable by every ES 3 context.
+     */
+    public static final int TEXTURE_FORMAT_ETC2_RGB8 = 2;
+
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final String TEXTURE_PREFIX = "texture/";
+
+    private final ByteBuffer data;
+    private final Map<String, Entry> entries;
+
+    private AssetPack(ByteBuffer data, Map<String, Entry> entries) {
+        this.data = data;
+        this.entries = Collections.unmodifiableMap(entries);
+    }
+
+    /**
+     * Maps {@code length} bytes of the channel starting at {@code offset}. The mapping stays valid after
+     * the channel is closed.
+     */
+    public static AssetPack map(FileChannel channel, long offset, long length) throws IOException {
+        return wrap(channel.map(FileChannel.MapMode.READ_ONLY, offset, length));
+    }
+
+    public static AssetPack wrap(ByteBuffer buffer) throws IOException {
+        ByteBuffer data = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        data.position(0);
+        if (data.remaining() < HEADER_SIZE || data.getInt(0) != MAGIC) {
+            throw new IOException("Not an asset pack");
+        }
+        int version = data.getInt(4);
+        if (version != VERSION) {
+            throw new IOException("Unsupported asset pack version " + version + ", expected " + VERSION);
+        }
+        int entryCount = data.getInt(8);
+        Map<String, Entry> entries = new HashMap<>();
+        data.position(HEADER_SIZE);
+        for (int i = 0; i < entryCount; i++) {
+            // a truncated pack must not get past the loader as a buffer exception
+            if (data.remaining() < 4) {
+                throw new IOException("Asset pack index ends after " + i + " of " + entryCount + " entries");
+            }
+            int nameLength = data.getInt();
+            if (nameLength < 0 || (nameLength + 3L) / 4 * 4 + ENTRY_FIELDS_SIZE > data.remaining()) {
+                throw new IOException("Asset pack entry " + i + " is out of bounds");
+            }
+            byte[] name = new byte[nameLength];
+            data.get(name);
+            data.position(align(data.position(), 4));
+            int type = data.getInt();
+            int offset = data.getInt();
+            int length = data.getInt();
+            int[] params = new int[PARAM_COUNT];
+            for (int p = 0; p < PARAM_COUNT; p++) {
+                params[p] = data.getInt();
+            }
+            if (offset < 0 || length < 0 || (long) offset + length > data.limit()) {
+                throw new IOException("Asset pack entry " + new String(name, UTF_8) + " is out of bounds");
+            }
+            Entry entry = new Entry(new String(name, UTF_8), type, offset, length, params);
+            entries.put(entry.name, entry);
+        }
+        return new AssetPack(data, entries);
+    }
+
+    static int align(int value, int alignment) {
+        return (value + alignment - 1) / alignment * alignment;
+    }
+
+    public static String getTextureName(String resourceName) {
+        return TEXTURE_PREFIX + resourceName;
+    }
+
+    /**
+     * A pack may hold the same texture in several formats, each under its own name.
+     */
+    public static String getTextureName(String resourceName, int format) {
+        switch (format) {
+            case TEXTURE_FORMAT_RGBA8:
+                return getTextureName(resourceName);
+            case TEXTURE_FORMAT_ETC1_RGB8:
+                return getTextureName(resourceName) + ".etc1";
+            case TEXTURE_FORMAT_ETC2_RGB8:
+                return getTextureName(resourceName) + ".etc2";
+            default:
+                throw new IllegalArgumentException("Unknown texture format " + format);
+        }
+    }
+
+    public Map<String, Entry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * @return the entry with that name, or null if the pack doesn't have it
+     */
+    public Entry getEntry(String name) {
+        return entries.get(name);
+    }
+
+    /**
+     * Zero-copy view of an entry's payload in native byte order.
+     */
+    public ByteBuffer getData(Entry entry) {
+        return slice(entry.offset, entry.length);
+    }
+
+    public FloatBuffer getMeshVertices(Entry entry) {
+        checkType(entry, TYPE_MESH);
+        return slice(entry.offset, getMeshVertexBytes(entry)).asFloatBuffer();
+    }
+
+    public ShortBuffer getMeshIndices(Entry entry) {
+        checkType(entry, TYPE_MESH);
+        int vertexBytes = align(getMeshVertexBytes(entry), DATA_ALIGNMENT);
+        return slice(entry.offset + vertexBytes, entry.getIndexCount() * 2).asShortBuffer();
+    }
+
+    /**
+     * @return where each cell of a star catalog starts, followed by the star count
+     */
+    public int[] getStarCellStarts(Entry entry) {
+        checkType(entry, TYPE_STAR_CATALOG);
+        int[] cellStarts = new int[entry.getCellCount() + 1];
+        slice(entry.offset, cellStarts.length * 4).asIntBuffer().get(cellStarts);
+        return cellStarts;
+    }
+
+    public FloatBuffer getStars(Entry entry) {
+        checkType(entry, TYPE_STAR_CATALOG);
+        int cellStartBytes = align((entry.getCellCount() + 1) * 4, DATA_ALIGNMENT);
+        return slice(entry.offset + cellStartBytes, entry.getStarCount() * entry.getFloatsPerStar() * 4)
+                .asFloatBuffer();
+    }
+
+    /**
+     * Zero-copy view of one mip level of a texture entry.
+     */
+    public ByteBuffer getTextureLevel(Entry entry, int level) {
+        checkType(entry, TYPE_TEXTURE);
+        if (level < 0 || level >= entry.getLevelCount()) {
+            throw new IllegalArgumentException(entry.name + " has no level " + level);
+        }
+        int offset = entry.offset;
+        for (int i = 0; i < level; i++) {
+            offset += getTextureLevelSize(entry.getFormat(), MipChain.getLevelSize(entry.getWidth(), i),
+                    MipChain.getLevelSize(entry.getHeight(), i));
+        }
+        return slice(offset, getTextureLevelSize(entry.getFormat(), MipChain.getLevelSize(entry.getWidth(), level),
+                MipChain.getLevelSize(entry.getHeight(), level)));
+    }
+
+    /**
+     * @return the bytes a single level of that size takes in {@code format}
+     */
+    public static int getTextureLevelSize(int format, int width, int height) {
+        switch (format) {
+            case TEXTURE_FORMAT_RGBA8:
+                return width * height * 4;
+            case TEXTURE_FORMAT_ETC1_RGB8:
+            case TEXTURE_FORMAT_ETC2_RGB8:
+                return EtcCodec.getEncodedSize(width, height);
+            default:
+                throw new IllegalArgumentException("Unknown texture format " + format);
+        }
+    }
+
+    private static int getMeshVertexBytes(Entry entry) {
+        return entry.getVertexCount() * entry.getStrideFloats() * 4;
+    }
+
+    private static void checkType(Entry entry, int type) {
+        if (entry.type != type) {
+            throw new IllegalArgumentException(entry.name + " is of type " + entry.type + ", not " + type);
+        }
+    }
+
+    private ByteBuffer slice(int offset, int length) {
+        ByteBuffer slice = data.duplicate();
+        slice.limit(offset + length).position(offset);
+        return slice.slice().order(ByteOrder.nativeOrder());
+    }
+
+    public static final class Entry {
+        public final String name;
+        public final int type;
+        public final int offset;
+        public final int length;
+        private final int[] params;
+
+        Entry(String name, int type, int offset, int length, int[] params) {
+            this.name = name;
+            this.type = type;
+            this.offset = offset;
+            this.length = length;
+            this.params = params;
+        }
+
+        public int getParam(int index) {
+            return params[index];
+        }
+
+        public int getVertexCount() {
+            return params[0];
+        }
+
+        public int getIndexCount() {
+            return params[1];
+        }
+
+        public int getStrideFloats() {
+            return params[2];
+        }
+
+        public int getStarCount() {
+            return params[0];
+        }
+
+        public int getCellCount() {
+            return params[1];
+        }
+
+        public int getFloatsPerStar() {
+            return params[2];
+        }
+
+        public int getWidth() {
+            return params[0];
+        }
+
+        public int getHeight() {
+            return params[1];
+        }
+
+        public int getFormat() {
+            return params[2];
+        }
+
+        public int getLevelCount() {
+            return Math.max(1, params[3]);
+        }
+    }
+}
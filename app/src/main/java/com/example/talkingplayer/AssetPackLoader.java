@@ -0,0 +1,50 @@
+package com.example.talkingplayer;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.util.Log;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteOrder;
+
+/**
+ * Maps the asset pack generated at build time out of the APK. The pack is stored uncompressed
+ * (see aaptOptions in build.gradle) so it can be mapped in place. The mapping is read-only and
+ * shared by the whole process.
+ */
+public final class AssetPackLoader {
+    public static final String ASSET_PACK_NAME = "assets.pack";
+    private final static String TAG = AssetPackLoader.class.getSimpleName();
+    private static AssetPack sAssetPack;
+    private static boolean sLoaded;
+
+    private AssetPackLoader() {
+    }
+
+    /**
+     * @return the asset pack, or null if there is none and assets have to be built at runtime
+     */
+    public static synchronized AssetPack get(Context context) {
+        if (!sLoaded) {
+            sLoaded = true;
+            if (ByteOrder.nativeOrder() != ByteOrder.LITTLE_ENDIAN) {
+                Log.w(TAG, "Asset pack payloads are little endian, building assets at runtime");
+                return null;
+            }
+            try {
+                AssetFileDescriptor descriptor = context.getAssets().openFd(ASSET_PACK_NAME);
+                FileInputStream stream = descriptor.createInputStream();
+                try {
+                    sAssetPack = AssetPack.map(stream.getChannel(), descriptor.getStartOffset(),
+                            descriptor.getLength());
+                } finally {
+                    stream.close();
+                }
+            } catch (IOException e) {
+                Log.w(TAG, "No usable asset pack, building assets at runtime", e);
+            }
+        }
+        return sAssetPack;
+    }
+}
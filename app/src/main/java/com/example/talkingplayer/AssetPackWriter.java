@@ -0,0 +1,150 @@
+package com.example.talkingplayer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes the asset pack format read by {@link AssetPack}. Used at build time, no Android dependencies.
+ */
+public class AssetPackWriter {
+    private final List<PendingEntry> entries = new ArrayList<>();
+
+    public void addMesh(String name, FloatBuffer vertices, ShortBuffer indices, int strideFloats) {
+        int vertexFloats = vertices.remaining();
+        int indexCount = indices.remaining();
+        ByteBuffer payload = allocate(AssetPack.align(vertexFloats * 4, AssetPack.DATA_ALIGNMENT) + indexCount * 2);
+        payload.asFloatBuffer().put(vertices.duplicate());
+        payload.position(AssetPack.align(vertexFloats * 4, AssetPack.DATA_ALIGNMENT));
+        payload.asShortBuffer().put(indices.duplicate());
+        payload.position(0);
+        addEntry(name, AssetPack.TYPE_MESH, payload, vertexFloats / strideFloats, indexCount, strideFloats, 0);
+    }
+
+    public void addStarCatalog(String name, StarCatalog catalog) {
+        int[] cellStarts = catalog.getCellStarts();
+        FloatBuffer stars = catalog.getStars();
+        int cellStartBytes = AssetPack.align(cellStarts.length * 4, AssetPack.DATA_ALIGNMENT);
+        ByteBuffer payload = allocate(cellStartBytes + stars.remaining() * 4);
+        payload.asIntBuffer().put(cellStarts);
+        payload.position(cellStartBytes);
+        payload.asFloatBuffer().put(stars);
+        payload.position(0);
+        addEntry(name, AssetPack.TYPE_STAR_CATALOG, payload, catalog.getStarCount(), StarCatalog.CELL_COUNT,
+                StarCatalog.FLOATS_PER_STAR);
+    }
+
+    public void addTexture(String name, int width, int height, int format, ByteBuffer pixels) {
+        addEntry(name, AssetPack.TYPE_TEXTURE, pixels, width, height, format, 1);
+    }
+
+    /**
+     * Adds a texture with its mip levels, largest first, each half the size of the previous one.
+     */
+    public void addTexture(String name, int width, int height, int format, byte[][] levels) {
+        int size = 0;
+        for (int level = 0; level < levels.length; level++) {
+            int expected = AssetPack.getTextureLevelSize(format, MipChain.getLevelSize(width, level),
+                    MipChain.getLevelSize(height, level));
+            if (levels[level].length != expected) {
+                throw new IllegalArgumentException(name + " level " + level + " has " + levels[level].length
+                        + " bytes, expected " + expected);
+            }
+            size += expected;
+        }
+        ByteBuffer payload = ByteBuffer.allocate(size);
+        for (byte[] level : levels) {
+            payload.put(level);
+        }
+        payload.flip();
+        addEntry(name, AssetPack.TYPE_TEXTURE, payload, width, height, format, levels.length);
+    }
+
+    public void addEntry(String name, int type, ByteBuffer payload, int... params) {
+        if (params.length > AssetPack.PARAM_COUNT) {
+            throw new IllegalArgumentException("At most " + AssetPack.PARAM_COUNT + " params per entry");
+        }
+        for (PendingEntry entry : entries) {
+            if (entry.name.equals(name)) {
+                throw new IllegalArgumentException("Duplicate asset pack entry " + name);
+            }
+        }
+        byte[] data = new byte[payload.remaining()];
+        payload.duplicate().get(data);
+        int[] allParams = new int[AssetPack.PARAM_COUNT];
+        System.arraycopy(params, 0, allParams, 0, params.length);
+        entries.add(new PendingEntry(name, type, data, allParams));
+    }
+
+    public void write(File file) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        try {
+            writeTo(out);
+        } finally {
+            out.close();
+        }
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        // size the index first so payload offsets are known when it is written
+        int indexSize = 0;
+        for (PendingEntry entry : entries) {
+            indexSize += 4 + AssetPack.align(entry.nameBytes.length, 4) + 4 * (3 + AssetPack.PARAM_COUNT);
+        }
+        int offset = AssetPack.align(AssetPack.HEADER_SIZE + indexSize, AssetPack.DATA_ALIGNMENT);
+        int[] offsets = new int[entries.size()];
+        for (int i = 0; i < entries.size(); i++) {
+            offsets[i] = offset;
+            offset = AssetPack.align(offset + entries.get(i).data.length, AssetPack.DATA_ALIGNMENT);
+        }
+
+        ByteBuffer header = allocate(offsets.length > 0 ? offsets[0] : AssetPack.HEADER_SIZE);
+        header.putInt(AssetPack.MAGIC).putInt(AssetPack.VERSION).putInt(entries.size()).putInt(0);
+        for (int i = 0; i < entries.size(); i++) {
+            PendingEntry entry = entries.get(i);
+            header.putInt(entry.nameBytes.length).put(entry.nameBytes);
+            header.position(AssetPack.align(header.position(), 4));
+            header.putInt(entry.type).putInt(offsets[i]).putInt(entry.data.length);
+            for (int param : entry.params) {
+                header.putInt(param);
+            }
+        }
+        ByteArrayOutputStream buffered = new ByteArrayOutputStream();
+        buffered.write(header.array());
+        for (PendingEntry entry : entries) {
+            buffered.write(entry.data);
+            while (buffered.size() % AssetPack.DATA_ALIGNMENT != 0) {
+                buffered.write(0);
+            }
+        }
+        buffered.writeTo(out);
+    }
+
+    private static ByteBuffer allocate(int bytes) {
+        return ByteBuffer.allocate(bytes).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static final class PendingEntry {
+        final String name;
+        final byte[] nameBytes;
+        final int type;
+        final byte[] data;
+        final int[] params;
+
+        PendingEntry(String name, int type, byte[] data, int[] params) {
+            this.name = name;
+            this.nameBytes = name.getBytes(AssetPack.UTF_8);
+            this.type = type;
+            this.data = data;
+            this.params = params;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.talkingplayer;
+
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import android.hardware.SensorEventListener;
+import android.hardware.SensorManager;
+import android.os.Handler;
+import android.os.HandlerThread;
+
+/**
+ * Tracks the device's attitude on a sensor thread of its own, and publishes it as the orientation of a
+ * {@link CameraState} that turns a world fixed object into view: looking at the screen, the object stays
+ * put while the device turns around it. The object's y axis points up.
+ */
+public class AttitudeTracker implements SensorEventListener {
+    private final SensorManager sensorManager;
+    // written on the sensor thread only
+    private final CameraState attitude = new CameraState();
+    private final OrientationFilter filter = new OrientationFilter();
+    private final Runnable onChanged;
+    // turns the object's y axis up into the world's z axis
+    private final Quaternion objectToWorld = new Quaternion().setAxisAngle(1f, 0f, 0f, 90f);
+    private final Quaternion orientation = new Quaternion();
+    private HandlerThread sensorThread;
+
+    /**
+     * @param onChanged called on the sensor thread whenever the attitude changed, e.g. to request a frame
+     */
+    public AttitudeTracker(SensorManager sensorManager, Runnable onChanged) {
+        this.sensorManager = sensorManager;
+        this.onChanged = onChanged;
+    }
+
+    /**
+     * @return where the attitude is published, to be read from any thread
+     */
+    public CameraState getAttitude() {
+        return attitude;
+    }
+
+    /**
+     * Starts listening, call from the activity's onResume.
+     */
+    public void start() {
+        if (sensorThread != null) {
+            return;
+        }
+        sensorThread = new HandlerThread("Attitude");
+        sensorThread.start();
+        Handler handler = new Handler(sensorThread.getLooper());
+        register(Sensor.TYPE_ACCELEROMETER, handler);
+        register(Sensor.TYPE_MAGNETIC_FIELD, handler);
+        register(Sensor.TYPE_GYROSCOPE, handler);
+    }
+
+    private void register(int sensorType, Handler handler) {
+        Sensor sensor = sensorManager.getDefaultSensor(sensorType);
+        if (sensor != null) {
+            sensorManager.registerListener(this, sensor, SensorManager.SENSOR_DELAY_GAME, handler);
+        }
+    }
+
+    /**
+     * Stops listening, call from the activity's onPause.
+     */
+    public void stop() {
+        if (sensorThread == null) {
+            return;
+        }
+        sensorManager.unregisterListener(this);
+        sensorThread.quitSafely();
+        sensorThread = null;
+    }
+
+    @Override
+    public void onSensorChanged(SensorEvent event) {
+        float[] values = event.values;
+        switch (event.sensor.getType()) {
+            case Sensor.TYPE_ACCELEROMETER:
+                filter.onAccelerometer(values[0], values[1], values[2], event.timestamp);
+                break;
+            case Sensor.TYPE_MAGNETIC_FIELD:
+                filter.onMagnetometer(values[0], values[1], values[2]);
+                // the attitude moves with the other two
+                return;
+            case Sensor.TYPE_GYROSCOPE:
+                filter.onGyroscope(values[0], values[1], values[2], event.timestamp);
+                break;
+            default:
+                return;
+        }
+        if (!filter.isInitialized()) {
+            return;
+        }
+        // world to device, which is the view, after object to world
+        filter.getAttitude(orientation);
+        orientation.conjugate().multiply(orientation, objectToWorld);
+        attitude.setOrientation(orientation);
+        onChanged.run();
+    }
+
+    @Override
+    public void onAccuracyChanged(Sensor sensor, int accuracy) {
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.talkingplayer;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Camera parameters handed from the UI thread to the GL thread as a whole. The UI thread changes them one
+ * at a time or several at once between {@link #beginWrite()} and {@link #endWrite()}; the GL thread copies
+ * them out once per frame with {@link #read(Snapshot)} and always sees a set that was published together.
+ * <p>
+ * Guarded by a {@link SequenceLock}: neither side locks or allocates, and the writer never waits. There
+ * must be a single writing thread.
+ */
+public final class CameraState {
+    private static final int ANGLE = 0;
+    private static final int ZOOM = 1;
+    // orientation quaternion x, y, z, w
+    private static final int ORIENTATION = 2;
+    private static final int PARAMETER_COUNT = 6;
+    private final SequenceLock lock = new SequenceLock();
+    // float bits, every access is volatile so reads can't move outside the sequence checks
+    private final AtomicIntegerArray published = new AtomicIntegerArray(PARAMETER_COUNT);
+    // what the writer last wrote, so it can read its own values back without the sequence
+    private final float[] written = new float[PARAMETER_COUNT];
+    private int writeDepth;
+
+    public CameraState() {
+        set(ZOOM, 1f);
+        set(ORIENTATION + 3, 1f);
+    }
+
+    /**
+     * Starts changing several parameters that readers must only see together. Writes nest.
+     */
+    public void beginWrite() {
+        if (writeDepth++ == 0) {
+            lock.beginWrite();
+        }
+    }
+
+    public void endWrite() {
+        if (writeDepth == 0) {
+            throw new IllegalStateException("No write in progress");
+        }
+        if (--writeDepth == 0) {
+            lock.endWrite();
+        }
+    }
+
+    private void set(int parameter, float value) {
+        beginWrite();
+        written[parameter] = value;
+        published.set(parameter, Float.floatToRawIntBits(value));
+        endWrite();
+    }
+
+    /**
+     * @return the rotation around the vertical axis in degrees, as last set on the writing thread
+     */
+    public float getAngle() {
+        return written[ANGLE];
+    }
+
+    public void setAngle(float degrees) {
+        set(ANGLE, degrees);
+    }
+
+    /**
+     * @return the zoom factor, as last set on the writing thread
+     */
+    public float getZoom() {
+        return written[ZOOM];
+    }
+
+    public void setZoom(float zoom) {
+        set(ZOOM, zoom);
+    }
+
+    /**
+     * Copies {@code orientation} into {@code into}, as last set on the writing thread.
+     */
+    public void getOrientation(Quaternion into) {
+        into.set(written[ORIENTATION], written[ORIENTATION + 1], written[ORIENTATION + 2],
+                written[ORIENTATION + 3]);
+    }
+
+    /**
+     * Sets the orientation of the object looked at, all four components are published together.
+     */
+    public void setOrientation(Quaternion orientation) {
+        beginWrite();
+        set(ORIENTATION, orientation.x);
+        set(ORIENTATION + 1, orientation.y);
+        set(ORIENTATION + 2, orientation.z);
+        set(ORIENTATION + 3, orientation.w);
+        endWrite();
+    }
+
+    /**
+     * Copies the parameters published last into {@code snapshot}, from any thread.
+     */
+    public void read(Snapshot snapshot) {
+        int sequence;
+        do {
+            sequence = lock.beginRead();
+            snapshot.angle = Float.intBitsToFloat(published.get(ANGLE));
+            snapshot.zoom = Float.intBitsToFloat(published.get(ZOOM));
+            snapshot.orientation.set(Float.intBitsToFloat(published.get(ORIENTATION)),
+                    Float.intBitsToFloat(published.get(ORIENTATION + 1)),
+                    Float.intBitsToFloat(published.get(ORIENTATION + 2)),
+                    Float.intBitsToFloat(published.get(ORIENTATION + 3)));
+        } while (lock.retryRead(sequence));
+    }
+
+    /**
+     * The reader's copy of the parameters, reused every frame.
+     */
+    public static final class Snapshot {
+        public float angle;
+        public float zoom = 1f;
+        public final Quaternion orientation = new Quaternion();
+    }
+}
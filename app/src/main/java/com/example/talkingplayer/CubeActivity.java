@@ -7,7 +7,8 @@ import android.os.Bundle;
 import android.view.MotionEvent;
 
 public class CubeActivity extends AppCompatActivity {
-    private GLSurfaceView glSurfaceView;
+    private MyGLSurfaceView glSurfaceView;
+    private FrameStatsOverlay frameStatsOverlay;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -15,6 +16,26 @@ public class CubeActivity extends AppCompatActivity {
         setContentView(R.layout.activity_cube);
         glSurfaceView = new MyGLSurfaceView(this);
         setContentView(glSurfaceView);
+        glSurfaceView.getRenderScheduler().setMaxFrameRate(RenderScheduler.getMaxFrameRate(getIntent()));
+        frameStatsOverlay = FrameStatsOverlay.attachIfRequested(this, glSurfaceView.getFrameTimer());
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        glSurfaceView.onResume();
+        if (frameStatsOverlay != null) {
+            frameStatsOverlay.start();
+        }
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        glSurfaceView.onPause();
+        if (frameStatsOverlay != null) {
+            frameStatsOverlay.stop();
+        }
     }
 
 
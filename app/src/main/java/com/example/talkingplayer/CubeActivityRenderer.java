@@ -1,6 +1,6 @@
 package com.example.talkingplayer;
 
-import android.opengl.GLES20;
+import android.content.Context;
 import android.opengl.GLSurfaceView;
 import android.opengl.Matrix;
 import android.os.SystemClock;
@@ -8,33 +8,39 @@ import android.os.SystemClock;
 import javax.microedition.khronos.egl.EGLConfig;
 import javax.microedition.khronos.opengles.GL10;
 
-public class CubeActivityRenderer implements GLSurfaceView.Renderer {
+public class CubeActivityRenderer implements GLSurfaceView.Renderer, TouchRotationController.Target {
     private final float[] vPMatrix = new float[16];
     private final float[] projectionMatrix = new float[16];
     private final float[] viewMatrix = new float[16];
-    public volatile float mAngle;
+    // written on the UI thread, copied out once per frame
+    private final CameraState cameraState = new CameraState();
+    private final CameraState.Snapshot camera = new CameraState.Snapshot();
     private Cuboid cuboid;
     private float[] rotationMatrix = new float[16];
+    private final Context context;
+    private final Gl gl;
+    private final FrameTimer frameTimer = new FrameTimer("Cube");
 
-    public static int loadShader(int type, String shaderCode) {
-        // create a vertex shader type (GLES20.GL_VERTEX_SHADER)
-        // or a fragment shader type (GLES20.GL_FRAGMENT_SHADER)
-        int shader = GLES20.glCreateShader(type);
-        // add the source code to the shader and compile it
-        GLES20.glShaderSource(shader, shaderCode);
-        GLES20.glCompileShader(shader);
+    public CubeActivityRenderer(Context context) {
+        this(context, new AndroidGl());
+    }
 
-        return shader;
+    public CubeActivityRenderer(Context context, Gl gl) {
+        this.context = context;
+        this.gl = gl;
     }
 
     @Override
     public void onSurfaceCreated(GL10 gl10, EGLConfig eglConfig) {
-        cuboid = new Cuboid();
+        GlCapabilities capabilities = GlCapabilities.query(gl);
+        frameTimer.onSurfaceCreated(gl, capabilities);
+        cuboid = new Cuboid(capabilities, new GlStateCache(gl, capabilities),
+                new ShaderCache(gl, context, capabilities));
     }
 
     @Override
     public void onSurfaceChanged(GL10 gl10, int width, int height) {
-        GLES20.glViewport(0, 0, width, height);
+        gl.glViewport(0, 0, width, height);
         float ratio = (float) width / height;
         // this projection matrix is applied to object coordinates
         // in the onDrawFrame() method
@@ -43,12 +49,14 @@ public class CubeActivityRenderer implements GLSurfaceView.Renderer {
 
     @Override
     public void onDrawFrame(GL10 gl10) {
+        frameTimer.beginFrame();
+        cameraState.read(camera);
         float[] scratch = new float[16];
 
 
         // Create a rotation transformation for the triangle
         long time = SystemClock.uptimeMillis() % 4000L;
-        Matrix.setRotateM(rotationMatrix, 0, mAngle, 0, 0, 0.0f);
+        Matrix.setRotateM(rotationMatrix, 0, camera.angle, 0, 0, 0.0f);
 
         // Set the camera position (View matrix)
         Matrix.setLookAtM(viewMatrix, 0, 0, 0, -3, 0f, 0f, 0f, 0f, 1.0f, 0.0f);
@@ -62,14 +70,27 @@ public class CubeActivityRenderer implements GLSurfaceView.Renderer {
 
         // Draw shape
         cuboid.draw(scratch);
+        frameTimer.endFrame();
+    }
+
+    public FrameTimer getFrameTimer() {
+        return frameTimer;
+    }
 
+    /**
+     * @return the camera, to be changed on the UI thread only
+     */
+    public CameraState getCameraState() {
+        return cameraState;
     }
 
+    @Override
     public float getAngle() {
-        return mAngle;
+        return cameraState.getAngle();
     }
 
+    @Override
     public void setAngle(float angle) {
-        mAngle = angle;
+        cameraState.setAngle(angle);
     }
 }
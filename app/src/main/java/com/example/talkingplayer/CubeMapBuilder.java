@@ -0,0 +1,228 @@
+package com.example.talkingplayer;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Prepares the six faces of a cube map, with their mip chains, from tightly packed RGBA images.
+ * No Android dependencies, so it runs on loader threads and at build time alike.
+ * <p>
+ * Faces come either from one image each, where an image shared by several faces is processed once and
+ * its levels shared, or from a single equirectangular (longitude by latitude) image that is resampled
+ * onto the cube. Faces are prepared in parallel on a {@link ForkJoinPool} and come out as power of two
+ * squares, so every context can mipmap them.
+ */
+public class CubeMapBuilder {
+    /**
+     * Faces in the order of GL_TEXTURE_CUBE_MAP_POSITIVE_X onwards: +X, -X, +Y, -Y, +Z, -Z.
+     */
+    public static final int FACE_COUNT = 6;
+    private ForkJoinPool pool;
+
+    /**
+     * Sets the pool faces are prepared on, the {@link SharedForkJoinPool} if none is given.
+     */
+    public CubeMapBuilder setPool(ForkJoinPool pool) {
+        this.pool = pool;
+        return this;
+    }
+
+    /**
+     * @return the side of the faces made from an equirectangular image that wide, about as detailed as
+     * the image at the equator
+     */
+    public static int getFaceSize(int equirectangularWidth) {
+        return MipChain.nearestPowerOfTwo(Math.max(1, equirectangularWidth / 4));
+    }
+
+    /**
+     * @param images  one image per face, the same array may be given for several faces
+     * @param widths  of each image
+     * @param heights of each image
+     */
+    public CubeMap fromFaces(byte[][] images, int[] widths, int[] heights) {
+        if (images.length != FACE_COUNT || widths.length != FACE_COUNT || heights.length != FACE_COUNT) {
+            throw new IllegalArgumentException("A cube map needs " + FACE_COUNT + " faces");
+        }
+        int size = 1;
+        for (int face = 0; face < FACE_COUNT; face++) {
+            size = Math.max(size, MipChain.nearestPowerOfTwo(Math.max(widths[face], heights[face])));
+        }
+        // each distinct image is resized and filtered once
+        Map<byte[], FaceTask> tasks = new IdentityHashMap<>();
+        FaceTask[] faceTasks = new FaceTask[FACE_COUNT];
+        for (int face = 0; face < FACE_COUNT; face++) {
+            FaceTask task = tasks.get(images[face]);
+            if (task == null) {
+                task = new FaceTask(images[face], widths[face], heights[face], size);
+                tasks.put(images[face], task);
+            }
+            faceTasks[face] = task;
+        }
+        return run(size, faceTasks, new ArrayList<>(tasks.values()));
+    }
+
+    public CubeMap fromEquirectangular(byte[] image, int width, int height) {
+        int size = getFaceSize(width);
+        FaceTask[] faceTasks = new FaceTask[FACE_COUNT];
+        List<FaceTask> tasks = new ArrayList<>();
+        for (int face = 0; face < FACE_COUNT; face++) {
+            faceTasks[face] = new FaceTask(image, width, height, size, face);
+            tasks.add(faceTasks[face]);
+        }
+        return run(size, faceTasks, tasks);
+    }
+
+    private CubeMap run(int size, final FaceTask[] faceTasks, final List<FaceTask> tasks) {
+        byte[][][] faces = new byte[FACE_COUNT][][];
+        (pool != null ? pool : SharedForkJoinPool.get()).invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                invokeAll(tasks);
+            }
+        });
+        for (int face = 0; face < FACE_COUNT; face++) {
+            faces[face] = faceTasks[face].join();
+        }
+        return new CubeMap(size, faces);
+    }
+
+    /**
+     * Unit direction from the cube's center through pixel ({@code x}, {@code y}) of a face, following the
+     * GL cube map conventions.
+     */
+    static void getDirection(int face, int x, int y, int size, float[] direction) {
+        float s = 2f * (x + 0.5f) / size - 1f;
+        float t = 2f * (y + 0.5f) / size - 1f;
+        float dx, dy, dz;
+        switch (face) {
+            case 0:
+                dx = 1f;
+                dy = -t;
+                dz = -s;
+                break;
+            case 1:
+                dx = -1f;
+                dy = -t;
+                dz = s;
+                break;
+            case 2:
+                dx = s;
+                dy = 1f;
+                dz = t;
+                break;
+            case 3:
+                dx = s;
+                dy = -1f;
+                dz = -t;
+                break;
+            case 4:
+                dx = s;
+                dy = -t;
+                dz = 1f;
+                break;
+            case 5:
+                dx = -s;
+                dy = -t;
+                dz = -1f;
+                break;
+            default:
+                throw new IllegalArgumentException("No cube face " + face);
+        }
+        float length = (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+        direction[0] = dx / length;
+        direction[1] = dy / length;
+        direction[2] = dz / length;
+    }
+
+    /**
+     * Samples one face out of an equirectangular image: longitude runs along its width starting behind
+     * the viewer (-Z), latitude down its height from straight up.
+     */
+    static byte[] projectFace(byte[] image, int width, int height, int face, int size) {
+        byte[] pixels = new byte[size * size * 4];
+        float[] direction = new float[3];
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                getDirection(face, x, y, size, direction);
+                float u = 0.5f + (float) (Math.atan2(direction[0], -direction[2]) / (2 * Math.PI));
+                float v = (float) (Math.acos(Math.max(-1f, Math.min(1f, direction[1]))) / Math.PI);
+                sampleBilinear(image, width, height, u * width - 0.5f, v * height - 0.5f, pixels,
+                        (y * size + x) * 4);
+            }
+        }
+        return pixels;
+    }
+
+    /**
+     * Wraps around horizontally and clamps vertically, as longitude and latitude do.
+     */
+    private static void sampleBilinear(byte[] image, int width, int height, float x, float y, byte[] target,
+                                       int offset) {
+        int x0 = (int) Math.floor(x);
+        int y0 = (int) Math.floor(y);
+        float fractionX = x - x0;
+        float fractionY = y - y0;
+        // Math.floorMod needs API 24
+        int column0 = ((x0 % width) + width) % width;
+        int column1 = (column0 + 1) % width;
+        int row0 = Math.max(0, Math.min(height - 1, y0)) * width;
+        int row1 = Math.max(0, Math.min(height - 1, y0 + 1)) * width;
+        for (int channel = 0; channel < 4; channel++) {
+            float top = (image[(row0 + column0) * 4 + channel] & 0xff) * (1 - fractionX)
+                    + (image[(row0 + column1) * 4 + channel] & 0xff) * fractionX;
+            float bottom = (image[(row1 + column0) * 4 + channel] & 0xff) * (1 - fractionX)
+                    + (image[(row1 + column1) * 4 + channel] & 0xff) * fractionX;
+            target[offset + channel] = (byte) Math.round(top * (1 - fractionY) + bottom * fractionY);
+        }
+    }
+
+    /**
+     * Six square faces of {@link #size} pixels, each with its full mip chain, largest level first.
+     * Faces made from the same image share their arrays.
+     */
+    public static final class CubeMap {
+        public final int size;
+        public final byte[][][] faces;
+
+        CubeMap(int size, byte[][][] faces) {
+            this.size = size;
+            this.faces = faces;
+        }
+    }
+
+    private static final class FaceTask extends RecursiveTask<byte[][]> {
+        // never serialized, but RecursiveTask is Serializable
+        private static final long serialVersionUID = 1L;
+        private static final int NOT_PROJECTED = -1;
+        private final byte[] image;
+        private final int width;
+        private final int height;
+        private final int size;
+        private final int face;
+
+        FaceTask(byte[] image, int width, int height, int size) {
+            this(image, width, height, size, NOT_PROJECTED);
+        }
+
+        FaceTask(byte[] image, int width, int height, int size, int face) {
+            this.image = image;
+            this.width = width;
+            this.height = height;
+            this.size = size;
+            this.face = face;
+        }
+
+        @Override
+        protected byte[][] compute() {
+            byte[] pixels = face == NOT_PROJECTED ? MipChain.resize(image, width, height, size, size)
+                    : projectFace(image, width, height, face, size);
+            return MipChain.build(pixels, size, size);
+        }
+    }
+}
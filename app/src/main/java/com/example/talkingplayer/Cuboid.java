@@ -2,11 +2,15 @@ package com.example.talkingplayer;
 
 import android.opengl.GLES20;
 
+import android.util.Log;
+
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
 
 public class Cuboid {
+    private final static String TAG = Cuboid.class.getSimpleName();
 
     private final static String vertexShaderCode = "uniform mat4 uMVPMatrix;" +
             "attribute vec4 vPosition;" +
@@ -31,79 +35,71 @@ public class Cuboid {
             -1.0f, 1.0f, -1.0f,
 
     };
+    // Two counter-clockwise triangles per face, seen from outside the cuboid
+    private final static short cuboidIndices[] = {
+            0, 1, 2, 0, 2, 4,  // front (z = 1)
+            6, 5, 3, 6, 3, 7,  // back (z = -1)
+            0, 4, 5, 0, 5, 6,  // right (x = 1)
+            1, 7, 3, 1, 3, 2,  // left (x = -1)
+            0, 6, 7, 0, 7, 1,  // top (y = 1)
+            4, 2, 3, 4, 3, 5   // bottom (y = -1)
+    };
+    private final static float color[] = {1.0f, 1.0f, 1.0f, 1.0f};
     private final int COORDS_PER_VERTEX = 3;
     private final int mProgram;
     private final int vertexCount = cuboidCoords.length / COORDS_PER_VERTEX;
-    private final int vertexStride = COORDS_PER_VERTEX * 4; // 4 bytes per vertex
-    private FloatBuffer vertexBuffer;
-    private int positionHandle;
-    private int colorHandle;
-    private int vPMatrixHandle;
-
-    Cuboid() {
+    private final GlStateCache state;
+    private final InterleavedMesh mesh;
+    private final int positionHandle;
+    private final int colorHandle;
+    private final int vPMatrixHandle;
+
+    Cuboid(GlCapabilities capabilities, GlStateCache state, ShaderCache shaderCache) {
+        this.state = state;
         // initialize vertex byte buffer for shape coordinates
         ByteBuffer bb = ByteBuffer.allocateDirect(cuboidCoords.length * 4);
         // use the device hardware's native byte order
         bb.order(ByteOrder.nativeOrder());
 
-        // create a triangleCoordsfloating point buffer from the ByteBuffer
-        vertexBuffer = bb.asFloatBuffer();
+        // create a floating point buffer from the ByteBuffer
+        FloatBuffer vertexBuffer = bb.asFloatBuffer();
         // add the coordinates to the FloatBuffer
         vertexBuffer.put(cuboidCoords);
         // set the buffer to read the first coordinate
         vertexBuffer.position(0);
 
-        int vertexShader = CubeActivityRenderer.loadShader(GLES20.GL_VERTEX_SHADER,
-                vertexShaderCode);
-        int fragmentShader = CubeActivityRenderer.loadShader(GLES20.GL_FRAGMENT_SHADER,
-                fragmentShaderCode);
-
-        // create empty OpenGL ES Program
-        mProgram = GLES20.glCreateProgram();
-
-        // add the vertex shader to program
-        GLES20.glAttachShader(mProgram, vertexShader);
-
-        // add the fragment shader to program
-        GLES20.glAttachShader(mProgram, fragmentShader);
-
-        // creates OpenGL ES program executables
-        GLES20.glLinkProgram(mProgram);
+        ShortBuffer indexBuffer = ByteBuffer.allocateDirect(cuboidIndices.length * 2)
+                .order(ByteOrder.nativeOrder()).asShortBuffer();
+        indexBuffer.put(cuboidIndices).position(0);
+        Log.d(TAG, "Cuboid: " + MeshOptimizer.optimize(indexBuffer, vertexBuffer, COORDS_PER_VERTEX, vertexCount));
+
+        ShaderProgram program = shaderCache.get(vertexShaderCode, fragmentShaderCode);
+        mProgram = program.getProgramHandle();
+
+        // get handles to the shaders' members
+        positionHandle = program.getAttribLocation("vPosition");
+        colorHandle = program.getUniformLocation("vColor");
+        vPMatrixHandle = program.getUniformLocation("uMVPMatrix");
+        VertexLayout layout = new VertexLayout.Builder()
+                .add(positionHandle, COORDS_PER_VERTEX)
+                .build();
+        mesh = new InterleavedMesh(state, capabilities, layout, vertexBuffer, indexBuffer);
     }
 
 
     public void draw(float[] mvpMatrix) {
         // Add program to OpenGL ES environment
-        GLES20.glUseProgram(mProgram);
-
-        // get handle to vertex shader's vPosition member
-        positionHandle = GLES20.glGetAttribLocation(mProgram, "vPosition");
-
-        // Enable a handle to the triangle vertices
-        GLES20.glEnableVertexAttribArray(positionHandle);
+        state.useProgram(mProgram);
 
-        // Prepare the triangle coordinate data
-        GLES20.glVertexAttribPointer(positionHandle, COORDS_PER_VERTEX,
-                GLES20.GL_FLOAT, false,
-                vertexStride, vertexBuffer);
-
-        // get handle to fragment shader's vColor member
-        colorHandle = GLES20.glGetUniformLocation(mProgram, "vColor");
-        float[] color = {1.0f, 1.0f, 1.0f, 1.0f, 1.0f, 1.0f, 1.0f, 1.0f, 1.0f, 1.0f, 1.0f, 1.0f, 1.0f, 1.0f, 1.0f, 1.0f};
         // Set color for drawing the triangle
-        GLES20.glUniform4fv(colorHandle, 1, color, 0);
+        state.uniform4fv(colorHandle, 1, color, 0);
 
-        // get handle to shape's transformation matrix
-        vPMatrixHandle = GLES20.glGetUniformLocation(mProgram, "uMVPMatrix");
         // Pass the projection and view transformation to the shader
-        GLES20.glUniformMatrix4fv(vPMatrixHandle, 1, false, mvpMatrix, 0);
-
+        state.uniformMatrix4fv(vPMatrixHandle, 1, false, mvpMatrix, 0);
 
-        // Draw the triangle
-        GLES20.glDrawArrays(GLES20.GL_TRIANGLES, 0, vertexCount);
 
-        // Disable vertex array
-        GLES20.glDisableVertexAttribArray(positionHandle);
+        // Draw the cuboid
+        mesh.draw(GLES20.GL_TRIANGLES);
     }
 
 }
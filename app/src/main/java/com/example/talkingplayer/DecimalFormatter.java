@@ -0,0 +1,64 @@
+package com.example.talkingplayer;
+
+/**
+ * Writes floats as fixed point decimals into a char array, for text that changes many times a second and
+ * shouldn't leave a String behind every time.
+ */
+final class DecimalFormatter {
+    // beyond this the digits don't fit a long once scaled, and nobody reads them off a dashboard anyway
+    private static final float MAX_FIXED = 1e9f;
+    private static final long[] POWERS_OF_TEN = {1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L};
+    static final int MAX_DECIMALS = POWERS_OF_TEN.length - 1;
+    // sign, ten integer digits, point and decimals
+    static final int MAX_LENGTH = 12 + MAX_DECIMALS;
+
+    private DecimalFormatter() {
+    }
+
+    /**
+     * Writes {@code value} rounded to {@code decimals} places, e.g. "-0.125" for three, at the start of
+     * {@code into}, which must hold at least {@link #MAX_LENGTH} chars.
+     *
+     * @return how many chars were written
+     */
+    static int format(float value, int decimals, char[] into) {
+        if (decimals < 0 || decimals > MAX_DECIMALS) {
+            throw new IllegalArgumentException("Decimals must be in [0, " + MAX_DECIMALS + "], got " + decimals);
+        }
+        if (Float.isNaN(value) || Math.abs(value) >= MAX_FIXED) {
+            // rare enough to afford the garbage
+            String text = Float.toString(value);
+            text.getChars(0, text.length(), into, 0);
+            return text.length();
+        }
+        long scaled = Math.round(Math.abs((double) value) * POWERS_OF_TEN[decimals]);
+        int length = 0;
+        if (value < 0 && scaled != 0) {
+            into[length++] = '-';
+        }
+        long integer = scaled / POWERS_OF_TEN[decimals];
+        long fraction = scaled % POWERS_OF_TEN[decimals];
+        length = writeDigits(integer, 1, into, length);
+        if (decimals > 0) {
+            into[length++] = '.';
+            length = writeDigits(fraction, decimals, into, length);
+        }
+        return length;
+    }
+
+    /**
+     * Writes {@code value} in at least {@code minDigits} digits, padded with leading zeros.
+     */
+    private static int writeDigits(long value, int minDigits, char[] into, int offset) {
+        int digits = 1;
+        for (long rest = value / 10; rest > 0; rest /= 10) {
+            digits++;
+        }
+        digits = Math.max(digits, minDigits);
+        for (int i = offset + digits - 1; i >= offset; i--) {
+            into[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return offset + digits;
+    }
+}
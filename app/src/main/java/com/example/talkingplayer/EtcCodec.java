@@ -0,0 +1,432 @@
+package com.example.talkingplayer;
+
+/**
+ * Encodes RGB images to ETC1 and ETC2 RGB8 and decodes them back. Used at build time and in tests, no
+ * Android dependencies.
+ * <p>
+ * Both formats store every 4x4 block in 8 big endian bytes. An ETC1 block is split into two 2x4 or 4x2
+ * halves, each with a base color and a table of luminance offsets that every pixel picks one of.
+ * ETC2 decodes every ETC1 block the same way and adds modes in the bit patterns ETC1 never produces, of
+ * which the encoder uses the planar mode: three colors the block is linearly interpolated between, which
+ * suits the smooth gradients the ETC1 halves are bad at. The encoder picks the base colors from the
+ * average of each half and searches every table for the smallest squared error, there is no iterative
+ * refinement.
+ */
+public final class EtcCodec {
+    public static final int BLOCK_SIZE = 4;
+    public static final int BYTES_PER_BLOCK = 8;
+    private static final int PIXELS_PER_BLOCK = BLOCK_SIZE * BLOCK_SIZE;
+    private static final int[][] MODIFIER_TABLES = {
+            {2, 8}, {5, 17}, {9, 29}, {13, 42}, {18, 60}, {24, 80}, {33, 106}, {47, 183}};
+
+    private EtcCodec() {
+    }
+
+    /**
+     * @return the number of bytes an ETC1 or ETC2 RGB8 image of that size takes
+     */
+    public static int getEncodedSize(int width, int height) {
+        return getBlockCount(width) * getBlockCount(height) * BYTES_PER_BLOCK;
+    }
+
+    /**
+     * Encodes tightly packed RGBA pixels, alpha is dropped. Blocks crossing the right or bottom edge
+     * repeat the last row and column.
+     *
+     * @param etc2 also use the modes only ETC2 decoders understand
+     */
+    public static byte[] encode(byte[] rgba, int width, int height, boolean etc2) {
+        if (rgba.length < width * height * 4) {
+            throw new IllegalArgumentException(width + "x" + height + " image needs " + width * height * 4
+                    + " bytes, got " + rgba.length);
+        }
+        byte[] encoded = new byte[getEncodedSize(width, height)];
+        int[] block = new int[PIXELS_PER_BLOCK * 3];
+        BlockEncoder encoder = new BlockEncoder();
+        int offset = 0;
+        for (int blockY = 0; blockY < height; blockY += BLOCK_SIZE) {
+            for (int blockX = 0; blockX < width; blockX += BLOCK_SIZE) {
+                for (int x = 0; x < BLOCK_SIZE; x++) {
+                    for (int y = 0; y < BLOCK_SIZE; y++) {
+                        int source = (Math.min(blockY + y, height - 1) * width + Math.min(blockX + x, width - 1)) * 4;
+                        int pixel = getPixelIndex(x, y) * 3;
+                        block[pixel] = rgba[source] & 0xff;
+                        block[pixel + 1] = rgba[source + 1] & 0xff;
+                        block[pixel + 2] = rgba[source + 2] & 0xff;
+                    }
+                }
+                long bits = encoder.encode(block, etc2);
+                for (int i = 0; i < BYTES_PER_BLOCK; i++) {
+                    encoded[offset++] = (byte) (bits >>> (56 - 8 * i));
+                }
+            }
+        }
+        return encoded;
+    }
+
+    /**
+     * Decodes ETC1 data, or ETC2 RGB8 data made by {@link #encode}, to tightly packed opaque RGBA pixels.
+     *
+     * @throws IllegalArgumentException for the ETC2 T and H modes, which this encoder never uses
+     */
+    public static byte[] decode(byte[] encoded, int width, int height) {
+        if (encoded.length < getEncodedSize(width, height)) {
+            throw new IllegalArgumentException(width + "x" + height + " image needs "
+                    + getEncodedSize(width, height) + " encoded bytes, got " + encoded.length);
+        }
+        byte[] rgba = new byte[width * height * 4];
+        int[] block = new int[PIXELS_PER_BLOCK * 3];
+        int offset = 0;
+        for (int blockY = 0; blockY < height; blockY += BLOCK_SIZE) {
+            for (int blockX = 0; blockX < width; blockX += BLOCK_SIZE) {
+                long bits = 0;
+                for (int i = 0; i < BYTES_PER_BLOCK; i++) {
+                    bits = (bits << 8) | (encoded[offset++] & 0xff);
+                }
+                decodeBlock(bits, block);
+                for (int y = 0; y < BLOCK_SIZE && blockY + y < height; y++) {
+                    for (int x = 0; x < BLOCK_SIZE && blockX + x < width; x++) {
+                        int target = ((blockY + y) * width + blockX + x) * 4;
+                        int pixel = getPixelIndex(x, y) * 3;
+                        rgba[target] = (byte) block[pixel];
+                        rgba[target + 1] = (byte) block[pixel + 1];
+                        rgba[target + 2] = (byte) block[pixel + 2];
+                        rgba[target + 3] = (byte) 0xff;
+                    }
+                }
+            }
+        }
+        return rgba;
+    }
+
+    /**
+     * Peak signal to noise ratio of the RGB channels of two RGBA images, in dB. Identical images give
+     * positive infinity.
+     */
+    public static double computePsnr(byte[] expected, byte[] actual) {
+        if (expected.length != actual.length) {
+            throw new IllegalArgumentException("Images differ in size");
+        }
+        long squaredError = 0;
+        for (int i = 0; i < expected.length; i++) {
+            if (i % 4 == 3) {
+                continue;
+            }
+            int difference = (expected[i] & 0xff) - (actual[i] & 0xff);
+            squaredError += difference * difference;
+        }
+        double meanSquaredError = squaredError / (expected.length / 4 * 3.0);
+        return 10 * Math.log10(255 * 255 / meanSquaredError);
+    }
+
+    private static int getBlockCount(int pixels) {
+        return (pixels + BLOCK_SIZE - 1) / BLOCK_SIZE;
+    }
+
+    /**
+     * Pixels are stored column by column.
+     */
+    private static int getPixelIndex(int x, int y) {
+        return x * BLOCK_SIZE + y;
+    }
+
+    private static boolean isInSecondHalf(int pixel, boolean flip) {
+        return (flip ? pixel % BLOCK_SIZE : pixel / BLOCK_SIZE) >= 2;
+    }
+
+    private static int expand4(int value) {
+        return (value << 4) | value;
+    }
+
+    private static int expand5(int value) {
+        return (value << 3) | (value >> 2);
+    }
+
+    private static int expand6(int value) {
+        return (value << 2) | (value >> 4);
+    }
+
+    private static int expand7(int value) {
+        return (value << 1) | (value >> 6);
+    }
+
+    private static int signExtend3(int value) {
+        return (value << 29) >> 29;
+    }
+
+    private static int clamp(int value) {
+        return value < 0 ? 0 : value > 255 ? 255 : value;
+    }
+
+    private static int getModifier(int table, int index) {
+        int modifier = MODIFIER_TABLES[table][index & 1];
+        return (index & 2) != 0 ? -modifier : modifier;
+    }
+
+    private static void decodeBlock(long bits, int[] block) {
+        int high = (int) (bits >>> 32);
+        int low = (int) bits;
+        boolean flip = (high & 1) != 0;
+        int[] base = new int[6];
+        if ((high & 2) == 0) {
+            for (int channel = 0; channel < 3; channel++) {
+                base[channel] = expand4((high >>> (28 - 8 * channel)) & 0xf);
+                base[3 + channel] = expand4((high >>> (24 - 8 * channel)) & 0xf);
+            }
+        } else {
+            for (int channel = 0; channel < 3; channel++) {
+                int first = (high >>> (27 - 8 * channel)) & 0x1f;
+                int second = first + signExtend3((high >>> (24 - 8 * channel)) & 7);
+                if (second < 0 || second > 31) {
+                    if (channel < 2) {
+                        throw new IllegalArgumentException("ETC2 T and H mode blocks are not supported");
+                    }
+                    decodePlanarBlock(bits, block);
+                    return;
+                }
+                base[channel] = expand5(first);
+                base[3 + channel] = expand5(second);
+            }
+        }
+        int[] tables = {(high >>> 5) & 7, (high >>> 2) & 7};
+        for (int pixel = 0; pixel < PIXELS_PER_BLOCK; pixel++) {
+            int half = isInSecondHalf(pixel, flip) ? 1 : 0;
+            int index = (((low >>> (16 + pixel)) & 1) << 1) | ((low >>> pixel) & 1);
+            int modifier = getModifier(tables[half], index);
+            for (int channel = 0; channel < 3; channel++) {
+                block[pixel * 3 + channel] = clamp(base[3 * half + channel] + modifier);
+            }
+        }
+    }
+
+    private static void decodePlanarBlock(long bits, int[] block) {
+        int[] origin = {
+                expand6((int) (bits >>> 57) & 0x3f),
+                expand7((int) (((bits >>> 56) & 1) << 6 | (bits >>> 49) & 0x3f)),
+                expand6((int) (((bits >>> 48) & 1) << 5 | ((bits >>> 43) & 3) << 3 | (bits >>> 39) & 7))};
+        int[] horizontal = {
+                expand6((int) (((bits >>> 34) & 0x1f) << 1 | (bits >>> 32) & 1)),
+                expand7((int) (bits >>> 25) & 0x7f),
+                expand6((int) (bits >>> 19) & 0x3f)};
+        int[] vertical = {
+                expand6((int) (bits >>> 13) & 0x3f),
+                expand7((int) (bits >>> 6) & 0x7f),
+                expand6((int) bits & 0x3f)};
+        for (int x = 0; x < BLOCK_SIZE; x++) {
+            for (int y = 0; y < BLOCK_SIZE; y++) {
+                int pixel = getPixelIndex(x, y);
+                for (int channel = 0; channel < 3; channel++) {
+                    block[pixel * 3 + channel] = clamp((x * (horizontal[channel] - origin[channel])
+                            + y * (vertical[channel] - origin[channel]) + 4 * origin[channel] + 2) >> 2);
+                }
+            }
+        }
+    }
+
+    /**
+     * Scratch state for encoding one block at a time.
+     */
+    private static final class BlockEncoder {
+        private final int[] decoded = new int[PIXELS_PER_BLOCK * 3];
+        private final int[] halfBase = new int[3];
+        // the best table found by fitHalf and the index bits of its pixels
+        private int fitTable;
+        private int fitIndexBits;
+
+        long encode(int[] block, boolean etc2) {
+            long best = 0;
+            long bestError = Long.MAX_VALUE;
+            for (int flip = 0; flip < 2; flip++) {
+                long bits = encodeEtc1(block, flip == 1, false);
+                long error = computeError(block, bits);
+                if (error < bestError) {
+                    best = bits;
+                    bestError = error;
+                }
+                bits = encodeEtc1(block, flip == 1, true);
+                if (bits != -1) {
+                    error = computeError(block, bits);
+                    if (error < bestError) {
+                        best = bits;
+                        bestError = error;
+                    }
+                }
+            }
+            if (etc2 && bestError > 0) {
+                long bits = encodePlanar(block);
+                if (computeError(block, bits) < bestError) {
+                    best = bits;
+                }
+            }
+            return best;
+        }
+
+        /**
+         * @return the block, or -1 if the halves are too far apart in color for differential mode
+         */
+        private long encodeEtc1(int[] block, boolean flip, boolean differential) {
+            int[][] quantized = new int[2][3];
+            for (int half = 0; half < 2; half++) {
+                for (int channel = 0; channel < 3; channel++) {
+                    int sum = 0;
+                    for (int pixel = 0; pixel < PIXELS_PER_BLOCK; pixel++) {
+                        if (isInSecondHalf(pixel, flip) == (half == 1)) {
+                            sum += block[pixel * 3 + channel];
+                        }
+                    }
+                    int levels = differential ? 31 : 15;
+                    quantized[half][channel] = Math.round(sum / 8f * levels / 255f);
+                }
+            }
+            int high = (differential ? 2 : 0) | (flip ? 1 : 0);
+            for (int channel = 0; channel < 3; channel++) {
+                if (differential) {
+                    int delta = quantized[1][channel] - quantized[0][channel];
+                    if (delta < -4 || delta > 3) {
+                        return -1;
+                    }
+                    high |= quantized[0][channel] << (27 - 8 * channel) | (delta & 7) << (24 - 8 * channel);
+                } else {
+                    high |= quantized[0][channel] << (28 - 8 * channel) | quantized[1][channel] << (24 - 8 * channel);
+                }
+            }
+            int low = 0;
+            for (int half = 0; half < 2; half++) {
+                for (int channel = 0; channel < 3; channel++) {
+                    halfBase[channel] = differential ? expand5(quantized[half][channel])
+                            : expand4(quantized[half][channel]);
+                }
+                fitHalf(block, flip, half);
+                high |= fitTable << (half == 0 ? 5 : 2);
+                low |= fitIndexBits;
+            }
+            return ((long) high << 32) | (low & 0xffffffffL);
+        }
+
+        /**
+         * Picks the table and per pixel offsets of one half of the block around {@link #halfBase}.
+         */
+        private void fitHalf(int[] block, boolean flip, int half) {
+            long bestError = Long.MAX_VALUE;
+            for (int table = 0; table < MODIFIER_TABLES.length; table++) {
+                long error = 0;
+                int indexBits = 0;
+                for (int pixel = 0; pixel < PIXELS_PER_BLOCK; pixel++) {
+                    if (isInSecondHalf(pixel, flip) != (half == 1)) {
+                        continue;
+                    }
+                    int bestIndex = 0;
+                    int bestPixelError = Integer.MAX_VALUE;
+                    for (int index = 0; index < 4; index++) {
+                        int modifier = getModifier(table, index);
+                        int pixelError = 0;
+                        for (int channel = 0; channel < 3; channel++) {
+                            int difference = clamp(halfBase[channel] + modifier) - block[pixel * 3 + channel];
+                            pixelError += difference * difference;
+                        }
+                        if (pixelError < bestPixelError) {
+                            bestPixelError = pixelError;
+                            bestIndex = index;
+                        }
+                    }
+                    error += bestPixelError;
+                    indexBits |= (bestIndex >> 1) << (16 + pixel) | (bestIndex & 1) << pixel;
+                }
+                if (error < bestError) {
+                    bestError = error;
+                    fitTable = table;
+                    fitIndexBits = indexBits;
+                }
+            }
+        }
+
+        /**
+         * Fits a plane to each channel by least squares and stores it as the colors at (0, 0), (4, 0)
+         * and (0, 4).
+         */
+        private long encodePlanar(int[] block) {
+            int[] origin = new int[3];
+            int[] horizontal = new int[3];
+            int[] vertical = new int[3];
+            for (int channel = 0; channel < 3; channel++) {
+                float mean = 0;
+                float slopeX = 0;
+                float slopeY = 0;
+                for (int x = 0; x < BLOCK_SIZE; x++) {
+                    for (int y = 0; y < BLOCK_SIZE; y++) {
+                        int value = block[getPixelIndex(x, y) * 3 + channel];
+                        mean += value;
+                        slopeX += (x - 1.5f) * value;
+                        slopeY += (y - 1.5f) * value;
+                    }
+                }
+                mean /= PIXELS_PER_BLOCK;
+                // the sum of (x - 1.5)^2 over the block is 20
+                slopeX /= 20;
+                slopeY /= 20;
+                float atOrigin = mean - 1.5f * slopeX - 1.5f * slopeY;
+                int levels = channel == 1 ? 127 : 63;
+                origin[channel] = quantize(atOrigin, levels);
+                horizontal[channel] = quantize(atOrigin + 4 * slopeX, levels);
+                vertical[channel] = quantize(atOrigin + 4 * slopeY, levels);
+            }
+            long bits = (long) origin[0] << 57
+                    | (long) (origin[1] >> 6) << 56 | (long) (origin[1] & 0x3f) << 49
+                    | (long) (origin[2] >> 5) << 48 | (long) ((origin[2] >> 3) & 3) << 43
+                    | (long) (origin[2] & 7) << 39
+                    | (long) (horizontal[0] >> 1) << 34 | 1L << 33 | (long) (horizontal[0] & 1) << 32
+                    | (long) horizontal[1] << 25 | (long) horizontal[2] << 19
+                    | (long) vertical[0] << 13 | (long) vertical[1] << 6 | vertical[2];
+            return markPlanar(bits);
+        }
+
+        private static int quantize(float value, int levels) {
+            return Math.max(0, Math.min(levels, Math.round(value * levels / 255f)));
+        }
+
+        /**
+         * Sets the bits planar mode leaves unused so a decoder reading the block in differential mode sees
+         * red and green in range and blue overflowing, which is what marks a planar block.
+         */
+        private static long markPlanar(long bits) {
+            if (overflows(bits, 59)) {
+                bits ^= 1L << 63;
+            }
+            if (overflows(bits, 51)) {
+                bits ^= 1L << 55;
+            }
+            long[] freeBlueBits = {1L << 47, 1L << 46, 1L << 45, 1L << 42};
+            for (int combination = 0; combination < 1 << freeBlueBits.length; combination++) {
+                long candidate = bits;
+                for (int i = 0; i < freeBlueBits.length; i++) {
+                    if ((combination & (1 << i)) != 0) {
+                        candidate |= freeBlueBits[i];
+                    }
+                }
+                if (overflows(candidate, 43)) {
+                    return candidate;
+                }
+            }
+            throw new IllegalStateException("No planar marking for block " + Long.toHexString(bits));
+        }
+
+        /**
+         * @return whether the 5 bit base at {@code shift} plus the 3 bit delta below it leaves 0 to 31
+         */
+        private static boolean overflows(long bits, int shift) {
+            int base = (int) (bits >>> shift) & 0x1f;
+            int sum = base + signExtend3((int) (bits >>> (shift - 3)) & 7);
+            return sum < 0 || sum > 31;
+        }
+
+        private long computeError(int[] block, long bits) {
+            decodeBlock(bits, decoded);
+            long error = 0;
+            for (int i = 0; i < decoded.length; i++) {
+                int difference = decoded[i] - block[i];
+                error += difference * difference;
+            }
+            return error;
+        }
+    }
+}
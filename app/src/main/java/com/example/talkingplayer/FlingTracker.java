@@ -0,0 +1,128 @@
+package com.example.talkingplayer;
+
+import android.view.MotionEvent;
+import android.view.VelocityTracker;
+import android.view.View;
+import android.view.ViewConfiguration;
+
+/**
+ * The part of dragging to rotate that the touch controllers share: tracks how fast the finger moves,
+ * collects rotation in a {@link RotationInput} and keeps the {@link RenderScheduler} animating for as long
+ * as a fling lasts. Use it on the main thread.
+ */
+class FlingTracker {
+    private static final double FLING_TIME_CONSTANT_SECONDS = 0.35;
+    private final RenderScheduler renderScheduler;
+    private final RotationInput input = new RotationInput(FLING_TIME_CONSTANT_SECONDS);
+    private final int minimumFlingVelocity;
+    private final int maximumFlingVelocity;
+    private VelocityTracker velocityTracker;
+    private float xVelocity;
+    private float yVelocity;
+
+    FlingTracker(View view, RenderScheduler renderScheduler) {
+        this.renderScheduler = renderScheduler;
+        ViewConfiguration configuration = ViewConfiguration.get(view.getContext());
+        minimumFlingVelocity = configuration.getScaledMinimumFlingVelocity();
+        maximumFlingVelocity = configuration.getScaledMaximumFlingVelocity();
+    }
+
+    /**
+     * Call with ACTION_DOWN, starts tracking the finger.
+     */
+    void down(MotionEvent e) {
+        // touching stops a fling in its tracks
+        fling(0);
+        if (velocityTracker == null) {
+            velocityTracker = VelocityTracker.obtain();
+        }
+        velocityTracker.clear();
+        velocityTracker.addMovement(e);
+    }
+
+    void addMovement(MotionEvent e) {
+        if (velocityTracker != null) {
+            velocityTracker.addMovement(e);
+        }
+    }
+
+    /**
+     * Forgets how the finger moved so far, e.g. when another one takes over.
+     */
+    void clearMovement() {
+        if (velocityTracker != null) {
+            velocityTracker.clear();
+        }
+    }
+
+    /**
+     * Call with ACTION_UP, then read the velocity the finger lifted at from {@link #getXVelocity()} and
+     * {@link #getYVelocity()}.
+     *
+     * @return true if the finger moved fast enough to fling
+     */
+    boolean up(MotionEvent e) {
+        if (velocityTracker == null) {
+            return false;
+        }
+        velocityTracker.addMovement(e);
+        velocityTracker.computeCurrentVelocity(1000, maximumFlingVelocity);
+        xVelocity = velocityTracker.getXVelocity();
+        yVelocity = velocityTracker.getYVelocity();
+        return Math.hypot(xVelocity, yVelocity) >= minimumFlingVelocity;
+    }
+
+    /**
+     * @return horizontal velocity in pixels per second
+     */
+    float getXVelocity() {
+        return xVelocity;
+    }
+
+    /**
+     * @return vertical velocity in pixels per second, downwards
+     */
+    float getYVelocity() {
+        return yVelocity;
+    }
+
+    /**
+     * Call once the gesture is over, with ACTION_UP or ACTION_CANCEL.
+     */
+    void recycle() {
+        if (velocityTracker != null) {
+            velocityTracker.recycle();
+            velocityTracker = null;
+        }
+    }
+
+    void addDelta(float degrees) {
+        input.addDelta(degrees);
+    }
+
+    /**
+     * Keeps rotating at {@code degreesPerSecond}, 0 stops.
+     */
+    void fling(float degreesPerSecond) {
+        boolean wasFlinging = input.isFlinging();
+        input.fling(degreesPerSecond);
+        if (input.isFlinging() && !wasFlinging) {
+            renderScheduler.beginAnimation();
+        } else if (!input.isFlinging() && wasFlinging) {
+            renderScheduler.endAnimation();
+        }
+    }
+
+    /**
+     * @return degrees to rotate by in the frame at {@code frameTimeNanos}, see
+     * {@link RotationInput#consume(long)}
+     */
+    float consume(long frameTimeNanos) {
+        boolean wasFlinging = input.isFlinging();
+        float degrees = input.consume(frameTimeNanos);
+        if (wasFlinging && !input.isFlinging()) {
+            renderScheduler.endAnimation();
+        }
+        return degrees;
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.talkingplayer;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts durations into fixed buckets so percentiles can be read at any time. Recording neither locks nor
+ * allocates, so the GL thread can record every frame while another thread reads.
+ * <p>
+ * Durations below 64 µs get a bucket per microsecond; above that every power of two is split into 32
+ * buckets, which keeps percentiles within about 3% up to an hour.
+ */
+public class FrameHistogram {
+    private static final int LINEAR_BUCKETS = 64;
+    private static final int LINEAR_BITS = 6;
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 31;
+    static final int BUCKET_COUNT = LINEAR_BUCKETS + (MAX_EXPONENT - LINEAR_BITS + 1) * SUB_BUCKETS;
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    public void record(long nanos) {
+        counts.incrementAndGet(getBucket(Math.max(0, nanos) / 1000));
+        count.incrementAndGet();
+        long max;
+        while ((max = maxNanos.get()) < nanos && !maxNanos.compareAndSet(max, nanos)) {
+            // another thread recorded a new maximum, compare against that
+        }
+    }
+
+    static int getBucket(long micros) {
+        if (micros < LINEAR_BUCKETS) {
+            return (int) micros;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKET_COUNT - 1;
+        }
+        int subBucket = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return LINEAR_BUCKETS + (exponent - LINEAR_BITS) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * @return the smallest duration in microseconds that falls into {@code bucket}
+     */
+    static long getBucketLowerBound(int bucket) {
+        if (bucket < LINEAR_BUCKETS) {
+            return bucket;
+        }
+        int exponent = LINEAR_BITS + (bucket - LINEAR_BUCKETS) / SUB_BUCKETS;
+        int subBucket = (bucket - LINEAR_BUCKETS) % SUB_BUCKETS;
+        return (long) (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return the upper end of the bucket the percentile falls into, never more than the maximum, 0 when
+     * nothing was recorded
+     */
+    public long getPercentileNanos(double percentile) {
+        long total = count.get();
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            seen += counts.get(bucket);
+            if (seen >= rank) {
+                long upperMicros = bucket + 1 < BUCKET_COUNT ? getBucketLowerBound(bucket + 1) : Long.MAX_VALUE / 1000;
+                return Math.min(upperMicros * 1000 - 1, maxNanos.get());
+            }
+        }
+        // counts still catching up with a concurrent record
+        return maxNanos.get();
+    }
+
+    /**
+     * Starts over. Durations recorded at the same time may be half counted.
+     */
+    public void reset() {
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            counts.set(bucket, 0);
+        }
+        count.set(0);
+        maxNanos.set(0);
+    }
+}
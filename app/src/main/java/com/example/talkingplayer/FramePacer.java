@@ -0,0 +1,53 @@
+package com.example.talkingplayer;
+
+/**
+ * Decides which vsyncs get a frame so rendering stays under a frame rate cap. Frames land on whole
+ * vsyncs, so a cap the display rate doesn't divide evenly alternates between the neighbouring intervals,
+ * e.g. 90 fps on a 120 Hz display renders three vsyncs out of four.
+ */
+class FramePacer {
+    static final long NANOS_PER_SECOND = 1000000000L;
+    private static final long NONE = Long.MIN_VALUE;
+    private final long vsyncPeriodNanos;
+    private long frameIntervalNanos;
+    // when the frames would ideally have been rendered, to carry the remainder of uneven intervals over
+    private long nextFrameNanos = NONE;
+
+    /**
+     * @param refreshRate of the display, in Hz
+     */
+    FramePacer(float refreshRate) {
+        if (refreshRate <= 0) {
+            throw new IllegalArgumentException("Refresh rate must be positive, got " + refreshRate);
+        }
+        vsyncPeriodNanos = (long) (NANOS_PER_SECOND / refreshRate);
+    }
+
+    /**
+     * @param maxFrameRate frames per second at most, 0 for every vsync
+     */
+    void setMaxFrameRate(int maxFrameRate) {
+        if (maxFrameRate < 0) {
+            throw new IllegalArgumentException("Frame rate cap can't be negative, got " + maxFrameRate);
+        }
+        frameIntervalNanos = maxFrameRate == 0 ? 0 : NANOS_PER_SECOND / maxFrameRate;
+        nextFrameNanos = NONE;
+    }
+
+    /**
+     * @param frameTimeNanos of the vsync, as {@link android.view.Choreographer.FrameCallback} reports it
+     * @return whether to render on this vsync
+     */
+    boolean onVsync(long frameTimeNanos) {
+        // the vsync closest to the ideal time wins, so half a period early is still on time
+        if (nextFrameNanos != NONE && frameTimeNanos < nextFrameNanos - vsyncPeriodNanos / 2) {
+            return false;
+        }
+        // after a pause, or falling more than a frame behind, start over from now instead of catching up
+        if (nextFrameNanos == NONE || frameTimeNanos - nextFrameNanos >= frameIntervalNanos) {
+            nextFrameNanos = frameTimeNanos;
+        }
+        nextFrameNanos += frameIntervalNanos;
+        return true;
+    }
+}
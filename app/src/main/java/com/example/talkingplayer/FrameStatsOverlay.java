@@ -0,0 +1,86 @@
+package com.example.talkingplayer;
+
+import android.app.Activity;
+import android.graphics.Color;
+import android.graphics.Typeface;
+import android.util.Log;
+import android.util.TypedValue;
+import android.view.Gravity;
+import android.view.View;
+import android.widget.FrameLayout;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Shows a {@link FrameTimer}'s report on top of an activity, refreshed twice a second. Long pressing it
+ * dumps the report to a file in the app's external files directory.
+ * <p>
+ * Only shown when the activity was started with {@link #EXTRA_SHOW_FRAME_STATS}, e.g.
+ * {@code adb shell am start -n com.example.talkingplayer/.SphereActivity --ez
+ * com.example.talkingplayer.SHOW_FRAME_STATS true}.
+ */
+public class FrameStatsOverlay implements Runnable, View.OnLongClickListener {
+    private final static String TAG = FrameStatsOverlay.class.getSimpleName();
+    public static final String EXTRA_SHOW_FRAME_STATS = "com.example.talkingplayer.SHOW_FRAME_STATS";
+    private static final long REFRESH_MILLIS = 500;
+    private final Activity activity;
+    private final FrameTimer frameTimer;
+    private final TextView textView;
+
+    private FrameStatsOverlay(Activity activity, FrameTimer frameTimer) {
+        this.activity = activity;
+        this.frameTimer = frameTimer;
+        textView = new TextView(activity);
+        textView.setTypeface(Typeface.MONOSPACE);
+        textView.setTextSize(TypedValue.COMPLEX_UNIT_SP, 10);
+        textView.setTextColor(Color.WHITE);
+        textView.setBackgroundColor(0x80000000);
+        textView.setOnLongClickListener(this);
+        activity.addContentView(textView, new FrameLayout.LayoutParams(FrameLayout.LayoutParams.WRAP_CONTENT,
+                FrameLayout.LayoutParams.WRAP_CONTENT, Gravity.TOP | Gravity.START));
+    }
+
+    /**
+     * Call once the activity's content view is set.
+     *
+     * @return the overlay, null unless the activity was asked to show it
+     */
+    public static FrameStatsOverlay attachIfRequested(Activity activity, FrameTimer frameTimer) {
+        if (!activity.getIntent().getBooleanExtra(EXTRA_SHOW_FRAME_STATS, false)) {
+            return null;
+        }
+        return new FrameStatsOverlay(activity, frameTimer);
+    }
+
+    public void start() {
+        textView.post(this);
+    }
+
+    public void stop() {
+        textView.removeCallbacks(this);
+    }
+
+    @Override
+    public void run() {
+        textView.setText(frameTimer.report());
+        textView.postDelayed(this, REFRESH_MILLIS);
+    }
+
+    @Override
+    public boolean onLongClick(View view) {
+        File directory = activity.getExternalFilesDir(null);
+        File file = new File(directory != null ? directory : activity.getFilesDir(),
+                "frame-stats-" + System.currentTimeMillis() + ".txt");
+        try {
+            frameTimer.dump(file);
+            Toast.makeText(activity, "Frame stats written to " + file, Toast.LENGTH_LONG).show();
+        } catch (IOException e) {
+            Log.e(TAG, "Couldn't write " + file, e);
+            Toast.makeText(activity, "Couldn't write frame stats", Toast.LENGTH_LONG).show();
+        }
+        return true;
+    }
+}
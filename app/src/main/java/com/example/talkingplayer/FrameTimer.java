@@ -0,0 +1,126 @@
+package com.example.talkingplayer;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Locale;
+
+/**
+ * Times each frame and named sections of it on the CPU, and the whole frame on the GPU where the context
+ * can. Timing happens on the GL thread without allocating; {@link #report()} and {@link #dump(File)} may
+ * be called from any thread.
+ * <p>
+ * A renderer keeps one timer for its lifetime and calls {@link #onSurfaceCreated} with every new context.
+ */
+public class FrameTimer {
+    private final String name;
+    private final String[] sectionNames;
+    private final FrameHistogram frameHistogram = new FrameHistogram();
+    private final FrameHistogram[] sectionHistograms;
+    private final FrameHistogram gpuHistogram = new FrameHistogram();
+    private final long[] sectionStarts;
+    private long frameStart;
+    private GpuTimer gpuTimer;
+
+    /**
+     * @param sectionNames of the sections, later referred to by their index
+     */
+    public FrameTimer(String name, String... sectionNames) {
+        this.name = name;
+        this.sectionNames = sectionNames.clone();
+        this.sectionStarts = new long[sectionNames.length];
+        this.sectionHistograms = new FrameHistogram[sectionNames.length];
+        for (int i = 0; i < sectionNames.length; i++) {
+            sectionHistograms[i] = new FrameHistogram();
+        }
+    }
+
+    /**
+     * Sets up GPU timing for a new context, the queries of the previous one are gone with it.
+     */
+    public void onSurfaceCreated(Gl gl, GlCapabilities capabilities) {
+        gpuTimer = GpuTimer.create(gl, capabilities, gpuHistogram);
+    }
+
+    public void beginFrame() {
+        frameStart = System.nanoTime();
+        if (gpuTimer != null) {
+            gpuTimer.beginFrame();
+        }
+    }
+
+    public void endFrame() {
+        if (gpuTimer != null) {
+            gpuTimer.endFrame();
+        }
+        frameHistogram.record(System.nanoTime() - frameStart);
+    }
+
+    public void beginSection(int section) {
+        sectionStarts[section] = System.nanoTime();
+    }
+
+    public void endSection(int section) {
+        sectionHistograms[section].record(System.nanoTime() - sectionStarts[section]);
+    }
+
+    public FrameHistogram getFrameHistogram() {
+        return frameHistogram;
+    }
+
+    public FrameHistogram getSectionHistogram(int section) {
+        return sectionHistograms[section];
+    }
+
+    /**
+     * @return GPU time per frame, empty where the context has no timer queries
+     */
+    public FrameHistogram getGpuHistogram() {
+        return gpuHistogram;
+    }
+
+    public void reset() {
+        frameHistogram.reset();
+        gpuHistogram.reset();
+        for (FrameHistogram histogram : sectionHistograms) {
+            histogram.reset();
+        }
+    }
+
+    /**
+     * @return one line per histogram with its percentiles in milliseconds
+     */
+    public String report() {
+        StringBuilder report = new StringBuilder(name).append('\n');
+        appendLine(report, "frame", frameHistogram);
+        for (int i = 0; i < sectionNames.length; i++) {
+            appendLine(report, sectionNames[i], sectionHistograms[i]);
+        }
+        if (gpuHistogram.getCount() > 0) {
+            appendLine(report, "gpu", gpuHistogram);
+        }
+        return report.toString();
+    }
+
+    private static void appendLine(StringBuilder report, String label, FrameHistogram histogram) {
+        report.append(String.format(Locale.US, "%-8s p50 %6.2f  p95 %6.2f  p99 %6.2f  max %6.2f ms  (%d)%n", label,
+                toMillis(histogram.getPercentileNanos(50)), toMillis(histogram.getPercentileNanos(95)),
+                toMillis(histogram.getPercentileNanos(99)), toMillis(histogram.getMaxNanos()),
+                histogram.getCount()));
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    /**
+     * Writes the report to {@code file}, replacing it.
+     */
+    public void dump(File file) throws IOException {
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8")) {
+            writer.write(report());
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.talkingplayer;
+
+import android.opengl.Matrix;
+
+/**
+ * The view and projection a frame is drawn with, and the model transforms of what it draws. Matrices are
+ * rebuilt only when what they are built from changed: view, projection and their product at most once per
+ * frame for all objects, an object's MV and MVP only when its model matrix or the view projection changed.
+ * <p>
+ * Use it on the GL thread only.
+ */
+public class FrameUniforms {
+    private static final int FRUSTUM_LEFT = 0;
+    private static final int FRUSTUM_RIGHT = 1;
+    private static final int FRUSTUM_BOTTOM = 2;
+    private static final int FRUSTUM_TOP = 3;
+    private static final int FRUSTUM_NEAR = 4;
+    private static final int FRUSTUM_FAR = 5;
+    private final float[] viewMatrix = new float[16];
+    private final float[] projectionMatrix = new float[16];
+    private final float[] viewProjectionMatrix = new float[16];
+    // what the matrices were built from
+    private final float[] frustum = new float[6];
+    private final float[] lookAt = new float[9];
+    private boolean projectionDirty = true;
+    private boolean viewDirty = true;
+    // bumped whenever the view projection changed, so transforms know to follow
+    private int version;
+
+    public void setFrustum(float left, float right, float bottom, float top, float near, float far) {
+        projectionDirty |= set(frustum, FRUSTUM_LEFT, left)
+                | set(frustum, FRUSTUM_RIGHT, right)
+                | set(frustum, FRUSTUM_BOTTOM, bottom)
+                | set(frustum, FRUSTUM_TOP, top)
+                | set(frustum, FRUSTUM_NEAR, near)
+                | set(frustum, FRUSTUM_FAR, far);
+    }
+
+    public void setLookAt(float eyeX, float eyeY, float eyeZ, float centerX, float centerY, float centerZ,
+                          float upX, float upY, float upZ) {
+        viewDirty |= set(lookAt, 0, eyeX) | set(lookAt, 1, eyeY) | set(lookAt, 2, eyeZ)
+                | set(lookAt, 3, centerX) | set(lookAt, 4, centerY) | set(lookAt, 5, centerZ)
+                | set(lookAt, 6, upX) | set(lookAt, 7, upY) | set(lookAt, 8, upZ);
+    }
+
+    private static boolean set(float[] values, int index, float value) {
+        if (values[index] == value) {
+            return false;
+        }
+        values[index] = value;
+        return true;
+    }
+
+    /**
+     * Rebuilds the matrices whose inputs changed since the last call, call once per frame before drawing.
+     *
+     * @return true if the view projection changed
+     */
+    public boolean update() {
+        if (!projectionDirty && !viewDirty) {
+            return false;
+        }
+        if (projectionDirty) {
+            Matrix.frustumM(projectionMatrix, 0, frustum[FRUSTUM_LEFT], frustum[FRUSTUM_RIGHT],
+                    frustum[FRUSTUM_BOTTOM], frustum[FRUSTUM_TOP], frustum[FRUSTUM_NEAR], frustum[FRUSTUM_FAR]);
+            projectionDirty = false;
+        }
+        if (viewDirty) {
+            Matrix.setLookAtM(viewMatrix, 0, lookAt[0], lookAt[1], lookAt[2], lookAt[3], lookAt[4], lookAt[5],
+                    lookAt[6], lookAt[7], lookAt[8]);
+            viewDirty = false;
+        }
+        multiply(viewProjectionMatrix, projectionMatrix, viewMatrix);
+        version++;
+        return true;
+    }
+
+    /**
+     * Sets {@code result} to {@code lhs * rhs}, column-major 4x4 matrices like Matrix.multiplyMM takes but
+     * in plain Java, so the order of the products holds on the JVM too. {@code result} must be neither.
+     */
+    static void multiply(float[] result, float[] lhs, float[] rhs) {
+        for (int column = 0; column < 4; column++) {
+            for (int row = 0; row < 4; row++) {
+                float sum = 0f;
+                for (int i = 0; i < 4; i++) {
+                    sum += lhs[i * 4 + row] * rhs[column * 4 + i];
+                }
+                result[column * 4 + row] = sum;
+            }
+        }
+    }
+
+    public float[] getViewMatrix() {
+        return viewMatrix;
+    }
+
+    public float[] getProjectionMatrix() {
+        return projectionMatrix;
+    }
+
+    public float[] getViewProjectionMatrix() {
+        return viewProjectionMatrix;
+    }
+
+    /**
+     * @return a transform starting out as the identity, for one or more objects that move together
+     */
+    public Transform createTransform() {
+        return new Transform();
+    }
+
+    /**
+     * A model matrix and the MV and MVP matrices it makes with the frame's view and projection.
+     */
+    public class Transform {
+        private final float[] modelMatrix = new float[16];
+        private final float[] mvMatrix = new float[16];
+        private final float[] mvpMatrix = new float[16];
+        private boolean modelDirty = true;
+        private int computedVersion;
+        private int updateCount;
+
+        private Transform() {
+            for (int i = 0; i < 16; i += 5) {
+                modelMatrix[i] = 1f;
+            }
+        }
+
+        /**
+         * @return the model matrix, call {@link #modelChanged()} after writing to it
+         */
+        public float[] getModelMatrix() {
+            return modelMatrix;
+        }
+
+        public void modelChanged() {
+            modelDirty = true;
+        }
+
+        public float[] getMVMatrix() {
+            update();
+            return mvMatrix;
+        }
+
+        public float[] getMVPMatrix() {
+            update();
+            return mvpMatrix;
+        }
+
+        /**
+         * @return how often the MV and MVP were rebuilt
+         */
+        int getUpdateCount() {
+            return updateCount;
+        }
+
+        private void update() {
+            if (!modelDirty && computedVersion == version) {
+                return;
+            }
+            multiply(mvMatrix, viewMatrix, modelMatrix);
+            multiply(mvpMatrix, viewProjectionMatrix, modelMatrix);
+            modelDirty = false;
+            computedVersion = version;
+            updateCount++;
+        }
+    }
+}
@@ -1,60 +1,89 @@
 package com.example.talkingplayer;
 
+import android.app.ActivityManager;
 import android.content.Context;
 import android.opengl.GLSurfaceView;
 import android.view.MotionEvent;
 import android.view.ScaleGestureDetector;
 
 public class GLSurfaceViewSphere extends GLSurfaceView {
-    private final float TOUCH_SCALE_FACTOR = 180.0f / 320;
     private ScaleGestureDetector mScaleDetector;
     private SphereRenderer sphereRenderer;
-    private float previousX;
-    private float previousY;
+    private final RenderScheduler renderScheduler;
+    private final ArcballController rotationController;
     private float mScaleFactor = 1.0f;
 
     public GLSurfaceViewSphere(Context context) {
         super(context);
-        setEGLContextClientVersion(2);
+        // An ES 3 context is a superset of ES 2 and gives us vertex array objects
+        final ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        final boolean supportsEs3 = activityManager.getDeviceConfigurationInfo().reqGlEsVersion >= 0x30000;
+        setEGLContextClientVersion(supportsEs3 ? 3 : 2);
 
-        sphereRenderer = new SphereRenderer(context);
+        sphereRenderer = new SphereRenderer(context, new Runnable() {
+            @Override
+            public void run() {
+                // assets finish loading in the background, draw them as soon as they are ready
+                renderScheduler.requestFrame();
+            }
+        });
         // Set the Renderer for drawing on the GLSurfaceView
         setRenderer(sphereRenderer);
-        // Render the view only when there is a change in the drawing data
-        setRenderMode(GLSurfaceView.RENDERMODE_WHEN_DIRTY);
+        // Render the view only when there is a change in the drawing data, at most once per vsync
+        renderScheduler = new RenderScheduler(this);
+        rotationController = new ArcballController(this, renderScheduler, sphereRenderer.getCameraState());
         mScaleDetector = new ScaleGestureDetector(context, new ScaleListener());
 
     }
 
+    public FrameTimer getFrameTimer() {
+        return sphereRenderer.getFrameTimer();
+    }
+
+    @Override
+    public void onResume() {
+        super.onResume();
+        renderScheduler.resume();
+    }
+
+    @Override
+    public void onPause() {
+        renderScheduler.pause();
+        super.onPause();
+    }
+
+    /**
+     * @see SphereRenderer#setAttitude(CameraState)
+     */
+    public void setAttitude(CameraState attitude) {
+        sphereRenderer.setAttitude(attitude);
+        renderScheduler.requestFrame();
+    }
+
+    /**
+     * @see SphereRenderer#setInstanceCount(int)
+     */
+    public void setInstanceCount(int count) {
+        sphereRenderer.setInstanceCount(count);
+    }
+
+    /**
+     * @see SphereRenderer#setCubeMapSky(boolean)
+     */
+    public void setCubeMapSky(boolean cubeMapSky) {
+        sphereRenderer.setCubeMapSky(cubeMapSky);
+    }
+
+    public RenderScheduler getRenderScheduler() {
+        return renderScheduler;
+    }
+
     @Override
     public boolean onTouchEvent(MotionEvent e) {
         // MotionEvent reports input details from the touch screen
-        // and other input controls. In this case, you are only
-        // interested in events where the touch position changed.
-        float x = e.getX();
-        float y = e.getY();
+        // and other input controls. Dragging rolls the sphere, pinching zooms.
         mScaleDetector.onTouchEvent(e);
-        switch (e.getAction()) {
-            case MotionEvent.ACTION_MOVE:
-                float dx = x - previousX;
-                float dy = y - previousY;
-                // reverse direction of rotation above the mid-line
-                if (y > getHeight() / 2) {
-                    dx = dx * -1;
-                }
-
-                // reverse direction of rotation to left of the mid-line
-                if (x < getWidth() / 2) {
-                    dy = dy * -1;
-                }
-                sphereRenderer.setAngle(sphereRenderer.getAngle() - ((dx + dy) * TOUCH_SCALE_FACTOR));
-                requestRender();
-                break;
-            //case MotionEvent.:
-        }
-
-        previousX = x;
-        previousY = y;
+        rotationController.onTouchEvent(e);
         return true;
     }
 
@@ -65,8 +94,7 @@ public class GLSurfaceViewSphere extends GLSurfaceView {
             // Don't let the object get too small or too large.
             mScaleFactor = Math.max(0.1f, Math.min(mScaleFactor, 5.0f));
             sphereRenderer.setZoom(mScaleFactor);
-            requestRender();
-            invalidate();
+            renderScheduler.requestFrame();
             return true;
         }
 
@@ -0,0 +1,144 @@
+package com.example.talkingplayer;
+
+import android.graphics.Bitmap;
+
+import java.nio.Buffer;
+
+/**
+ * The GL entry points our rendering code uses, named and typed after {@link android.opengl.GLES20} and
+ * {@link android.opengl.GLES30}; constants still come from those classes. {@link AndroidGl} forwards to
+ * the real thing, the tests' RecordingGl runs anywhere and counts what a frame would have cost.
+ */
+public interface Gl {
+    void glActiveTexture(int texture);
+
+    void glAttachShader(int program, int shader);
+
+    void glBeginQuery(int target, int id);
+
+    void glBindAttribLocation(int program, int index, String name);
+
+    void glBindBuffer(int target, int buffer);
+
+    void glBindTexture(int target, int texture);
+
+    void glBindVertexArray(int array);
+
+    void glBufferData(int target, int size, Buffer data, int usage);
+
+    void glBufferSubData(int target, int offset, int size, Buffer data);
+
+    void glClear(int mask);
+
+    void glClearColor(float red, float green, float blue, float alpha);
+
+    void glCompileShader(int shader);
+
+    void glCompressedTexImage2D(int target, int level, int internalformat, int width, int height, int border,
+                                int imageSize, Buffer data);
+
+    int glCreateProgram();
+
+    int glCreateShader(int type);
+
+    void glDeleteProgram(int program);
+
+    void glDeleteShader(int shader);
+
+    void glDeleteTextures(int n, int[] textures, int offset);
+
+    void glDetachShader(int program, int shader);
+
+    void glDisableVertexAttribArray(int index);
+
+    void glDrawArrays(int mode, int first, int count);
+
+    void glDrawElements(int mode, int count, int type, int offset);
+
+    void glDrawElementsInstanced(int mode, int count, int type, int offset, int instanceCount);
+
+    void glEnable(int cap);
+
+    void glEnableVertexAttribArray(int index);
+
+    void glEndQuery(int target);
+
+    void glGenBuffers(int n, int[] buffers, int offset);
+
+    void glGenerateMipmap(int target);
+
+    void glGenQueries(int n, int[] ids, int offset);
+
+    void glGenTextures(int n, int[] textures, int offset);
+
+    void glGenVertexArrays(int n, int[] arrays, int offset);
+
+    String glGetActiveAttrib(int program, int index, int[] size, int sizeOffset, int[] type, int typeOffset);
+
+    String glGetActiveUniform(int program, int index, int[] size, int sizeOffset, int[] type, int typeOffset);
+
+    int glGetAttribLocation(int program, String name);
+
+    int glGetError();
+
+    void glGetFloatv(int pname, float[] params, int offset);
+
+    void glGetIntegerv(int pname, int[] params, int offset);
+
+    void glGetProgramBinary(int program, int bufSize, int[] length, int lengthOffset, int[] binaryFormat,
+                            int binaryFormatOffset, Buffer binary);
+
+    String glGetProgramInfoLog(int program);
+
+    void glGetProgramiv(int program, int pname, int[] params, int offset);
+
+    void glGetQueryObjectuiv(int id, int pname, int[] params, int offset);
+
+    String glGetShaderInfoLog(int shader);
+
+    void glGetShaderiv(int shader, int pname, int[] params, int offset);
+
+    String glGetString(int name);
+
+    int glGetUniformLocation(int program, String name);
+
+    void glLinkProgram(int program);
+
+    void glPixelStorei(int pname, int param);
+
+    void glProgramBinary(int program, int binaryFormat, Buffer binary, int length);
+
+    void glProgramParameteri(int program, int pname, int value);
+
+    void glShaderSource(int shader, String string);
+
+    void glTexImage2D(int target, int level, int internalformat, int width, int height, int border, int format,
+                      int type, Buffer pixels);
+
+    void glTexParameterf(int target, int pname, float param);
+
+    void glTexParameteri(int target, int pname, int param);
+
+    void glUniform1f(int location, float x);
+
+    void glUniform1i(int location, int x);
+
+    void glUniform3f(int location, float x, float y, float z);
+
+    void glUniform4fv(int location, int count, float[] v, int offset);
+
+    void glUniformMatrix4fv(int location, int count, boolean transpose, float[] value, int offset);
+
+    void glUseProgram(int program);
+
+    void glVertexAttribDivisor(int index, int divisor);
+
+    void glVertexAttribPointer(int index, int size, int type, boolean normalized, int stride, int offset);
+
+    void glViewport(int x, int y, int width, int height);
+
+    /**
+     * Uploads a bitmap in its own format, as {@link android.opengl.GLUtils#texImage2D(int, int, Bitmap, int)}.
+     */
+    void texImage2D(int target, int level, Bitmap bitmap);
+}
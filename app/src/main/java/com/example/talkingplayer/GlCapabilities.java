@@ -0,0 +1,100 @@
+package com.example.talkingplayer;
+
+import android.opengl.GLES11Ext;
+import android.opengl.GLES20;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * What the current GL context can do. Query it on the GL thread once the context exists,
+ * i.e. from {@link android.opengl.GLSurfaceView.Renderer#onSurfaceCreated}.
+ */
+public class GlCapabilities {
+    private static final String ANISOTROPIC_FILTERING_EXTENSION = "GL_EXT_texture_filter_anisotropic";
+    private static final Pattern VERSION_PATTERN = Pattern.compile("OpenGL ES (\\d+)\\.(\\d+)");
+    private final int majorVersion;
+    private final int minorVersion;
+    private final Set<String> extensions;
+    private final float maxAnisotropy;
+
+    GlCapabilities(String version, String extensions) {
+        this(version, extensions, 1f);
+    }
+
+    GlCapabilities(String version, String extensions, float maxAnisotropy) {
+        Matcher matcher = VERSION_PATTERN.matcher(version != null ? version : "");
+        if (matcher.find()) {
+            majorVersion = Integer.parseInt(matcher.group(1));
+            minorVersion = Integer.parseInt(matcher.group(2));
+        } else {
+            majorVersion = 2;
+            minorVersion = 0;
+        }
+        this.extensions = extensions == null ? Collections.<String>emptySet()
+                : new HashSet<>(Arrays.asList(extensions.trim().split("\\s+")));
+        this.maxAnisotropy = maxAnisotropy;
+    }
+
+    public static GlCapabilities query(Gl gl) {
+        String extensions = gl.glGetString(GLES20.GL_EXTENSIONS);
+        float[] maxAnisotropy = {1f};
+        if (extensions != null && extensions.contains(ANISOTROPIC_FILTERING_EXTENSION)) {
+            gl.glGetFloatv(GLES11Ext.GL_MAX_TEXTURE_MAX_ANISOTROPY_EXT, maxAnisotropy, 0);
+        }
+        return new GlCapabilities(gl.glGetString(GLES20.GL_VERSION), extensions, maxAnisotropy[0]);
+    }
+
+    public int getMajorVersion() {
+        return majorVersion;
+    }
+
+    public int getMinorVersion() {
+        return minorVersion;
+    }
+
+    public boolean isEs3() {
+        return majorVersion >= 3;
+    }
+
+    public boolean hasExtension(String extension) {
+        return extensions.contains(extension);
+    }
+
+    /**
+     * @return the largest anisotropic filtering level, 1 without EXT_texture_filter_anisotropic
+     */
+    public float getMaxAnisotropy() {
+        return maxAnisotropy;
+    }
+
+    /**
+     * Whether non power of two textures can be mipmapped and repeated, which plain ES 2 doesn't allow.
+     */
+    public boolean supportsNpot() {
+        return isEs3() || hasExtension("GL_OES_texture_npot");
+    }
+
+    /**
+     * Every ES 3 context decodes ETC2, which includes ETC1.
+     */
+    public boolean supportsEtc2() {
+        return isEs3();
+    }
+
+    public boolean supportsEtc1() {
+        return supportsEtc2() || hasExtension("GL_OES_compressed_ETC1_RGB8_texture");
+    }
+
+    /**
+     * Android only exposes vertex array objects through {@link android.opengl.GLES30}, the
+     * OES_vertex_array_object entry points have no Java bindings.
+     */
+    public boolean supportsVertexArrayObjects() {
+        return isEs3();
+    }
+}
@@ -0,0 +1,360 @@
+package com.example.talkingplayer;
+
+import android.opengl.GLES20;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Remembers the GL state set through it and skips calls that wouldn't change anything: the program in use,
+ * buffer, vertex array and texture bindings, enabled attribute arrays and pointers, and uniform values.
+ * <p>
+ * It only knows what went through it, so once a context has a cache every bind, attribute and uniform
+ * call has to go through it too, including deleting textures. State starts out unknown, so the first call
+ * of each kind always reaches GL. Use it on the GL thread only, and create a new one with every context.
+ */
+public class GlStateCache {
+    private static final int UNKNOWN = -1;
+    // ES 2 guarantees 8 units and 8 attributes, more than any driver offers are simply not tracked
+    private static final int MAX_TEXTURE_UNITS = 32;
+    private static final int MAX_ATTRIBUTES = 16;
+    // uniforms beyond this location are written through, some drivers hand out sparse locations
+    private static final int MAX_CACHED_UNIFORM_LOCATION = 255;
+    // buffer, size, type, normalized, stride, offset
+    private static final int POINTER_FIELDS = 6;
+
+    private final Gl gl;
+    private final boolean vertexArrayObjects;
+    private int program = UNKNOWN;
+    // values last written to the uniforms of each program, indexed by location
+    private final Map<Integer, float[][]> programUniforms = new HashMap<>();
+    private float[][] uniforms;
+    private int arrayBuffer = UNKNOWN;
+    private int elementArrayBuffer = UNKNOWN;
+    private int vertexArray = UNKNOWN;
+    private int activeTextureUnit = UNKNOWN;
+    private final int[] textures2d = new int[MAX_TEXTURE_UNITS];
+    private final int[] texturesCubeMap = new int[MAX_TEXTURE_UNITS];
+    // attribute state of vertex array 0, a bound vertex array object keeps its own
+    private final int[] attributeEnabled = new int[MAX_ATTRIBUTES];
+    private final int[] attributePointers = new int[MAX_ATTRIBUTES * POINTER_FIELDS];
+
+    private int issuedCalls;
+    private int skippedCalls;
+    private int frameIssuedCalls;
+    private int frameSkippedCalls;
+
+    public GlStateCache(Gl gl, GlCapabilities capabilities) {
+        this.gl = gl;
+        vertexArrayObjects = capabilities.supportsVertexArrayObjects();
+        invalidate();
+    }
+
+    /**
+     * @return what the cache issues its calls to, for everything it doesn't track
+     */
+    public Gl getGl() {
+        return gl;
+    }
+
+    /**
+     * Forgets everything, for when GL state was changed behind the cache's back.
+     */
+    public void invalidate() {
+        program = UNKNOWN;
+        programUniforms.clear();
+        uniforms = null;
+        arrayBuffer = UNKNOWN;
+        elementArrayBuffer = UNKNOWN;
+        // without vertex array objects there is only ever vertex array 0
+        vertexArray = vertexArrayObjects ? UNKNOWN : 0;
+        activeTextureUnit = UNKNOWN;
+        Arrays.fill(textures2d, UNKNOWN);
+        Arrays.fill(texturesCubeMap, UNKNOWN);
+        Arrays.fill(attributeEnabled, UNKNOWN);
+        Arrays.fill(attributePointers, UNKNOWN);
+    }
+
+    public void useProgram(int program) {
+        if (this.program == program) {
+            skippedCalls++;
+            return;
+        }
+        gl.glUseProgram(program);
+        issuedCalls++;
+        this.program = program;
+        uniforms = programUniforms.get(program);
+        if (uniforms == null) {
+            uniforms = new float[0][];
+            programUniforms.put(program, uniforms);
+        }
+    }
+
+    public void bindBuffer(int target, int buffer) {
+        if (target == GLES20.GL_ARRAY_BUFFER) {
+            if (arrayBuffer == buffer) {
+                skippedCalls++;
+                return;
+            }
+            arrayBuffer = buffer;
+        } else if (target == GLES20.GL_ELEMENT_ARRAY_BUFFER) {
+            if (elementArrayBuffer == buffer) {
+                skippedCalls++;
+                return;
+            }
+            elementArrayBuffer = buffer;
+        }
+        gl.glBindBuffer(target, buffer);
+        issuedCalls++;
+    }
+
+    /**
+     * Needs an ES 3 context.
+     */
+    public void bindVertexArray(int vertexArray) {
+        if (this.vertexArray == vertexArray) {
+            skippedCalls++;
+            return;
+        }
+        gl.glBindVertexArray(vertexArray);
+        issuedCalls++;
+        this.vertexArray = vertexArray;
+        // the element buffer binding belongs to the vertex array
+        elementArrayBuffer = UNKNOWN;
+    }
+
+    /**
+     * @param texture GL_TEXTURE0 onwards, as glActiveTexture
+     */
+    public void activeTexture(int texture) {
+        int unit = texture - GLES20.GL_TEXTURE0;
+        if (activeTextureUnit == unit) {
+            skippedCalls++;
+            return;
+        }
+        gl.glActiveTexture(texture);
+        issuedCalls++;
+        activeTextureUnit = unit;
+    }
+
+    public void bindTexture(int target, int texture) {
+        int[] bindings = getTextureBindings(target);
+        boolean tracked = bindings != null && activeTextureUnit >= 0 && activeTextureUnit < MAX_TEXTURE_UNITS;
+        if (tracked && bindings[activeTextureUnit] == texture) {
+            skippedCalls++;
+            return;
+        }
+        gl.glBindTexture(target, texture);
+        issuedCalls++;
+        if (tracked) {
+            bindings[activeTextureUnit] = texture;
+        }
+    }
+
+    /**
+     * Deletes a texture, which unbinds it from every unit it's bound to.
+     */
+    public void deleteTexture(int texture) {
+        gl.glDeleteTextures(1, new int[]{texture}, 0);
+        issuedCalls++;
+        for (int unit = 0; unit < MAX_TEXTURE_UNITS; unit++) {
+            if (textures2d[unit] == texture) {
+                textures2d[unit] = 0;
+            }
+            if (texturesCubeMap[unit] == texture) {
+                texturesCubeMap[unit] = 0;
+            }
+        }
+    }
+
+    private int[] getTextureBindings(int target) {
+        switch (target) {
+            case GLES20.GL_TEXTURE_2D:
+                return textures2d;
+            case GLES20.GL_TEXTURE_CUBE_MAP:
+                return texturesCubeMap;
+            default:
+                return null;
+        }
+    }
+
+    public void enableVertexAttribArray(int location) {
+        if (isTrackingAttribute(location) && attributeEnabled[location] == 1) {
+            skippedCalls++;
+            return;
+        }
+        gl.glEnableVertexAttribArray(location);
+        issuedCalls++;
+        if (isTrackingAttribute(location)) {
+            attributeEnabled[location] = 1;
+        }
+    }
+
+    public void disableVertexAttribArray(int location) {
+        if (isTrackingAttribute(location) && attributeEnabled[location] == 0) {
+            skippedCalls++;
+            return;
+        }
+        gl.glDisableVertexAttribArray(location);
+        issuedCalls++;
+        if (isTrackingAttribute(location)) {
+            attributeEnabled[location] = 0;
+        }
+    }
+
+    /**
+     * Points an attribute at {@code offset} bytes into the bound GL_ARRAY_BUFFER.
+     */
+    public void vertexAttribPointer(int location, int size, int type, boolean normalized, int stride, int offset) {
+        boolean tracked = isTrackingAttribute(location) && arrayBuffer != UNKNOWN;
+        int field = location * POINTER_FIELDS;
+        if (tracked && attributePointers[field] == arrayBuffer && attributePointers[field + 1] == size
+                && attributePointers[field + 2] == type && attributePointers[field + 3] == (normalized ? 1 : 0)
+                && attributePointers[field + 4] == stride && attributePointers[field + 5] == offset) {
+            skippedCalls++;
+            return;
+        }
+        gl.glVertexAttribPointer(location, size, type, normalized, stride, offset);
+        issuedCalls++;
+        if (tracked) {
+            attributePointers[field] = arrayBuffer;
+            attributePointers[field + 1] = size;
+            attributePointers[field + 2] = type;
+            attributePointers[field + 3] = normalized ? 1 : 0;
+            attributePointers[field + 4] = stride;
+            attributePointers[field + 5] = offset;
+        }
+    }
+
+    /**
+     * Only the attribute state of vertex array 0 is tracked, a bound vertex array object records its own.
+     */
+    private boolean isTrackingAttribute(int location) {
+        return vertexArray == 0 && location >= 0 && location < MAX_ATTRIBUTES;
+    }
+
+    /**
+     * Integer uniforms, i.e. samplers, are remembered as floats, exact for any texture unit.
+     */
+    public void uniform1i(int location, int x) {
+        float[] value = getUniformValue(location, 1);
+        if (value != null && value[0] == x) {
+            skippedCalls++;
+            return;
+        }
+        gl.glUniform1i(location, x);
+        issuedCalls++;
+        if (value != null) {
+            value[0] = x;
+        }
+    }
+
+    public void uniform1f(int location, float x) {
+        float[] value = getUniformValue(location, 1);
+        if (value != null && value[0] == x) {
+            skippedCalls++;
+            return;
+        }
+        gl.glUniform1f(location, x);
+        issuedCalls++;
+        if (value != null) {
+            value[0] = x;
+        }
+    }
+
+    public void uniform3f(int location, float x, float y, float z) {
+        float[] value = getUniformValue(location, 3);
+        if (value != null && value[0] == x && value[1] == y && value[2] == z) {
+            skippedCalls++;
+            return;
+        }
+        gl.glUniform3f(location, x, y, z);
+        issuedCalls++;
+        if (value != null) {
+            value[0] = x;
+            value[1] = y;
+            value[2] = z;
+        }
+    }
+
+    public void uniform4fv(int location, int count, float[] v, int offset) {
+        float[] value = getUniformValue(location, count * 4);
+        if (value != null && equals(value, v, offset)) {
+            skippedCalls++;
+            return;
+        }
+        gl.glUniform4fv(location, count, v, offset);
+        issuedCalls++;
+        if (value != null) {
+            System.arraycopy(v, offset, value, 0, value.length);
+        }
+    }
+
+    public void uniformMatrix4fv(int location, int count, boolean transpose, float[] v, int offset) {
+        float[] value = transpose ? null : getUniformValue(location, count * 16);
+        if (value != null && equals(value, v, offset)) {
+            skippedCalls++;
+            return;
+        }
+        gl.glUniformMatrix4fv(location, count, transpose, v, offset);
+        issuedCalls++;
+        if (value != null) {
+            System.arraycopy(v, offset, value, 0, value.length);
+        }
+    }
+
+    /**
+     * @return where the value last written to the uniform of the current program is kept, null if it isn't
+     */
+    private float[] getUniformValue(int location, int length) {
+        if (uniforms == null || location < 0 || location > MAX_CACHED_UNIFORM_LOCATION) {
+            return null;
+        }
+        if (location >= uniforms.length) {
+            uniforms = Arrays.copyOf(uniforms, location + 1);
+            programUniforms.put(program, uniforms);
+        }
+        float[] value = uniforms[location];
+        if (value == null || value.length != length) {
+            // never written, NaN compares unequal to anything
+            value = new float[length];
+            Arrays.fill(value, Float.NaN);
+            uniforms[location] = value;
+        }
+        return value;
+    }
+
+    private static boolean equals(float[] value, float[] v, int offset) {
+        for (int i = 0; i < value.length; i++) {
+            if (value[i] != v[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Starts counting the calls of a new frame, what the previous frame counted stays readable.
+     */
+    public void beginFrame() {
+        frameIssuedCalls = issuedCalls;
+        frameSkippedCalls = skippedCalls;
+        issuedCalls = 0;
+        skippedCalls = 0;
+    }
+
+    /**
+     * @return how many calls reached GL during the last complete frame
+     */
+    public int getIssuedCalls() {
+        return frameIssuedCalls;
+    }
+
+    /**
+     * @return how many calls the last complete frame saved
+     */
+    public int getSkippedCalls() {
+        return frameSkippedCalls;
+    }
+}
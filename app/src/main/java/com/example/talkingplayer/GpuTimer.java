@@ -0,0 +1,84 @@
+package com.example.talkingplayer;
+
+import android.opengl.GLES30;
+
+/**
+ * Measures how long the GPU takes per frame with EXT_disjoint_timer_query. Results arrive a few frames
+ * late, so queries go round a small ring and are only read once the driver says they are available;
+ * the GL thread never waits for the GPU.
+ * <p>
+ * The extension's entry points are the ES 3 query functions, the only ones Android binds, so it needs an
+ * ES 3 context. Use it on the GL thread only.
+ */
+class GpuTimer {
+    private static final String EXTENSION = "GL_EXT_disjoint_timer_query";
+    private static final int GL_TIME_ELAPSED_EXT = 0x88BF;
+    private static final int GL_GPU_DISJOINT_EXT = 0x8FBB;
+    private static final int QUERY_COUNT = 4;
+    private final int[] queries = new int[QUERY_COUNT];
+    private final boolean[] pending = new boolean[QUERY_COUNT];
+    private final int[] result = new int[1];
+    private final Gl gl;
+    private final FrameHistogram histogram;
+    private int next;
+    private int running = -1;
+
+    private GpuTimer(Gl gl, FrameHistogram histogram) {
+        this.gl = gl;
+        this.histogram = histogram;
+        gl.glGenQueries(QUERY_COUNT, queries, 0);
+    }
+
+    /**
+     * @return a timer recording into {@code histogram}, null if the context can't time the GPU
+     */
+    static GpuTimer create(Gl gl, GlCapabilities capabilities, FrameHistogram histogram) {
+        if (!capabilities.isEs3() || !capabilities.hasExtension(EXTENSION)) {
+            return null;
+        }
+        return new GpuTimer(gl, histogram);
+    }
+
+    /**
+     * Collects whatever earlier frames finished and starts timing this one, unless every query is still
+     * waiting for the GPU.
+     */
+    void beginFrame() {
+        collect();
+        if (!pending[next]) {
+            gl.glBeginQuery(GL_TIME_ELAPSED_EXT, queries[next]);
+            running = next;
+            next = (next + 1) % QUERY_COUNT;
+        }
+    }
+
+    void endFrame() {
+        if (running >= 0) {
+            gl.glEndQuery(GL_TIME_ELAPSED_EXT);
+            pending[running] = true;
+            running = -1;
+        }
+    }
+
+    private void collect() {
+        // a disjoint operation, like a frequency change, makes every pending result meaningless
+        gl.glGetIntegerv(GL_GPU_DISJOINT_EXT, result, 0);
+        boolean disjoint = result[0] != 0;
+        for (int i = 0; i < QUERY_COUNT; i++) {
+            if (!pending[i]) {
+                continue;
+            }
+            if (disjoint) {
+                pending[i] = false;
+                continue;
+            }
+            gl.glGetQueryObjectuiv(queries[i], GLES30.GL_QUERY_RESULT_AVAILABLE, result, 0);
+            if (result[0] != 0) {
+                pending[i] = false;
+                gl.glGetQueryObjectuiv(queries[i], GLES30.GL_QUERY_RESULT, result, 0);
+                // 32 bits of nanoseconds, unsigned
+                histogram.record(result[0] & 0xffffffffL);
+            }
+        }
+    }
+}
@@ -0,0 +1,466 @@
+package com.example.talkingplayer;
+
+import android.content.Context;
+import android.opengl.GLES20;
+
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+import java.util.concurrent.Callable;
+
+import static com.example.talkingplayer.SphereRenderer.checkGLError;
+
+/**
+ * Many small spheres sharing one mesh, texture and program, each placed, scaled, turned and tinted on its
+ * own. Each instance is 12 floats: its center and scale, its rotation and its tint. They are kept on the
+ * GPU and re-uploaded only where they changed.
+ * <p>
+ * On ES 3 the instance data sits in a vertex buffer read once per instance, and all of them are drawn with
+ * a single glDrawElementsInstanced. ES 2 has no instancing. There the mesh is copied as often as fits into
+ * one buffer, each copy tagged with its index into a uniform array of instance data, and a batch of
+ * instances is drawn per glDrawElements.
+ * <p>
+ * The mesh is loaded like {@link SphereBox}'s levels and copied into batches on a loader thread. Nothing is
+ * drawn until it is uploaded, instances can be placed before. Use it on the GL thread.
+ */
+public class InstancedSpheres {
+    private final static String TAG = InstancedSpheres.class.getSimpleName();
+    private static final int PLACEHOLDER_COLOR = 0xffffffff;
+    private static final TextureSampling TEXTURE_SAMPLING = TextureSampling.trilinear(
+            GLES20.GL_REPEAT, GLES20.GL_CLAMP_TO_EDGE, 4f);
+    private static final int BYTES_PER_FLOAT = 4;
+    // center and scale, rotation, tint
+    private static final int VECTORS_PER_INSTANCE = 3;
+    private static final int FLOATS_PER_INSTANCE = VECTORS_PER_INSTANCE * 4;
+    private static final int PLACEMENT_OFFSET = 0;
+    private static final int ROTATION_OFFSET = 4;
+    private static final int TINT_OFFSET = 8;
+    // what every ES 2 vertex shader can have, and what the matrices take of it
+    private static final int MIN_VERTEX_UNIFORM_VECTORS = 128;
+    private static final int RESERVED_UNIFORM_VECTORS = 16;
+    // unsigned short indices
+    private static final int MAX_BATCH_VERTICES = 65536;
+    // after the sphere's own attributes in a batched vertex
+    private static final int INSTANCE_INDEX_OFFSET = SphereLevels.STRIDE_FLOATS;
+
+    private final GlStateCache mState;
+    private final GlCapabilities mCapabilities;
+    private final boolean mInstanced;
+    private final VertexLayout mLayout;
+    // the per instance attributes, with instancing only
+    private final VertexLayout mInstanceLayout;
+    private final int mVertexCount;
+    // null until loaded
+    private InterleavedMesh mMesh;
+    private final TextureRegistry.Handle mTexture;
+    // instances per draw call without instancing, as many as fit into the uniforms and the index range
+    private final int mBatchSize;
+    private final int mIndicesPerInstance;
+    private final int mCapacity;
+    private final float[] mInstances;
+    private int mCount;
+    // instances changed since the last upload, [start, end)
+    private int mDirtyStart;
+    private int mDirtyEnd;
+    private final int[] mInstanceBuffer = new int[1];
+    // what changed is copied here for uploading, with instancing only
+    private final FloatBuffer mUpload;
+
+    private final int mProgramHandle;
+    private final int mMVPMatrixHandle;
+    private final int mMVMatrixHandle;
+    private final int mLightPosHandle;
+    private final int mUniformTextureHandle;
+    private final int mInstancesHandle;
+
+    private float[] lightSourcePosition = new float[]{0, 0, 0};
+    private final String fragmentShader =
+            "precision mediump float;       \n"
+                    + "uniform vec3 u_LightPos;       \n"        // The position of the light in eye space.
+                    + "uniform sampler2D u_Texture;   \n"
+
+                    + "varying vec3 v_Position;       \n"
+                    + "varying vec4 v_Color;          \n"        // Vertex color times the instance's tint.
+                    + "varying vec3 v_Normal;         \n"
+                    + "varying vec2 v_TexCoordinate;  \n"
+                    + "void main()                    \n"
+                    + "{                              \n"
+                    // Lit like SphereBox.
+                    + "   float distance = length(u_LightPos - v_Position);                  \n"
+                    + "   vec3 lightVector = normalize(u_LightPos - v_Position);             \n"
+                    + "   float diffuse = max(dot(v_Normal, lightVector), 0.9);              \n"
+                    + "   diffuse = diffuse * (1.0 / (1.0 + (0.25 * distance * distance)));  \n"
+                    + "   diffuse = diffuse + 0.3;                                           \n"
+                    + "   gl_FragColor = v_Color * diffuse * texture2D(u_Texture, v_TexCoordinate); \n"
+                    + "}                                                                     \n";
+
+    public InstancedSpheres(Context context, GlCapabilities capabilities, GlStateCache state,
+                            ShaderCache shaderCache, AssetLoader assetLoader, TextureRegistry textureRegistry,
+                            int capacity) {
+        this(context, capabilities, state, shaderCache, assetLoader, textureRegistry, capacity, 1);
+    }
+
+    /**
+     * @param capacity how many instances there can be at most
+     * @param level    the level of detail of every instance's mesh, see {@link SphereLodSelector}
+     */
+    public InstancedSpheres(final Context context, GlCapabilities capabilities, GlStateCache state,
+                            ShaderCache shaderCache, AssetLoader assetLoader, TextureRegistry textureRegistry,
+                            int capacity, final int level) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive, got " + capacity);
+        }
+        mState = state;
+        mCapabilities = capabilities;
+        mCapacity = capacity;
+        mInstanced = capabilities.isEs3();
+        Gl gl = state.getGl();
+        // known ahead of the mesh, the batches and the shader are sized by them
+        int bands = SphereLodSelector.getNumVerticalBands(level);
+        int steps = SphereLodSelector.getNumStepsInBand(level);
+        mVertexCount = SphereMeshGenerator.getVertexCount(bands, steps);
+        mIndicesPerInstance = SphereMeshGenerator.getIndexCount(bands, steps);
+        int vertexCount = mVertexCount;
+
+        String instanceSource;
+        if (mInstanced) {
+            mBatchSize = capacity;
+            instanceSource = ""
+                    + "attribute vec4 a_InstancePlacement; \n"  // Center and scale, once per instance.
+                    + "attribute vec4 a_InstanceRotation;  \n"  // A quaternion.
+                    + "attribute vec4 a_InstanceTint;      \n"
+                    + "void getInstance(out vec4 placement, out vec4 rotation, out vec4 tint) \n"
+                    + "{                                        \n"
+                    + "   placement = a_InstancePlacement;      \n"
+                    + "   rotation = a_InstanceRotation;        \n"
+                    + "   tint = a_InstanceTint;                \n"
+                    + "}                                        \n";
+        } else {
+            int[] maxVectors = new int[1];
+            gl.glGetIntegerv(GLES20.GL_MAX_VERTEX_UNIFORM_VECTORS, maxVectors, 0);
+            int uniformVectors = Math.max(maxVectors[0], MIN_VERTEX_UNIFORM_VECTORS) - RESERVED_UNIFORM_VECTORS;
+            mBatchSize = Math.max(1, Math.min(Math.min(uniformVectors / VECTORS_PER_INSTANCE,
+                    MAX_BATCH_VERTICES / vertexCount), capacity));
+            instanceSource = ""
+                    + "uniform vec4 u_Instances[" + mBatchSize * VECTORS_PER_INSTANCE + "]; \n"
+                    + "attribute float a_InstanceIndex;    \n"  // Which instance of the batch the vertex belongs to.
+                    + "void getInstance(out vec4 placement, out vec4 rotation, out vec4 tint) \n"
+                    + "{                                        \n"
+                    + "   int i = int(a_InstanceIndex) * " + VECTORS_PER_INSTANCE + "; \n"
+                    + "   placement = u_Instances[i];           \n"
+                    + "   rotation = u_Instances[i + 1];        \n"
+                    + "   tint = u_Instances[i + 2];            \n"
+                    + "}                                        \n";
+        }
+        String vertexShader = "uniform mat4 u_MVPMatrix;      \n"
+                + "uniform mat4 u_MVMatrix;       \n"
+                + "attribute vec4 a_Position;     \n"
+                + "attribute vec4 a_Color;        \n"
+                + "attribute vec3 a_Normal;       \n"
+                + "attribute vec2 a_TexCoordinate;\n"
+                + "varying vec3 v_Position;       \n"
+                + "varying vec4 v_Color;          \n"
+                + "varying vec3 v_Normal;         \n"
+                + "varying vec2 v_TexCoordinate;  \n"
+                + instanceSource
+                // Turns v by the unit quaternion q.
+                + "vec3 rotate(vec4 q, vec3 v)                                       \n"
+                + "{                                                                 \n"
+                + "   return v + 2.0 * cross(q.xyz, cross(q.xyz, v) + q.w * v);      \n"
+                + "}                                                                 \n"
+                + "void main()                                                       \n"
+                + "{                                                                 \n"
+                + "   vec4 placement;                                                \n"
+                + "   vec4 rotation;                                                 \n"
+                + "   vec4 tint;                                                     \n"
+                + "   getInstance(placement, rotation, tint);                        \n"
+                // From the unit sphere into the model space all instances share.
+                + "   vec4 position = vec4(placement.xyz + placement.w * rotate(rotation, a_Position.xyz), 1.0); \n"
+                + "   vec3 normal = rotate(rotation, a_Normal);                      \n"
+                + "   v_Position = vec3(u_MVMatrix * position);                      \n"
+                + "   v_Color = a_Color * tint;                                      \n"
+                + "   v_Normal = vec3(u_MVMatrix * vec4(normal, 0.0));               \n"
+                + "   gl_Position = u_MVPMatrix * position;                          \n"
+                + "   v_TexCoordinate = a_TexCoordinate;                             \n"
+                + "}                                                                 \n";
+
+        ShaderProgram program = shaderCache.get(vertexShader, fragmentShader);
+        mProgramHandle = program.getProgramHandle();
+        mMVPMatrixHandle = program.getUniformLocation("u_MVPMatrix");
+        mMVMatrixHandle = program.getUniformLocation("u_MVMatrix");
+        mLightPosHandle = program.getUniformLocation("u_LightPos");
+        mUniformTextureHandle = program.getUniformLocation("u_Texture");
+        mInstancesHandle = program.getUniformLocation("u_Instances");
+        int positionHandle = program.getAttribLocation("a_Position");
+        int normalHandle = program.getAttribLocation("a_Normal");
+        int textureHandle = program.getAttribLocation("a_TexCoordinate");
+        int colorHandle = program.getAttribLocation("a_Color");
+        checkGLError(gl, TAG, "Handles Created");
+
+        mTexture = textureRegistry.acquire(context, R.drawable.texture, TEXTURE_SAMPLING, PLACEHOLDER_COLOR);
+
+        VertexLayout.Builder layout = new VertexLayout.Builder()
+                .add(positionHandle, SphereMeshGenerator.POSITION_DATA_SIZE, SphereLevels.POSITION_OFFSET)
+                .add(normalHandle, SphereMeshGenerator.NORMAL_DATA_SIZE, SphereLevels.NORMAL_OFFSET)
+                .add(textureHandle, SphereMeshGenerator.TEXTURE_COORDINATE_DATA_SIZE,
+                        SphereLevels.TEXTURE_COORDINATE_OFFSET)
+                .add(colorHandle, SphereMeshGenerator.COLOR_DATA_SIZE, SphereLevels.COLOR_OFFSET)
+                // not morphed, but the room stays
+                .add(-1, SphereMeshGenerator.POSITION_DATA_SIZE, SphereLevels.MORPH_TARGET_OFFSET);
+        if (mInstanced) {
+            mLayout = layout.build();
+            mInstanceLayout = new VertexLayout.Builder()
+                    .add(program.getAttribLocation("a_InstancePlacement"), 4, PLACEMENT_OFFSET)
+                    .add(program.getAttribLocation("a_InstanceRotation"), 4, ROTATION_OFFSET)
+                    .add(program.getAttribLocation("a_InstanceTint"), 4, TINT_OFFSET)
+                    .build();
+            mInstances = new float[capacity * FLOATS_PER_INSTANCE];
+            mUpload = SphereMeshGenerator.allocateFloatBuffer(mInstances.length);
+        } else {
+            layout.add(program.getAttribLocation("a_InstanceIndex"), 1, INSTANCE_INDEX_OFFSET);
+            mLayout = layout.build();
+            mInstanceLayout = null;
+            // whole batches are uploaded, the last one reads past the instances in use
+            int batches = (capacity + mBatchSize - 1) / mBatchSize;
+            mInstances = new float[batches * mBatchSize * FLOATS_PER_INSTANCE];
+            mUpload = null;
+        }
+        resetDirty();
+
+        assetLoader.load(new Callable<SphereLevels.Level>() {
+            @Override
+            public SphereLevels.Level call() {
+                return prepareMesh(SphereBox.loadLevel(AssetPackLoader.get(context), level));
+            }
+        }, new AssetLoader.Upload<SphereLevels.Level>() {
+            @Override
+            public void upload(SphereLevels.Level mesh) {
+                uploadMesh(mesh);
+            }
+        });
+    }
+
+    /**
+     * Prepares and uploads the sphere right away, rather than on a loader thread.
+     */
+    void setSphere(SphereLevels.Level sphere) {
+        uploadMesh(prepareMesh(sphere));
+    }
+
+    /**
+     * The sphere as it is with instancing, copied into a batch without. Runs on a loader thread.
+     */
+    private SphereLevels.Level prepareMesh(SphereLevels.Level sphere) {
+        if (sphere.vertices.remaining() != mVertexCount * SphereLevels.STRIDE_FLOATS
+                || sphere.indices.remaining() != mIndicesPerInstance) {
+            throw new IllegalArgumentException("Sphere of " + sphere.vertices.remaining()
+                    / SphereLevels.STRIDE_FLOATS + " vertices and " + sphere.indices.remaining()
+                    + " indices, expected " + mVertexCount + " and " + mIndicesPerInstance);
+        }
+        return mInstanced ? sphere : createBatch(sphere, mLayout.getStrideFloats(), mVertexCount, mBatchSize);
+    }
+
+    private void uploadMesh(SphereLevels.Level mesh) {
+        if (mMesh != null) {
+            throw new IllegalStateException("Spheres are uploaded already");
+        }
+        mMesh = new InterleavedMesh(mState, mCapabilities, mLayout, mesh.vertices, mesh.indices);
+        if (mInstanced) {
+            createInstanceBuffer();
+            // whatever was placed so far has yet to reach the new buffer
+            mDirtyStart = 0;
+            mDirtyEnd = mCount;
+        }
+        checkGLError(mState.getGl(), TAG, "Buffer Binding");
+    }
+
+    /**
+     * Adds the per instance attributes to the mesh's vertex array object, advancing once per instance.
+     */
+    private void createInstanceBuffer() {
+        Gl gl = mState.getGl();
+        gl.glGenBuffers(1, mInstanceBuffer, 0);
+        mState.bindBuffer(GLES20.GL_ARRAY_BUFFER, mInstanceBuffer[0]);
+        gl.glBufferData(GLES20.GL_ARRAY_BUFFER, mInstances.length * BYTES_PER_FLOAT, null,
+                GLES20.GL_DYNAMIC_DRAW);
+        mMesh.bind();
+        mState.bindBuffer(GLES20.GL_ARRAY_BUFFER, mInstanceBuffer[0]);
+        mInstanceLayout.setAttributePointers(mState);
+        for (VertexLayout.Attribute attribute : mInstanceLayout.getAttributes()) {
+            gl.glVertexAttribDivisor(attribute.location, 1);
+        }
+        mState.bindVertexArray(0);
+    }
+
+    /**
+     * Copies the sphere {@code batchSize} times, each copy's vertices tagged with its index.
+     */
+    private static SphereLevels.Level createBatch(SphereLevels.Level sphere, int stride, int vertexCount,
+                                                  int batchSize) {
+        FloatBuffer vertices = SphereMeshGenerator.allocateFloatBuffer(batchSize * vertexCount * stride);
+        ShortBuffer indices = SphereMeshGenerator.allocateShortBuffer(batchSize * sphere.indices.remaining());
+        int sphereVertices = sphere.vertices.position();
+        int sphereIndices = sphere.indices.position();
+        for (int instance = 0; instance < batchSize; instance++) {
+            for (int vertex = 0; vertex < vertexCount; vertex++) {
+                for (int i = 0; i < SphereLevels.STRIDE_FLOATS; i++) {
+                    vertices.put(sphere.vertices.get(sphereVertices + vertex * SphereLevels.STRIDE_FLOATS + i));
+                }
+                vertices.put(instance);
+            }
+            int base = instance * vertexCount;
+            for (int i = sphereIndices; i < sphere.indices.limit(); i++) {
+                indices.put((short) (base + (sphere.indices.get(i) & 0xffff)));
+            }
+        }
+        vertices.flip();
+        indices.flip();
+        return new SphereLevels.Level(vertices, indices, null);
+    }
+
+    public int getCapacity() {
+        return mCapacity;
+    }
+
+    public int getCount() {
+        return mCount;
+    }
+
+    /**
+     * @return how many instances a draw call takes at most, all of them with instancing
+     */
+    public int getBatchSize() {
+        return mBatchSize;
+    }
+
+    public boolean isInstanced() {
+        return mInstanced;
+    }
+
+    /**
+     * Adds an instance after the others.
+     *
+     * @return its index
+     */
+    public int add(float x, float y, float z, float scale, Quaternion rotation, int tint) {
+        if (mCount == mCapacity) {
+            throw new IllegalStateException("All " + mCapacity + " instances are in use");
+        }
+        int index = mCount++;
+        set(index, x, y, z, scale, rotation, tint);
+        return index;
+    }
+
+    /**
+     * @param x        center, like y and z, in the model space the transform drawn with maps from
+     * @param scale    radius
+     * @param rotation of the unit sphere before it's scaled and moved
+     * @param tint     multiplies the sphere's colors, as 0xAARRGGBB
+     */
+    public void set(int index, float x, float y, float z, float scale, Quaternion rotation, int tint) {
+        int offset = getOffset(index);
+        float[] instances = mInstances;
+        instances[offset + PLACEMENT_OFFSET] = x;
+        instances[offset + PLACEMENT_OFFSET + 1] = y;
+        instances[offset + PLACEMENT_OFFSET + 2] = z;
+        instances[offset + PLACEMENT_OFFSET + 3] = scale;
+        instances[offset + ROTATION_OFFSET] = rotation.x;
+        instances[offset + ROTATION_OFFSET + 1] = rotation.y;
+        instances[offset + ROTATION_OFFSET + 2] = rotation.z;
+        instances[offset + ROTATION_OFFSET + 3] = rotation.w;
+        instances[offset + TINT_OFFSET] = ((tint >> 16) & 0xff) / 255f;
+        instances[offset + TINT_OFFSET + 1] = ((tint >> 8) & 0xff) / 255f;
+        instances[offset + TINT_OFFSET + 2] = (tint & 0xff) / 255f;
+        instances[offset + TINT_OFFSET + 3] = (tint >>> 24) / 255f;
+        markDirty(index);
+    }
+
+    /**
+     * Moves an instance, leaving its scale, rotation and tint.
+     */
+    public void setPosition(int index, float x, float y, float z) {
+        int offset = getOffset(index);
+        mInstances[offset + PLACEMENT_OFFSET] = x;
+        mInstances[offset + PLACEMENT_OFFSET + 1] = y;
+        mInstances[offset + PLACEMENT_OFFSET + 2] = z;
+        markDirty(index);
+    }
+
+    public void clear() {
+        mCount = 0;
+        resetDirty();
+    }
+
+    private int getOffset(int index) {
+        if (index < 0 || index >= mCount) {
+            throw new IndexOutOfBoundsException("Instance " + index + " of " + mCount);
+        }
+        return index * FLOATS_PER_INSTANCE;
+    }
+
+    private void markDirty(int index) {
+        mDirtyStart = Math.min(mDirtyStart, index);
+        mDirtyEnd = Math.max(mDirtyEnd, index + 1);
+    }
+
+    private void resetDirty() {
+        mDirtyStart = Integer.MAX_VALUE;
+        mDirtyEnd = 0;
+    }
+
+    /**
+     * Draws every instance, in the model space of {@code transform}.
+     */
+    public void draw(FrameUniforms.Transform transform) {
+        if (mCount == 0 || mMesh == null) {
+            return;
+        }
+        mState.useProgram(mProgramHandle);
+        mState.uniform3f(mLightPosHandle, lightSourcePosition[0], lightSourcePosition[1], lightSourcePosition[2]);
+        mState.uniformMatrix4fv(mMVMatrixHandle, 1, false, transform.getMVMatrix(), 0);
+        mState.uniformMatrix4fv(mMVPMatrixHandle, 1, false, transform.getMVPMatrix(), 0);
+        mState.activeTexture(GLES20.GL_TEXTURE0);
+        mState.bindTexture(GLES20.GL_TEXTURE_2D, mTexture.getTextureId());
+        mState.uniform1i(mUniformTextureHandle, 0);
+
+        if (mInstanced) {
+            uploadInstances();
+            mMesh.drawInstanced(GLES20.GL_TRIANGLES, mCount);
+        } else {
+            for (int first = 0; first < mCount; first += mBatchSize) {
+                int count = Math.min(mBatchSize, mCount - first);
+                // the same length every time, so the state cache keeps a single copy to compare against
+                mState.uniform4fv(mInstancesHandle, mBatchSize * VECTORS_PER_INSTANCE, mInstances,
+                        first * FLOATS_PER_INSTANCE);
+                mMesh.draw(GLES20.GL_TRIANGLES, count * mIndicesPerInstance);
+            }
+            resetDirty();
+        }
+        checkGLError(mState.getGl(), TAG, "Instances Drawn");
+    }
+
+    /**
+     * Gives the texture back to the registry. Draw no more afterwards.
+     */
+    public void release() {
+        mTexture.release();
+    }
+
+    /**
+     * Uploads the instances that changed since the last frame, if any.
+     */
+    private void uploadInstances() {
+        int end = Math.min(mDirtyEnd, mCount);
+        if (mDirtyStart >= end) {
+            return;
+        }
+        int offset = mDirtyStart * FLOATS_PER_INSTANCE;
+        int length = (end - mDirtyStart) * FLOATS_PER_INSTANCE;
+        mUpload.clear();
+        mUpload.put(mInstances, offset, length);
+        mUpload.flip();
+        mState.bindBuffer(GLES20.GL_ARRAY_BUFFER, mInstanceBuffer[0]);
+        mState.getGl().glBufferSubData(GLES20.GL_ARRAY_BUFFER, offset * BYTES_PER_FLOAT, length * BYTES_PER_FLOAT,
+                mUpload);
+        resetDirty();
+    }
+}
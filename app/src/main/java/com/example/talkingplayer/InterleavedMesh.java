@@ -0,0 +1,92 @@
+package com.example.talkingplayer;
+
+import android.opengl.GLES20;
+
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+
+/**
+ * A single interleaved vertex buffer plus its index buffer. When the context supports vertex array
+ * objects all attribute state is captured once, so binding the mesh is a single call. Otherwise the
+ * buffers are bound and the attribute pointers re-specified on every bind.
+ * <p>
+ * Attribute pointers set while a mesh is bound end up in its vertex array object, so anything drawn
+ * with client side arrays must bind vertex array 0 first.
+ */
+public class InterleavedMesh {
+    private static final int BYTES_PER_FLOAT = 4;
+    private static final int BYTES_PER_SHORT = 2;
+    private final Gl gl;
+    private final GlStateCache state;
+    private final VertexLayout layout;
+    private final int indexCount;
+    private final int[] bufferIds = new int[2];
+    private final int[] vertexArrayId = new int[1];
+    private final boolean useVertexArray;
+
+    public InterleavedMesh(GlStateCache state, GlCapabilities capabilities, VertexLayout layout,
+                           FloatBuffer vertices, ShortBuffer indices) {
+        this.gl = state.getGl();
+        this.state = state;
+        this.layout = layout;
+        this.indexCount = indices.remaining();
+        this.useVertexArray = capabilities.supportsVertexArrayObjects();
+
+        gl.glGenBuffers(2, bufferIds, 0);
+        if (useVertexArray) {
+            gl.glGenVertexArrays(1, vertexArrayId, 0);
+            state.bindVertexArray(vertexArrayId[0]);
+        }
+
+        state.bindBuffer(GLES20.GL_ARRAY_BUFFER, bufferIds[0]);
+        gl.glBufferData(GLES20.GL_ARRAY_BUFFER, vertices.remaining() * BYTES_PER_FLOAT,
+                vertices, GLES20.GL_STATIC_DRAW);
+        state.bindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, bufferIds[1]);
+        gl.glBufferData(GLES20.GL_ELEMENT_ARRAY_BUFFER, indexCount * BYTES_PER_SHORT,
+                indices, GLES20.GL_STATIC_DRAW);
+
+        if (useVertexArray) {
+            // recorded into the vertex array object along with the element buffer binding
+            layout.setAttributePointers(state);
+            state.bindVertexArray(0);
+        }
+    }
+
+    public int getIndexCount() {
+        return indexCount;
+    }
+
+    public VertexLayout getLayout() {
+        return layout;
+    }
+
+    public void bind() {
+        if (useVertexArray) {
+            state.bindVertexArray(vertexArrayId[0]);
+        } else {
+            state.bindBuffer(GLES20.GL_ARRAY_BUFFER, bufferIds[0]);
+            layout.setAttributePointers(state);
+            state.bindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, bufferIds[1]);
+        }
+    }
+
+    public void draw(int mode) {
+        draw(mode, indexCount);
+    }
+
+    /**
+     * Draws only the first {@code indexCount} indices.
+     */
+    public void draw(int mode, int indexCount) {
+        bind();
+        gl.glDrawElements(mode, indexCount, GLES20.GL_UNSIGNED_SHORT, 0);
+    }
+
+    /**
+     * Draws the mesh {@code instanceCount} times in one call. Needs an ES 3 context.
+     */
+    public void drawInstanced(int mode, int instanceCount) {
+        bind();
+        gl.glDrawElementsInstanced(mode, indexCount, GLES20.GL_UNSIGNED_SHORT, 0, instanceCount);
+    }
+}
@@ -0,0 +1,389 @@
+package com.example.talkingplayer;
+
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Prepares indexed triangle lists for the GPU: reorders triangles so vertices are reused while still
+ * in the post-transform cache (Tom Forsyth's linear-speed vertex cache optimisation), then reorders
+ * vertices into the order they are first used so vertex fetch walks memory linearly.
+ * <p>
+ * Indices are unsigned shorts. This class has no Android dependencies.
+ */
+public final class MeshOptimizer {
+    /**
+     * Same values as GLES20.GL_TRIANGLES and GLES20.GL_TRIANGLE_STRIP.
+     */
+    public static final int MODE_TRIANGLES = 0x0004;
+    public static final int MODE_TRIANGLE_STRIP = 0x0005;
+    /**
+     * Post-transform cache size assumed when measuring, small enough to be pessimistic on mobile GPUs.
+     */
+    public static final int DEFAULT_CACHE_SIZE = 16;
+
+    // Scoring constants from Forsyth's "Linear-Speed Vertex Cache Optimisation"
+    private static final int MAX_CACHE_SIZE = 32;
+    private static final float CACHE_DECAY_POWER = 1.5f;
+    private static final float LAST_TRIANGLE_SCORE = 0.75f;
+    private static final float VALENCE_BOOST_SCALE = 2.0f;
+    private static final float VALENCE_BOOST_POWER = 0.5f;
+    private static final int MAX_PRECOMPUTED_VALENCE = 32;
+    private static final float[] CACHE_POSITION_SCORES = new float[MAX_CACHE_SIZE];
+    private static final float[] VALENCE_SCORES = new float[MAX_PRECOMPUTED_VALENCE];
+
+    static {
+        for (int i = 0; i < MAX_CACHE_SIZE; i++) {
+            if (i < 3) {
+                // used by the last triangle, fixed score so the next one isn't biased towards a single edge
+                CACHE_POSITION_SCORES[i] = LAST_TRIANGLE_SCORE;
+            } else {
+                float scaler = 1.0f / (MAX_CACHE_SIZE - 3);
+                CACHE_POSITION_SCORES[i] = (float) Math.pow(1.0f - (i - 3) * scaler, CACHE_DECAY_POWER);
+            }
+        }
+        for (int i = 1; i < MAX_PRECOMPUTED_VALENCE; i++) {
+            VALENCE_SCORES[i] = VALENCE_BOOST_SCALE * (float) Math.pow(i, -VALENCE_BOOST_POWER);
+        }
+    }
+
+    private MeshOptimizer() {
+    }
+
+    /**
+     * Number of triangles the GPU rasterizes for {@code indexCount} indices drawn with {@code mode}.
+     */
+    public static int countTriangles(int mode, int indexCount) {
+        switch (mode) {
+            case MODE_TRIANGLES:
+                return indexCount / 3;
+            case MODE_TRIANGLE_STRIP:
+                return Math.max(0, indexCount - 2);
+            default:
+                throw new IllegalArgumentException("Unsupported primitive mode " + mode);
+        }
+    }
+
+    /**
+     * Average cache miss ratio: vertices transformed per triangle with a FIFO post-transform cache of
+     * the given size. 3 is the worst possible, 0.5 the best a closed mesh can reach.
+     */
+    public static float computeAcmr(ShortBuffer indices, int cacheSize) {
+        int base = indices.position();
+        int indexCount = indices.remaining();
+        if (indexCount < 3) {
+            return 0;
+        }
+        int[] cache = new int[cacheSize];
+        Arrays.fill(cache, -1);
+        int head = 0;
+        int misses = 0;
+        for (int i = 0; i < indexCount; i++) {
+            int vertex = indices.get(base + i) & 0xFFFF;
+            boolean hit = false;
+            for (int c = 0; c < cacheSize; c++) {
+                if (cache[c] == vertex) {
+                    hit = true;
+                    break;
+                }
+            }
+            if (!hit) {
+                misses++;
+                cache[head] = vertex;
+                head = (head + 1) % cacheSize;
+            }
+        }
+        return misses / (float) (indexCount / 3);
+    }
+
+    /**
+     * Runs both optimisations on an interleaved mesh in place and reports the cache miss ratio
+     * before and after.
+     */
+    public static Report optimize(ShortBuffer indices, FloatBuffer vertices, int strideFloats, int vertexCount) {
+        float before = computeAcmr(indices, DEFAULT_CACHE_SIZE);
+        short[] original = new short[indices.remaining()];
+        indices.duplicate().get(original);
+        optimizeVertexCache(indices, vertexCount);
+        if (computeAcmr(indices, DEFAULT_CACHE_SIZE) >= before) {
+            // tiny meshes can already be in a better order than the heuristic finds
+            indices.duplicate().put(original);
+        }
+        optimizeVertexFetch(indices, vertices, strideFloats, vertexCount);
+        return new Report(indices.remaining() / 3, before, computeAcmr(indices, DEFAULT_CACHE_SIZE));
+    }
+
+    /**
+     * Reorders the triangles of a list in place so consecutive triangles share as many recently used
+     * vertices as possible. Every triangle keeps its winding.
+     */
+    public static void optimizeVertexCache(ShortBuffer indices, int vertexCount) {
+        int base = indices.position();
+        int triangleCount = indices.remaining() / 3;
+        if (triangleCount == 0) {
+            return;
+        }
+        int[] triangles = new int[triangleCount * 3];
+        for (int i = 0; i < triangles.length; i++) {
+            triangles[i] = indices.get(base + i) & 0xFFFF;
+        }
+
+        // triangles using each vertex, as offsets into one shared array
+        int[] remaining = new int[vertexCount];
+        for (int vertex : triangles) {
+            remaining[vertex]++;
+        }
+        int[] adjacencyStart = new int[vertexCount + 1];
+        for (int v = 0; v < vertexCount; v++) {
+            adjacencyStart[v + 1] = adjacencyStart[v] + remaining[v];
+        }
+        int[] adjacency = new int[triangles.length];
+        int[] fill = Arrays.copyOf(adjacencyStart, vertexCount);
+        for (int i = 0; i < triangles.length; i++) {
+            adjacency[fill[triangles[i]]++] = i / 3;
+        }
+
+        int[] cachePosition = new int[vertexCount];
+        Arrays.fill(cachePosition, -1);
+        float[] vertexScore = new float[vertexCount];
+        for (int v = 0; v < vertexCount; v++) {
+            vertexScore[v] = scoreVertex(-1, remaining[v]);
+        }
+        float[] triangleScore = new float[triangleCount];
+        boolean[] emitted = new boolean[triangleCount];
+        for (int t = 0; t < triangleCount; t++) {
+            triangleScore[t] = vertexScore[triangles[3 * t]] + vertexScore[triangles[3 * t + 1]]
+                    + vertexScore[triangles[3 * t + 2]];
+        }
+
+        int[] cache = new int[MAX_CACHE_SIZE + 3];
+        int[] nextCache = new int[MAX_CACHE_SIZE + 3];
+        int cacheCount = 0;
+        int bestTriangle = -1;
+        int scanFrom = 0;
+        for (int out = 0; out < triangleCount; out++) {
+            if (bestTriangle < 0) {
+                // nothing useful in the cache, fall back to the best remaining triangle
+                float bestScore = -1;
+                while (emitted[scanFrom]) {
+                    scanFrom++;
+                }
+                for (int t = scanFrom; t < triangleCount; t++) {
+                    if (!emitted[t] && triangleScore[t] > bestScore) {
+                        bestScore = triangleScore[t];
+                        bestTriangle = t;
+                    }
+                }
+            }
+
+            int t = bestTriangle;
+            emitted[t] = true;
+            for (int k = 0; k < 3; k++) {
+                int vertex = triangles[3 * t + k];
+                indices.put(base + 3 * out + k, (short) vertex);
+                remaining[vertex]--;
+                // drop the triangle from the vertex's list of pending triangles
+                int start = adjacencyStart[vertex];
+                int end = start + remaining[vertex];
+                for (int a = start; a <= end; a++) {
+                    if (adjacency[a] == t) {
+                        adjacency[a] = adjacency[end];
+                        break;
+                    }
+                }
+            }
+
+            // move the triangle's vertices to the front of the LRU cache
+            int nextCount = 0;
+            for (int k = 0; k < 3; k++) {
+                nextCache[nextCount++] = triangles[3 * t + k];
+            }
+            for (int c = 0; c < cacheCount; c++) {
+                int vertex = cache[c];
+                if (vertex != triangles[3 * t] && vertex != triangles[3 * t + 1] && vertex != triangles[3 * t + 2]) {
+                    nextCache[nextCount++] = vertex;
+                }
+            }
+            int[] swap = cache;
+            cache = nextCache;
+            nextCache = swap;
+            cacheCount = nextCount;
+
+            // rescore everything that moved, including vertices that just fell out of the cache
+            for (int c = 0; c < cacheCount; c++) {
+                int vertex = cache[c];
+                cachePosition[vertex] = c < MAX_CACHE_SIZE ? c : -1;
+                vertexScore[vertex] = scoreVertex(cachePosition[vertex], remaining[vertex]);
+            }
+            cacheCount = Math.min(cacheCount, MAX_CACHE_SIZE);
+
+            bestTriangle = -1;
+            float bestScore = -1;
+            for (int c = 0; c < cacheCount; c++) {
+                int vertex = cache[c];
+                for (int a = adjacencyStart[vertex], end = a + remaining[vertex]; a < end; a++) {
+                    int candidate = adjacency[a];
+                    float score = vertexScore[triangles[3 * candidate]] + vertexScore[triangles[3 * candidate + 1]]
+                            + vertexScore[triangles[3 * candidate + 2]];
+                    triangleScore[candidate] = score;
+                    if (score > bestScore) {
+                        bestScore = score;
+                        bestTriangle = candidate;
+                    }
+                }
+            }
+        }
+    }
+
+    private static float scoreVertex(int cachePosition, int remainingTriangles) {
+        if (remainingTriangles == 0) {
+            // no triangle needs it any more
+            return -1;
+        }
+        float score = cachePosition >= 0 ? CACHE_POSITION_SCORES[cachePosition] : 0;
+        // favour vertices with few triangles left so they don't linger as lonely triangles
+        if (remainingTriangles < MAX_PRECOMPUTED_VALENCE) {
+            score += VALENCE_SCORES[remainingTriangles];
+        } else {
+            score += VALENCE_BOOST_SCALE * (float) Math.pow(remainingTriangles, -VALENCE_BOOST_POWER);
+        }
+        return score;
+    }
+
+    /**
+     * Renumbers vertices in the order the indices first use them and moves their interleaved data
+     * accordingly, so the GPU fetches vertex memory front to back. Unused vertices are moved to the end.
+     *
+     * @return the new index of every old vertex
+     */
+    public static int[] optimizeVertexFetch(ShortBuffer indices, FloatBuffer vertices, int strideFloats,
+                                            int vertexCount) {
+        int indexBase = indices.position();
+        int indexCount = indices.remaining();
+        int[] remap = new int[vertexCount];
+        Arrays.fill(remap, -1);
+        int next = 0;
+        for (int i = 0; i < indexCount; i++) {
+            int vertex = indices.get(indexBase + i) & 0xFFFF;
+            if (remap[vertex] < 0) {
+                remap[vertex] = next++;
+            }
+            indices.put(indexBase + i, (short) remap[vertex]);
+        }
+        for (int v = 0; v < vertexCount; v++) {
+            if (remap[v] < 0) {
+                remap[v] = next++;
+            }
+        }
+
+        int vertexBase = vertices.position();
+        float[] original = new float[vertexCount * strideFloats];
+        for (int i = 0; i < original.length; i++) {
+            original[i] = vertices.get(vertexBase + i);
+        }
+        for (int v = 0; v < vertexCount; v++) {
+            int target = vertexBase + remap[v] * strideFloats;
+            for (int i = 0; i < strideFloats; i++) {
+                vertices.put(target + i, original[v * strideFloats + i]);
+            }
+        }
+        return remap;
+    }
+
+    /**
+     * Merges identical vertices of a non-indexed triangle list into an indexed one.
+     */
+    public static IndexedMesh weld(float[] vertices, int strideFloats) {
+        int vertexCount = vertices.length / strideFloats;
+        Map<VertexKey, Integer> unique = new HashMap<>();
+        float[] welded = new float[vertices.length];
+        short[] indices = new short[vertexCount];
+        int uniqueCount = 0;
+        for (int v = 0; v < vertexCount; v++) {
+            VertexKey key = new VertexKey(vertices, v * strideFloats, strideFloats);
+            Integer index = unique.get(key);
+            if (index == null) {
+                index = uniqueCount++;
+                unique.put(key, index);
+                System.arraycopy(vertices, v * strideFloats, welded, index * strideFloats, strideFloats);
+            }
+            indices[v] = (short) (int) index;
+        }
+        return new IndexedMesh(Arrays.copyOf(welded, uniqueCount * strideFloats), indices, strideFloats);
+    }
+
+    public static final class Report {
+        public final int triangleCount;
+        public final float acmrBefore;
+        public final float acmrAfter;
+
+        Report(int triangleCount, float acmrBefore, float acmrAfter) {
+            this.triangleCount = triangleCount;
+            this.acmrBefore = acmrBefore;
+            this.acmrAfter = acmrAfter;
+        }
+
+        @Override
+        public String toString() {
+            return triangleCount + " triangles, ACMR " + acmrBefore + " -> " + acmrAfter;
+        }
+    }
+
+    public static final class IndexedMesh {
+        public final float[] vertices;
+        public final short[] indices;
+        public final int strideFloats;
+
+        IndexedMesh(float[] vertices, short[] indices, int strideFloats) {
+            this.vertices = vertices;
+            this.indices = indices;
+            this.strideFloats = strideFloats;
+        }
+
+        public int getVertexCount() {
+            return vertices.length / strideFloats;
+        }
+    }
+
+    private static final class VertexKey {
+        private final float[] data;
+        private final int offset;
+        private final int length;
+        private final int hash;
+
+        VertexKey(float[] data, int offset, int length) {
+            this.data = data;
+            this.offset = offset;
+            this.length = length;
+            int h = 1;
+            for (int i = 0; i < length; i++) {
+                h = 31 * h + Float.floatToIntBits(data[offset + i]);
+            }
+            this.hash = h;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof VertexKey)) {
+                return false;
+            }
+            VertexKey other = (VertexKey) o;
+            if (other.length != length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (Float.floatToIntBits(data[offset + i]) != Float.floatToIntBits(other.data[other.offset + i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
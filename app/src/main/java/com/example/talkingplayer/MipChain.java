@@ -0,0 +1,114 @@
+package com.example.talkingplayer;
+
+/**
+ * Builds mip chains for RGBA images ahead of time, so textures don't depend on the driver's
+ * glGenerateMipmap, which can't handle compressed formats at all. No Android dependencies.
+ * <p>
+ * Every level is a 2x2 box filter of the one above it. ES 2 only mipmaps power of two textures, so images
+ * are resampled to the nearest power of two first.
+ */
+public final class MipChain {
+
+    private MipChain() {
+    }
+
+    public static boolean isPowerOfTwo(int value) {
+        return value > 0 && (value & (value - 1)) == 0;
+    }
+
+    /**
+     * @return the power of two closest to {@code value}, rounding up on ties
+     */
+    public static int nearestPowerOfTwo(int value) {
+        if (value <= 1) {
+            return 1;
+        }
+        int lower = Integer.highestOneBit(value);
+        return value - lower < lower * 2 - value ? lower : lower * 2;
+    }
+
+    /**
+     * @return the number of levels from {@code width} x {@code height} down to 1x1
+     */
+    public static int getLevelCount(int width, int height) {
+        return 32 - Integer.numberOfLeadingZeros(Math.max(width, height));
+    }
+
+    public static int getLevelSize(int size, int level) {
+        return Math.max(1, size >> level);
+    }
+
+    /**
+     * Bilinearly resamples tightly packed RGBA pixels, matching pixel centers.
+     */
+    public static byte[] resize(byte[] rgba, int width, int height, int newWidth, int newHeight) {
+        if (newWidth == width && newHeight == height) {
+            return rgba.clone();
+        }
+        byte[] resized = new byte[newWidth * newHeight * 4];
+        for (int y = 0; y < newHeight; y++) {
+            float sourceY = Math.max(0, Math.min(height - 1, (y + 0.5f) * height / newHeight - 0.5f));
+            int y0 = (int) sourceY;
+            int y1 = Math.min(y0 + 1, height - 1);
+            float fractionY = sourceY - y0;
+            for (int x = 0; x < newWidth; x++) {
+                float sourceX = Math.max(0, Math.min(width - 1, (x + 0.5f) * width / newWidth - 0.5f));
+                int x0 = (int) sourceX;
+                int x1 = Math.min(x0 + 1, width - 1);
+                float fractionX = sourceX - x0;
+                for (int channel = 0; channel < 4; channel++) {
+                    float top = lerp(rgba[(y0 * width + x0) * 4 + channel] & 0xff,
+                            rgba[(y0 * width + x1) * 4 + channel] & 0xff, fractionX);
+                    float bottom = lerp(rgba[(y1 * width + x0) * 4 + channel] & 0xff,
+                            rgba[(y1 * width + x1) * 4 + channel] & 0xff, fractionX);
+                    resized[(y * newWidth + x) * 4 + channel] = (byte) Math.round(lerp(top, bottom, fractionY));
+                }
+            }
+        }
+        return resized;
+    }
+
+    /**
+     * @return {@code rgba} itself followed by every smaller level down to 1x1
+     */
+    public static byte[][] build(byte[] rgba, int width, int height) {
+        byte[][] levels = new byte[getLevelCount(width, height)][];
+        levels[0] = rgba;
+        for (int level = 1; level < levels.length; level++) {
+            levels[level] = downsample(levels[level - 1], getLevelSize(width, level - 1),
+                    getLevelSize(height, level - 1));
+        }
+        return levels;
+    }
+
+    /**
+     * Halves each dimension that is larger than one pixel. An odd last row or column is dropped.
+     */
+    static byte[] downsample(byte[] rgba, int width, int height) {
+        int newWidth = Math.max(1, width / 2);
+        int newHeight = Math.max(1, height / 2);
+        int stepX = width > 1 ? 1 : 0;
+        int stepY = height > 1 ? 1 : 0;
+        byte[] downsampled = new byte[newWidth * newHeight * 4];
+        for (int y = 0; y < newHeight; y++) {
+            int row0 = (y * 2 * stepY) * width;
+            int row1 = (y * 2 * stepY + stepY) * width;
+            for (int x = 0; x < newWidth; x++) {
+                int column0 = x * 2 * stepX;
+                int column1 = column0 + stepX;
+                for (int channel = 0; channel < 4; channel++) {
+                    int sum = (rgba[(row0 + column0) * 4 + channel] & 0xff)
+                            + (rgba[(row0 + column1) * 4 + channel] & 0xff)
+                            + (rgba[(row1 + column0) * 4 + channel] & 0xff)
+                            + (rgba[(row1 + column1) * 4 + channel] & 0xff);
+                    downsampled[(y * newWidth + x) * 4 + channel] = (byte) ((sum + 2) / 4);
+                }
+            }
+        }
+        return downsampled;
+    }
+
+    private static float lerp(float from, float to, float fraction) {
+        return from + (to - from) * fraction;
+    }
+}
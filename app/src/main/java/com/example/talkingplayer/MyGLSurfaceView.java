@@ -7,56 +7,49 @@ import android.view.MotionEvent;
 class MyGLSurfaceView extends GLSurfaceView {
     private final float TOUCH_SCALE_FACTOR = 180.0f / 320;
     private CubeActivityRenderer renderer;
-    private float previousX;
-    private float previousY;
+    private final RenderScheduler renderScheduler;
+    private final TouchRotationController rotationController;
 
     public MyGLSurfaceView(Context context) {
         super(context);
         // Create an OpenGL ES 2.0 context
         setEGLContextClientVersion(2);
 
-        renderer = new CubeActivityRenderer();
+        renderer = new CubeActivityRenderer(context);
         // Set the Renderer for drawing on the GLSurfaceView
         setRenderer(renderer);
-        // Render the view only when there is a change in the drawing data
-        setRenderMode(GLSurfaceView.RENDERMODE_WHEN_DIRTY);
+        // Render the view only when there is a change in the drawing data, at most once per vsync
+        renderScheduler = new RenderScheduler(this);
+        rotationController = new TouchRotationController(this, renderScheduler, renderer, TOUCH_SCALE_FACTOR);
 
 
     }
 
-    @Override
-    public boolean onTouchEvent(MotionEvent e) {
-        // MotionEvent reports input details from the touch screen
-        // and other input controls. In this case, you are only
-        // interested in events where the touch position changed.
-
-        float x = e.getX();
-        float y = e.getY();
-
-        switch (e.getAction()) {
-            case MotionEvent.ACTION_MOVE:
-
-                float dx = x - previousX;
-                float dy = y - previousY;
+    public FrameTimer getFrameTimer() {
+        return renderer.getFrameTimer();
+    }
 
-                // reverse direction of rotation above the mid-line
-                if (y > getHeight() / 2) {
-                    dx = dx * -1;
-                }
+    @Override
+    public void onResume() {
+        super.onResume();
+        renderScheduler.resume();
+    }
 
-                // reverse direction of rotation to left of the mid-line
-                if (x < getWidth() / 2) {
-                    dy = dy * -1;
-                }
+    @Override
+    public void onPause() {
+        renderScheduler.pause();
+        super.onPause();
+    }
 
-                renderer.setAngle(
-                        renderer.getAngle() +
-                                ((dx + dy) * TOUCH_SCALE_FACTOR));
-                requestRender();
-        }
+    public RenderScheduler getRenderScheduler() {
+        return renderScheduler;
+    }
 
-        previousX = x;
-        previousY = y;
+    @Override
+    public boolean onTouchEvent(MotionEvent e) {
+        // MotionEvent reports input details from the touch screen
+        // and other input controls. Dragging turns the cube.
+        rotationController.onTouchEvent(e);
         return true;
     }
 
@@ -1,11 +1,8 @@
 package com.example.talkingplayer;
 
 import android.content.Context;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.opengl.GLES20;
-import android.opengl.GLUtils;
-import android.opengl.Matrix;
+import android.util.Log;
 
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
@@ -28,29 +25,24 @@ import static android.opengl.GLES20.GL_TEXTURE_MIN_FILTER;
 import static android.opengl.GLES20.GL_TEXTURE_WRAP_S;
 import static android.opengl.GLES20.GL_TEXTURE_WRAP_T;
 import static android.opengl.GLES20.GL_UNSIGNED_BYTE;
-import static android.opengl.GLES20.glGenerateMipmap;
-import static android.opengl.GLES20.glTexImage2D;
 import static android.opengl.GLES30.GL_TEXTURE_WRAP_R;
 import static com.example.talkingplayer.SphereRenderer.checkGLError;
-import static com.example.talkingplayer.SphereRenderer.linkVertexAndFragmentShaders;
-import static com.example.talkingplayer.SphereRenderer.loadFragmentShader;
-import static com.example.talkingplayer.SphereRenderer.loadVertexShader;
 import static javax.microedition.khronos.opengles.GL11ExtensionPack.GL_TEXTURE_CUBE_MAP;
 
 public class NightSky {
     private final static String TAG = NightSky.class.getSimpleName();
-    private static final int BYTES_PER_FLOAT = 4;
     private static final short BYTES_PER_SHORT = 2;
-    private final int mBytesPerFloat = 4;
-    private final int mStrideBytes = 3 * mBytesPerFloat;
+    private static final int PLACEHOLDER_COLOR = 0x000000ff;
+    private static final TextureSampling SKY_SAMPLING = TextureSampling.trilinear(
+            GLES20.GL_CLAMP_TO_EDGE, GLES20.GL_CLAMP_TO_EDGE, 2f);
     private final int mPositionDataSize = 3;
     private final int mColorDataSize = 4;
-    private final int[] ints = new int[5];
+    // position, normal and color interleaved; the cube map is sampled with the position itself
+    private final int mPositionOffset = 0;
+    private final int mNormalOffset = 3;
+    private final int mColorOffset = 6;
 
-    private FloatBuffer coordinateDataBuffer;
-    private ShortBuffer indicesDataBuffer;
-    private FloatBuffer normalDataBuffer;
-    private FloatBuffer colorDataBuffer;
+    private InterleavedMesh mMesh;
 
     private int mProgramHandle;
     private int mMVPMatrixHandle;
@@ -61,9 +53,8 @@ public class NightSky {
     private int mUniformTextureHandle;
     private int mNormalHandle;
     private int mLightPosHandle;
-    private int mSkyTextureDataHandle;
-    private float[] mMVPMatrix = new float[16];
-    private float[] mMVMatrix = new float[16];
+    private final GlStateCache mState;
+    private final TextureRegistry.Handle mSkyTexture;
     private float[] lightSourcePosition = new float[]{0, 0, 0};
     final String fragmentShader =
             "precision mediump float;       \n"        // Set the default precision to medium. We don't need as high of a
@@ -121,9 +112,11 @@ public class NightSky {
                     + "}                                                          \n";
 
 
-    public NightSky(Context context) {
+    public NightSky(Context context, GlCapabilities capabilities, GlStateCache state, ShaderCache shaderCache,
+                    TextureRegistry textureRegistry) {
+        mState = state;
 
-        GLES20.glEnable(GLES20.GL_TEXTURE_CUBE_MAP);
+        state.getGl().glEnable(GLES20.GL_TEXTURE_CUBE_MAP);
         final float[] coordinateData = new float[]{
                 5.0f, 5.0f, -5.0f,
                 -5.0f, 5.0f, -5.0f,
@@ -172,39 +165,19 @@ public class NightSky {
                 1.0f, 1.0f, 1.0f, 1.0f
         };
 
-        coordinateDataBuffer = ByteBuffer
-                .allocateDirect(coordinateData.length * BYTES_PER_FLOAT).order(ByteOrder.nativeOrder())
-                .asFloatBuffer();
-        coordinateDataBuffer.put(coordinateData).position(0);
-
-        indicesDataBuffer = ByteBuffer
-                .allocateDirect(indicesData.length * BYTES_PER_FLOAT).order(ByteOrder.nativeOrder())
-                .asShortBuffer();
-        indicesDataBuffer.put(indicesData).position(0);
-
-        normalDataBuffer = ByteBuffer
-                .allocateDirect(normalData.length * BYTES_PER_FLOAT).order(ByteOrder.nativeOrder())
-                .asFloatBuffer();
-        normalDataBuffer.put(normalData).position(0);
-
-        colorDataBuffer = ByteBuffer
-                .allocateDirect(colorData.length * BYTES_PER_FLOAT).order(ByteOrder.nativeOrder())
-                .asFloatBuffer();
-        colorDataBuffer.put(colorData).position(0);
-
-        mProgramHandle = linkVertexAndFragmentShaders(loadVertexShader(vertexShader),
-                loadFragmentShader(fragmentShader));
+        ShaderProgram program = shaderCache.get(vertexShader, fragmentShader);
+        mProgramHandle = program.getProgramHandle();
 
         // Set program handles. These will later be used to pass in values to the program.
-        mMVPMatrixHandle = GLES20.glGetUniformLocation(mProgramHandle, "u_MVPMatrix");
-        mMVMatrixHandle = GLES20.glGetUniformLocation(mProgramHandle, "u_MVMatrix");
-        mPositionHandle = GLES20.glGetAttribLocation(mProgramHandle, "a_Position");
-        mColorHandle = GLES20.glGetAttribLocation(mProgramHandle, "a_Color");
-        mTextureHandle = GLES20.glGetAttribLocation(mProgramHandle, "a_TexCoordinate");
-        mUniformTextureHandle = GLES20.glGetUniformLocation(mProgramHandle, "cubemap");
-        mNormalHandle = GLES20.glGetAttribLocation(mProgramHandle, "a_Normal");
-        mLightPosHandle = GLES20.glGetUniformLocation(mProgramHandle, "u_LightPos");
-        checkGLError(TAG, "Handles Created");
+        mMVPMatrixHandle = program.getUniformLocation("u_MVPMatrix");
+        mMVMatrixHandle = program.getUniformLocation("u_MVMatrix");
+        mPositionHandle = program.getAttribLocation("a_Position");
+        mColorHandle = program.getAttribLocation("a_Color");
+        mTextureHandle = program.getAttribLocation("a_TexCoordinate");
+        mUniformTextureHandle = program.getUniformLocation("cubemap");
+        mNormalHandle = program.getAttribLocation("a_Normal");
+        mLightPosHandle = program.getUniformLocation("u_LightPos");
+        checkGLError(mState.getGl(), TAG, "Handles Created");
         int[] images = new int[]{
                 R.drawable.night_sky1,
                 R.drawable.night_sky1,
@@ -212,123 +185,60 @@ public class NightSky {
                 R.drawable.night_sky1,
                 R.drawable.night_sky1,
                 R.drawable.night_sky1};
-        mSkyTextureDataHandle = loadCubeMapTexture(context, images);
-        checkGLError(TAG, "Texture Loaded");
-
-        GLES20.glEnableVertexAttribArray(mPositionHandle);
-        GLES20.glEnableVertexAttribArray(mColorHandle);
-        GLES20.glEnableVertexAttribArray(mNormalHandle);
-        GLES20.glEnableVertexAttribArray(mTextureHandle);
-
-        GLES20.glGenBuffers(5, ints, 0);
-
-        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, ints[0]);
-        GLES20.glBufferData(GLES20.GL_ARRAY_BUFFER, coordinateDataBuffer.capacity() * 4,
-                coordinateDataBuffer, GLES20.GL_STATIC_DRAW);
-        checkGLError(TAG, "Vertex Buffer Binded");
-        GLES20.glEnableVertexAttribArray(mPositionHandle);
-        checkGLError(TAG, "position Handle enabled");
-
-
-        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, ints[1]);
-        GLES20.glBufferData(GLES20.GL_ARRAY_BUFFER, coordinateDataBuffer.capacity() * 4,
-                coordinateDataBuffer, GLES20.GL_STATIC_DRAW);
-        GLES20.glEnableVertexAttribArray(mTextureHandle);
-        checkGLError(TAG, "texture Handle Enabled");
-
-        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, ints[2]);
-        GLES20.glBufferData(GLES20.GL_ARRAY_BUFFER, normalDataBuffer.capacity() * 4,
-                normalDataBuffer, GLES20.GL_STATIC_DRAW);
-        checkGLError(TAG, "Normal Buffer Binded");
-        GLES20.glEnableVertexAttribArray(mNormalHandle);
-        checkGLError(TAG, "Normal Handle enabled");
-
-        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, ints[3]);
-        GLES20.glBufferData(GLES20.GL_ARRAY_BUFFER, colorDataBuffer.capacity() * 4,
-                colorDataBuffer, GLES20.GL_STATIC_DRAW);
-        checkGLError(TAG, "Color Buffer Binded");
-        GLES20.glEnableVertexAttribArray(mColorHandle);
-        checkGLError(TAG, "color Handle enabled");
+        // The sky stays black until its faces are decoded
+        mSkyTexture = textureRegistry.acquireCubeMap(context, images, SKY_SAMPLING, PLACEHOLDER_COLOR);
+
+        VertexLayout layout = new VertexLayout.Builder()
+                .add(mPositionHandle, mPositionDataSize, mPositionOffset)
+                .add(mTextureHandle, mPositionDataSize, mPositionOffset)
+                .add(mNormalHandle, mPositionDataSize, mNormalOffset)
+                .add(mColorHandle, mColorDataSize, mColorOffset)
+                .build();
+        int vertexCount = coordinateData.length / mPositionDataSize;
+        FloatBuffer vertexDataBuffer = ByteBuffer
+                .allocateDirect(vertexCount * layout.getStrideBytes()).order(ByteOrder.nativeOrder())
+                .asFloatBuffer();
+        layout.put(vertexDataBuffer, mPositionHandle, coordinateData);
+        layout.put(vertexDataBuffer, mNormalHandle, normalData);
+        layout.put(vertexDataBuffer, mColorHandle, colorData);
 
-        GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, ints[4]);
-        GLES20.glBufferData(GLES20.GL_ELEMENT_ARRAY_BUFFER, indicesDataBuffer.capacity() * 2,
-                indicesDataBuffer, GLES20.GL_STATIC_DRAW);
+        ShortBuffer indicesDataBuffer = ByteBuffer
+                .allocateDirect(indicesData.length * BYTES_PER_SHORT).order(ByteOrder.nativeOrder())
+                .asShortBuffer();
+        indicesDataBuffer.put(indicesData).position(0);
+        Log.d(TAG, "Sky box: " + MeshOptimizer.optimize(indicesDataBuffer, vertexDataBuffer,
+                layout.getStrideFloats(), vertexCount));
 
+        mMesh = new InterleavedMesh(state, capabilities, layout, vertexDataBuffer, indicesDataBuffer);
+        checkGLError(mState.getGl(), TAG, "Buffers Binded");
     }
 
-    public void draw(float[] mModelMatrix, float[] mViewMatrix, float[] mProjectionMatrix) {
+    public void draw(FrameUniforms.Transform transform) {
 
         // use the mProgramHandle for which everything has been set up in init
-        GLES20.glUseProgram(mProgramHandle);
-
-        // the only operation that need to be continuously done here
-        Matrix.multiplyMM(mMVMatrix, 0, mViewMatrix, 0, mModelMatrix, 0);
-        Matrix.multiplyMM(mMVPMatrix, 0, mProjectionMatrix, 0, mMVMatrix, 0);
-        GLES20.glUniform3f(mLightPosHandle, lightSourcePosition[0], lightSourcePosition[1], lightSourcePosition[2]);
-        GLES20.glUniformMatrix4fv(mMVMatrixHandle, 1, false, mMVMatrix, 0);
-        GLES20.glUniformMatrix4fv(mMVPMatrixHandle, 1, false, mMVPMatrix, 0);
-
-        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, ints[0]);
-        GLES20.glVertexAttribPointer(mPositionHandle, mPositionDataSize, GLES20.GL_FLOAT,
-                false, mStrideBytes, 0);
-
-        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, ints[1]);
-        GLES20.glVertexAttribPointer(mTextureHandle, 3,
-                GLES20.GL_FLOAT, false, 12, 0);
+        mState.useProgram(mProgramHandle);
 
-        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, ints[2]);
-        GLES20.glVertexAttribPointer(mNormalHandle, mPositionDataSize, GLES20.GL_FLOAT,
-                false, mStrideBytes, 0);
-        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, ints[3]);
-        GLES20.glVertexAttribPointer(mColorHandle, mColorDataSize, GLES20.GL_FLOAT,
-                false, 16, 0);
+        mState.uniform3f(mLightPosHandle, lightSourcePosition[0], lightSourcePosition[1], lightSourcePosition[2]);
+        // rebuilt only when the transform or the camera changed, and not uploaded again if they didn't
+        mState.uniformMatrix4fv(mMVMatrixHandle, 1, false, transform.getMVMatrix(), 0);
+        mState.uniformMatrix4fv(mMVPMatrixHandle, 1, false, transform.getMVPMatrix(), 0);
 
         // Set the active texture unit to texture unit 0.
-        GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
+        mState.activeTexture(GLES20.GL_TEXTURE0);
         // Bind the texture to this unit.
-        GLES20.glBindTexture(GLES20.GL_TEXTURE_CUBE_MAP, mSkyTextureDataHandle);
-        GLES20.glUniform1i(mUniformTextureHandle, 0);
+        mState.bindTexture(GLES20.GL_TEXTURE_CUBE_MAP, mSkyTexture.getTextureId());
+        mState.uniform1i(mUniformTextureHandle, 0);
 
         //Draw
-        GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, ints[4]);
-        GLES20.glDrawElements(GLES20.GL_TRIANGLES, indicesDataBuffer.capacity(), GLES20.GL_UNSIGNED_SHORT, 0);
-        checkGLError(TAG, "Elements Drawn");
+        mMesh.draw(GLES20.GL_TRIANGLES);
+        checkGLError(mState.getGl(), TAG, "Elements Drawn");
     }
 
-    private int loadCubeMapTexture(Context context, int[] resourceIds) {
-        final int[] textureHandle = new int[1];
-
-        GLES20.glGenTextures(1, textureHandle, 0);
-
-        if (textureHandle[0] != 0) {
-            final BitmapFactory.Options options = new BitmapFactory.Options();
-            options.inScaled = false;   // No pre-scaling
-            // Bind to the texture in OpenGL
-            GLES20.glBindTexture(GLES20.GL_TEXTURE_CUBE_MAP, textureHandle[0]);
-            // Set filtering
-            GLES20.glTexParameteri(GL_TEXTURE_CUBE_MAP, GL_TEXTURE_MAG_FILTER, GL_LINEAR);
-            GLES20.glTexParameteri(GL_TEXTURE_CUBE_MAP, GL_TEXTURE_WRAP_R, GL_CLAMP_TO_EDGE);
-            GLES20.glTexParameteri(GL_TEXTURE_CUBE_MAP, GL_TEXTURE_WRAP_S, GL_CLAMP_TO_EDGE);
-            GLES20.glTexParameteri(GL_TEXTURE_CUBE_MAP, GL_TEXTURE_WRAP_T, GL_CLAMP_TO_EDGE);
-
-            for (int i = 0; i < resourceIds.length; i++) {
-                // Read in the resource
-                final Bitmap bitmap = BitmapFactory.decodeResource(context.getResources(), resourceIds[i], options);
-                // Load the bitmap into the bound texture.
-                GLUtils.texImage2D(GLES20.GL_TEXTURE_CUBE_MAP_POSITIVE_X + i, 0, bitmap, 0);
-                // Recycle the bitmap, since its data has been loaded into OpenGL.
-                bitmap.recycle();
-            }
-            glGenerateMipmap(GL_TEXTURE_CUBE_MAP);
-
-
-        }
-
-        if (textureHandle[0] == 0) {
-            throw new RuntimeException("Error loading texture.");
-        }
-
-        return textureHandle[0];
+    /**
+     * Gives the sky's cube map back to the registry. Draw no more afterwards.
+     */
+    public void release() {
+        mSkyTexture.release();
     }
 
 
@@ -0,0 +1,205 @@
+package com.example.talkingplayer;
+
+/**
+ * Fuses accelerometer, magnetometer and gyroscope readings into the device's attitude. The gyroscope is
+ * integrated for smooth, fast response; gravity and the magnetic field slowly pull its drift back, a
+ * nonlinear complementary filter after Mahony et al. Without a gyroscope the attitude still follows the
+ * other two, just more sluggishly.
+ * <p>
+ * The attitude rotates device coordinates into world coordinates, both as {@link android.hardware.Sensor}
+ * defines them: x east, y magnetic north, z up. Readings are in the units and axes of
+ * {@link android.hardware.SensorEvent#values}, timestamps in its nanoseconds. Use it on one thread; nothing
+ * here allocates.
+ */
+public class OrientationFilter {
+    private static final float NANOS_PER_SECOND = 1e9f;
+    // a longer gap between samples, e.g. after a pause, isn't integrated
+    private static final float MAX_STEP_SECONDS = 0.1f;
+    // how fast gravity and the magnetic field correct the gyroscope, per second
+    private static final float DEFAULT_GAIN = 2f;
+    private final float gain;
+    private final Quaternion attitude = new Quaternion();
+    private final Quaternion rate = new Quaternion();
+    // latest readings, normalized
+    private final float[] gravity = new float[3];
+    private final float[] magneticField = new float[3];
+    private final float[] scratch = new float[3];
+    private final float[] matrix = new float[16];
+    private boolean hasGravity;
+    private boolean hasMagneticField;
+    private boolean hasGyroscope;
+    private boolean initialized;
+    private long timestamp;
+
+    public OrientationFilter() {
+        this(DEFAULT_GAIN);
+    }
+
+    /**
+     * @param gain how strongly gravity and the magnetic field correct the gyroscope, in 1/s
+     */
+    public OrientationFilter(float gain) {
+        if (gain < 0) {
+            throw new IllegalArgumentException("Gain can't be negative, got " + gain);
+        }
+        this.gain = gain;
+    }
+
+    public void onAccelerometer(float x, float y, float z, long timestampNanos) {
+        hasGravity |= normalize(x, y, z, gravity);
+        if (!hasGyroscope) {
+            update(0f, 0f, 0f, timestampNanos);
+        }
+    }
+
+    public void onMagnetometer(float x, float y, float z) {
+        hasMagneticField |= normalize(x, y, z, magneticField);
+    }
+
+    /**
+     * @param x rotation rate around the device's x axis in rad/s, counter-clockwise
+     */
+    public void onGyroscope(float x, float y, float z, long timestampNanos) {
+        hasGyroscope = true;
+        update(x, y, z, timestampNanos);
+    }
+
+    /**
+     * @return true once the filter has had the readings to find an attitude
+     */
+    public boolean isInitialized() {
+        return initialized;
+    }
+
+    /**
+     * Copies the attitude, device to world, into {@code into}.
+     */
+    public void getAttitude(Quaternion into) {
+        into.set(attitude);
+    }
+
+    /**
+     * Writes azimuth, pitch and roll in radians into {@code angles}, as
+     * {@link android.hardware.SensorManager#getOrientation(float[], float[])} does.
+     */
+    public void getOrientationAngles(float[] angles) {
+        attitude.toMatrix(matrix, 0);
+        // row-major R[r][c] is matrix[c * 4 + r]
+        angles[0] = (float) Math.atan2(matrix[4], matrix[5]);
+        angles[1] = (float) Math.asin(-Math.max(-1f, Math.min(matrix[6], 1f)));
+        angles[2] = (float) Math.atan2(-matrix[2], matrix[10]);
+    }
+
+    private static boolean normalize(float x, float y, float z, float[] into) {
+        float length = (float) Math.sqrt(x * x + y * y + z * z);
+        if (length == 0) {
+            return false;
+        }
+        into[0] = x / length;
+        into[1] = y / length;
+        into[2] = z / length;
+        return true;
+    }
+
+    private void update(float gx, float gy, float gz, long timestampNanos) {
+        if (!initialized) {
+            if (hasGravity) {
+                align();
+                initialized = true;
+                timestamp = timestampNanos;
+            }
+            return;
+        }
+        float dt = (timestampNanos - timestamp) / NANOS_PER_SECOND;
+        timestamp = timestampNanos;
+        if (dt <= 0 || dt > MAX_STEP_SECONDS) {
+            return;
+        }
+        float x = attitude.x;
+        float y = attitude.y;
+        float z = attitude.z;
+        float w = attitude.w;
+        float ex = 0f;
+        float ey = 0f;
+        float ez = 0f;
+        if (hasGravity) {
+            // where up should be seen from the device, the world's z axis in device coordinates
+            float upX = 2 * (x * z - w * y);
+            float upY = 2 * (y * z + w * x);
+            float upZ = 1 - 2 * (x * x + y * y);
+            ex += gravity[1] * upZ - gravity[2] * upY;
+            ey += gravity[2] * upX - gravity[0] * upZ;
+            ez += gravity[0] * upY - gravity[1] * upX;
+        }
+        if (hasMagneticField) {
+            // the field in world coordinates, turned to point north so only its heading corrects
+            scratch[0] = magneticField[0];
+            scratch[1] = magneticField[1];
+            scratch[2] = magneticField[2];
+            attitude.rotate(scratch, 0);
+            float north = (float) Math.sqrt(scratch[0] * scratch[0] + scratch[1] * scratch[1]);
+            float vertical = scratch[2];
+            // and back in device coordinates, from the world's y and z axes
+            float fieldX = north * 2 * (x * y + w * z) + vertical * 2 * (x * z - w * y);
+            float fieldY = north * (1 - 2 * (x * x + z * z)) + vertical * 2 * (y * z + w * x);
+            float fieldZ = north * 2 * (y * z - w * x) + vertical * (1 - 2 * (x * x + y * y));
+            ex += magneticField[1] * fieldZ - magneticField[2] * fieldY;
+            ey += magneticField[2] * fieldX - magneticField[0] * fieldZ;
+            ez += magneticField[0] * fieldY - magneticField[1] * fieldX;
+        }
+        gx += gain * ex;
+        gy += gain * ey;
+        gz += gain * ez;
+        // attitude' = attitude * (gx, gy, gz, 0) / 2
+        rate.set(gx, gy, gz, 0f).multiply(attitude, rate);
+        float halfDt = dt / 2;
+        attitude.set(x + rate.x * halfDt, y + rate.y * halfDt, z + rate.z * halfDt, w + rate.w * halfDt)
+                .normalize();
+    }
+
+    /**
+     * Starts from the attitude gravity and the magnetic field point to, facing north without the latter.
+     */
+    private void align() {
+        float ax = gravity[0];
+        float ay = gravity[1];
+        float az = gravity[2];
+        // east = field x up, as SensorManager.getRotationMatrix finds it
+        float mx = hasMagneticField ? magneticField[0] : 0f;
+        float my = hasMagneticField ? magneticField[1] : 1f;
+        float mz = hasMagneticField ? magneticField[2] : 0f;
+        float eastX = my * az - mz * ay;
+        float eastY = mz * ax - mx * az;
+        float eastZ = mx * ay - my * ax;
+        float eastLength = (float) Math.sqrt(eastX * eastX + eastY * eastY + eastZ * eastZ);
+        if (eastLength < 1e-3f) {
+            // the field is vertical or missing along gravity, any heading will do
+            eastX = az;
+            eastY = 0f;
+            eastZ = -ax;
+            eastLength = (float) Math.sqrt(eastX * eastX + eastZ * eastZ);
+            if (eastLength < 1e-3f) {
+                eastX = 1f;
+                eastLength = 1f;
+            }
+        }
+        eastX /= eastLength;
+        eastY /= eastLength;
+        eastZ /= eastLength;
+        // north = up x east
+        float northX = ay * eastZ - az * eastY;
+        float northY = az * eastX - ax * eastZ;
+        float northZ = ax * eastY - ay * eastX;
+        // the rows of the device to world rotation are east, north and up
+        matrix[0] = eastX;
+        matrix[4] = eastY;
+        matrix[8] = eastZ;
+        matrix[1] = northX;
+        matrix[5] = northY;
+        matrix[9] = northZ;
+        matrix[2] = ax;
+        matrix[6] = ay;
+        matrix[10] = az;
+        attitude.setFromMatrix(matrix, 0);
+    }
+}
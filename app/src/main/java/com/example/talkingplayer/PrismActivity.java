@@ -18,6 +18,8 @@ public class PrismActivity extends AppCompatActivity implements View.OnClickList
     @BindView(R.id.fab_prism)
     FloatingActionButton fab_prism;
     private GLSurfaceView glSurfaceView;
+    private RenderScheduler renderScheduler;
+    private FrameStatsOverlay frameStatsOverlay;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -35,23 +37,42 @@ public class PrismActivity extends AppCompatActivity implements View.OnClickList
             // Request an OpenGL ES 2.0 compatible context.
             glSurfaceView.setEGLContextClientVersion(2);
             // Set the renderer to our demo renderer, defined below.
-            glSurfaceView.setRenderer(new PrismActivityRenderer());
+            PrismActivityRenderer renderer = new PrismActivityRenderer(this);
+            glSurfaceView.setRenderer(renderer);
+            // the prism turns with time, so it animates for as long as it is shown
+            renderScheduler = new RenderScheduler(glSurfaceView);
+            renderScheduler.setMaxFrameRate(RenderScheduler.getMaxFrameRate(getIntent()));
+            renderScheduler.beginAnimation();
+            setContentView(glSurfaceView);
+            frameStatsOverlay = FrameStatsOverlay.attachIfRequested(this, renderer.getFrameTimer());
+        } else {
+            setContentView(glSurfaceView);
         }
 
-        setContentView(glSurfaceView);
-
     }
 
     @Override
     protected void onResume() {   // The activity must call the GL surface view's onResume() on activity onResume().
         super.onResume();
         glSurfaceView.onResume();
+        if (renderScheduler != null) {
+            renderScheduler.resume();
+        }
+        if (frameStatsOverlay != null) {
+            frameStatsOverlay.start();
+        }
     }
 
     @Override
     protected void onPause() {   // The activity must call the GL surface view's onPause() on activity onPause().
         super.onPause();
+        if (renderScheduler != null) {
+            renderScheduler.pause();
+        }
         glSurfaceView.onPause();
+        if (frameStatsOverlay != null) {
+            frameStatsOverlay.stop();
+        }
     }
 
     @Override
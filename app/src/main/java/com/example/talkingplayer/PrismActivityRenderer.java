@@ -1,18 +1,22 @@
 package com.example.talkingplayer;
 
+import android.content.Context;
 import android.opengl.GLES20;
 import android.opengl.GLSurfaceView;
 import android.opengl.Matrix;
 import android.os.SystemClock;
+import android.util.Log;
 
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
 
 import javax.microedition.khronos.egl.EGLConfig;
 import javax.microedition.khronos.opengles.GL10;
 
 public class PrismActivityRenderer implements GLSurfaceView.Renderer {
+    private final static String TAG = PrismActivityRenderer.class.getSimpleName();
     // New class members
     final String fragmentShader =
             "precision mediump float;       \n"     // Set the default precision to medium. We don't need as high of a precision in the fragment shader.
@@ -22,11 +26,13 @@ public class PrismActivityRenderer implements GLSurfaceView.Renderer {
                     + "   gl_FragColor = v_Color;     \n"     // Pass the color directly through the pipeline.
                     + "}                              \n";
     /**
-     * Store our model data in a float buffer.
+     * The three triangles with their shared corners welded into one indexed triangle list.
      */
-    private final FloatBuffer mTriangle1Vertices;
-    private final FloatBuffer mTriangle2Vertices;
-    private final FloatBuffer mTriangle3Vertices;
+    private final MeshOptimizer.IndexedMesh mPrism;
+    /**
+     * The prism uploaded to GL, created once the surface exists.
+     */
+    private InterleavedMesh mPrismMesh;
     /**
      * How many bytes per float.
      */
@@ -46,10 +52,6 @@ public class PrismActivityRenderer implements GLSurfaceView.Renderer {
                     + "   gl_Position = u_MVPMatrix   \n"     // gl_Position is a special variable used to store the final position.
                     + "               * a_Position;   \n"     // Multiply the vertex by the matrix to get the final point in
                     + "}                              \n";    // normalized screen coordinates.
-    /**
-     * How many elements per vertex.
-     */
-    private final int mStrideBytes = 7 * mBytesPerFloat;
     /**
      * Offset of the position data.
      */
@@ -70,9 +72,10 @@ public class PrismActivityRenderer implements GLSurfaceView.Renderer {
      */
     private final int mColorDataSize = 4;
     private float[] mViewMatrix = new float[16];
-    //shader
-    private int vertexShaderHandle;
-    private int fragmentShaderHandle;
+    private final Context context;
+    private final Gl gl;
+    private GlStateCache state;
+    private final FrameTimer frameTimer = new FrameTimer("Prism");
     //program to link vertex and fragment shaders
     private int programHandle;
     /**
@@ -102,7 +105,13 @@ public class PrismActivityRenderer implements GLSurfaceView.Renderer {
     private float[] mMVPMatrix = new float[16];
 
 
-    public PrismActivityRenderer() {
+    public PrismActivityRenderer(Context context) {
+        this(context, new AndroidGl());
+    }
+
+    public PrismActivityRenderer(Context context, Gl gl) {
+        this.context = context;
+        this.gl = gl;
         // This triangle is red, green, and blue.
         final float[] triangle1VerticesData = {
                 // X, Y, Z,
@@ -141,24 +150,21 @@ public class PrismActivityRenderer implements GLSurfaceView.Renderer {
                 184.0f / 256.0f, 115.0f / 256.0f, 51.0f / 256.0f, 1.0f};
 
 
-        // Initialize the bufferId.
-        mTriangle1Vertices = ByteBuffer.allocateDirect(triangle1VerticesData.length * mBytesPerFloat)
-                .order(ByteOrder.nativeOrder()).asFloatBuffer();
-        mTriangle1Vertices.put(triangle1VerticesData).position(0);
-
-        mTriangle2Vertices = ByteBuffer.allocateDirect(triangle2VerticesData.length * mBytesPerFloat)
-                .order(ByteOrder.nativeOrder()).asFloatBuffer();
-        mTriangle2Vertices.put(triangle2VerticesData).position(0);
-        mTriangle3Vertices = ByteBuffer.allocateDirect(triangle3VerticesData.length * mBytesPerFloat)
-                .order(ByteOrder.nativeOrder()).asFloatBuffer();
-        mTriangle3Vertices.put(triangle3VerticesData).position(0);
-
+        final int floatsPerVertex = mPositionDataSize + mColorDataSize;
+        final float[] prismVerticesData = new float[triangle1VerticesData.length + triangle2VerticesData.length
+                + triangle3VerticesData.length];
+        System.arraycopy(triangle1VerticesData, 0, prismVerticesData, 0, triangle1VerticesData.length);
+        System.arraycopy(triangle2VerticesData, 0, prismVerticesData, triangle1VerticesData.length,
+                triangle2VerticesData.length);
+        System.arraycopy(triangle3VerticesData, 0, prismVerticesData,
+                triangle1VerticesData.length + triangle2VerticesData.length, triangle3VerticesData.length);
+        mPrism = MeshOptimizer.weld(prismVerticesData, floatsPerVertex);
     }
 
     @Override
     public void onSurfaceCreated(GL10 gl10, EGLConfig eglConfig) {
         // Set the background clear color to gray.
-        GLES20.glClearColor(0.5f, 0.5f, 0.5f, 0.5f);
+        gl.glClearColor(0.5f, 0.5f, 0.5f, 0.5f);
 
 
         // Position the eye behind the origin.
@@ -180,22 +186,39 @@ public class PrismActivityRenderer implements GLSurfaceView.Renderer {
         // NOTE: In OpenGL 1, a ModelView matrix is used, which is a combination of a model and
         // view matrix. In OpenGL 2, we can keep track of these matrices separately if we choose.
         Matrix.setLookAtM(mViewMatrix, 0, eyeX, eyeY, eyeZ, lookX, lookY, lookZ, upX, upY, upZ);
-        loadVertexShader();
-        loadFragmentShader();
-        linkVertexAndFragmentShaders();
+        GlCapabilities capabilities = GlCapabilities.query(gl);
+        frameTimer.onSurfaceCreated(gl, capabilities);
+        ShaderProgram program = new ShaderCache(gl, context, capabilities).get(vertexShader, fragmentShader);
+        programHandle = program.getProgramHandle();
         // Set program handles. These will later be used to pass in values to the program.
-        mMVPMatrixHandle = GLES20.glGetUniformLocation(programHandle, "u_MVPMatrix");
-        mPositionHandle = GLES20.glGetAttribLocation(programHandle, "a_Position");
-        mColorHandle = GLES20.glGetAttribLocation(programHandle, "a_Color");
+        mMVPMatrixHandle = program.getUniformLocation("u_MVPMatrix");
+        mPositionHandle = program.getAttribLocation("a_Position");
+        mColorHandle = program.getAttribLocation("a_Color");
 
         // Tell OpenGL to use this program when rendering.
-        GLES20.glUseProgram(programHandle);
+        state = new GlStateCache(gl, capabilities);
+        state.useProgram(programHandle);
+
+        // Initialize the buffers.
+        FloatBuffer prismVertices = ByteBuffer.allocateDirect(mPrism.vertices.length * mBytesPerFloat)
+                .order(ByteOrder.nativeOrder()).asFloatBuffer();
+        prismVertices.put(mPrism.vertices).position(0);
+        ShortBuffer prismIndices = ByteBuffer.allocateDirect(mPrism.indices.length * 2)
+                .order(ByteOrder.nativeOrder()).asShortBuffer();
+        prismIndices.put(mPrism.indices).position(0);
+        Log.d(TAG, "Prism: " + MeshOptimizer.optimize(prismIndices, prismVertices, mPrism.strideFloats,
+                mPrism.getVertexCount()));
+        VertexLayout layout = new VertexLayout.Builder()
+                .add(mPositionHandle, mPositionDataSize, mPositionOffset)
+                .add(mColorHandle, mColorDataSize, mColorOffset)
+                .build();
+        mPrismMesh = new InterleavedMesh(state, capabilities, layout, prismVertices, prismIndices);
     }
 
     @Override
     public void onSurfaceChanged(GL10 gl10, int width, int height) {
         // Set the OpenGL viewport to the same size as the surface.
-        GLES20.glViewport(0, 0, width, height);
+        gl.glViewport(0, 0, width, height);
 
         // Create a new perspective projection matrix. The height will stay the same
         // while the width will vary as per aspect ratio.
@@ -212,6 +235,7 @@ public class PrismActivityRenderer implements GLSurfaceView.Renderer {
 
     @Override
     public void onDrawFrame(GL10 gl10) {
+        frameTimer.beginFrame();
         //GLES20.glClear(GLES20.GL_DEPTH_BUFFER_BIT | GLES20.GL_COLOR_BUFFER_BIT);
 
         // Do a complete rotation every 10 seconds.
@@ -221,121 +245,18 @@ public class PrismActivityRenderer implements GLSurfaceView.Renderer {
         // Draw the triangle facing straight on.
         Matrix.setIdentityM(mModelMatrix, 0);
         Matrix.rotateM(mModelMatrix, 0, angleInDegrees, 0.0f, 1.0f, 0.0f);
-        drawTriangle(mTriangle1Vertices);
-        drawTriangle(mTriangle2Vertices);
-        drawTriangle(mTriangle3Vertices);
-    }
-
-    private void loadVertexShader() {
-        // Load in the vertex shader.
-        vertexShaderHandle = GLES20.glCreateShader(GLES20.GL_VERTEX_SHADER);
-
-        if (vertexShaderHandle != 0) {
-            // Pass in the shader source.
-            GLES20.glShaderSource(vertexShaderHandle, vertexShader);
-
-            // Compile the shader.
-            GLES20.glCompileShader(vertexShaderHandle);
-
-            // Get the compilation status.
-            final int[] compileStatus = new int[1];
-            GLES20.glGetShaderiv(vertexShaderHandle, GLES20.GL_COMPILE_STATUS, compileStatus, 0);
-
-            // If the compilation failed, delete the shader.
-            if (compileStatus[0] == 0) {
-                GLES20.glDeleteShader(vertexShaderHandle);
-                vertexShaderHandle = 0;
-            }
-        }
-
-        if (vertexShaderHandle == 0) {
-            throw new RuntimeException("Error creating vertex shader.");
-        }
-
-    }
-
-    private void loadFragmentShader() {
-        // Load in the vertex shader.
-        fragmentShaderHandle = GLES20.glCreateShader(GLES20.GL_FRAGMENT_SHADER);
-
-        if (fragmentShaderHandle != 0) {
-            // Pass in the shader source.
-            GLES20.glShaderSource(fragmentShaderHandle, fragmentShader);
-
-            // Compile the shader.
-            GLES20.glCompileShader(fragmentShaderHandle);
-
-            // Get the compilation status.
-            final int[] compileStatus = new int[1];
-            GLES20.glGetShaderiv(fragmentShaderHandle, GLES20.GL_COMPILE_STATUS, compileStatus, 0);
-
-            // If the compilation failed, delete the shader.
-            if (compileStatus[0] == 0) {
-                GLES20.glDeleteShader(fragmentShaderHandle);
-                fragmentShaderHandle = 0;
-            }
-        }
-
-        if (fragmentShaderHandle == 0) {
-            throw new RuntimeException("Error creating fragment shader.");
-        }
-
+        drawPrism();
+        frameTimer.endFrame();
     }
 
-    private void linkVertexAndFragmentShaders() {
-        // Create a program object and store the handle to it.
-        programHandle = GLES20.glCreateProgram();
-
-        if (programHandle != 0) {
-            // Bind the vertex shader to the program.
-            GLES20.glAttachShader(programHandle, vertexShaderHandle);
-
-            // Bind the fragment shader to the program.
-            GLES20.glAttachShader(programHandle, fragmentShaderHandle);
-
-            // Bind attributes
-            GLES20.glBindAttribLocation(programHandle, 0, "a_Position");
-            GLES20.glBindAttribLocation(programHandle, 1, "a_Color");
-
-            // Link the two shaders together into a program.
-            GLES20.glLinkProgram(programHandle);
-
-            // Get the link status.
-            final int[] linkStatus = new int[1];
-            GLES20.glGetProgramiv(programHandle, GLES20.GL_LINK_STATUS, linkStatus, 0);
-
-            // If the link failed, delete the program.
-            if (linkStatus[0] == 0) {
-                GLES20.glDeleteProgram(programHandle);
-                programHandle = 0;
-            }
-        }
-
-        if (programHandle == 0) {
-            throw new RuntimeException("Error creating program.");
-        }
+    public FrameTimer getFrameTimer() {
+        return frameTimer;
     }
 
     /**
-     * Draws a triangle from the given vertex data.
-     *
-     * @param aTriangleBuffer The buffer containing the vertex data.
+     * Draws all three triangles of the prism with a single draw call.
      */
-    private void drawTriangle(final FloatBuffer aTriangleBuffer) {
-        // Pass in the position information
-        aTriangleBuffer.position(mPositionOffset);
-        GLES20.glVertexAttribPointer(mPositionHandle, mPositionDataSize, GLES20.GL_FLOAT, false,
-                mStrideBytes, aTriangleBuffer);
-
-        GLES20.glEnableVertexAttribArray(mPositionHandle);
-
-        // Pass in the color information
-        aTriangleBuffer.position(mColorOffset);
-        GLES20.glVertexAttribPointer(mColorHandle, mColorDataSize, GLES20.GL_FLOAT, false,
-                mStrideBytes, aTriangleBuffer);
-
-        GLES20.glEnableVertexAttribArray(mColorHandle);
-
+    private void drawPrism() {
         // This multiplies the view matrix by the model matrix, and stores the result in the MVP matrix
         // (which currently contains model * view).
         Matrix.multiplyMM(mMVPMatrix, 0, mViewMatrix, 0, mModelMatrix, 0);
@@ -344,13 +265,8 @@ public class PrismActivityRenderer implements GLSurfaceView.Renderer {
         // (which now contains model * view * projection).
         Matrix.multiplyMM(mMVPMatrix, 0, mProjectionMatrix, 0, mMVPMatrix, 0);
 
-        GLES20.glUniformMatrix4fv(mMVPMatrixHandle, 1, false, mMVPMatrix, 0);
-        GLES20.glDrawArrays(GLES20.GL_TRIANGLES, 0, 3);
-        // Pass in the position information
-        aTriangleBuffer.position(mPositionOffset);
-        GLES20.glVertexAttribPointer(mPositionHandle, mPositionDataSize, GLES20.GL_FLOAT, false,
-                mStrideBytes, aTriangleBuffer);
-        GLES20.glEnableVertexAttribArray(mPositionHandle);
+        state.uniformMatrix4fv(mMVPMatrixHandle, 1, false, mMVPMatrix, 0);
+        mPrismMesh.draw(GLES20.GL_TRIANGLES);
     }
 
 
@@ -0,0 +1,122 @@
+package com.example.talkingplayer;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Keeps linked program binaries in files of a directory, one per key. No GL calls, so what ends up on
+ * disk can be tested on the JVM.
+ * <p>
+ * A file holds a magic number, the driver's binary format, the binary's length and the binary. Files that
+ * are missing, truncated or otherwise unreadable read as no binary, so the caller compiles from source.
+ */
+public class ProgramBinaryStore {
+    private static final int MAGIC = 0x54505342; // "TPSB"
+    private static final String SUFFIX = ".bin";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private final File directory;
+
+    public ProgramBinaryStore(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * @return a file name safe digest of {@code parts}, which should include everything that makes a
+     * binary invalid when it changes: the shader sources, attribute bindings and the driver
+     */
+    public static String getKey(String... parts) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        for (String part : parts) {
+            digest.update(String.valueOf(part).getBytes(UTF_8));
+            // keeps ("ab", "c") apart from ("a", "bc")
+            digest.update((byte) 0);
+        }
+        StringBuilder key = new StringBuilder();
+        for (byte b : digest.digest()) {
+            key.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return key.toString();
+    }
+
+    /**
+     * @return the binary stored under {@code key} in a direct buffer, null if there is none that reads
+     */
+    public Binary read(String key) {
+        File file = getFile(key);
+        if (!file.isFile()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            if (in.readInt() != MAGIC) {
+                return null;
+            }
+            int format = in.readInt();
+            int length = in.readInt();
+            if (length <= 0 || length > file.length()) {
+                return null;
+            }
+            byte[] bytes = new byte[length];
+            in.readFully(bytes);
+            ByteBuffer data = ByteBuffer.allocateDirect(length).order(ByteOrder.nativeOrder());
+            data.put(bytes).position(0);
+            return new Binary(format, data);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Stores {@code data} from its position to its limit. The file is renamed into place, so a reader
+     * never sees half a binary.
+     */
+    public void write(String key, int format, ByteBuffer data) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Can't create " + directory);
+        }
+        byte[] bytes = new byte[data.remaining()];
+        data.duplicate().get(bytes);
+        File temporary = new File(directory, key + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(temporary))) {
+            out.writeInt(MAGIC);
+            out.writeInt(format);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+        if (!temporary.renameTo(getFile(key))) {
+            temporary.delete();
+            throw new IOException("Can't store program binary " + key);
+        }
+    }
+
+    public void delete(String key) {
+        getFile(key).delete();
+    }
+
+    private File getFile(String key) {
+        return new File(directory, key + SUFFIX);
+    }
+
+    public static final class Binary {
+        public final int format;
+        public final ByteBuffer data;
+
+        Binary(int format, ByteBuffer data) {
+            this.format = format;
+            this.data = data;
+        }
+    }
+}
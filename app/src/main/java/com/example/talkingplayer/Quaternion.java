@@ -0,0 +1,199 @@
+package com.example.talkingplayer;
+
+/**
+ * A rotation as a unit quaternion. Mutable so it can be reused every frame; nothing here allocates.
+ */
+public final class Quaternion {
+    public float x;
+    public float y;
+    public float z;
+    public float w = 1f;
+
+    public Quaternion setIdentity() {
+        return set(0f, 0f, 0f, 1f);
+    }
+
+    public Quaternion set(float x, float y, float z, float w) {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.w = w;
+        return this;
+    }
+
+    public Quaternion set(Quaternion q) {
+        return set(q.x, q.y, q.z, q.w);
+    }
+
+    /**
+     * A rotation by {@code degrees} counter-clockwise around the axis, which needn't be normalized. A zero
+     * axis is no rotation.
+     */
+    public Quaternion setAxisAngle(float axisX, float axisY, float axisZ, float degrees) {
+        double length = Math.sqrt(axisX * axisX + axisY * axisY + axisZ * axisZ);
+        if (length == 0) {
+            return setIdentity();
+        }
+        double halfAngle = Math.toRadians(degrees) / 2;
+        double scale = Math.sin(halfAngle) / length;
+        return set((float) (axisX * scale), (float) (axisY * scale), (float) (axisZ * scale),
+                (float) Math.cos(halfAngle));
+    }
+
+    /**
+     * The shortest rotation taking the unit vector {@code from} to the unit vector {@code to}.
+     */
+    public Quaternion setArc(float[] from, float[] to) {
+        float dot = from[0] * to[0] + from[1] * to[1] + from[2] * to[2];
+        if (dot < -0.999999f) {
+            // opposite vectors, any perpendicular axis does
+            float axisX = 0f;
+            float axisY = -from[2];
+            float axisZ = from[1];
+            if (axisY * axisY + axisZ * axisZ < 1e-6f) {
+                axisX = from[2];
+                axisY = 0f;
+                axisZ = -from[0];
+            }
+            return setAxisAngle(axisX, axisY, axisZ, 180f);
+        }
+        // half way between no rotation and twice the rotation, (cross, 1 + dot) normalized
+        set(from[1] * to[2] - from[2] * to[1], from[2] * to[0] - from[0] * to[2],
+                from[0] * to[1] - from[1] * to[0], 1f + dot);
+        return normalize();
+    }
+
+    /**
+     * Sets this to {@code a * b}: the rotation {@code b} followed by {@code a}. Either may be this.
+     */
+    public Quaternion multiply(Quaternion a, Quaternion b) {
+        return set(a.w * b.x + a.x * b.w + a.y * b.z - a.z * b.y,
+                a.w * b.y - a.x * b.z + a.y * b.w + a.z * b.x,
+                a.w * b.z + a.x * b.y - a.y * b.x + a.z * b.w,
+                a.w * b.w - a.x * b.x - a.y * b.y - a.z * b.z);
+    }
+
+    /**
+     * Scales back to unit length, which rounding errors drift away from as rotations are chained.
+     */
+    public Quaternion normalize() {
+        double length = Math.sqrt(x * x + y * y + z * z + w * w);
+        if (length == 0) {
+            return setIdentity();
+        }
+        return set((float) (x / length), (float) (y / length), (float) (z / length), (float) (w / length));
+    }
+
+    /**
+     * Turns this into the opposite rotation, which for a unit quaternion is its inverse.
+     */
+    public Quaternion conjugate() {
+        return set(-x, -y, -z, w);
+    }
+
+    /**
+     * Rotates the vector at {@code offset} in place.
+     */
+    public void rotate(float[] v, int offset) {
+        float vx = v[offset];
+        float vy = v[offset + 1];
+        float vz = v[offset + 2];
+        // v + 2w (q x v) + 2 q x (q x v)
+        float tx = 2 * (y * vz - z * vy);
+        float ty = 2 * (z * vx - x * vz);
+        float tz = 2 * (x * vy - y * vx);
+        v[offset] = vx + w * tx + (y * tz - z * ty);
+        v[offset + 1] = vy + w * ty + (z * tx - x * tz);
+        v[offset + 2] = vz + w * tz + (x * ty - y * tx);
+    }
+
+    /**
+     * Writes the rotation as a column-major 4x4 matrix, as {@link android.opengl.Matrix} expects.
+     */
+    public void toMatrix(float[] m, int offset) {
+        float xx = x * x;
+        float yy = y * y;
+        float zz = z * z;
+        float xy = x * y;
+        float xz = x * z;
+        float yz = y * z;
+        float wx = w * x;
+        float wy = w * y;
+        float wz = w * z;
+        m[offset] = 1 - 2 * (yy + zz);
+        m[offset + 1] = 2 * (xy + wz);
+        m[offset + 2] = 2 * (xz - wy);
+        m[offset + 3] = 0;
+        m[offset + 4] = 2 * (xy - wz);
+        m[offset + 5] = 1 - 2 * (xx + zz);
+        m[offset + 6] = 2 * (yz + wx);
+        m[offset + 7] = 0;
+        m[offset + 8] = 2 * (xz + wy);
+        m[offset + 9] = 2 * (yz - wx);
+        m[offset + 10] = 1 - 2 * (xx + yy);
+        m[offset + 11] = 0;
+        m[offset + 12] = 0;
+        m[offset + 13] = 0;
+        m[offset + 14] = 0;
+        m[offset + 15] = 1;
+    }
+
+    /**
+     * Sets the rotation a column-major 4x4 matrix like {@link #toMatrix(float[], int)} writes describes.
+     * Its upper 3x3 part must be orthonormal.
+     */
+    public Quaternion setFromMatrix(float[] m, int offset) {
+        float m00 = m[offset];
+        float m10 = m[offset + 1];
+        float m20 = m[offset + 2];
+        float m01 = m[offset + 4];
+        float m11 = m[offset + 5];
+        float m21 = m[offset + 6];
+        float m02 = m[offset + 8];
+        float m12 = m[offset + 9];
+        float m22 = m[offset + 10];
+        float trace = m00 + m11 + m22;
+        // divide by the largest component, the others are found more precisely from it
+        if (trace > 0) {
+            float s = (float) Math.sqrt(trace + 1) * 2;
+            set((m21 - m12) / s, (m02 - m20) / s, (m10 - m01) / s, s / 4);
+        } else if (m00 > m11 && m00 > m22) {
+            float s = (float) Math.sqrt(1 + m00 - m11 - m22) * 2;
+            set(s / 4, (m01 + m10) / s, (m02 + m20) / s, (m21 - m12) / s);
+        } else if (m11 > m22) {
+            float s = (float) Math.sqrt(1 + m11 - m00 - m22) * 2;
+            set((m01 + m10) / s, s / 4, (m12 + m21) / s, (m02 - m20) / s);
+        } else {
+            float s = (float) Math.sqrt(1 + m22 - m00 - m11) * 2;
+            set((m02 + m20) / s, (m12 + m21) / s, s / 4, (m10 - m01) / s);
+        }
+        return normalize();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Quaternion)) {
+            return false;
+        }
+        Quaternion other = (Quaternion) o;
+        return Float.compare(x, other.x) == 0 && Float.compare(y, other.y) == 0
+                && Float.compare(z, other.z) == 0 && Float.compare(w, other.w) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = Float.floatToIntBits(x);
+        result = 31 * result + Float.floatToIntBits(y);
+        result = 31 * result + Float.floatToIntBits(z);
+        result = 31 * result + Float.floatToIntBits(w);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "Quaternion(" + x + ", " + y + ", " + z + ", " + w + ")";
+    }
+}
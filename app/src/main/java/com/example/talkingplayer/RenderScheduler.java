@@ -0,0 +1,183 @@
+package com.example.talkingplayer;
+
+import android.content.Intent;
+import android.opengl.GLSurfaceView;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+import android.view.Display;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Paces a {@link GLSurfaceView} by vsync instead of letting it render continuously or on every event.
+ * A frame is rendered on the next vsync after {@link #requestFrame()}, however often it was called, and
+ * on every vsync while an animation runs, down to the frame rate cap. With nothing to do no vsync
+ * callback is even scheduled, so an idle view costs nothing.
+ * <p>
+ * Use it on the main thread, except {@link #requestFrame()} which may be called from anywhere.
+ */
+public class RenderScheduler implements Choreographer.FrameCallback {
+    /**
+     * Caps the frame rate of the activity it's passed to, in frames per second, e.g. {@code adb shell am
+     * start -n com.example.talkingplayer/.SphereActivity --ei com.example.talkingplayer.MAX_FRAME_RATE 30}.
+     */
+    public static final String EXTRA_MAX_FRAME_RATE = "com.example.talkingplayer.MAX_FRAME_RATE";
+    public static final int FRAME_RATE_UNCAPPED = 0;
+    private static final float DEFAULT_REFRESH_RATE = 60f;
+    private final GLSurfaceView view;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final AtomicBoolean requestPosted = new AtomicBoolean();
+    private final Runnable postedRequest = new Runnable() {
+        @Override
+        public void run() {
+            requestPosted.set(false);
+            requestFrame();
+        }
+    };
+    private final List<FrameListener> frameListeners = new ArrayList<>();
+    private FramePacer pacer;
+    private int maxFrameRate = FRAME_RATE_UNCAPPED;
+    private int animations;
+    private boolean frameRequested;
+    private boolean resumed;
+    private boolean callbackPosted;
+
+    /**
+     * Takes over deciding when {@code view} renders, call it once the view has its renderer.
+     */
+    public RenderScheduler(GLSurfaceView view) {
+        this.view = view;
+        view.setRenderMode(GLSurfaceView.RENDERMODE_WHEN_DIRTY);
+    }
+
+    /**
+     * @return the frame rate cap {@code intent} asks for, {@link #FRAME_RATE_UNCAPPED} if none
+     */
+    public static int getMaxFrameRate(Intent intent) {
+        return intent.getIntExtra(EXTRA_MAX_FRAME_RATE, FRAME_RATE_UNCAPPED);
+    }
+
+    /**
+     * @param maxFrameRate frames per second at most, typically 30, 60, 90 or 120, or
+     *                     {@link #FRAME_RATE_UNCAPPED} for every vsync
+     */
+    public void setMaxFrameRate(int maxFrameRate) {
+        if (maxFrameRate < 0) {
+            throw new IllegalArgumentException("Frame rate cap can't be negative, got " + maxFrameRate);
+        }
+        this.maxFrameRate = maxFrameRate;
+        if (pacer != null) {
+            pacer.setMaxFrameRate(maxFrameRate);
+        }
+    }
+
+    /**
+     * Starts scheduling frames again, call from the activity's onResume with the view's.
+     */
+    public void resume() {
+        resumed = true;
+        // the display may have changed, and its refresh rate with it
+        Display display = view.getDisplay();
+        float refreshRate = display != null ? display.getRefreshRate() : DEFAULT_REFRESH_RATE;
+        pacer = new FramePacer(refreshRate > 0 ? refreshRate : DEFAULT_REFRESH_RATE);
+        pacer.setMaxFrameRate(maxFrameRate);
+        // whatever the surface showed may be gone
+        frameRequested = true;
+        scheduleVsync();
+    }
+
+    /**
+     * Stops scheduling frames, call from the activity's onPause with the view's.
+     */
+    public void pause() {
+        resumed = false;
+        if (callbackPosted) {
+            Choreographer.getInstance().removeFrameCallback(this);
+            callbackPosted = false;
+        }
+    }
+
+    /**
+     * Renders a frame on the next vsync, for input or anything else that changed what is shown. Calls
+     * until then are coalesced into that one frame.
+     */
+    public void requestFrame() {
+        if (Looper.myLooper() != Looper.getMainLooper()) {
+            if (requestPosted.compareAndSet(false, true)) {
+                mainHandler.post(postedRequest);
+            }
+            return;
+        }
+        frameRequested = true;
+        scheduleVsync();
+    }
+
+    /**
+     * Renders on every vsync, up to the cap, until the matching {@link #endAnimation()}. Animations nest.
+     */
+    public void beginAnimation() {
+        animations++;
+        scheduleVsync();
+    }
+
+    public void endAnimation() {
+        if (animations == 0) {
+            throw new IllegalStateException("No animation is running");
+        }
+        animations--;
+    }
+
+    /**
+     * Lets {@code listener} update what the next frame shows right before it is rendered.
+     */
+    public void addFrameListener(FrameListener listener) {
+        frameListeners.add(listener);
+    }
+
+    public void removeFrameListener(FrameListener listener) {
+        frameListeners.remove(listener);
+    }
+
+    /**
+     * @return true while no frame is wanted
+     */
+    public boolean isIdle() {
+        return !frameRequested && animations == 0;
+    }
+
+    private void scheduleVsync() {
+        if (resumed && !callbackPosted && !isIdle()) {
+            Choreographer.getInstance().postFrameCallback(this);
+            callbackPosted = true;
+        }
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        callbackPosted = false;
+        if (!resumed || isIdle()) {
+            return;
+        }
+        if (pacer.onVsync(frameTimeNanos)) {
+            frameRequested = false;
+            for (int i = 0; i < frameListeners.size(); i++) {
+                frameListeners.get(i).onFrame(frameTimeNanos);
+            }
+            view.requestRender();
+        }
+        scheduleVsync();
+    }
+
+    /**
+     * Called on the main thread once per rendered frame.
+     */
+    public interface FrameListener {
+        /**
+         * @param frameTimeNanos of the vsync the frame is rendered on, in the {@link System#nanoTime()} base
+         */
+        void onFrame(long frameTimeNanos);
+    }
+}
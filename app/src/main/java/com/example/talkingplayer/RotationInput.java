@@ -0,0 +1,67 @@
+package com.example.talkingplayer;
+
+/**
+ * Collects rotation from touch input between frames and hands it out once per frame, together with the
+ * rotation of a fling that slows down exponentially once the finger lifts. Use it on one thread.
+ */
+class RotationInput {
+    private static final long NONE = Long.MIN_VALUE;
+    // a fling below this many degrees per second has come to rest
+    private static final float REST_VELOCITY = 1f;
+    private final double timeConstantSeconds;
+    private float pendingDegrees;
+    private float velocity;
+    private long lastFrameNanos = NONE;
+
+    /**
+     * @param timeConstantSeconds how long a fling takes to slow down to 1/e of its velocity
+     */
+    RotationInput(double timeConstantSeconds) {
+        if (timeConstantSeconds <= 0) {
+            throw new IllegalArgumentException("Time constant must be positive, got " + timeConstantSeconds);
+        }
+        this.timeConstantSeconds = timeConstantSeconds;
+    }
+
+    void addDelta(float degrees) {
+        pendingDegrees += degrees;
+    }
+
+    /**
+     * Keeps rotating at {@code degreesPerSecond}, slowing down from the next frame on.
+     */
+    void fling(float degreesPerSecond) {
+        velocity = Math.abs(degreesPerSecond) < REST_VELOCITY ? 0 : degreesPerSecond;
+        lastFrameNanos = NONE;
+    }
+
+    void stopFling() {
+        velocity = 0;
+    }
+
+    boolean isFlinging() {
+        return velocity != 0;
+    }
+
+    /**
+     * @return degrees to rotate by in the frame at {@code frameTimeNanos}: everything added since the
+     * previous frame, plus how far the fling turned in between
+     */
+    float consume(long frameTimeNanos) {
+        float degrees = pendingDegrees;
+        pendingDegrees = 0;
+        if (velocity != 0) {
+            if (lastFrameNanos != NONE) {
+                // the integral of v * e^(-t / tau) over the time since the previous frame
+                double decay = Math.exp(-(frameTimeNanos - lastFrameNanos) / 1e9 / timeConstantSeconds);
+                degrees += (float) (velocity * timeConstantSeconds * (1 - decay));
+                velocity *= decay;
+                if (Math.abs(velocity) < REST_VELOCITY) {
+                    velocity = 0;
+                }
+            }
+            lastFrameNanos = frameTimeNanos;
+        }
+        return degrees;
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.talkingplayer;
+
+/**
+ * Decides how often sensors are sampled and how long the hardware may hold samples back in its FIFO,
+ * from whether anyone looks at them and how fast the device moves. Hidden, samples are few and come in
+ * large batches; shown on a device at rest, a few per frame do; while it moves, enough to follow it.
+ * Slowing down waits for the device to have settled for a while, so a brief pause in moving doesn't
+ * make the rate flap.
+ */
+final class SamplingPolicy {
+    static final int LEVEL_HIDDEN = 0;
+    static final int LEVEL_STILL = 1;
+    static final int LEVEL_MOVING = 2;
+    // per level, in microseconds as SensorManager takes them
+    private static final int[] SAMPLING_PERIODS_US = {200000, 60000, 10000};
+    private static final int[] MAX_REPORT_LATENCIES_US = {2000000, 200000, 50000};
+    private final float movingThreshold;
+    private final float stillThreshold;
+    private final long settleNanos;
+    private boolean visible;
+    private boolean moving;
+    // when the motion last was above the still threshold
+    private long lastMotionNanos;
+
+    /**
+     * @param movingThreshold motion above which the device counts as moving
+     * @param stillThreshold  motion below which it may count as still again, lower than the other
+     * @param settleNanos     how long motion must stay below that for it to
+     */
+    SamplingPolicy(float movingThreshold, float stillThreshold, long settleNanos) {
+        if (stillThreshold > movingThreshold) {
+            throw new IllegalArgumentException("Still threshold " + stillThreshold
+                    + " is above moving threshold " + movingThreshold);
+        }
+        this.movingThreshold = movingThreshold;
+        this.stillThreshold = stillThreshold;
+        this.settleNanos = settleNanos;
+    }
+
+    static int getSamplingPeriodUs(int level) {
+        return SAMPLING_PERIODS_US[level];
+    }
+
+    static int getMaxReportLatencyUs(int level) {
+        return MAX_REPORT_LATENCIES_US[level];
+    }
+
+    void setVisible(boolean visible) {
+        this.visible = visible;
+    }
+
+    /**
+     * @param magnitude how fast the device moves, e.g. the gyroscope's rate in rad/s
+     */
+    void onMotion(float magnitude, long timestampNanos) {
+        if (magnitude > stillThreshold) {
+            lastMotionNanos = timestampNanos;
+        }
+        if (magnitude > movingThreshold) {
+            moving = true;
+        } else if (moving && timestampNanos - lastMotionNanos >= settleNanos) {
+            moving = false;
+        }
+    }
+
+    int getLevel() {
+        if (!visible) {
+            return LEVEL_HIDDEN;
+        }
+        return moving ? LEVEL_MOVING : LEVEL_STILL;
+    }
+}
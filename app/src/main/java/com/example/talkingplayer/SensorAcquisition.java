@@ -0,0 +1,229 @@
+package com.example.talkingplayer;
+
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import android.hardware.SensorEventListener;
+import android.hardware.SensorManager;
+import android.os.Handler;
+import android.util.Log;
+import android.util.SparseArray;
+
+import java.io.IOException;
+
+/**
+ * Listens to a few sensors on a sensor thread, at rates a {@link SamplingPolicy} adapts to visibility and
+ * motion. Sensors with a hardware FIFO batch their samples, so the app is woken for a batch rather than for
+ * every sample. Events only copy their sample into a {@link SensorRingBuffer}; the consumer is handed the
+ * whole batch once the events of a wakeup are dispatched.
+ * <p>
+ * Call {@link #add(int)}, {@link #start()}, {@link #stop()} and {@link #setVisible(boolean)} on the main
+ * thread; the consumer is called on the sensor thread.
+ */
+public class SensorAcquisition implements SensorEventListener {
+    private final static String TAG = SensorAcquisition.class.getSimpleName();
+    // a second of the fastest sensor at the fastest rate, and then some
+    private static final int RING_CAPACITY = 512;
+    // motion in rad/s from the gyroscope, or in m/s^2 off gravity from the accelerometer without one
+    private static final float MOVING_THRESHOLD = 0.5f;
+    private static final float STILL_THRESHOLD = 0.15f;
+    private static final long SETTLE_NANOS = 2000000000L;
+    private final SensorManager sensorManager;
+    private final Handler sensorHandler;
+    private final Consumer consumer;
+    private final SparseArray<Sensor> sensors = new SparseArray<>();
+    private final SensorRingBuffer samples = new SensorRingBuffer(RING_CAPACITY);
+    // only touched on the sensor thread from here
+    private final SamplingPolicy policy = new SamplingPolicy(MOVING_THRESHOLD, STILL_THRESHOLD, SETTLE_NANOS);
+    private int registeredLevel = -1;
+    private boolean drainPosted;
+    private volatile boolean visible;
+    private volatile boolean started;
+    private volatile SensorRecorder recorder;
+    private final Runnable drain = new Runnable() {
+        @Override
+        public void run() {
+            drainPosted = false;
+            consumer.onSamples(samples);
+            applyPolicy();
+        }
+    };
+    private final Runnable applyPolicy = new Runnable() {
+        @Override
+        public void run() {
+            applyPolicy();
+        }
+    };
+
+    /**
+     * @param sensorHandler of the sensor thread, where events are delivered and the consumer called
+     */
+    public SensorAcquisition(SensorManager sensorManager, Handler sensorHandler, Consumer consumer) {
+        this.sensorManager = sensorManager;
+        this.sensorHandler = sensorHandler;
+        this.consumer = consumer;
+    }
+
+    /**
+     * Listens to the default sensor of {@code sensorType} from the next {@link #start()} on.
+     *
+     * @return false if there is none
+     */
+    public boolean add(int sensorType) {
+        Sensor sensor = sensorManager.getDefaultSensor(sensorType);
+        if (sensor == null) {
+            return false;
+        }
+        if (sensor.getFifoMaxEventCount() == 0) {
+            Log.d(TAG, sensor.getName() + " can't batch, every sample wakes us");
+        }
+        sensors.put(sensorType, sensor);
+        return true;
+    }
+
+    /**
+     * Records every sample from the next {@link #start()} on. The recorder is closed on the sensor thread once
+     * acquisition stops.
+     */
+    public void setRecorder(SensorRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    private static void close(SensorRecorder recorder) {
+        try {
+            recorder.close();
+            Log.d(TAG, "Recorded " + recorder.getSampleCount() + " samples in " + recorder.getSize() + " bytes");
+        } catch (IOException e) {
+            Log.e(TAG, "Can't finish the sensor recording", e);
+        }
+    }
+
+    private void recordSample(SensorRecorder recorder, int sensorType, long timestamp, float[] values) {
+        try {
+            recorder.recordSample(sensorType, timestamp, values);
+        } catch (IOException e) {
+            stopRecording(recorder, e);
+        }
+    }
+
+    private void recordAccuracy(SensorRecorder recorder, int sensorType, int accuracy) {
+        try {
+            recorder.recordAccuracy(sensorType, accuracy);
+        } catch (IOException e) {
+            stopRecording(recorder, e);
+        }
+    }
+
+    private void stopRecording(SensorRecorder recorder, IOException e) {
+        Log.e(TAG, "Sensor recording failed, stopped recording", e);
+        this.recorder = null;
+        close(recorder);
+    }
+
+    public void start() {
+        started = true;
+        sensorHandler.post(applyPolicy);
+    }
+
+    public void stop() {
+        started = false;
+        final SensorRecorder stoppedRecorder = recorder;
+        recorder = null;
+        sensorHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                sensorManager.unregisterListener(SensorAcquisition.this);
+                registeredLevel = -1;
+                // after the last sample it could have been handed
+                if (stoppedRecorder != null) {
+                    close(stoppedRecorder);
+                }
+            }
+        });
+    }
+
+    /**
+     * Whether the samples are shown, they come faster and in smaller batches if they are.
+     */
+    public void setVisible(boolean visible) {
+        this.visible = visible;
+        sensorHandler.post(applyPolicy);
+    }
+
+    /**
+     * (Re-)registers the sensors at the level the policy asks for, if it changed.
+     */
+    private void applyPolicy() {
+        if (!started) {
+            return;
+        }
+        policy.setVisible(visible);
+        int level = policy.getLevel();
+        if (level == registeredLevel) {
+            return;
+        }
+        if (registeredLevel >= 0) {
+            sensorManager.unregisterListener(this);
+        }
+        int samplingPeriodUs = SamplingPolicy.getSamplingPeriodUs(level);
+        int maxReportLatencyUs = SamplingPolicy.getMaxReportLatencyUs(level);
+        for (int i = 0; i < sensors.size(); i++) {
+            // sensors without a FIFO ignore the latency
+            sensorManager.registerListener(this, sensors.valueAt(i), samplingPeriodUs, maxReportLatencyUs,
+                    sensorHandler);
+        }
+        Log.d(TAG, "Sampling every " + samplingPeriodUs + "us, batched up to " + maxReportLatencyUs + "us");
+        registeredLevel = level;
+    }
+
+    @Override
+    public void onSensorChanged(SensorEvent event) {
+        int sensorType = event.sensor.getType();
+        float[] values = event.values;
+        samples.offer(sensorType, event.timestamp, values);
+        SensorRecorder recorder = this.recorder;
+        if (recorder != null) {
+            recordSample(recorder, sensorType, event.timestamp, values);
+        }
+        if (sensorType == Sensor.TYPE_GYROSCOPE) {
+            policy.onMotion(length(values[0], values[1], values[2]), event.timestamp);
+        } else if (sensorType == Sensor.TYPE_ACCELEROMETER && sensors.get(Sensor.TYPE_GYROSCOPE) == null) {
+            policy.onMotion(Math.abs(length(values[0], values[1], values[2]) - SensorManager.GRAVITY_EARTH),
+                    event.timestamp);
+        }
+        // runs after the rest of the events this wakeup delivers
+        if (!drainPosted) {
+            drainPosted = true;
+            sensorHandler.post(drain);
+        }
+    }
+
+    private static float length(float x, float y, float z) {
+        return (float) Math.sqrt(x * x + y * y + z * z);
+    }
+
+    @Override
+    public void onAccuracyChanged(Sensor sensor, int accuracy) {
+        SensorRecorder recorder = this.recorder;
+        if (recorder != null) {
+            recordAccuracy(recorder, sensor.getType(), accuracy);
+        }
+        // samples that arrived before the change are delivered before it, as SensorReplayer does
+        if (drainPosted) {
+            sensorHandler.removeCallbacks(drain);
+            drain.run();
+        }
+        consumer.onAccuracyChanged(sensor.getType(), accuracy);
+    }
+
+    /**
+     * Takes samples in bulk, on the sensor thread.
+     */
+    public interface Consumer {
+        /**
+         * Polls the samples that arrived since the last call; what's left is offered again next time.
+         */
+        void onSamples(SensorRingBuffer samples);
+
+        void onAccuracyChanged(int sensorType, int accuracy);
+    }
+}
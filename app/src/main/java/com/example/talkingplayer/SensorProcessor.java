@@ -0,0 +1,85 @@
+package com.example.talkingplayer;
+
+import android.hardware.Sensor;
+
+/**
+ * What the sensor dashboard does with samples: publishes the latest of each sensor and fuses them all into
+ * the device orientation. Needs nothing of Android at runtime, so {@link SensorReplayer} can drive it off
+ * the device. Runs on the sensor thread.
+ */
+public class SensorProcessor implements SensorAcquisition.Consumer {
+    // rows of the readings
+    public static final int ROW_ACCELEROMETER = 0;
+    public static final int ROW_MAGNETOMETER = 1;
+    public static final int ROW_GYROSCOPE = 2;
+    public static final int ROW_ORIENTATION = 3;
+    public static final int ROW_COUNT = 4;
+    private final SensorReadings readings;
+    private final Runnable onUpdated;
+    private final SensorRingBuffer.Sample sample = new SensorRingBuffer.Sample();
+    private final OrientationFilter orientationFilter = new OrientationFilter();
+    private final float[] orientationAngles = new float[3];
+
+    /**
+     * @param readings  where the latest values go, with {@link #ROW_COUNT} rows
+     * @param onUpdated called after every batch and accuracy change, e.g. to show the readings
+     */
+    public SensorProcessor(SensorReadings readings, Runnable onUpdated) {
+        if (readings.getRowCount() != ROW_COUNT) {
+            throw new IllegalArgumentException("Readings need " + ROW_COUNT + " rows, got " + readings.getRowCount());
+        }
+        this.readings = readings;
+        this.onUpdated = onUpdated;
+    }
+
+    @Override
+    public void onSamples(SensorRingBuffer samples) {
+        while (samples.poll(sample)) {
+            int row = getRow(sample.sensorType);
+            if (row < 0) {
+                continue;
+            }
+            // all of them are filtered, only the latest is shown
+            readings.setValues(row, sample.values);
+            float[] values = sample.values;
+            if (row == ROW_ACCELEROMETER) {
+                orientationFilter.onAccelerometer(values[0], values[1], values[2], sample.timestamp);
+            } else if (row == ROW_MAGNETOMETER) {
+                orientationFilter.onMagnetometer(values[0], values[1], values[2]);
+            } else {
+                orientationFilter.onGyroscope(values[0], values[1], values[2], sample.timestamp);
+            }
+        }
+        if (orientationFilter.isInitialized()) {
+            // Express the fused attitude as three orientation angles.
+            orientationFilter.getOrientationAngles(orientationAngles);
+            readings.setValues(ROW_ORIENTATION, orientationAngles);
+        }
+        onUpdated.run();
+    }
+
+    @Override
+    public void onAccuracyChanged(int sensorType, int accuracy) {
+        int row = getRow(sensorType);
+        if (row >= 0) {
+            readings.setAccuracy(row, accuracy);
+            onUpdated.run();
+        }
+    }
+
+    /**
+     * @return the row of a {@link Sensor} type, -1 if it has none
+     */
+    public static int getRow(int sensorType) {
+        switch (sensorType) {
+            case Sensor.TYPE_ACCELEROMETER:
+                return ROW_ACCELEROMETER;
+            case Sensor.TYPE_MAGNETIC_FIELD:
+                return ROW_MAGNETOMETER;
+            case Sensor.TYPE_GYROSCOPE:
+                return ROW_GYROSCOPE;
+            default:
+                return -1;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.talkingplayer;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * The latest readings of a few sensors, handed from the thread sensor events arrive on to the UI thread.
+ * The sensor thread overwrites a row with every event; the UI thread copies them all out at most once per
+ * frame with {@link #read(Snapshot)}, which also tells which rows changed since it last did. Readings
+ * in between are simply superseded, the UI only ever shows the newest.
+ * <p>
+ * Guarded by a {@link SequenceLock} like {@link CameraState}: neither side locks or allocates and the
+ * writer never waits. There must be a single writing thread.
+ */
+public final class SensorReadings {
+    public static final int VALUES_PER_ROW = 3;
+    // the accuracy of a row until it is set
+    public static final int ACCURACY_UNSET = Integer.MIN_VALUE;
+    // the values of a row, then its accuracy
+    private static final int ROW_STRIDE = VALUES_PER_ROW + 1;
+    private final int rowCount;
+    private final SequenceLock lock = new SequenceLock();
+    // float bits and accuracies, every access is volatile so reads can't move outside the sequence checks
+    private final AtomicIntegerArray published;
+    // a bit per row written since the last read
+    private final AtomicInteger changedRows = new AtomicInteger();
+
+    public SensorReadings(int rowCount) {
+        if (rowCount < 1 || rowCount > Integer.SIZE) {
+            throw new IllegalArgumentException("Row count must be in [1, " + Integer.SIZE + "], got " + rowCount);
+        }
+        this.rowCount = rowCount;
+        published = new AtomicIntegerArray(rowCount * ROW_STRIDE);
+        for (int row = 0; row < rowCount; row++) {
+            published.set(row * ROW_STRIDE + VALUES_PER_ROW, ACCURACY_UNSET);
+        }
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Publishes up to {@link #VALUES_PER_ROW} of {@code values} as the row's latest, missing ones are zero.
+     */
+    public void setValues(int row, float[] values) {
+        int offset = row * ROW_STRIDE;
+        lock.beginWrite();
+        for (int i = 0; i < VALUES_PER_ROW; i++) {
+            published.set(offset + i, Float.floatToRawIntBits(i < values.length ? values[i] : 0f));
+        }
+        lock.endWrite();
+        markChanged(row);
+    }
+
+    /**
+     * @param accuracy one of SensorManager's SENSOR_STATUS constants
+     */
+    public void setAccuracy(int row, int accuracy) {
+        lock.beginWrite();
+        published.set(row * ROW_STRIDE + VALUES_PER_ROW, accuracy);
+        lock.endWrite();
+        markChanged(row);
+    }
+
+    private void markChanged(int row) {
+        int bit = 1 << row;
+        int changed;
+        do {
+            changed = changedRows.get();
+        } while ((changed & bit) == 0 && !changedRows.compareAndSet(changed, changed | bit));
+    }
+
+    /**
+     * Copies all rows into {@code snapshot}, from any one thread.
+     *
+     * @return a bit per row written since the last read, so unchanged rows needn't be shown again
+     */
+    public int read(Snapshot snapshot) {
+        // taken before copying: a row written meanwhile is copied anyway and just reported again next time
+        int changed = changedRows.getAndSet(0);
+        int sequence;
+        do {
+            sequence = lock.beginRead();
+            for (int row = 0; row < rowCount; row++) {
+                int offset = row * ROW_STRIDE;
+                for (int i = 0; i < VALUES_PER_ROW; i++) {
+                    snapshot.values[row][i] = Float.intBitsToFloat(published.get(offset + i));
+                }
+                snapshot.accuracies[row] = published.get(offset + VALUES_PER_ROW);
+            }
+        } while (lock.retryRead(sequence));
+        return changed;
+    }
+
+    /**
+     * The reader's copy of the readings, reused every frame.
+     */
+    public static final class Snapshot {
+        public final float[][] values;
+        public final int[] accuracies;
+
+        public Snapshot(int rowCount) {
+            values = new float[rowCount][VALUES_PER_ROW];
+            accuracies = new int[rowCount];
+            Arrays.fill(accuracies, ACCURACY_UNSET);
+        }
+    }
+}
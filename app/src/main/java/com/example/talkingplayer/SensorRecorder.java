@@ -0,0 +1,109 @@
+package com.example.talkingplayer;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import static com.example.talkingplayer.SensorRecording.KIND_ACCURACY;
+import static com.example.talkingplayer.SensorRecording.KIND_SAMPLE;
+import static com.example.talkingplayer.SensorRecording.MAX_RECORD_SIZE;
+import static com.example.talkingplayer.SensorRecording.MAX_VALUES;
+import static com.example.talkingplayer.SensorRecording.putVarint;
+import static com.example.talkingplayer.SensorRecording.zigzag;
+
+/**
+ * Records sensor events into a file in the {@link SensorRecording} format, for {@link SensorReplayer} to
+ * feed back later. Events are appended to a memory mapped window of the file, so recording one is a few
+ * stores and never a system call; only moving on to the next window maps again. Use it on one thread.
+ */
+public class SensorRecorder implements Closeable {
+    private static final int WINDOW_SIZE = 256 * 1024;
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final SensorRecording.State state = new SensorRecording.State();
+    private MappedByteBuffer window;
+    // where the window starts in the file
+    private long windowOffset;
+    private long sampleCount;
+
+    /**
+     * Starts a recording in {@code file}, replacing whatever was there.
+     */
+    public SensorRecorder(File file) throws IOException {
+        this.file = new RandomAccessFile(file, "rw");
+        channel = this.file.getChannel();
+        channel.truncate(0);
+        mapWindow(0);
+        window.putInt(SensorRecording.MAGIC);
+        window.putInt(SensorRecording.VERSION);
+    }
+
+    private void mapWindow(long offset) throws IOException {
+        windowOffset = offset;
+        window = channel.map(FileChannel.MapMode.READ_WRITE, offset, WINDOW_SIZE);
+        window.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Records a sample. The accuracy a SensorEvent carries isn't recorded, consumers only hear of it through
+     * onAccuracyChanged, which {@link #recordAccuracy(int, int)} records.
+     *
+     * @param values as many as the sensor reports, up to {@link SensorRecording#MAX_VALUES}
+     */
+    public void recordSample(int sensorType, long timestampNanos, float[] values) throws IOException {
+        ensureSpace();
+        int count = Math.min(values.length, MAX_VALUES);
+        putVarint(window, ((long) sensorType << 1) | KIND_SAMPLE);
+        putVarint(window, zigzag(timestampNanos - state.timestamp));
+        state.timestamp = timestampNanos;
+        putVarint(window, count);
+        int[] previous = state.getValueBits(sensorType);
+        for (int i = 0; i < count; i++) {
+            int bits = Float.floatToRawIntBits(values[i]);
+            putVarint(window, (bits ^ previous[i]) & 0xffffffffL);
+            previous[i] = bits;
+        }
+        sampleCount++;
+    }
+
+    public void recordAccuracy(int sensorType, int accuracy) throws IOException {
+        ensureSpace();
+        putVarint(window, ((long) sensorType << 1) | KIND_ACCURACY);
+        putVarint(window, zigzag(accuracy));
+    }
+
+    private void ensureSpace() throws IOException {
+        if (window.remaining() < MAX_RECORD_SIZE) {
+            mapWindow(windowOffset + window.position());
+        }
+    }
+
+    public long getSampleCount() {
+        return sampleCount;
+    }
+
+    /**
+     * @return how many bytes were recorded so far
+     */
+    public long getSize() {
+        return windowOffset + window.position();
+    }
+
+    /**
+     * Cuts the file down to what was recorded and closes it.
+     */
+    @Override
+    public void close() throws IOException {
+        long size = getSize();
+        window.force();
+        try {
+            channel.truncate(size);
+        } finally {
+            file.close();
+        }
+    }
+}
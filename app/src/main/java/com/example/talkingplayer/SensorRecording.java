@@ -0,0 +1,93 @@
+package com.example.talkingplayer;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * The format {@link SensorRecorder} writes and {@link SensorReplayer} reads, a stream of sensor events
+ * coded against the previous event so a recording takes a few bytes per sample. No Android dependencies.
+ * <pre>
+ * header    magic "TPSR", version                                       2 little endian ints
+ * sample    tag (sensor type &lt;&lt; 1), zigzag timestamp delta to the previous sample, value count,
+ *           per value its float bits xor the previous value of that sensor and index
+ * accuracy  tag (sensor type &lt;&lt; 1 | 1), zigzag accuracy
+ * </pre>
+ * Every field is a varint. A reading that changes a little between samples keeps sign, exponent and high
+ * mantissa bits, so the xor is small and takes two or three bytes instead of four.
+ */
+final class SensorRecording {
+    static final int MAGIC = 'T' | ('P' << 8) | ('S' << 16) | ('R' << 24);
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 8;
+    static final int KIND_SAMPLE = 0;
+    static final int KIND_ACCURACY = 1;
+    // as many values as any SensorEvent has
+    static final int MAX_VALUES = 16;
+    // tag, timestamp, value count and values
+    static final int MAX_RECORD_SIZE = 5 + 10 + 1 + MAX_VALUES * 5;
+
+    private SensorRecording() {
+    }
+
+    static void putVarint(ByteBuffer buffer, long value) {
+        while ((value & ~0x7fL) != 0) {
+            buffer.put((byte) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    static long getVarint(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7f) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalStateException("Varint longer than 64 bits");
+    }
+
+    static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * What the next event is coded against, kept alike while writing and reading.
+     */
+    static final class State {
+        long timestamp;
+        private int[] sensorTypes = new int[4];
+        // per sensor, the float bits of its previous values
+        private int[][] valueBits = new int[4][];
+        private int sensorCount;
+
+        /**
+         * @return the previous value bits of {@code sensorType}, which is tracked from here on
+         */
+        int[] getValueBits(int sensorType) {
+            return valueBits[indexOf(sensorType)];
+        }
+
+        private int indexOf(int sensorType) {
+            for (int i = 0; i < sensorCount; i++) {
+                if (sensorTypes[i] == sensorType) {
+                    return i;
+                }
+            }
+            // a sensor seen for the first time, the only time anything is allocated
+            if (sensorCount == sensorTypes.length) {
+                sensorTypes = Arrays.copyOf(sensorTypes, sensorCount * 2);
+                valueBits = Arrays.copyOf(valueBits, sensorCount * 2);
+            }
+            sensorTypes[sensorCount] = sensorType;
+            valueBits[sensorCount] = new int[MAX_VALUES];
+            return sensorCount++;
+        }
+    }
+}
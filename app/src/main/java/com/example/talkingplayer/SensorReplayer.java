@@ -0,0 +1,282 @@
+package com.example.talkingplayer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+import static com.example.talkingplayer.SensorRecording.HEADER_SIZE;
+import static com.example.talkingplayer.SensorRecording.KIND_ACCURACY;
+import static com.example.talkingplayer.SensorRecording.MAX_VALUES;
+import static com.example.talkingplayer.SensorRecording.getVarint;
+import static com.example.talkingplayer.SensorRecording.unzigzag;
+
+/**
+ * Feeds a recording made by {@link SensorRecorder} to a {@link SensorAcquisition.Consumer} the way
+ * {@link SensorAcquisition} would, through a {@link SensorRingBuffer} in batches, and measures how long the
+ * consumer takes. Replays either in the recording's own time or as fast as the consumer keeps up.
+ * <p>
+ * Batches end where the recording says, never where the clock does: when a batch is full and before an
+ * accuracy change. Replaying in real time only waits until the last sample of a batch is due before
+ * handing it over, so both ways hand over the same samples in the same batches. A consumer that leaves
+ * samples in the ring gets them again with the next batch; should the ring still be full, samples are
+ * dropped and counted in {@link Result#getDroppedCount()}. No Android dependencies, so captures from a
+ * device can be benchmarked on the JVM.
+ */
+public class SensorReplayer {
+    private final ByteBuffer data;
+
+    private SensorReplayer(ByteBuffer data) {
+        this.data = data;
+    }
+
+    public static SensorReplayer map(File file) throws IOException {
+        RandomAccessFile in = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = in.getChannel();
+            // the mapping stays valid after the channel is closed
+            return wrap(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } finally {
+            in.close();
+        }
+    }
+
+    public static SensorReplayer wrap(ByteBuffer buffer) throws IOException {
+        ByteBuffer data = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        data.position(0);
+        if (data.remaining() < HEADER_SIZE || data.getInt(0) != SensorRecording.MAGIC) {
+            throw new IOException("Not a sensor recording");
+        }
+        int version = data.getInt(4);
+        if (version != SensorRecording.VERSION) {
+            throw new IOException("Unsupported sensor recording version " + version + ", expected "
+                    + SensorRecording.VERSION);
+        }
+        return new SensorReplayer(data);
+    }
+
+    /**
+     * Replays the whole recording on the calling thread.
+     *
+     * @param realTime  true to hand each batch over when its newest sample was recorded, counted from the first
+     *                  one; false to hand them over as fast as the consumer takes them
+     * @param batchSize how many samples are handed over at most at once, as a sensor FIFO would flush them
+     */
+    public Result replay(SensorAcquisition.Consumer consumer, boolean realTime, int batchSize) throws IOException {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive, got " + batchSize);
+        }
+        Replay replay = new Replay(consumer, realTime, batchSize);
+        ByteBuffer in = data.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        in.position(HEADER_SIZE);
+        SensorRecording.State state = new SensorRecording.State();
+        float[] values = new float[MAX_VALUES];
+        long startNanos = System.nanoTime();
+        long firstTimestamp = 0;
+        boolean first = true;
+        try {
+            while (in.hasRemaining()) {
+                long tag = getVarint(in);
+                int sensorType = (int) (tag >>> 1);
+                if ((tag & 1) == KIND_ACCURACY) {
+                    int accuracy = (int) unzigzag(getVarint(in));
+                    // samples before the change are delivered before it
+                    if (!replay.flush()) {
+                        break;
+                    }
+                    consumer.onAccuracyChanged(sensorType, accuracy);
+                    continue;
+                }
+                state.timestamp += unzigzag(getVarint(in));
+                int count = (int) getVarint(in);
+                if (count < 0 || count > MAX_VALUES) {
+                    throw new IOException("Sample with " + count + " values, at most " + MAX_VALUES + " expected");
+                }
+                int[] previous = state.getValueBits(sensorType);
+                for (int i = 0; i < count; i++) {
+                    previous[i] ^= (int) getVarint(in);
+                    values[i] = Float.intBitsToFloat(previous[i]);
+                }
+                for (int i = count; i < SensorRingBuffer.VALUES_PER_SAMPLE; i++) {
+                    values[i] = 0f;
+                }
+                if (first) {
+                    firstTimestamp = state.timestamp;
+                    first = false;
+                }
+                long dueNanos = realTime ? startNanos + state.timestamp - firstTimestamp : System.nanoTime();
+                if (!replay.offer(sensorType, state.timestamp, values, dueNanos)) {
+                    break;
+                }
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Sensor recording is truncated", e);
+        } catch (IllegalStateException e) {
+            throw new IOException("Sensor recording is corrupt", e);
+        }
+        replay.flush();
+        return replay.finish(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * @return false if interrupted
+     */
+    private static boolean sleepUntil(long dueNanos) {
+        long remaining = dueNanos - System.nanoTime();
+        if (remaining <= 0) {
+            return true;
+        }
+        try {
+            Thread.sleep(remaining / 1000000, (int) (remaining % 1000000));
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * The batch being gathered and what was measured so far.
+     */
+    private static final class Replay {
+        private final SensorAcquisition.Consumer consumer;
+        private final boolean realTime;
+        private final int batchSize;
+        private final SensorRingBuffer samples;
+        private final FrameHistogram latency = new FrameHistogram();
+        // when the oldest and the newest pending sample were there to be handed over
+        private long batchDueNanos;
+        private long lastDueNanos;
+        private long sampleCount;
+        private long batchCount;
+        private long processingNanos;
+
+        Replay(SensorAcquisition.Consumer consumer, boolean realTime, int batchSize) {
+            this.consumer = consumer;
+            this.realTime = realTime;
+            this.batchSize = batchSize;
+            samples = new SensorRingBuffer(Integer.highestOneBit(Math.max(1, batchSize - 1)) << 1);
+        }
+
+        /**
+         * @return false if interrupted while waiting for the batch to be due
+         */
+        boolean offer(int sensorType, long timestamp, float[] values, long dueNanos) {
+            // the consumer left the last batch unread, give it another go before anything is dropped
+            if (samples.size() == samples.getCapacity() && !flush()) {
+                return false;
+            }
+            if (samples.size() == 0) {
+                batchDueNanos = dueNanos;
+            }
+            lastDueNanos = dueNanos;
+            // counted by the ring if it's still full
+            samples.offer(sensorType, timestamp, values);
+            return samples.size() < batchSize || flush();
+        }
+
+        /**
+         * Hands the pending samples over, in real time once the newest of them is due.
+         *
+         * @return false if interrupted while waiting
+         */
+        boolean flush() {
+            int count = samples.size();
+            if (count == 0) {
+                return true;
+            }
+            if (realTime && !sleepUntil(lastDueNanos)) {
+                return false;
+            }
+            long start = System.nanoTime();
+            consumer.onSamples(samples);
+            long end = System.nanoTime();
+            processingNanos += end - start;
+            latency.record(end - batchDueNanos);
+            sampleCount += count - samples.size();
+            batchCount++;
+            return true;
+        }
+
+        Result finish(long elapsedNanos) {
+            return new Result(sampleCount, batchCount, samples.getDroppedCount(), elapsedNanos, processingNanos,
+                    latency);
+        }
+    }
+
+    /**
+     * What a replay measured.
+     */
+    public static final class Result {
+        private final long sampleCount;
+        private final long batchCount;
+        private final long droppedCount;
+        private final long elapsedNanos;
+        private final long processingNanos;
+        private final FrameHistogram latency;
+
+        Result(long sampleCount, long batchCount, long droppedCount, long elapsedNanos, long processingNanos,
+               FrameHistogram latency) {
+            this.sampleCount = sampleCount;
+            this.batchCount = batchCount;
+            this.droppedCount = droppedCount;
+            this.elapsedNanos = elapsedNanos;
+            this.processingNanos = processingNanos;
+            this.latency = latency;
+        }
+
+        /**
+         * @return how many samples the consumer took
+         */
+        public long getSampleCount() {
+            return sampleCount;
+        }
+
+        public long getBatchCount() {
+            return batchCount;
+        }
+
+        /**
+         * @return how many samples never reached the consumer because it left the ring full
+         */
+        public long getDroppedCount() {
+            return droppedCount;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        /**
+         * @return how long the consumer spent on the samples altogether
+         */
+        public long getProcessingNanos() {
+            return processingNanos;
+        }
+
+        /**
+         * @return per batch, from when its oldest sample was there to when the consumer was done with it
+         */
+        public FrameHistogram getLatency() {
+            return latency;
+        }
+
+        /**
+         * @return how many samples the consumer gets through per second of its own time
+         */
+        public double getSamplesPerSecond() {
+            return processingNanos > 0 ? sampleCount * 1e9 / processingNanos : 0;
+        }
+
+        @Override
+        public String toString() {
+            return sampleCount + " samples in " + batchCount + " batches, " + droppedCount + " dropped, "
+                    + Math.round(getSamplesPerSecond()) + " samples/s, latency p50 "
+                    + latency.getPercentileNanos(50) / 1000 + "us p99 " + latency.getPercentileNanos(99) / 1000
+                    + "us max " + latency.getMaxNanos() / 1000 + "us";
+        }
+    }
+}
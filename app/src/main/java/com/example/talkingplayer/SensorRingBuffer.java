@@ -0,0 +1,109 @@
+package com.example.talkingplayer;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A fixed size queue of sensor samples, allocated once. One thread offers samples as events arrive, one
+ * thread, possibly the same, polls them in bulk later. Neither locks or allocates. When the queue is full
+ * new samples are dropped and counted, the ones already queued are never overwritten under the reader.
+ */
+public final class SensorRingBuffer {
+    public static final int VALUES_PER_SAMPLE = 3;
+    private final int capacity;
+    private final int mask;
+    private final int[] sensorTypes;
+    private final long[] timestamps;
+    private final float[] values;
+    // next sample to poll, written by the reader only
+    private final AtomicLong head = new AtomicLong();
+    // next sample to offer, written by the writer only
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long droppedCount;
+
+    /**
+     * @param capacity how many samples fit, a power of two
+     */
+    public SensorRingBuffer(int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two, got " + capacity);
+        }
+        this.capacity = capacity;
+        mask = capacity - 1;
+        sensorTypes = new int[capacity];
+        timestamps = new long[capacity];
+        values = new float[capacity * VALUES_PER_SAMPLE];
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Queues a sample, copying up to {@link #VALUES_PER_SAMPLE} of {@code sampleValues}; missing ones are
+     * zero. Called on the writing thread.
+     *
+     * @return false if the queue was full and the sample dropped
+     */
+    public boolean offer(int sensorType, long timestampNanos, float[] sampleValues) {
+        long t = tail.get();
+        if (t - head.get() == capacity) {
+            droppedCount++;
+            return false;
+        }
+        int slot = (int) t & mask;
+        sensorTypes[slot] = sensorType;
+        timestamps[slot] = timestampNanos;
+        int offset = slot * VALUES_PER_SAMPLE;
+        for (int i = 0; i < VALUES_PER_SAMPLE; i++) {
+            values[offset + i] = i < sampleValues.length ? sampleValues[i] : 0f;
+        }
+        // publishes the slot to the reader
+        tail.lazySet(t + 1);
+        return true;
+    }
+
+    /**
+     * Takes the oldest sample into {@code sample}. Called on the reading thread.
+     *
+     * @return false if there was none
+     */
+    public boolean poll(Sample sample) {
+        long h = head.get();
+        if (h == tail.get()) {
+            return false;
+        }
+        int slot = (int) h & mask;
+        sample.sensorType = sensorTypes[slot];
+        sample.timestamp = timestamps[slot];
+        System.arraycopy(values, slot * VALUES_PER_SAMPLE, sample.values, 0, VALUES_PER_SAMPLE);
+        // hands the slot back to the writer
+        head.lazySet(h + 1);
+        return true;
+    }
+
+    /**
+     * @return how many samples are queued, from either thread
+     */
+    public int size() {
+        // the head first, it can only fall behind the tail
+        long h = head.get();
+        return (int) Math.min(tail.get() - h, capacity);
+    }
+
+    /**
+     * @return how many samples were dropped because the reader fell behind
+     */
+    public long getDroppedCount() {
+        return droppedCount;
+    }
+
+    /**
+     * A sample taken out of the queue, reused for every one.
+     */
+    public static final class Sample {
+        public int sensorType;
+        // in the SensorEvent#timestamp base
+        public long timestamp;
+        public final float[] values = new float[VALUES_PER_SAMPLE];
+    }
+}
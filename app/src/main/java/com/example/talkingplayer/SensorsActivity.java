@@ -2,28 +2,88 @@ package com.example.talkingplayer;
 
 import android.content.Intent;
 import android.hardware.Sensor;
-import android.hardware.SensorEvent;
-import android.hardware.SensorEventListener;
 import android.hardware.SensorManager;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.util.Log;
 
 import androidx.appcompat.app.AppCompatActivity;
 
+import android.view.Choreographer;
 import android.view.View;
 import android.widget.TextView;
 
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 import butterknife.BindView;
+import butterknife.BindViews;
 import butterknife.ButterKnife;
 
-public class SensorsActivity extends AppCompatActivity implements SensorEventListener, View.OnClickListener {
+public class SensorsActivity extends AppCompatActivity implements View.OnClickListener {
+    private final static String TAG = SensorsActivity.class.getSimpleName();
+    /**
+     * Records every sample while the activity is started, into the app's external files directory for
+     * {@link SensorReplayer}, e.g. {@code adb shell am start -n com.example.talkingplayer/.SensorsActivity
+     * --ez com.example.talkingplayer.RECORD_SENSORS true}.
+     */
+    public static final String EXTRA_RECORD = "com.example.talkingplayer.RECORD_SENSORS";
+    // rows of the dashboard, in the order of the views bound below
+    private static final int ROW_ACCELEROMETER = SensorProcessor.ROW_ACCELEROMETER;
+    private static final int ROW_MAGNETOMETER = SensorProcessor.ROW_MAGNETOMETER;
+    private static final int ROW_GYROSCOPE = SensorProcessor.ROW_GYROSCOPE;
+    private static final int ROW_ORIENTATION = SensorProcessor.ROW_ORIENTATION;
+    private static final int ROW_COUNT = SensorProcessor.ROW_COUNT;
+    private static final int DECIMALS = 4;
 
     @BindView(R.id.fab_sensors)
     FloatingActionButton fab_sensors;
+    @BindViews({R.id.accelerometer_status, R.id.magnetometer_status, R.id.gyroscope_status,
+            R.id.orientation_status})
+    TextView[] statusViews;
+    @BindViews({R.id.accelerometer_accuracy, R.id.magnetometer_accuracy, R.id.gyroscope_accuracy,
+            R.id.orientation_accuracy})
+    TextView[] accuracyViews;
+    @BindViews({R.id.accelerometer_value_0, R.id.accelerometer_value_1, R.id.accelerometer_value_2})
+    TextView[] accelerometerViews;
+    @BindViews({R.id.magnetometer_value_0, R.id.magnetometer_value_1, R.id.magnetometer_value_2})
+    TextView[] magnetometerViews;
+    @BindViews({R.id.gyroscope_value_0, R.id.gyroscope_value_1, R.id.gyroscope_value_2})
+    TextView[] gyroscopeViews;
+    @BindViews({R.id.orientation_value_0, R.id.orientation_value_1, R.id.orientation_value_2})
+    TextView[] orientationViews;
     private SensorManager sensorManager;
-    private float[] accelerometerReading;
-    private float[] magnetometerReading;
+    // sensor events arrive here instead of on the UI thread
+    private HandlerThread sensorThread;
+    private SensorAcquisition acquisition;
+    private final SensorReadings readings = new SensorReadings(ROW_COUNT);
+    private final SensorReadings.Snapshot shown = new SensorReadings.Snapshot(ROW_COUNT);
+    // [row][value], resolved once
+    private ValueText[][] valueTexts;
+    private final char[] scratch = new char[DecimalFormatter.MAX_LENGTH];
+    // the accuracy each row shows
+    private final int[] shownAccuracies = new int[ROW_COUNT];
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final AtomicBoolean updatePosted = new AtomicBoolean();
+    private final Choreographer.FrameCallback update = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            updatePosted.set(false);
+            showReadings();
+        }
+    };
+    private final Runnable postUpdate = new Runnable() {
+        @Override
+        public void run() {
+            Choreographer.getInstance().postFrameCallback(update);
+        }
+    };
 
     @Override
     protected void onCreate(Bundle b) {
@@ -32,56 +92,101 @@ public class SensorsActivity extends AppCompatActivity implements SensorEventLis
         ButterKnife.bind(this);
         sensorManager = (SensorManager) this.getSystemService(SENSOR_SERVICE);
         fab_sensors.setOnClickListener(this);
+
+        TextView[][] valueViews = new TextView[ROW_COUNT][];
+        valueViews[ROW_ACCELEROMETER] = accelerometerViews;
+        valueViews[ROW_MAGNETOMETER] = magnetometerViews;
+        valueViews[ROW_GYROSCOPE] = gyroscopeViews;
+        valueViews[ROW_ORIENTATION] = orientationViews;
+        valueTexts = new ValueText[ROW_COUNT][SensorReadings.VALUES_PER_ROW];
+        for (int row = 0; row < ROW_COUNT; row++) {
+            for (int i = 0; i < SensorReadings.VALUES_PER_ROW; i++) {
+                valueTexts[row][i] = new ValueText(valueViews[row][i]);
+            }
+        }
+        Arrays.fill(shownAccuracies, SensorReadings.ACCURACY_UNSET);
+
+        sensorThread = new HandlerThread("Sensors");
+        sensorThread.start();
+        acquisition = new SensorAcquisition(sensorManager, new Handler(sensorThread.getLooper()),
+                new SensorProcessor(readings, new Runnable() {
+                    @Override
+                    public void run() {
+                        postUpdate();
+                    }
+                }));
+        addSensor(Sensor.TYPE_MAGNETIC_FIELD, ROW_MAGNETOMETER);
+        addSensor(Sensor.TYPE_GYROSCOPE, ROW_GYROSCOPE);
+        addSensor(Sensor.TYPE_ACCELEROMETER, ROW_ACCELEROMETER);
+        addDeviceOrientationSensor();
     }
 
     private void addDeviceOrientationSensor() {
-        int id = getResources().getIdentifier("orientation_status", "id", getPackageName());
-        TextView tvStatus = findViewById(id);
-
-        if (tvStatus != null) {
-            if (sensorManager.getDefaultSensor(Sensor.TYPE_MAGNETIC_FIELD) != null
-                    && sensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER) != null && tvStatus != null) {
-                tvStatus.setText("status: Available");
-                tvStatus.setTextColor(getResources().getColor(R.color.green));
-            } else {
-                tvStatus.setText("status: Unavailable");
-                tvStatus.setTextColor(getResources().getColor(R.color.red));
-            }
-        } else throw new IllegalStateException("Orientation status Textview found null");
+        setStatus(ROW_ORIENTATION, checkSensorAvailability(Sensor.TYPE_MAGNETIC_FIELD)
+                && checkSensorAvailability(Sensor.TYPE_ACCELEROMETER));
+    }
 
+    private void setStatus(int row, boolean available) {
+        TextView tvStatus = statusViews[row];
+        if (available) {
+            tvStatus.setText("status: Available");
+            tvStatus.setTextColor(getResources().getColor(R.color.green));
+        } else {
+            tvStatus.setText("status: Unavailable");
+            tvStatus.setTextColor(getResources().getColor(R.color.red));
+        }
+    }
+
+
+    @Override
+    protected void onStart() {
+        super.onStart();
+        if (getIntent().getBooleanExtra(EXTRA_RECORD, false)) {
+            startRecording();
+        }
+        acquisition.start();
     }
 
+    private void startRecording() {
+        File file = new File(getExternalFilesDir(null), "sensors-" + System.currentTimeMillis() + ".bin");
+        try {
+            acquisition.setRecorder(new SensorRecorder(file));
+            Log.d(TAG, "Recording sensors to " + file);
+        } catch (IOException e) {
+            Log.e(TAG, "Can't record sensors to " + file, e);
+        }
+    }
 
     @Override
     protected void onResume() {
         super.onResume();
-        addSensor(Sensor.TYPE_MAGNETIC_FIELD);
-        addSensor(Sensor.TYPE_GYROSCOPE);
-        addSensor(Sensor.TYPE_ACCELEROMETER);
-        addDeviceOrientationSensor();
+        acquisition.setVisible(true);
     }
 
     @Override
     protected void onPause() {
         super.onPause();
-        sensorManager.unregisterListener(this);
-    }
-
-    private void addSensor(int sensorType) {
-        String sensorName = getSensorName(sensorType);
-        int id = getResources().getIdentifier(sensorName + "_status", "id", getPackageName());
-        TextView tvStatus = findViewById(id);
-        if (tvStatus != null) {
-            if (checkSensorAvailability(sensorType)) {
-                Sensor sensor = sensorManager.getDefaultSensor(sensorType);
-                sensorManager.registerListener(this, sensor, SensorManager.SENSOR_DELAY_NORMAL);
-                tvStatus.setText("status: Available");
-                tvStatus.setTextColor(getResources().getColor(R.color.green));
-            } else {
-                tvStatus.setText("status: Unavailable");
-                tvStatus.setTextColor(getResources().getColor(R.color.red));
-            }
-        }
+        // still shown in multi-window, but nobody is looking closely
+        acquisition.setVisible(false);
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        acquisition.stop();
+        mainHandler.removeCallbacks(postUpdate);
+        Choreographer.getInstance().removeFrameCallback(update);
+        updatePosted.set(false);
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        sensorThread.quitSafely();
+    }
+
+    private void addSensor(int sensorType, int row) {
+        setStatus(row, acquisition.add(sensorType));
     }
 
 
@@ -92,51 +197,36 @@ public class SensorsActivity extends AppCompatActivity implements SensorEventLis
     }
 
 
-    @Override
-    public void onSensorChanged(SensorEvent sensorEvent) {
-        int numberOfValuesReturned = sensorEvent.values.length;
-        if (numberOfValuesReturned != 0) {
-            for (int i = 0; i < numberOfValuesReturned; i++) {
-                String name = getSensorName(sensorEvent.sensor.getType());
-                int id = getResources().getIdentifier(name + "_value_" + i, "id", getPackageName());
-                TextView tv = findViewById(id);
-                if (tv != null)
-                    tv.setText(String.valueOf(sensorEvent.values[i]));
-            }
-        }
-
-        if (sensorEvent.sensor.getType() == 1) {
-            accelerometerReading = sensorEvent.values;
-            calculateOrientation();
-        } else if (sensorEvent.sensor.getType() == 2) {
-            magnetometerReading = sensorEvent.values;
-            calculateOrientation();
+    /**
+     * Shows the latest readings on the next frame, from the sensor thread. Readings until then join it.
+     */
+    private void postUpdate() {
+        if (updatePosted.compareAndSet(false, true)) {
+            mainHandler.post(postUpdate);
         }
     }
 
-    @Override
-    public void onAccuracyChanged(Sensor sensor, int i) {
-        String name = getSensorName(sensor.getType());
-        int id = getResources().getIdentifier(name + "_accuracy", "id", getPackageName());
-        TextView tv = findViewById(id);
-        if (tv != null)
-            tv.setText("Current Accuracy: " + getSensorAccuracy(i));
-    }
-
-    private String getSensorName(int sensorType) {
-        switch (sensorType) {
-            case 1:
-                return "accelerometer";
-            case 2:
-                return "magnetometer";
-            case 4:
-                return "gyroscope";
-            default:
-                return null;
+    /**
+     * Runs on the UI thread at most once per vsync and only touches the views whose text changed.
+     */
+    private void showReadings() {
+        int changedRows = readings.read(shown);
+        for (int row = 0; row < ROW_COUNT; row++) {
+            if ((changedRows & (1 << row)) == 0) {
+                continue;
+            }
+            for (int i = 0; i < SensorReadings.VALUES_PER_ROW; i++) {
+                valueTexts[row][i].show(shown.values[row][i], scratch);
+            }
+            // the orientation has no accuracy of its own, so it stays unset
+            int accuracy = shown.accuracies[row];
+            if (accuracy != shownAccuracies[row]) {
+                shownAccuracies[row] = accuracy;
+                accuracyViews[row].setText("Current Accuracy: " + getSensorAccuracy(accuracy));
+            }
         }
     }
 
-
     private String getSensorAccuracy(int sensorAccuracy) {
         switch (sensorAccuracy) {
             case 0:
@@ -152,24 +242,6 @@ public class SensorsActivity extends AppCompatActivity implements SensorEventLis
         }
     }
 
-    private void calculateOrientation() {
-        if (accelerometerReading != null && magnetometerReading != null) {
-            final float[] rotationMatrix = new float[9];
-            SensorManager.getRotationMatrix(rotationMatrix, null, accelerometerReading, magnetometerReading);
-
-            // Express the updated rotation matrix as three orientation angles.
-            final float[] orientationAngles = new float[3];
-            SensorManager.getOrientation(rotationMatrix, orientationAngles);
-
-            for (int i = 0; i < 3; i++) {
-                int id = getResources().getIdentifier("orientation_value_" + i, "id", getPackageName());
-                TextView tv = findViewById(id);
-                if (tv != null)
-                    tv.setText(String.valueOf(orientationAngles[i]));
-            }
-        }
-    }
-
     @Override
     public void onClick(View view) {
         //start Another Activity
@@ -177,4 +249,37 @@ public class SensorsActivity extends AppCompatActivity implements SensorEventLis
         startActivity(new Intent(this, SphereActivity.class));
         finish();
     }
-}
\ No newline at end of file
+
+    /**
+     * A text view showing a number, set only when the digits shown change.
+     */
+    private static final class ValueText {
+        private final TextView view;
+        // handed to the view, so only written right before setting it again
+        private final char[] text = new char[DecimalFormatter.MAX_LENGTH];
+        private int length = -1;
+
+        ValueText(TextView view) {
+            this.view = view;
+        }
+
+        void show(float value, char[] scratch) {
+            int newLength = DecimalFormatter.format(value, DECIMALS, scratch);
+            if (newLength == length && equals(scratch, text, length)) {
+                return;
+            }
+            System.arraycopy(scratch, 0, text, 0, newLength);
+            length = newLength;
+            view.setText(text, 0, length);
+        }
+
+        private static boolean equals(char[] a, char[] b, int length) {
+            for (int i = 0; i < length; i++) {
+                if (a[i] != b[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.talkingplayer;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A sequence lock: the writer makes the sequence odd while it writes, a reader copies what it needs and
+ * retries if the sequence was odd or changed meanwhile. Neither side locks or allocates, and the writer
+ * never waits. There must be a single writing thread, and whatever is guarded must be read and written
+ * with volatile semantics, e.g. through an atomic array, so reads can't move outside the sequence checks.
+ * <pre>
+ * int sequence;
+ * do {
+ *     sequence = lock.beginRead();
+ *     // copy
+ * } while (lock.retryRead(sequence));
+ * </pre>
+ */
+final class SequenceLock {
+    private final AtomicInteger sequence = new AtomicInteger();
+
+    void beginWrite() {
+        sequence.incrementAndGet();
+    }
+
+    void endWrite() {
+        sequence.incrementAndGet();
+    }
+
+    /**
+     * Waits for a write in progress to finish.
+     *
+     * @return the sequence to hand to {@link #retryRead(int)} once everything is copied
+     */
+    int beginRead() {
+        while (true) {
+            int sequence = this.sequence.get();
+            if ((sequence & 1) == 0) {
+                return sequence;
+            }
+            // the writer is at most a few stores away from done
+            Thread.yield();
+        }
+    }
+
+    /**
+     * @return true if a write happened since {@link #beginRead()} returned {@code sequence}, so what was
+     * copied may be torn and has to be copied again
+     */
+    boolean retryRead(int sequence) {
+        return this.sequence.get() != sequence;
+    }
+}
@@ -0,0 +1,170 @@
+package com.example.talkingplayer;
+
+import android.content.Context;
+import android.opengl.GLES20;
+import android.opengl.GLES30;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compiles and links each distinct pair of shader sources once per GL context, and keeps the linked
+ * binaries in the app's cache directory so later launches skip compiling altogether.
+ * <p>
+ * Binaries are keyed by the sources and the driver, a driver update just compiles again. If the driver
+ * rejects a stored binary anyway, it is deleted and the program is built from source.
+ * <p>
+ * Program binaries are core in ES 3. The OES_get_program_binary entry points have no Java bindings, so
+ * ES 2 contexts always compile. Use the cache on the GL thread only, and create a new one with every
+ * context.
+ */
+public class ShaderCache {
+    private final static String TAG = ShaderCache.class.getSimpleName();
+    // generic attributes every program shares, whichever of them it uses
+    private static final String[] ATTRIBUTE_BINDINGS = {"a_Position", "a_Color", "a_Normal", "a_TexCoordinate"};
+    private final Gl gl;
+    private final ProgramBinaryStore binaryStore;
+    private final boolean useBinaries;
+    private final String driver;
+    private final Map<String, ShaderProgram> programs = new HashMap<>();
+
+    public ShaderCache(Gl gl, Context context, GlCapabilities capabilities) {
+        this(gl, new File(context.getCacheDir(), "shaders"), capabilities);
+    }
+
+    /**
+     * @param directory to keep binaries in, null to always compile
+     */
+    ShaderCache(Gl gl, File directory, GlCapabilities capabilities) {
+        this.gl = gl;
+        binaryStore = directory != null ? new ProgramBinaryStore(directory) : null;
+        driver = gl.glGetString(GLES20.GL_RENDERER) + " " + gl.glGetString(GLES20.GL_VERSION);
+        boolean useBinaries = false;
+        if (binaryStore != null && capabilities.isEs3()) {
+            // a driver may support the API without offering a single format
+            int[] formats = new int[1];
+            gl.glGetIntegerv(GLES30.GL_NUM_PROGRAM_BINARY_FORMATS, formats, 0);
+            useBinaries = formats[0] > 0;
+        }
+        this.useBinaries = useBinaries;
+    }
+
+    /**
+     * @return the program made of these sources, compiled, loaded from its binary or shared with an earlier
+     * caller
+     */
+    public ShaderProgram get(String vertexShader, String fragmentShader) {
+        String key = ProgramBinaryStore.getKey(vertexShader, fragmentShader, Arrays.toString(ATTRIBUTE_BINDINGS),
+                driver);
+        ShaderProgram program = programs.get(key);
+        if (program == null) {
+            int programHandle = useBinaries ? loadBinary(key) : 0;
+            if (programHandle == 0) {
+                programHandle = compile(vertexShader, fragmentShader);
+                if (useBinaries) {
+                    storeBinary(key, programHandle);
+                }
+            }
+            program = ShaderProgram.resolve(gl, programHandle);
+            programs.put(key, program);
+        }
+        return program;
+    }
+
+    private int loadBinary(String key) {
+        ProgramBinaryStore.Binary binary = binaryStore.read(key);
+        if (binary == null) {
+            return 0;
+        }
+        int programHandle = gl.glCreateProgram();
+        gl.glProgramBinary(programHandle, binary.format, binary.data, binary.data.remaining());
+        final int[] linkStatus = new int[1];
+        gl.glGetProgramiv(programHandle, GLES20.GL_LINK_STATUS, linkStatus, 0);
+        if (linkStatus[0] == 0) {
+            Log.w(TAG, "Driver rejected program binary " + key + ", compiling from source");
+            gl.glDeleteProgram(programHandle);
+            binaryStore.delete(key);
+            return 0;
+        }
+        Log.d(TAG, "Loaded program binary " + key);
+        return programHandle;
+    }
+
+    private void storeBinary(String key, int programHandle) {
+        final int[] length = new int[1];
+        gl.glGetProgramiv(programHandle, GLES30.GL_PROGRAM_BINARY_LENGTH, length, 0);
+        if (length[0] <= 0) {
+            return;
+        }
+        ByteBuffer data = ByteBuffer.allocateDirect(length[0]).order(ByteOrder.nativeOrder());
+        final int[] format = new int[1];
+        gl.glGetProgramBinary(programHandle, length[0], length, 0, format, 0, data);
+        data.limit(length[0]);
+        try {
+            binaryStore.write(key, format[0], data);
+        } catch (IOException e) {
+            // compiling again next time is all it costs
+            Log.w(TAG, "Couldn't store program binary " + key, e);
+        }
+    }
+
+    private int compile(String vertexShader, String fragmentShader) {
+        int vertexShaderHandle = loadShader(GLES20.GL_VERTEX_SHADER, vertexShader);
+        int fragmentShaderHandle = loadShader(GLES20.GL_FRAGMENT_SHADER, fragmentShader);
+
+        // Create a program object and store the handle to it.
+        int programHandle = gl.glCreateProgram();
+        if (programHandle == 0) {
+            throw new RuntimeException("Error creating program.");
+        }
+        gl.glAttachShader(programHandle, vertexShaderHandle);
+        gl.glAttachShader(programHandle, fragmentShaderHandle);
+        for (int i = 0; i < ATTRIBUTE_BINDINGS.length; i++) {
+            gl.glBindAttribLocation(programHandle, i, ATTRIBUTE_BINDINGS[i]);
+        }
+        if (useBinaries) {
+            gl.glProgramParameteri(programHandle, GLES30.GL_PROGRAM_BINARY_RETRIEVABLE_HINT, GLES20.GL_TRUE);
+        }
+        gl.glLinkProgram(programHandle);
+
+        // The program keeps what it needs, the shaders can go.
+        gl.glDetachShader(programHandle, vertexShaderHandle);
+        gl.glDetachShader(programHandle, fragmentShaderHandle);
+        gl.glDeleteShader(vertexShaderHandle);
+        gl.glDeleteShader(fragmentShaderHandle);
+
+        final int[] linkStatus = new int[1];
+        gl.glGetProgramiv(programHandle, GLES20.GL_LINK_STATUS, linkStatus, 0);
+        if (linkStatus[0] == 0) {
+            Log.e(TAG, gl.glGetProgramInfoLog(programHandle));
+            gl.glDeleteProgram(programHandle);
+            throw new RuntimeException("Error linking program.");
+        }
+        return programHandle;
+    }
+
+    private int loadShader(int type, String source) {
+        int shaderHandle = gl.glCreateShader(type);
+        if (shaderHandle == 0) {
+            throw new RuntimeException("Error creating shader.");
+        }
+        gl.glShaderSource(shaderHandle, source);
+        gl.glCompileShader(shaderHandle);
+
+        final int[] compileStatus = new int[1];
+        gl.glGetShaderiv(shaderHandle, GLES20.GL_COMPILE_STATUS, compileStatus, 0);
+        if (compileStatus[0] == 0) {
+            Log.e(TAG, gl.glGetShaderInfoLog(shaderHandle));
+            gl.glDeleteShader(shaderHandle);
+            throw new RuntimeException(type == GLES20.GL_VERTEX_SHADER
+                    ? "Error creating vertex shader." : "Error creating fragment shader.");
+        }
+        return shaderHandle;
+    }
+}
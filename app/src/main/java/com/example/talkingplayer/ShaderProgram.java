@@ -0,0 +1,80 @@
+package com.example.talkingplayer;
+
+import android.opengl.GLES20;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A linked program with the locations of all its active attributes and uniforms, looked up once when it
+ * is created rather than by name on every frame. Get one from {@link ShaderCache}.
+ */
+public final class ShaderProgram {
+    private final Gl mGl;
+    private final int mProgramHandle;
+    private final Map<String, Integer> mAttribLocations;
+    private final Map<String, Integer> mUniformLocations;
+
+    private ShaderProgram(Gl gl, int programHandle, Map<String, Integer> attribLocations,
+                          Map<String, Integer> uniformLocations) {
+        mGl = gl;
+        mProgramHandle = programHandle;
+        mAttribLocations = attribLocations;
+        mUniformLocations = uniformLocations;
+    }
+
+    /**
+     * Resolves the locations of a program that linked successfully.
+     */
+    static ShaderProgram resolve(Gl gl, int programHandle) {
+        int[] count = new int[1];
+        int[] size = new int[1];
+        int[] type = new int[1];
+
+        Map<String, Integer> attribLocations = new HashMap<>();
+        gl.glGetProgramiv(programHandle, GLES20.GL_ACTIVE_ATTRIBUTES, count, 0);
+        for (int i = 0; i < count[0]; i++) {
+            String name = gl.glGetActiveAttrib(programHandle, i, size, 0, type, 0);
+            attribLocations.put(name, gl.glGetAttribLocation(programHandle, name));
+        }
+
+        Map<String, Integer> uniformLocations = new HashMap<>();
+        gl.glGetProgramiv(programHandle, GLES20.GL_ACTIVE_UNIFORMS, count, 0);
+        for (int i = 0; i < count[0]; i++) {
+            String name = gl.glGetActiveUniform(programHandle, i, size, 0, type, 0);
+            int location = gl.glGetUniformLocation(programHandle, name);
+            uniformLocations.put(name, location);
+            // arrays are reported as "name[0]", but are just as well found by "name"
+            if (name.endsWith("[0]")) {
+                uniformLocations.put(name.substring(0, name.length() - 3), location);
+            }
+        }
+        return new ShaderProgram(gl, programHandle, Collections.unmodifiableMap(attribLocations),
+                Collections.unmodifiableMap(uniformLocations));
+    }
+
+    public int getProgramHandle() {
+        return mProgramHandle;
+    }
+
+    /**
+     * @return the attribute's location, -1 if the program doesn't use it, as glGetAttribLocation
+     */
+    public int getAttribLocation(String name) {
+        Integer location = mAttribLocations.get(name);
+        return location != null ? location : -1;
+    }
+
+    /**
+     * @return the uniform's location, -1 if the program doesn't use it, as glGetUniformLocation
+     */
+    public int getUniformLocation(String name) {
+        Integer location = mUniformLocations.get(name);
+        return location != null ? location : -1;
+    }
+
+    public void use() {
+        mGl.glUseProgram(mProgramHandle);
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.talkingplayer;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * The pool CPU heavy asset preparation splits its work across unless it is given one of its own.
+ * No Android dependencies, so it runs on loader threads and at build time alike.
+ */
+final class SharedForkJoinPool {
+    private static ForkJoinPool pool;
+
+    private SharedForkJoinPool() {
+    }
+
+    /**
+     * @return the pool, created on first use with one worker per processor
+     */
+    static synchronized ForkJoinPool get() {
+        // ForkJoinPool.commonPool() needs API 24, so keep one of our own
+        if (pool == null) {
+            pool = new ForkJoinPool();
+        }
+        return pool;
+    }
+}
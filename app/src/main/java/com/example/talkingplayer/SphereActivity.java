@@ -3,6 +3,7 @@ package com.example.talkingplayer;
 import android.app.ActivityManager;
 import android.content.Context;
 import android.content.pm.ConfigurationInfo;
+import android.hardware.SensorManager;
 import android.opengl.GLSurfaceView;
 import android.os.Bundle;
 import android.app.Activity;
@@ -15,7 +16,24 @@ import butterknife.BindView;
 import butterknife.ButterKnife;
 
 public class SphereActivity extends Activity {
+    /**
+     * Makes the sphere stay put in the world while the device turns around it, e.g. {@code adb shell am start
+     * -n com.example.talkingplayer/.SphereActivity --ez com.example.talkingplayer.FOLLOW_ATTITUDE true}.
+     */
+    public static final String EXTRA_FOLLOW_ATTITUDE = "com.example.talkingplayer.FOLLOW_ATTITUDE";
+    /**
+     * Surrounds the sphere with that many small ones, e.g. {@code adb shell am start -n
+     * com.example.talkingplayer/.SphereActivity --ei com.example.talkingplayer.INSTANCE_COUNT 2000}.
+     */
+    public static final String EXTRA_INSTANCE_COUNT = "com.example.talkingplayer.INSTANCE_COUNT";
+    /**
+     * Shows the old cube map sky instead of the stars, e.g. {@code adb shell am start -n
+     * com.example.talkingplayer/.SphereActivity --ez com.example.talkingplayer.CUBE_MAP_SKY true}.
+     */
+    public static final String EXTRA_CUBE_MAP_SKY = "com.example.talkingplayer.CUBE_MAP_SKY";
     private GLSurfaceViewSphere glSurfaceView;
+    private FrameStatsOverlay frameStatsOverlay;
+    private AttitudeTracker attitudeTracker;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -23,9 +41,23 @@ public class SphereActivity extends Activity {
         setContentView(R.layout.activity_sphere);
         ButterKnife.bind(this);
         glSurfaceView = new GLSurfaceViewSphere(this);
+        glSurfaceView.setInstanceCount(getIntent().getIntExtra(EXTRA_INSTANCE_COUNT, 0));
+        glSurfaceView.setCubeMapSky(getIntent().getBooleanExtra(EXTRA_CUBE_MAP_SKY, false));
         getWindow().addFlags(WindowManager.LayoutParams.FLAG_FULLSCREEN);
 
         setContentView(glSurfaceView);
+        glSurfaceView.getRenderScheduler().setMaxFrameRate(RenderScheduler.getMaxFrameRate(getIntent()));
+        frameStatsOverlay = FrameStatsOverlay.attachIfRequested(this, glSurfaceView.getFrameTimer());
+        if (getIntent().getBooleanExtra(EXTRA_FOLLOW_ATTITUDE, false)) {
+            final RenderScheduler renderScheduler = glSurfaceView.getRenderScheduler();
+            attitudeTracker = new AttitudeTracker((SensorManager) getSystemService(SENSOR_SERVICE), new Runnable() {
+                @Override
+                public void run() {
+                    renderScheduler.requestFrame();
+                }
+            });
+            glSurfaceView.setAttitude(attitudeTracker.getAttitude());
+        }
 
     }
 
@@ -33,12 +65,24 @@ public class SphereActivity extends Activity {
     protected void onResume() {   // The activity must call the GL surface view's onResume() on activity onResume().
         super.onResume();
         glSurfaceView.onResume();
+        if (frameStatsOverlay != null) {
+            frameStatsOverlay.start();
+        }
+        if (attitudeTracker != null) {
+            attitudeTracker.start();
+        }
     }
 
     @Override
     protected void onPause() {   // The activity must call the GL surface view's onPause() on activity onPause().
         super.onPause();
         glSurfaceView.onPause();
+        if (frameStatsOverlay != null) {
+            frameStatsOverlay.stop();
+        }
+        if (attitudeTracker != null) {
+            attitudeTracker.stop();
+        }
     }
 
 }
@@ -0,0 +1,56 @@
+package com.example.talkingplayer;
+
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+
+/**
+ * The interleaved vertex format of {@link SphereBox} and how each of its levels of detail is built, shared by
+ * the app and the build-time asset packer so packed meshes match what would be generated at runtime.
+ */
+public final class SphereLevels {
+    // position, normal, texture coordinate, color and morph target interleaved in that order
+    public static final int POSITION_OFFSET = 0;
+    public static final int NORMAL_OFFSET = 3;
+    public static final int TEXTURE_COORDINATE_OFFSET = 6;
+    public static final int COLOR_OFFSET = 8;
+    public static final int MORPH_TARGET_OFFSET = 12;
+    public static final int STRIDE_FLOATS = 15;
+
+    private SphereLevels() {
+    }
+
+    public static String getAssetName(int level) {
+        return "mesh/sphere_" + level;
+    }
+
+    /**
+     * Generates, morphs and cache optimises one level of detail.
+     */
+    public static Level build(int level) {
+        SphereMeshGenerator generator = new SphereMeshGenerator(SphereLodSelector.getNumVerticalBands(level),
+                SphereLodSelector.getNumStepsInBand(level));
+        FloatBuffer vertices = SphereMeshGenerator.allocateFloatBuffer(generator.getVertexCount() * STRIDE_FLOATS);
+        ShortBuffer indices = SphereMeshGenerator.allocateShortBuffer(generator.getIndexCount());
+        generator.generateInterleaved(vertices, STRIDE_FLOATS, POSITION_OFFSET, NORMAL_OFFSET,
+                TEXTURE_COORDINATE_OFFSET, COLOR_OFFSET, indices);
+        generator.writeMorphTargets(vertices, STRIDE_FLOATS, MORPH_TARGET_OFFSET);
+        MeshOptimizer.Report report = MeshOptimizer.optimize(indices, vertices, STRIDE_FLOATS,
+                generator.getVertexCount());
+        return new Level(vertices, indices, report);
+    }
+
+    public static final class Level {
+        public final FloatBuffer vertices;
+        public final ShortBuffer indices;
+        /**
+         * How the cache optimisation went, null when the level was loaded rather than built.
+         */
+        public final MeshOptimizer.Report report;
+
+        public Level(FloatBuffer vertices, ShortBuffer indices, MeshOptimizer.Report report) {
+            this.vertices = vertices;
+            this.indices = indices;
+            this.report = report;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.talkingplayer;
+
+/**
+ * Picks how finely to tessellate the sphere from the radius it covers on screen.
+ * <p>
+ * Level {@code n + 1} doubles the steps of level {@code n} and puts a new band between each pair of its
+ * bands, so every vertex of a level is either a vertex of the previous one or lies on one of its edges
+ * or faces. Drawing level {@code n + 1} with a morph factor of 0 therefore looks exactly like level
+ * {@code n}, and the factor slides continuously to 1 as the sphere grows, which avoids popping
+ * when the level changes.
+ */
+public class SphereLodSelector {
+    public static final int MAX_LEVEL_COUNT = 6;
+    private static final int BASE_VERTICAL_BANDS = 5;
+    private static final int BASE_STEPS_IN_BAND = 8;
+    /**
+     * Length of a triangle edge along the equator we aim for, in pixels.
+     */
+    private static final float DEFAULT_TARGET_EDGE_PIXELS = 12f;
+
+    private final int levelCount;
+    private final float targetEdgePixels;
+    private int level;
+    private float morph = 1f;
+
+    public SphereLodSelector(int levelCount) {
+        this(levelCount, DEFAULT_TARGET_EDGE_PIXELS);
+    }
+
+    public SphereLodSelector(int levelCount, float targetEdgePixels) {
+        if (levelCount < 1 || levelCount > MAX_LEVEL_COUNT) {
+            throw new IllegalArgumentException("Level count must be between 1 and " + MAX_LEVEL_COUNT);
+        }
+        this.levelCount = levelCount;
+        this.targetEdgePixels = targetEdgePixels;
+    }
+
+    public static int getNumVerticalBands(int level) {
+        return ((BASE_VERTICAL_BANDS - 1) << level) + 1;
+    }
+
+    public static int getNumStepsInBand(int level) {
+        return BASE_STEPS_IN_BAND << level;
+    }
+
+    /**
+     * Radius in pixels of a sphere seen through a symmetric perspective frustum.
+     *
+     * @param radius         radius of the sphere in world units
+     * @param distance       distance from the eye to the centre of the sphere
+     * @param near           distance to the near plane
+     * @param halfHeight     half the height of the frustum at the near plane
+     * @param viewportHeight height of the viewport in pixels
+     */
+    public static float getProjectedRadius(float radius, float distance, float near, float halfHeight,
+                                           int viewportHeight) {
+        if (distance <= radius) {
+            // the eye is inside the sphere, it covers everything
+            return Float.MAX_VALUE;
+        }
+        // tangent of the angle the sphere subtends, projected onto the near plane
+        float tangent = radius / (float) Math.sqrt(distance * distance - radius * radius);
+        return (near * tangent / halfHeight) * viewportHeight / 2f;
+    }
+
+    public int getLevelCount() {
+        return levelCount;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    /**
+     * How far the current level has moved from the previous one, from 0 (identical to the previous
+     * level) to 1 (its own true shape).
+     */
+    public float getMorph() {
+        return morph;
+    }
+
+    public void update(float projectedRadiusPixels) {
+        float stepsWanted = (float) (2 * Math.PI * projectedRadiusPixels / targetEdgePixels);
+        float lod = (float) (Math.log(stepsWanted / BASE_STEPS_IN_BAND) / Math.log(2));
+        if (!(lod > 0)) {
+            level = 0;
+            morph = 1f;
+        } else if (lod >= levelCount - 1) {
+            level = levelCount - 1;
+            morph = 1f;
+        } else {
+            level = (int) Math.ceil(lod);
+            morph = lod - (level - 1);
+        }
+    }
+}
@@ -0,0 +1,490 @@
+package com.example.talkingplayer;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Builds the unit sphere used by {@link SphereBox} for any number of vertical bands and steps.
+ * <p>
+ * The sphere is made of {@code numVerticalBands} horizontal rings evenly spaced along the Y axis,
+ * the first and last of which collapse into the poles. Every other ring has {@code numStepsInBand}
+ * vertices. Vertex data is written straight into caller supplied (native order) buffers, so no
+ * intermediate arrays are created, and very large tessellations are split across a {@link ForkJoinPool}.
+ * <p>
+ * This class has no Android dependencies so it can be tested and benchmarked on a plain JVM.
+ */
+public class SphereMeshGenerator {
+    public static final int POSITION_DATA_SIZE = 3;
+    public static final int NORMAL_DATA_SIZE = 3;
+    public static final int TEXTURE_COORDINATE_DATA_SIZE = 2;
+    public static final int COLOR_DATA_SIZE = 4;
+    public static final int BYTES_PER_FLOAT = 4;
+    public static final int BYTES_PER_SHORT = 2;
+    /**
+     * Indices are unsigned shorts, so a mesh can't address more vertices than this.
+     */
+    public static final int MAX_VERTICES = 0xFFFF + 1;
+    /**
+     * Below this many vertices splitting the work costs more than it saves.
+     */
+    private static final int PARALLEL_THRESHOLD_VERTICES = 1 << 14;
+
+    private final int numVerticalBands;
+    private final int numStepsInBand;
+    private final float[] color = new float[]{1.0f, 215f / 255f, 0.0f, 1.0f};
+    private ForkJoinPool pool;
+
+    public SphereMeshGenerator(int numVerticalBands, int numStepsInBand) {
+        if (numVerticalBands < 3) {
+            throw new IllegalArgumentException("A sphere needs at least 3 bands, got " + numVerticalBands);
+        }
+        // texture coordinates are laid out a quarter of the band at a time
+        if (numStepsInBand < 4 || numStepsInBand % 4 != 0) {
+            throw new IllegalArgumentException("Steps in band must be a positive multiple of 4, got " + numStepsInBand);
+        }
+        this.numVerticalBands = numVerticalBands;
+        this.numStepsInBand = numStepsInBand;
+        if (getVertexCount() > MAX_VERTICES) {
+            throw new IllegalArgumentException("Sphere of " + numVerticalBands + "x" + numStepsInBand
+                    + " has more vertices than short indices can address");
+        }
+    }
+
+    public static int getVertexCount(int numVerticalBands, int numStepsInBand) {
+        //first and last band will have just 1 vertex
+        return ((numVerticalBands - 2) * numStepsInBand) + 2;
+    }
+
+    public static int getIndexCount(int numVerticalBands, int numStepsInBand) {
+        // First and last bands have just one triangle per step, so both combine to form one complete band
+        // of two triangles per step.
+        return 3 * 2 * ((numVerticalBands - 2) * numStepsInBand);
+    }
+
+    public static FloatBuffer allocateFloatBuffer(int floats) {
+        return ByteBuffer.allocateDirect(floats * BYTES_PER_FLOAT).order(ByteOrder.nativeOrder()).asFloatBuffer();
+    }
+
+    public static ShortBuffer allocateShortBuffer(int shorts) {
+        return ByteBuffer.allocateDirect(shorts * BYTES_PER_SHORT).order(ByteOrder.nativeOrder()).asShortBuffer();
+    }
+
+    public int getNumVerticalBands() {
+        return numVerticalBands;
+    }
+
+    public int getNumStepsInBand() {
+        return numStepsInBand;
+    }
+
+    public int getVertexCount() {
+        return getVertexCount(numVerticalBands, numStepsInBand);
+    }
+
+    public int getIndexCount() {
+        return getIndexCount(numVerticalBands, numStepsInBand);
+    }
+
+    /**
+     * Sets the constant color written for every vertex.
+     */
+    public SphereMeshGenerator setColor(float r, float g, float b, float a) {
+        color[0] = r;
+        color[1] = g;
+        color[2] = b;
+        color[3] = a;
+        return this;
+    }
+
+    /**
+     * Sets the pool used for large tessellations, the {@link SharedForkJoinPool} if none is given.
+     */
+    public SphereMeshGenerator setPool(ForkJoinPool pool) {
+        this.pool = pool;
+        return this;
+    }
+
+    /**
+     * Generates the sphere into separate attribute buffers. Any buffer may be null to skip that attribute.
+     * Data is written starting at each buffer's current position, which is left unchanged.
+     */
+    public void generate(FloatBuffer positions, FloatBuffer normals, FloatBuffer textureCoordinates,
+                         FloatBuffer colors, ShortBuffer indices) {
+        generate(new Target(positions, POSITION_DATA_SIZE, 0,
+                normals, NORMAL_DATA_SIZE, 0,
+                textureCoordinates, TEXTURE_COORDINATE_DATA_SIZE, 0,
+                colors, COLOR_DATA_SIZE, 0,
+                indices, 0));
+    }
+
+    /**
+     * Generates the sphere into a single interleaved buffer with vertices {@code strideFloats} apart.
+     * A negative offset skips that attribute. Data is written starting at the buffers' current positions.
+     */
+    public void generateInterleaved(FloatBuffer vertices, int strideFloats, int positionOffset, int normalOffset,
+                                    int textureCoordinateOffset, int colorOffset, ShortBuffer indices) {
+        generate(new Target(positionOffset < 0 ? null : vertices, strideFloats, positionOffset,
+                normalOffset < 0 ? null : vertices, strideFloats, normalOffset,
+                textureCoordinateOffset < 0 ? null : vertices, strideFloats, textureCoordinateOffset,
+                colorOffset < 0 ? null : vertices, strideFloats, colorOffset,
+                indices, 0));
+    }
+
+    void generate(Target target) {
+        target.checkCapacity(getVertexCount(), getIndexCount());
+        //get angles for steps in band first
+        float[] sinTheta = new float[numStepsInBand];
+        float[] cosTheta = new float[numStepsInBand];
+        float stepAngle = 2 * ((float) Math.PI / numStepsInBand);
+        for (int i = 0; i < numStepsInBand; i++) {
+            sinTheta[i] = (float) Math.sin(i * stepAngle);
+            cosTheta[i] = (float) Math.cos(i * stepAngle);
+        }
+
+        if (getVertexCount() < PARALLEL_THRESHOLD_VERTICES) {
+            writeBands(target, sinTheta, cosTheta, 0, numVerticalBands);
+        } else {
+            (pool != null ? pool : SharedForkJoinPool.get())
+                    .invoke(new BandTask(target, sinTheta, cosTheta, 0, numVerticalBands));
+        }
+    }
+
+    /**
+     * Whether this tessellation refines a coarser one, i.e. its bands and steps are those of a sphere
+     * with every band and step split in two.
+     */
+    public boolean hasCoarserLevel() {
+        return numVerticalBands >= 5 && numVerticalBands % 2 == 1 && numStepsInBand % 8 == 0;
+    }
+
+    /**
+     * For every vertex, writes where it sits on the surface of the next coarser tessellation: vertices
+     * shared with the coarser sphere stay put, the others land on the coarse edge or face they split.
+     * Blending from these targets to the real positions morphs one level into the next without popping.
+     * Without a coarser level every vertex is its own target.
+     */
+    public void writeMorphTargets(FloatBuffer vertices, int strideFloats, int offset) {
+        int base = vertices.position() + offset;
+        float[] position = new float[POSITION_DATA_SIZE];
+        float[] accumulated = new float[POSITION_DATA_SIZE];
+        if (!hasCoarserLevel()) {
+            for (int band = 0; band < numVerticalBands; band++) {
+                int steps = band == 0 || band == numVerticalBands - 1 ? 1 : numStepsInBand;
+                for (int step = 0; step < steps; step++) {
+                    getPosition(numVerticalBands, numStepsInBand, band, step, position);
+                    putPosition(vertices, base + getVertexIndex(band, step) * strideFloats, position);
+                }
+            }
+            return;
+        }
+
+        int coarseBands = (numVerticalBands + 1) / 2;
+        int coarseSteps = numStepsInBand / 2;
+        for (int band = 0; band < numVerticalBands; band++) {
+            int steps = band == 0 || band == numVerticalBands - 1 ? 1 : numStepsInBand;
+            int coarseBand = band / 2;
+            for (int step = 0; step < steps; step++) {
+                int coarseStep = step / 2;
+                accumulated[0] = accumulated[1] = accumulated[2] = 0;
+                if (band % 2 == 0 && step % 2 == 0) {
+                    addPosition(coarseBands, coarseSteps, coarseBand, coarseStep, 1f, position, accumulated);
+                } else if (band % 2 == 0) {
+                    // on a coarse band, between two of its steps
+                    addPosition(coarseBands, coarseSteps, coarseBand, coarseStep, 0.5f, position, accumulated);
+                    addPosition(coarseBands, coarseSteps, coarseBand, coarseStep + 1, 0.5f, position, accumulated);
+                } else if (step % 2 == 0) {
+                    // between two coarse bands, on one of their steps
+                    addPosition(coarseBands, coarseSteps, coarseBand, coarseStep, 0.5f, position, accumulated);
+                    addPosition(coarseBands, coarseSteps, coarseBand + 1, coarseStep, 0.5f, position, accumulated);
+                } else if (coarseBand == 0) {
+                    // inside a triangle of the top cap
+                    addPosition(coarseBands, coarseSteps, 0, 0, 0.5f, position, accumulated);
+                    addPosition(coarseBands, coarseSteps, 1, coarseStep, 0.25f, position, accumulated);
+                    addPosition(coarseBands, coarseSteps, 1, coarseStep + 1, 0.25f, position, accumulated);
+                } else if (coarseBand + 1 == coarseBands - 1) {
+                    // inside a triangle of the bottom cap
+                    addPosition(coarseBands, coarseSteps, coarseBand, coarseStep, 0.25f, position, accumulated);
+                    addPosition(coarseBands, coarseSteps, coarseBand, coarseStep + 1, 0.25f, position, accumulated);
+                    addPosition(coarseBands, coarseSteps, coarseBand + 1, 0, 0.5f, position, accumulated);
+                } else {
+                    // on the diagonal shared by the two triangles of a coarse quad, see writeStrip
+                    addPosition(coarseBands, coarseSteps, coarseBand, coarseStep + 1, 0.5f, position, accumulated);
+                    addPosition(coarseBands, coarseSteps, coarseBand + 1, coarseStep, 0.5f, position, accumulated);
+                }
+                putPosition(vertices, base + getVertexIndex(band, step) * strideFloats, accumulated);
+            }
+        }
+    }
+
+    private static void getPosition(int numVerticalBands, int numStepsInBand, int band, int step, float[] out) {
+        float bandPos = 1.0f - band * (2f / (numVerticalBands - 1));
+        if (band == 0 || band == numVerticalBands - 1) {
+            out[0] = 0;
+            out[1] = band == 0 ? 1f : -1f;
+            out[2] = 0;
+            return;
+        }
+        float sinPhi = (float) Math.sqrt(1 - (bandPos * bandPos));
+        double theta = 2 * Math.PI * (step % numStepsInBand) / numStepsInBand;
+        out[0] = (float) Math.cos(theta) * sinPhi;
+        out[1] = bandPos;
+        out[2] = (float) Math.sin(theta) * sinPhi;
+    }
+
+    private static void addPosition(int numVerticalBands, int numStepsInBand, int band, int step, float weight,
+                                    float[] scratch, float[] sum) {
+        getPosition(numVerticalBands, numStepsInBand, band, step, scratch);
+        sum[0] += weight * scratch[0];
+        sum[1] += weight * scratch[1];
+        sum[2] += weight * scratch[2];
+    }
+
+    private static void putPosition(FloatBuffer buffer, int index, float[] position) {
+        buffer.put(index, position[0]);
+        buffer.put(index + 1, position[1]);
+        buffer.put(index + 2, position[2]);
+    }
+
+    /**
+     * Index of the first vertex of a band, the poles being bands 0 and numVerticalBands - 1.
+     */
+    int getBandStart(int band) {
+        if (band == 0) {
+            return 0;
+        }
+        return ((band - 1) * numStepsInBand) + 1;
+    }
+
+    /**
+     * Index of the vertex at the given band and step, steps wrap around the band.
+     */
+    int getVertexIndex(int band, int step) {
+        if (band == 0) {
+            return 0;
+        }
+        if (band == numVerticalBands - 1) {
+            return getVertexCount() - 1;
+        }
+        return getBandStart(band) + (step % numStepsInBand);
+    }
+
+    /**
+     * Offset of the first index of the triangles joining {@code band} and {@code band + 1}.
+     */
+    private int getStripStart(int band) {
+        if (band == 0) {
+            return 0;
+        }
+        return 3 * numStepsInBand + (band - 1) * 6 * numStepsInBand;
+    }
+
+    /**
+     * Writes the vertices of bands [from, to) and the triangles joining each of them to the next band.
+     */
+    private void writeBands(Target target, float[] sinTheta, float[] cosTheta, int from, int to) {
+        for (int band = from; band < to; band++) {
+            writeBand(target, sinTheta, cosTheta, band);
+            if (band < numVerticalBands - 1) {
+                writeStrip(target, band);
+            }
+        }
+    }
+
+    private void writeBand(Target target, float[] sinTheta, float[] cosTheta, int band) {
+        //divide the vertical axis of length 2 into equal parts
+        float stepBand = 2f / (numVerticalBands - 1);
+        if (band == 0 || band == numVerticalBands - 1) {
+            float bandPos = band == 0 ? 1f : -1f;
+            target.putVertex(getBandStart(band), 0, bandPos, 0, 0.5f, (1 - bandPos) / 2, color);
+            return;
+        }
+
+        float bandPos = 1.0f - band * stepBand;
+        float sinPhi = (float) Math.sqrt(1 - (bandPos * bandPos));
+        // The texture is spread over the band a quarter at a time: from the centre out to the right
+        // edge, back to the centre, out to the left edge and back again.
+        float halfWidth = sinPhi / 2;
+        float step = 4 * halfWidth / numStepsInBand;
+        int stepsInQuarter = numStepsInBand / 4;
+        float t = (1 - bandPos) / 2;
+        int start = getBandStart(band);
+        for (int j = 0; j < numStepsInBand; j++) {
+            int quarter = j / stepsInQuarter;
+            int i = j % stepsInQuarter;
+            float s;
+            switch (quarter) {
+                case 0:
+                    s = 0.5f + (i * step);
+                    break;
+                case 1:
+                    s = 0.5f + halfWidth - (i * step);
+                    break;
+                case 2:
+                    s = 0.5f - (i * step);
+                    break;
+                default:
+                    s = 0.5f - halfWidth + (i * step);
+                    break;
+            }
+            target.putVertex(start + j, cosTheta[j] * sinPhi, bandPos, sinTheta[j] * sinPhi, s, t, color);
+        }
+    }
+
+    private void writeStrip(Target target, int band) {
+        if (target.indices == null) {
+            return;
+        }
+        int offset = target.indexBase + getStripStart(band);
+        for (int j = 0; j < numStepsInBand; j++) {
+            // k1 => k2 => k1+1
+            int k1 = getVertexIndex(band, j);
+            int k1Next = getVertexIndex(band, j + 1);
+            int k2 = getVertexIndex(band + 1, j);
+            int k2Next = getVertexIndex(band + 1, j + 1);
+            if (band == 0) {
+                offset = putTriangle(target.indices, offset, k1, k2, k2Next);
+            } else if (band == numVerticalBands - 2) {
+                offset = putTriangle(target.indices, offset, k1, k1Next, k2);
+            } else {
+                offset = putTriangle(target.indices, offset, k1, k2, k1Next);
+                offset = putTriangle(target.indices, offset, k1Next, k2, k2Next);
+            }
+        }
+    }
+
+    private static int putTriangle(ShortBuffer indices, int offset, int a, int b, int c) {
+        indices.put(offset, (short) a);
+        indices.put(offset + 1, (short) b);
+        indices.put(offset + 2, (short) c);
+        return offset + 3;
+    }
+
+    /**
+     * Where each attribute goes: a buffer, the distance in floats between consecutive vertices and the offset
+     * of the attribute inside a vertex. Separate buffers and a single interleaved buffer are both described
+     * this way.
+     */
+    static final class Target {
+        final FloatBuffer positions;
+        final int positionStride;
+        final int positionBase;
+        final FloatBuffer normals;
+        final int normalStride;
+        final int normalBase;
+        final FloatBuffer textureCoordinates;
+        final int textureCoordinateStride;
+        final int textureCoordinateBase;
+        final FloatBuffer colors;
+        final int colorStride;
+        final int colorBase;
+        final ShortBuffer indices;
+        final int indexBase;
+
+        Target(FloatBuffer positions, int positionStride, int positionOffset,
+               FloatBuffer normals, int normalStride, int normalOffset,
+               FloatBuffer textureCoordinates, int textureCoordinateStride, int textureCoordinateOffset,
+               FloatBuffer colors, int colorStride, int colorOffset,
+               ShortBuffer indices, int indexOffset) {
+            this.positions = positions;
+            this.positionStride = positionStride;
+            this.positionBase = base(positions) + positionOffset;
+            this.normals = normals;
+            this.normalStride = normalStride;
+            this.normalBase = base(normals) + normalOffset;
+            this.textureCoordinates = textureCoordinates;
+            this.textureCoordinateStride = textureCoordinateStride;
+            this.textureCoordinateBase = base(textureCoordinates) + textureCoordinateOffset;
+            this.colors = colors;
+            this.colorStride = colorStride;
+            this.colorBase = base(colors) + colorOffset;
+            this.indices = indices;
+            this.indexBase = indices == null ? 0 : indices.position() + indexOffset;
+        }
+
+        private static int base(FloatBuffer buffer) {
+            return buffer == null ? 0 : buffer.position();
+        }
+
+        private static void checkCapacity(FloatBuffer buffer, int base, int stride, int size, int vertexCount,
+                                          String name) {
+            if (buffer != null && base + (vertexCount - 1) * stride + size > buffer.limit()) {
+                throw new IllegalArgumentException(name + " buffer is too small for " + vertexCount + " vertices");
+            }
+        }
+
+        void checkCapacity(int vertexCount, int indexCount) {
+            checkCapacity(positions, positionBase, positionStride, POSITION_DATA_SIZE, vertexCount, "Position");
+            checkCapacity(normals, normalBase, normalStride, NORMAL_DATA_SIZE, vertexCount, "Normal");
+            checkCapacity(textureCoordinates, textureCoordinateBase, textureCoordinateStride,
+                    TEXTURE_COORDINATE_DATA_SIZE, vertexCount, "Texture coordinate");
+            checkCapacity(colors, colorBase, colorStride, COLOR_DATA_SIZE, vertexCount, "Color");
+            if (indices != null && indexBase + indexCount > indices.limit()) {
+                throw new IllegalArgumentException("Index buffer is too small for " + indexCount + " indices");
+            }
+        }
+
+        void putVertex(int vertex, float x, float y, float z, float s, float t, float[] color) {
+            if (positions != null) {
+                int i = positionBase + vertex * positionStride;
+                positions.put(i, x);
+                positions.put(i + 1, y);
+                positions.put(i + 2, z);
+            }
+            // normals of a unit sphere are its coordinates
+            if (normals != null) {
+                int i = normalBase + vertex * normalStride;
+                normals.put(i, x);
+                normals.put(i + 1, y);
+                normals.put(i + 2, z);
+            }
+            if (textureCoordinates != null) {
+                int i = textureCoordinateBase + vertex * textureCoordinateStride;
+                textureCoordinates.put(i, s);
+                textureCoordinates.put(i + 1, t);
+            }
+            if (colors != null) {
+                int i = colorBase + vertex * colorStride;
+                colors.put(i, color[0]);
+                colors.put(i + 1, color[1]);
+                colors.put(i + 2, color[2]);
+                colors.put(i + 3, color[3]);
+            }
+        }
+    }
+
+    /**
+     * Every band owns a disjoint range of both buffers, so halves of a band range can be written concurrently.
+     */
+    private final class BandTask extends RecursiveAction {
+        // never serialized, but RecursiveAction is Serializable
+        private static final long serialVersionUID = 1L;
+        private final Target target;
+        private final float[] sinTheta;
+        private final float[] cosTheta;
+        private final int from;
+        private final int to;
+
+        BandTask(Target target, float[] sinTheta, float[] cosTheta, int from, int to) {
+            this.target = target;
+            this.sinTheta = sinTheta;
+            this.cosTheta = cosTheta;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1 && (to - from) * numStepsInBand > PARALLEL_THRESHOLD_VERTICES / 4) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new BandTask(target, sinTheta, cosTheta, from, middle),
+                        new BandTask(target, sinTheta, cosTheta, middle, to));
+                return;
+            }
+            writeBands(target, sinTheta, cosTheta, from, to);
+        }
+    }
+}
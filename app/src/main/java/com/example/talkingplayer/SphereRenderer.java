@@ -1,235 +1,278 @@
 package com.example.talkingplayer;
 
 import android.content.Context;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.opengl.GLES20;
 import android.opengl.GLSurfaceView;
 import android.opengl.GLU;
-import android.opengl.GLUtils;
-import android.opengl.Matrix;
 import android.util.Log;
 
+import java.util.Random;
+
 import javax.microedition.khronos.egl.EGLConfig;
 import javax.microedition.khronos.opengles.GL10;
 
 public class SphereRenderer implements GLSurfaceView.Renderer {
     private final static String TAG = SphereRenderer.class.getSimpleName();
+    // time per frame the GL thread may spend uploading assets that finished loading
+    private static final long UPLOAD_BUDGET_NANOS = 4000000L;
+    // texture memory kept for textures no object uses anymore, in case they are needed again
+    private static final long TEXTURE_BUDGET_BYTES = 32L * 1024 * 1024;
+    // how often the GL calls of a frame are logged
+    private static final int STATE_LOG_INTERVAL_FRAMES = 300;
+    private static final int SECTION_UPLOADS = 0;
+    private static final int SECTION_SKY = 1;
+    private static final int SECTION_SPHERE = 2;
+    private static final int SECTION_INSTANCES = 3;
+    // the belt of small spheres around the big one, in its model space
+    private static final float BELT_INNER_RADIUS = 1.4f;
+    private static final float BELT_OUTER_RADIUS = 2.4f;
+    private static final float BELT_THICKNESS = 0.15f;
+    // the faintest stars shown unzoomed, about what the naked eye sees
+    private static final float STAR_MAGNITUDE_LIMIT = 6.5f;
     public Context context;
-    private float[] mProjectionMatrix = new float[16];
-    private float[] mModelMatrix = new float[16];
-    private float[] mViewMatrix = new float[16];
-    private volatile float mAngle;
-    private volatile float mScaleFactor = 1.0f;
+    private final FrameUniforms frameUniforms = new FrameUniforms();
+    // the sky turns with the sphere
+    private final FrameUniforms.Transform sphereTransform = frameUniforms.createTransform();
+    // written on the UI thread, copied out once per frame so a frame never mixes old and new values
+    private final CameraState cameraState = new CameraState();
+    private final CameraState.Snapshot camera = new CameraState.Snapshot();
+    // the device's attitude, if the sphere follows it
+    private volatile CameraState attitude;
+    private final CameraState.Snapshot attitudeSnapshot = new CameraState.Snapshot();
+    private final Quaternion orientation = new Quaternion();
+    // what the sphere's model matrix was last built from
+    private final Quaternion modelOrientation = new Quaternion();
     private float ratio;
+    private int viewportHeight;
     private SphereBox sphereBox;
+    private SphereLodSelector lodSelector;
+    private volatile boolean cubeMapSky;
+    // one of them, the other is null
     private NightSky nightSky;
-
-    public SphereRenderer(Context context) {
-        this.context = context;
+    private StarSky starSky;
+    private volatile int instanceCount;
+    private InstancedSpheres instancedSpheres;
+    private final Gl gl;
+    private final AssetLoader assetLoader;
+    private TextureRegistry textureRegistry;
+    private final FrameTimer frameTimer = new FrameTimer("Sphere", "uploads", "sky", "sphere", "instances");
+    private GlStateCache glState;
+    private int frameCount;
+
+    /**
+     * @param requestRender asks for a frame, called from a loader thread whenever an asset is ready to upload
+     */
+    public SphereRenderer(Context context, Runnable requestRender) {
+        this(context, new AndroidGl(), requestRender);
     }
 
-    public static int loadTexture(final Context context, final int resourceId) {
-        final int[] textureHandle = new int[1];
-
-        GLES20.glGenTextures(1, textureHandle, 0);
-
-        if (textureHandle[0] != 0) {
-            final BitmapFactory.Options options = new BitmapFactory.Options();
-            options.inScaled = false;   // No pre-scaling
-
-            // Read in the resource
-            final Bitmap bitmap = BitmapFactory.decodeResource(context.getResources(), resourceId, options);
-
-            // Bind to the texture in OpenGL
-            GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, textureHandle[0]);
-
-            // Set filtering
-            GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_NEAREST);
-            GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_NEAREST);
-
-            // Load the bitmap into the bound texture.
-            GLUtils.texImage2D(GLES20.GL_TEXTURE_2D, 0, bitmap, 0);
-
-            // Recycle the bitmap, since its data has been loaded into OpenGL.
-            bitmap.recycle();
-        }
-
-        if (textureHandle[0] == 0) {
-            throw new RuntimeException("Error loading texture.");
-        }
-
-        return textureHandle[0];
+    public SphereRenderer(Context context, Gl gl, Runnable requestRender) {
+        this.context = context;
+        this.gl = gl;
+        this.assetLoader = new AssetLoader(requestRender);
     }
 
     @Override
     public void onSurfaceChanged(GL10 gl10, int width, int height) {
         // Set the OpenGL viewport to the same size as the surface.
-        GLES20.glViewport(0, 0, width, height);
+        gl.glViewport(0, 0, width, height);
 
         // Create a new perspective projection matrix. The height will stay the same
         // while the width will vary as per aspect ratio.
         ratio = (float) width / height;
+        viewportHeight = height;
 
     }
 
-    public static int loadVertexShader(String vertexShader) {
-        // Load in the vertex shader.
-        int mVertexShaderHandle = GLES20.glCreateShader(GLES20.GL_VERTEX_SHADER);
-
-        if (mVertexShaderHandle != 0) {
-            // Pass in the shader source.
-            GLES20.glShaderSource(mVertexShaderHandle, vertexShader);
-
-            // Compile the shader.
-            GLES20.glCompileShader(mVertexShaderHandle);
-
-            // Get the compilation status.
-            final int[] compileStatus = new int[1];
-            GLES20.glGetShaderiv(mVertexShaderHandle, GLES20.GL_COMPILE_STATUS, compileStatus, 0);
-
-            // If the compilation failed, delete the shader.
-            if (compileStatus[0] == 0) {
-                GLES20.glDeleteShader(mVertexShaderHandle);
-                mVertexShaderHandle = 0;
-
-            }
-
-            if (mVertexShaderHandle == 0) {
-                throw new RuntimeException("Error creating vertex shader.");
-            }
+    public static void checkGLError(Gl gl, String TAG, String where) {
+        int errorCode = gl.glGetError();
+        if (errorCode == 0)
+            Log.d(TAG, where + ": " + errorCode);
+        else {
+            Log.e(TAG, where + ": " + errorCode + GLU.gluErrorString(errorCode));
         }
-        return mVertexShaderHandle;
     }
 
-    public static int loadFragmentShader(String fragmentShader) {
-        // Load in the vertex shader.
-        int mFragmentShaderHandle = GLES20.glCreateShader(GLES20.GL_FRAGMENT_SHADER);
-
-        if (mFragmentShaderHandle != 0) {
-            // Pass in the shader source.
-            GLES20.glShaderSource(mFragmentShaderHandle, fragmentShader);
-
-            // Compile the shader.
-            GLES20.glCompileShader(mFragmentShaderHandle);
-
-            // Get the compilation status.
-            final int[] compileStatus = new int[1];
-            GLES20.glGetShaderiv(mFragmentShaderHandle, GLES20.GL_COMPILE_STATUS, compileStatus, 0);
-
-            // If the compilation failed, delete the shader.
-            if (compileStatus[0] == 0) {
-                Log.e(TAG, GLES20.glGetShaderInfoLog(mFragmentShaderHandle));
-                GLES20.glDeleteShader(mFragmentShaderHandle);
-                mFragmentShaderHandle = 0;
-            }
+    @Override
+    public void onSurfaceCreated(GL10 gl10, EGLConfig eglConfig) {
+        gl.glEnable(GLES20.GL_DITHER);
+        gl.glClearColor(0.0f, 0.0f, 0.0f, 0.0f);
+        gl.glEnable(GLES20.GL_DEPTH_TEST);
+        GlCapabilities capabilities = GlCapabilities.query(gl);
+        // whatever was loading for a previous context is of no use anymore
+        assetLoader.reset();
+        releaseTextures();
+        frameTimer.onSurfaceCreated(gl, capabilities);
+        glState = new GlStateCache(gl, capabilities);
+        // the textures of a previous context are gone with it
+        textureRegistry = new TextureRegistry(assetLoader, capabilities, glState, TEXTURE_BUDGET_BYTES);
+        ShaderCache shaderCache = new ShaderCache(gl, context, capabilities);
+        if (cubeMapSky) {
+            nightSky = new NightSky(context, capabilities, glState, shaderCache, textureRegistry);
+            starSky = null;
+        } else {
+            starSky = new StarSky(context, capabilities, glState, shaderCache, assetLoader);
+            nightSky = null;
         }
-
-        if (mFragmentShaderHandle == 0) {
-            throw new RuntimeException("Error creating fragment shader.");
+        sphereBox = new SphereBox(context, capabilities, glState, shaderCache, assetLoader, textureRegistry);
+        lodSelector = new SphereLodSelector(sphereBox.getLevelCount());
+        int instanceCount = this.instanceCount;
+        instancedSpheres = null;
+        if (instanceCount > 0) {
+            instancedSpheres = new InstancedSpheres(context, capabilities, glState, shaderCache, assetLoader,
+                    textureRegistry, instanceCount);
+            addBelt(instancedSpheres, instanceCount);
+            Log.d(TAG, instanceCount + " instances, " + instancedSpheres.getBatchSize() + " per draw call");
         }
-        return mFragmentShaderHandle;
+        checkGLError(gl, TAG, "initiation sphere box");
     }
 
-    public static int linkVertexAndFragmentShaders(int mVertexShaderHandle, int mFragmentShaderHandle) {
-        // Create a program object and store the handle to it.
-        int mProgramHandle = GLES20.glCreateProgram();
-
-        if (mProgramHandle != 0) {
-            // Bind the vertex shader to the program.
-            GLES20.glAttachShader(mProgramHandle, mVertexShaderHandle);
-
-            // Bind the fragment shader to the program.
-            GLES20.glAttachShader(mProgramHandle, mFragmentShaderHandle);
-
-            // Bind attributes
-            GLES20.glBindAttribLocation(mProgramHandle, 0, "a_Position");
-            GLES20.glBindAttribLocation(mProgramHandle, 1, "a_Color");
-            GLES20.glBindAttribLocation(mProgramHandle, 2, "a_Normal");
-            GLES20.glBindAttribLocation(mProgramHandle, 3, "a_TexCoordinate");
-
-            // Link the two shaders together into a program.
-            GLES20.glLinkProgram(mProgramHandle);
-
-            // Get the link status.
-            final int[] linkStatus = new int[1];
-            GLES20.glGetProgramiv(mProgramHandle, GLES20.GL_LINK_STATUS, linkStatus, 0);
+    /**
+     * Hands the previous surface's textures back and empties its registry. The new context has no
+     * textures yet, so deleting the old names can't hit any of its own.
+     */
+    private void releaseTextures() {
+        if (textureRegistry == null) {
+            return;
+        }
+        if (nightSky != null) {
+            nightSky.release();
+        }
+        sphereBox.release();
+        if (instancedSpheres != null) {
+            instancedSpheres.release();
+        }
+        Log.d(TAG, "Textures of the previous surface: " + textureRegistry.getStats());
+        textureRegistry.clear();
+    }
 
-            // If the link failed, delete the program.
-            if (linkStatus[0] == 0) {
-                GLES20.glDeleteProgram(mProgramHandle);
-                mProgramHandle = 0;
-            }
+    @Override
+    public void onDrawFrame(GL10 gl10) {
+        frameTimer.beginFrame();
+        glState.beginFrame();
+        if (++frameCount % STATE_LOG_INTERVAL_FRAMES == 0) {
+            Log.d(TAG, "GL calls last frame: " + glState.getIssuedCalls() + " issued, "
+                    + glState.getSkippedCalls() + " skipped, textures: " + textureRegistry.getStats());
         }
+        // Upload what the loader threads have prepared; objects draw placeholders until then
+        frameTimer.beginSection(SECTION_UPLOADS);
+        assetLoader.drainUploads(UPLOAD_BUDGET_NANOS);
+        frameTimer.endSection(SECTION_UPLOADS);
+        gl.glClear(GLES20.GL_DEPTH_BUFFER_BIT | GLES20.GL_COLOR_BUFFER_BIT);
 
-        if (mProgramHandle == 0) {
-            throw new RuntimeException("Error creating program.");
+//         Bind Attributes
+        setUpViewMatrix();
+        checkGLError(gl, TAG, "View Matrix Setup");
+        frameTimer.beginSection(SECTION_SKY);
+        if (starSky != null) {
+            starSky.draw(sphereTransform);
+        } else {
+            nightSky.draw(sphereTransform);
         }
-        return mProgramHandle;
+        frameTimer.endSection(SECTION_SKY);
+        frameTimer.beginSection(SECTION_SPHERE);
+        sphereBox.draw(sphereTransform);
+        frameTimer.endSection(SECTION_SPHERE);
+        if (instancedSpheres != null) {
+            frameTimer.beginSection(SECTION_INSTANCES);
+            instancedSpheres.draw(sphereTransform);
+            frameTimer.endSection(SECTION_INSTANCES);
+        }
+        frameTimer.endFrame();
     }
 
-    public static void checkGLError(String TAG, String where) {
-        int errorCode = GLES20.glGetError();
-        if (errorCode == 0)
-            Log.d(TAG, where + ": " + errorCode);
-        else {
-            Log.e(TAG, where + ": " + errorCode + GLU.gluErrorString(errorCode));
-        }
+    public FrameTimer getFrameTimer() {
+        return frameTimer;
     }
 
-    @Override
-    public void onSurfaceCreated(GL10 gl10, EGLConfig eglConfig) {
-        GLES20.glEnable(GLES20.GL_DITHER);
-        GLES20.glClearColor(0.0f, 0.0f, 0.0f, 0.0f);
-        GLES20.glEnable(GLES20.GL_DEPTH_TEST);
-        nightSky = new NightSky(context);
-        sphereBox = new SphereBox(context);
-        checkGLError(TAG, "initiation sphere box");
+    /**
+     * @return the camera, to be changed on the UI thread only
+     */
+    public CameraState getCameraState() {
+        return cameraState;
     }
 
-    @Override
-    public void onDrawFrame(GL10 gl10) {
-        GLES20.glClear(GLES20.GL_DEPTH_BUFFER_BIT | GLES20.GL_COLOR_BUFFER_BIT);
+    /**
+     * Turns the sphere with the device as {@code attitude} publishes it, dragging turns it further. Null
+     * leaves it to dragging alone.
+     */
+    public void setAttitude(CameraState attitude) {
+        this.attitude = attitude;
+    }
 
-//         Bind Attributes
-        setUpViewMatrix();
-        checkGLError(TAG, "View Matrix Setup");
-        nightSky.draw(mModelMatrix, mViewMatrix, mProjectionMatrix);
-        sphereBox.draw(mModelMatrix, mViewMatrix, mProjectionMatrix);
+    /**
+     * Surrounds the sphere with a belt of {@code count} small ones, drawn instanced, from the next surface on.
+     */
+    public void setInstanceCount(int count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Instance count can't be negative, got " + count);
+        }
+        instanceCount = count;
     }
 
-    public float getAngle() {
-        return mAngle;
+    /**
+     * Scatters the instances through a flat ring, the same way every time.
+     */
+    private static void addBelt(InstancedSpheres spheres, int count) {
+        Random random = new Random(count);
+        Quaternion rotation = new Quaternion();
+        for (int i = 0; i < count; i++) {
+            double angle = random.nextDouble() * 2 * Math.PI;
+            float radius = BELT_INNER_RADIUS + random.nextFloat() * (BELT_OUTER_RADIUS - BELT_INNER_RADIUS);
+            float x = (float) Math.cos(angle) * radius;
+            float z = (float) Math.sin(angle) * radius;
+            float y = (random.nextFloat() - 0.5f) * BELT_THICKNESS;
+            float scale = 0.015f + random.nextFloat() * 0.03f;
+            rotation.setAxisAngle(random.nextFloat() - 0.5f, random.nextFloat() - 0.5f, random.nextFloat() - 0.5f,
+                    random.nextFloat() * 360f);
+            int shade = 0x80 + random.nextInt(0x80);
+            int tint = 0xff000000 | shade << 16 | (shade * 7 / 8) << 8 | (shade * 3 / 4);
+            spheres.add(x, y, z, scale, rotation, tint);
+        }
     }
 
-    public void setAngle(float mAngle) {
-        this.mAngle = mAngle;
+    /**
+     * Whether the sky is the old cube map rather than the star catalog, from the next surface on.
+     */
+    public void setCubeMapSky(boolean cubeMapSky) {
+        this.cubeMapSky = cubeMapSky;
     }
 
     public void setZoom(float mScaleFactor) {
-        this.mScaleFactor = mScaleFactor;
+        cameraState.setZoom(mScaleFactor);
     }
 
     private void setUpViewMatrix() {
+        cameraState.read(camera);
+        final float zoom = camera.zoom;
+        final float halfWidth;
+        final float halfHeight;
         if (ratio > 1) {
-            final float left = -ratio / mScaleFactor;
-            final float right = ratio / mScaleFactor;
-            final float bottom = -1.0f / mScaleFactor;
-            final float top = 1.0f / mScaleFactor;
+            final float left = -ratio / zoom;
+            final float right = ratio / zoom;
+            final float bottom = -1.0f / zoom;
+            final float top = 1.0f / zoom;
             final float near = 1.0f;
             final float far = 10.0f;
-            Matrix.frustumM(mProjectionMatrix, 0, left, right, bottom, top, near, far);
+            frameUniforms.setFrustum(left, right, bottom, top, near, far);
+            halfWidth = right;
+            halfHeight = top;
         } else {
-            final float top = 1 / (ratio * mScaleFactor);
+            final float top = 1 / (ratio * zoom);
             final float bottom = -1 * (top);
-            final float left = -1.0f / mScaleFactor;
-            final float right = 1.0f / mScaleFactor;
+            final float left = -1.0f / zoom;
+            final float right = 1.0f / zoom;
             final float near = 1.0f;
             final float far = 10.0f;
-            Matrix.frustumM(mProjectionMatrix, 0, left, right, bottom, top, near, far);
-
+            frameUniforms.setFrustum(left, right, bottom, top, near, far);
+            halfWidth = right;
+            halfHeight = top;
+        }
+        if (starSky != null) {
+            // zooming in shows fainter stars, as a telescope would, 5 magnitudes per tenfold
+            starSky.setView((float) Math.atan(Math.sqrt(halfWidth * halfWidth + halfHeight * halfHeight)),
+                    STAR_MAGNITUDE_LIMIT + 5f * (float) Math.log10(zoom));
         }
-        checkGLError(TAG, "Projection Matrix Setup");
 
 
         // Position the eye behind the origin.
@@ -246,9 +289,27 @@ public class SphereRenderer implements GLSurfaceView.Renderer {
         final float upY = 1.0f;
         final float upZ = 0.0f;
 
-        Matrix.setLookAtM(mViewMatrix, 0, eyeX, eyeY, eyeZ, lookX, lookY, lookZ, upX, upY, upZ);
-        Matrix.setIdentityM(mModelMatrix, 0);
-        Matrix.setRotateM(mModelMatrix, 0, mAngle, 0.0f, 1.0f, 0.0f);
+        frameUniforms.setLookAt(eyeX, eyeY, eyeZ, lookX, lookY, lookZ, upX, upY, upZ);
+        // Only rebuilds what zooming or resizing changed, the view never does
+        frameUniforms.update();
+        // Dragging turns the sphere in view after the device did
+        CameraState attitude = this.attitude;
+        if (attitude != null) {
+            attitude.read(attitudeSnapshot);
+            orientation.multiply(camera.orientation, attitudeSnapshot.orientation);
+        } else {
+            orientation.set(camera.orientation);
+        }
+        // The orientation only changes while the sphere is turned
+        if (!modelOrientation.equals(orientation)) {
+            modelOrientation.set(orientation);
+            modelOrientation.toMatrix(sphereTransform.getModelMatrix(), 0);
+            sphereTransform.modelChanged();
+        }
+
+        // Tessellate the unit sphere according to how many pixels it covers
+        lodSelector.update(SphereLodSelector.getProjectedRadius(1.0f, eyeZ, 1.0f, halfHeight, viewportHeight));
+        sphereBox.setLevelOfDetail(lodSelector.getLevel(), lodSelector.getMorph());
     }
 
 
@@ -0,0 +1,267 @@
+package com.example.talkingplayer;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Stars bucketed on a grid over the celestial sphere, ready to be drawn as points out of one vertex
+ * buffer. The grid is a cube projected onto the sphere: {@link #CELLS_PER_FACE_SIDE} squared cells per
+ * face, so every cell covers roughly the same patch of sky. A cell's stars are stored together, brightest
+ * first, so the stars of a cell down to any magnitude are a single range of vertices.
+ * <p>
+ * A star is {@link #FLOATS_PER_STAR} floats: its unit direction in equatorial coordinates, its apparent
+ * magnitude and its color. No Android dependencies, the asset packer bakes the catalog with it.
+ */
+public final class StarCatalog {
+    public static final String ASSET_NAME = "stars/catalog";
+    public static final int FLOATS_PER_STAR = 7;
+    public static final int POSITION_OFFSET = 0;
+    public static final int MAGNITUDE_OFFSET = 3;
+    public static final int COLOR_OFFSET = 4;
+    public static final int CELLS_PER_FACE_SIDE = 4;
+    public static final int CELL_COUNT = 6 * CELLS_PER_FACE_SIDE * CELLS_PER_FACE_SIDE;
+    // what generate() makes when there is no real catalog: about as many stars as binoculars show
+    public static final int GENERATED_STAR_COUNT = 120000;
+    private static final float GENERATED_BRIGHTEST_MAGNITUDE = -1.5f;
+    private static final float GENERATED_FAINTEST_MAGNITUDE = 10f;
+    // stars get about this many times more numerous per magnitude fainter
+    private static final double MAGNITUDE_GROWTH = Math.pow(10, 0.45);
+    // the galactic plane is tilted this far against the celestial equator
+    private static final double GALACTIC_TILT = Math.toRadians(62.87);
+    // B-V color index to RGB, from hot blue to cool red stars
+    private static final float[] COLOR_INDICES = {-0.4f, 0f, 0.6f, 1.2f, 2f};
+    private static final float[][] COLORS = {
+            {0.61f, 0.69f, 1f}, {0.82f, 0.87f, 1f}, {1f, 0.96f, 0.9f}, {1f, 0.82f, 0.6f}, {1f, 0.6f, 0.35f}};
+    // the index of a star in a sort key, which limits how many there can be
+    private static final int INDEX_BITS = 20;
+    private static final float[] CELL_CENTERS = new float[CELL_COUNT * 3];
+    // in radians
+    private static final float[] CELL_RADII = new float[CELL_COUNT];
+
+    static {
+        float[] corner = new float[3];
+        for (int cell = 0; cell < CELL_COUNT; cell++) {
+            int face = cell / (CELLS_PER_FACE_SIDE * CELLS_PER_FACE_SIDE);
+            int row = cell / CELLS_PER_FACE_SIDE % CELLS_PER_FACE_SIDE;
+            int column = cell % CELLS_PER_FACE_SIDE;
+            float cellSize = 2f / CELLS_PER_FACE_SIDE;
+            float u = -1f + (column + 0.5f) * cellSize;
+            float v = -1f + (row + 0.5f) * cellSize;
+            getDirection(face, u, v, CELL_CENTERS, cell * 3);
+            // a cell is bounded by great circles, so its farthest points from the center are its corners
+            float cosRadius = 1f;
+            for (int i = 0; i < 4; i++) {
+                getDirection(face, u + ((i & 1) - 0.5f) * cellSize, v + ((i >> 1) - 0.5f) * cellSize, corner, 0);
+                cosRadius = Math.min(cosRadius, corner[0] * CELL_CENTERS[cell * 3]
+                        + corner[1] * CELL_CENTERS[cell * 3 + 1] + corner[2] * CELL_CENTERS[cell * 3 + 2]);
+            }
+            CELL_RADII[cell] = (float) Math.acos(cosRadius);
+        }
+    }
+
+    private final FloatBuffer stars;
+    private final int[] cellStarts;
+
+    /**
+     * @param stars      already bucketed, e.g. straight out of an {@link AssetPack}
+     * @param cellStarts where each cell's stars start, followed by the star count
+     */
+    public StarCatalog(FloatBuffer stars, int[] cellStarts) {
+        if (cellStarts.length != CELL_COUNT + 1) {
+            throw new IllegalArgumentException("Expected " + (CELL_COUNT + 1) + " cell starts, got "
+                    + cellStarts.length);
+        }
+        if (stars.remaining() != cellStarts[CELL_COUNT] * FLOATS_PER_STAR) {
+            throw new IllegalArgumentException("Expected " + cellStarts[CELL_COUNT] + " stars, got "
+                    + stars.remaining() / FLOATS_PER_STAR);
+        }
+        this.stars = stars;
+        this.cellStarts = cellStarts;
+    }
+
+    /**
+     * Buckets {@code count} stars of {@link #FLOATS_PER_STAR} floats each, in any order.
+     */
+    public static StarCatalog bucket(float[] unsorted, int count) {
+        if (count >= 1 << INDEX_BITS) {
+            throw new IllegalArgumentException("At most " + ((1 << INDEX_BITS) - 1) + " stars, got " + count);
+        }
+        // by cell, then by magnitude
+        long[] keys = new long[count];
+        int[] cellStarts = new int[CELL_COUNT + 1];
+        for (int i = 0; i < count; i++) {
+            int offset = i * FLOATS_PER_STAR;
+            int cell = getCell(unsorted[offset + POSITION_OFFSET], unsorted[offset + POSITION_OFFSET + 1],
+                    unsorted[offset + POSITION_OFFSET + 2]);
+            int bits = Float.floatToIntBits(unsorted[offset + MAGNITUDE_OFFSET]);
+            // ordered like the floats when compared unsigned
+            long magnitude = (bits ^ ((bits >> 31) | 0x80000000)) & 0xffffffffL;
+            keys[i] = (long) cell << (32 + INDEX_BITS) | magnitude << INDEX_BITS | i;
+            cellStarts[cell + 1]++;
+        }
+        Arrays.sort(keys);
+        for (int cell = 0; cell < CELL_COUNT; cell++) {
+            cellStarts[cell + 1] += cellStarts[cell];
+        }
+        FloatBuffer stars = SphereMeshGenerator.allocateFloatBuffer(count * FLOATS_PER_STAR);
+        for (long key : keys) {
+            stars.put(unsorted, (int) (key & ((1 << INDEX_BITS) - 1)) * FLOATS_PER_STAR, FLOATS_PER_STAR);
+        }
+        stars.flip();
+        return new StarCatalog(stars, cellStarts);
+    }
+
+    /**
+     * Makes up a plausible sky: fainter stars are more numerous and crowd towards the galactic plane.
+     */
+    public static StarCatalog generate(int count, long seed) {
+        Random random = new Random(seed);
+        float[] stars = new float[count * FLOATS_PER_STAR];
+        double brightest = Math.pow(MAGNITUDE_GROWTH, GENERATED_BRIGHTEST_MAGNITUDE);
+        double faintest = Math.pow(MAGNITUDE_GROWTH, GENERATED_FAINTEST_MAGNITUDE);
+        for (int i = 0; i < count; i++) {
+            double magnitude = Math.log(brightest + random.nextDouble() * (faintest - brightest))
+                    / Math.log(MAGNITUDE_GROWTH);
+            double sinLatitude = random.nextDouble() * 2 - 1;
+            if (random.nextDouble() < (magnitude - GENERATED_BRIGHTEST_MAGNITUDE)
+                    / (GENERATED_FAINTEST_MAGNITUDE - GENERATED_BRIGHTEST_MAGNITUDE)) {
+                sinLatitude = sinLatitude * sinLatitude * sinLatitude;
+            }
+            double longitude = random.nextDouble() * 2 * Math.PI;
+            double cosLatitude = Math.sqrt(1 - sinLatitude * sinLatitude);
+            double x = cosLatitude * Math.cos(longitude);
+            double y = cosLatitude * Math.sin(longitude);
+            // from galactic to equatorial, roughly
+            double rightAscension = Math.atan2(y * Math.cos(GALACTIC_TILT) - sinLatitude * Math.sin(GALACTIC_TILT), x);
+            double declination = Math.asin(y * Math.sin(GALACTIC_TILT) + sinLatitude * Math.cos(GALACTIC_TILT));
+            float colorIndex = (float) Math.max(-0.4, Math.min(2.0, 0.6 + random.nextGaussian() * 0.4));
+            putStar(stars, i * FLOATS_PER_STAR, rightAscension, declination, (float) magnitude, colorIndex);
+        }
+        return bucket(stars, count);
+    }
+
+    /**
+     * Writes a star as {@link #bucket(float[], int)} takes it.
+     *
+     * @param rightAscension in radians
+     * @param declination    in radians
+     * @param colorIndex     B-V
+     */
+    public static void putStar(float[] stars, int offset, double rightAscension, double declination,
+                               float magnitude, float colorIndex) {
+        double cosDeclination = Math.cos(declination);
+        stars[offset + POSITION_OFFSET] = (float) (cosDeclination * Math.cos(rightAscension));
+        stars[offset + POSITION_OFFSET + 1] = (float) (cosDeclination * Math.sin(rightAscension));
+        stars[offset + POSITION_OFFSET + 2] = (float) Math.sin(declination);
+        stars[offset + MAGNITUDE_OFFSET] = magnitude;
+        int i = 1;
+        while (i < COLOR_INDICES.length - 1 && colorIndex > COLOR_INDICES[i]) {
+            i++;
+        }
+        float t = Math.max(0f, Math.min(1f, (colorIndex - COLOR_INDICES[i - 1])
+                / (COLOR_INDICES[i] - COLOR_INDICES[i - 1])));
+        for (int c = 0; c < 3; c++) {
+            stars[offset + COLOR_OFFSET + c] = COLORS[i - 1][c] + (COLORS[i][c] - COLORS[i - 1][c]) * t;
+        }
+    }
+
+    /**
+     * @return the cell a direction falls into, which needn't be normalized
+     */
+    public static int getCell(float x, float y, float z) {
+        float ax = Math.abs(x);
+        float ay = Math.abs(y);
+        float az = Math.abs(z);
+        int face;
+        float u;
+        float v;
+        if (ax >= ay && ax >= az) {
+            face = x > 0 ? 0 : 1;
+            u = y / ax;
+            v = z / ax;
+        } else if (ay >= az) {
+            face = y > 0 ? 2 : 3;
+            u = x / ay;
+            v = z / ay;
+        } else {
+            face = z > 0 ? 4 : 5;
+            u = x / az;
+            v = y / az;
+        }
+        int column = Math.min(CELLS_PER_FACE_SIDE - 1, (int) ((u + 1f) * 0.5f * CELLS_PER_FACE_SIDE));
+        int row = Math.min(CELLS_PER_FACE_SIDE - 1, (int) ((v + 1f) * 0.5f * CELLS_PER_FACE_SIDE));
+        return (face * CELLS_PER_FACE_SIDE + row) * CELLS_PER_FACE_SIDE + column;
+    }
+
+    /**
+     * The point (u, v) of a face of the cube, both in [-1, 1], projected onto the unit sphere.
+     */
+    private static void getDirection(int face, float u, float v, float[] out, int offset) {
+        float x;
+        float y;
+        float z;
+        float sign = face % 2 == 0 ? 1f : -1f;
+        if (face < 2) {
+            x = sign;
+            y = u;
+            z = v;
+        } else if (face < 4) {
+            x = u;
+            y = sign;
+            z = v;
+        } else {
+            x = u;
+            y = v;
+            z = sign;
+        }
+        float length = (float) Math.sqrt(x * x + y * y + z * z);
+        out[offset] = x / length;
+        out[offset + 1] = y / length;
+        out[offset + 2] = z / length;
+    }
+
+    /**
+     * @return whether any of the cell lies within {@code angle} radians of the unit direction (x, y, z)
+     */
+    public static boolean isCellWithin(int cell, float x, float y, float z, float angle) {
+        float cosCenter = x * CELL_CENTERS[cell * 3] + y * CELL_CENTERS[cell * 3 + 1] + z * CELL_CENTERS[cell * 3 + 2];
+        return Math.acos(Math.max(-1f, Math.min(1f, cosCenter))) <= angle + CELL_RADII[cell];
+    }
+
+    /**
+     * @return every star, bucketed, for the vertex buffer
+     */
+    public FloatBuffer getStars() {
+        return stars.duplicate();
+    }
+
+    public int getStarCount() {
+        return cellStarts[CELL_COUNT];
+    }
+
+    public int getCellStart(int cell) {
+        return cellStarts[cell];
+    }
+
+    /**
+     * @return how many stars of the cell are at least as bright as {@code magnitudeLimit}, they come first
+     */
+    public int getVisibleCount(int cell, float magnitudeLimit) {
+        int low = cellStarts[cell];
+        int high = cellStarts[cell + 1];
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (stars.get(stars.position() + middle * FLOATS_PER_STAR + MAGNITUDE_OFFSET) <= magnitudeLimit) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low - cellStarts[cell];
+    }
+
+    int[] getCellStarts() {
+        return cellStarts;
+    }
+}
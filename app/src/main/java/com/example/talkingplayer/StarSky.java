@@ -0,0 +1,239 @@
+package com.example.talkingplayer;
+
+import android.content.Context;
+import android.opengl.GLES20;
+import android.util.Log;
+
+import java.util.concurrent.Callable;
+
+import static com.example.talkingplayer.SphereRenderer.checkGLError;
+
+/**
+ * The sky as a {@link StarCatalog} of point sprites at infinity, all in one static vertex buffer. Only the
+ * catalog cells in view are drawn, each down to the faintest magnitude the zoom shows, so zooming in
+ * brings out fainter stars without drawing the rest of the sky. Needs no texture, and touches only the few
+ * pixels each star covers.
+ * <p>
+ * The catalog comes from the asset pack, or is made up on a loader thread without one. Nothing is drawn
+ * until it is uploaded.
+ */
+public class StarSky {
+    private final static String TAG = StarSky.class.getSimpleName();
+    private static final int BYTES_PER_FLOAT = 4;
+    private static final float MAX_POINT_SIZE = 6f;
+    private static final long GENERATED_SEED = 1;
+
+    private final GlStateCache mState;
+    private final boolean mUseVertexArray;
+    private final VertexLayout mLayout;
+    private final int[] mBufferId = new int[1];
+    private final int[] mVertexArrayId = new int[1];
+    private StarCatalog mCatalog;
+
+    private final int mProgramHandle;
+    private final int mMVPMatrixHandle;
+    private final int mMagnitudeLimitHandle;
+    private final int mMaxPointSizeHandle;
+
+    // what is in view, set once per frame
+    private float mViewRadius = (float) Math.PI;
+    private float mMagnitudeLimit = 6f;
+    // the ranges of stars drawn, and what they were found for
+    private final int[] mFirsts = new int[StarCatalog.CELL_COUNT];
+    private final int[] mCounts = new int[StarCatalog.CELL_COUNT];
+    private int mRangeCount;
+    private int mVisibleStars;
+    private boolean mRangesValid;
+    private final float[] mRangesDirection = new float[3];
+    private float mRangesViewRadius;
+    private float mRangesMagnitudeLimit;
+    private final float[] mDirection = new float[3];
+
+    private final String vertexShader =
+            "uniform mat4 u_MVPMatrix;      \n"
+                    + "uniform float u_MagnitudeLimit; \n"   // The faintest stars drawn.
+                    + "uniform float u_MaxPointSize;   \n"
+                    + "attribute vec3 a_Position;     \n"        // The star's direction.
+                    + "attribute float a_Magnitude;   \n"
+                    + "attribute vec3 a_Color;        \n"
+                    + "varying vec3 v_Color;          \n"
+                    + "void main()                                                   \n"
+                    + "{                                                             \n"
+                    // A direction, so the star stays put however the eye moves.
+                    + "   vec4 position = u_MVPMatrix * vec4(a_Position, 0.0);       \n"
+                    // At infinity, which is just in front of the far plane.
+                    + "   gl_Position = vec4(position.xy, position.w * 0.99999, position.w); \n"
+                    // How much brighter than the faintest star drawn, every magnitude is 2.512 times.
+                    + "   float flux = pow(2.512, u_MagnitudeLimit - a_Magnitude);   \n"
+                    + "   gl_PointSize = clamp(sqrt(flux), 1.0, u_MaxPointSize);     \n"
+                    + "   v_Color = a_Color * clamp(0.3 + 0.1 * flux, 0.0, 1.0);     \n"
+                    + "}                                                             \n";
+    private final String fragmentShader =
+            "precision mediump float;       \n"
+                    + "varying vec3 v_Color;          \n"
+                    + "void main()                    \n"
+                    + "{                              \n"
+                    // A round star fading towards its rim.
+                    + "   float falloff = 1.0 - smoothstep(0.2, 0.5, length(gl_PointCoord - vec2(0.5))); \n"
+                    + "   if (falloff <= 0.0) discard;                                              \n"
+                    + "   gl_FragColor = vec4(v_Color * falloff, 1.0);                              \n"
+                    + "}                                                                            \n";
+
+    public StarSky(final Context context, GlCapabilities capabilities, GlStateCache state, ShaderCache shaderCache,
+                   AssetLoader assetLoader) {
+        mState = state;
+        mUseVertexArray = capabilities.supportsVertexArrayObjects();
+        ShaderProgram program = shaderCache.get(vertexShader, fragmentShader);
+        mProgramHandle = program.getProgramHandle();
+        mMVPMatrixHandle = program.getUniformLocation("u_MVPMatrix");
+        mMagnitudeLimitHandle = program.getUniformLocation("u_MagnitudeLimit");
+        mMaxPointSizeHandle = program.getUniformLocation("u_MaxPointSize");
+        mLayout = new VertexLayout.Builder()
+                .add(program.getAttribLocation("a_Position"), 3, StarCatalog.POSITION_OFFSET)
+                .add(program.getAttribLocation("a_Magnitude"), 1, StarCatalog.MAGNITUDE_OFFSET)
+                .add(program.getAttribLocation("a_Color"), 3, StarCatalog.COLOR_OFFSET)
+                .build();
+        checkGLError(mState.getGl(), TAG, "Handles Created");
+
+        assetLoader.load(new Callable<StarCatalog>() {
+            @Override
+            public StarCatalog call() {
+                return loadCatalog(AssetPackLoader.get(context));
+            }
+        }, new AssetLoader.Upload<StarCatalog>() {
+            @Override
+            public void upload(StarCatalog catalog) {
+                setCatalog(catalog);
+            }
+        });
+    }
+
+    /**
+     * Takes the catalog straight out of the mapped asset pack when it's there, otherwise makes one up.
+     * Runs on a loader thread.
+     */
+    private static StarCatalog loadCatalog(AssetPack assetPack) {
+        AssetPack.Entry entry = assetPack != null ? assetPack.getEntry(StarCatalog.ASSET_NAME) : null;
+        if (entry != null && entry.getCellCount() == StarCatalog.CELL_COUNT
+                && entry.getFloatsPerStar() == StarCatalog.FLOATS_PER_STAR) {
+            return new StarCatalog(assetPack.getStars(entry), assetPack.getStarCellStarts(entry));
+        }
+        StarCatalog catalog = StarCatalog.generate(StarCatalog.GENERATED_STAR_COUNT, GENERATED_SEED);
+        Log.d(TAG, "Made up " + catalog.getStarCount() + " stars");
+        return catalog;
+    }
+
+    /**
+     * Uploads the stars to draw from now on, once.
+     */
+    void setCatalog(StarCatalog catalog) {
+        if (mCatalog != null) {
+            throw new IllegalStateException("Stars are uploaded already");
+        }
+        Gl gl = mState.getGl();
+        gl.glGenBuffers(1, mBufferId, 0);
+        if (mUseVertexArray) {
+            gl.glGenVertexArrays(1, mVertexArrayId, 0);
+            mState.bindVertexArray(mVertexArrayId[0]);
+        }
+        mState.bindBuffer(GLES20.GL_ARRAY_BUFFER, mBufferId[0]);
+        gl.glBufferData(GLES20.GL_ARRAY_BUFFER, catalog.getStarCount() * StarCatalog.FLOATS_PER_STAR * BYTES_PER_FLOAT,
+                catalog.getStars(), GLES20.GL_STATIC_DRAW);
+        if (mUseVertexArray) {
+            mLayout.setAttributePointers(mState);
+            mState.bindVertexArray(0);
+        }
+        checkGLError(gl, TAG, "Stars Uploaded");
+        mCatalog = catalog;
+        mRangesValid = false;
+    }
+
+    /**
+     * @param viewRadius     the angle from the center of the view to its corners, in radians
+     * @param magnitudeLimit the faintest stars to draw
+     */
+    public void setView(float viewRadius, float magnitudeLimit) {
+        mViewRadius = viewRadius;
+        mMagnitudeLimit = magnitudeLimit;
+    }
+
+    /**
+     * @return how many stars the last frame drew
+     */
+    public int getVisibleStars() {
+        return mVisibleStars;
+    }
+
+    public void draw(FrameUniforms.Transform transform) {
+        StarCatalog catalog = mCatalog;
+        if (catalog == null) {
+            return;
+        }
+        float[] mv = transform.getMVMatrix();
+        // the eye looks down -z, which is the negated third row of the rotation in model space
+        float x = -mv[2];
+        float y = -mv[6];
+        float z = -mv[10];
+        float length = (float) Math.sqrt(x * x + y * y + z * z);
+        if (length > 0) {
+            mDirection[0] = x / length;
+            mDirection[1] = y / length;
+            mDirection[2] = z / length;
+        }
+        if (!mRangesValid || mRangesViewRadius != mViewRadius || mRangesMagnitudeLimit != mMagnitudeLimit
+                || mRangesDirection[0] != mDirection[0] || mRangesDirection[1] != mDirection[1]
+                || mRangesDirection[2] != mDirection[2]) {
+            // without a view there is nothing to cull against
+            findRanges(catalog, length > 0 ? mViewRadius : (float) Math.PI);
+            mRangesValid = true;
+            mRangesViewRadius = mViewRadius;
+            mRangesMagnitudeLimit = mMagnitudeLimit;
+            System.arraycopy(mDirection, 0, mRangesDirection, 0, 3);
+        }
+        if (mRangeCount == 0) {
+            return;
+        }
+
+        mState.useProgram(mProgramHandle);
+        mState.uniformMatrix4fv(mMVPMatrixHandle, 1, false, transform.getMVPMatrix(), 0);
+        mState.uniform1f(mMagnitudeLimitHandle, mMagnitudeLimit);
+        mState.uniform1f(mMaxPointSizeHandle, MAX_POINT_SIZE);
+        if (mUseVertexArray) {
+            mState.bindVertexArray(mVertexArrayId[0]);
+        } else {
+            mState.bindBuffer(GLES20.GL_ARRAY_BUFFER, mBufferId[0]);
+            mLayout.setAttributePointers(mState);
+        }
+        Gl gl = mState.getGl();
+        for (int i = 0; i < mRangeCount; i++) {
+            gl.glDrawArrays(GLES20.GL_POINTS, mFirsts[i], mCounts[i]);
+        }
+        checkGLError(gl, TAG, "Stars Drawn");
+    }
+
+    /**
+     * Collects the stars of the cells in view down to the magnitude limit, joining ranges that touch.
+     */
+    private void findRanges(StarCatalog catalog, float viewRadius) {
+        mRangeCount = 0;
+        mVisibleStars = 0;
+        for (int cell = 0; cell < StarCatalog.CELL_COUNT; cell++) {
+            if (!StarCatalog.isCellWithin(cell, mDirection[0], mDirection[1], mDirection[2], viewRadius)) {
+                continue;
+            }
+            int count = catalog.getVisibleCount(cell, mMagnitudeLimit);
+            if (count == 0) {
+                continue;
+            }
+            int first = catalog.getCellStart(cell);
+            if (mRangeCount > 0 && mFirsts[mRangeCount - 1] + mCounts[mRangeCount - 1] == first) {
+                mCounts[mRangeCount - 1] += count;
+            } else {
+                mFirsts[mRangeCount] = first;
+                mCounts[mRangeCount] = count;
+                mRangeCount++;
+            }
+            mVisibleStars += count;
+        }
+    }
+}
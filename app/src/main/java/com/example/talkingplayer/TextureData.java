@@ -0,0 +1,224 @@
+package com.example.talkingplayer;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.opengl.GLES11Ext;
+import android.opengl.GLES20;
+import android.opengl.GLES30;
+import android.util.Log;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * A texture image that is ready to upload. Decoding happens in {@link #decode}, which may run on any
+ * thread, so the GL thread is left with {@link #texImage2D(Gl, int)} only.
+ */
+public final class TextureData {
+    private final static String TAG = TextureData.class.getSimpleName();
+    // replaced by the drawable's size if a compressed upload falls back to it
+    private int width;
+    private int height;
+    private final int format;
+    // exactly one of these is set, levels holds the mip chain largest first
+    private final Bitmap bitmap;
+    private final ByteBuffer[] levels;
+    // decoded instead if the driver refuses the compressed pixels
+    private final Context context;
+    private final int resourceId;
+    private boolean fellBack;
+    private int uploadedBytes;
+
+    private TextureData(int width, int height, int format, Bitmap bitmap, ByteBuffer[] levels, Context context,
+                        int resourceId) {
+        this.width = width;
+        this.height = height;
+        this.format = format;
+        this.bitmap = bitmap;
+        this.levels = levels;
+        this.context = context;
+        this.resourceId = resourceId;
+    }
+
+    /**
+     * Takes a drawable out of the asset pack in the best format {@code capabilities} can use: ETC2, ETC1 or
+     * pre-decoded pixels, in that order. Decodes the drawable when the pack has none of them.
+     *
+     * @param capabilities of the context the texture is for, null to only consider uncompressed pixels
+     */
+    public static TextureData decode(Context context, int resourceId, GlCapabilities capabilities) {
+        AssetPack assetPack = AssetPackLoader.get(context);
+        if (assetPack != null) {
+            String resourceName = context.getResources().getResourceEntryName(resourceId);
+            int[] formats = {AssetPack.TEXTURE_FORMAT_ETC2_RGB8, AssetPack.TEXTURE_FORMAT_ETC1_RGB8,
+                    AssetPack.TEXTURE_FORMAT_RGBA8};
+            for (int format : formats) {
+                if (!isSupported(format, capabilities)) {
+                    continue;
+                }
+                AssetPack.Entry entry = assetPack.getEntry(AssetPack.getTextureName(resourceName, format));
+                if (entry != null && entry.getFormat() == format) {
+                    ByteBuffer[] levels = new ByteBuffer[entry.getLevelCount()];
+                    for (int level = 0; level < levels.length; level++) {
+                        levels[level] = assetPack.getTextureLevel(entry, level);
+                    }
+                    return new TextureData(entry.getWidth(), entry.getHeight(), format, null, levels,
+                            context.getApplicationContext(), resourceId);
+                }
+            }
+        }
+        Bitmap bitmap = decodeBitmap(context, resourceId);
+        return new TextureData(bitmap.getWidth(), bitmap.getHeight(), AssetPack.TEXTURE_FORMAT_RGBA8, bitmap, null,
+                null, 0);
+    }
+
+    /**
+     * A single pixel of {@code rgba}, used while the real image is still loading.
+     */
+    public static TextureData solidColor(int rgba) {
+        ByteBuffer pixel = ByteBuffer.allocateDirect(4).order(ByteOrder.BIG_ENDIAN);
+        pixel.putInt(0, rgba);
+        return new TextureData(1, 1, AssetPack.TEXTURE_FORMAT_RGBA8, null, new ByteBuffer[]{pixel}, null, 0);
+    }
+
+    /**
+     * Pixels prepared in memory, {@code levels} is a mip chain of tightly packed RGBA, largest level first.
+     */
+    public static TextureData fromRgbaLevels(int width, int height, byte[][] levels) {
+        ByteBuffer[] buffers = new ByteBuffer[levels.length];
+        for (int level = 0; level < levels.length; level++) {
+            buffers[level] = ByteBuffer.wrap(levels[level]);
+        }
+        return new TextureData(width, height, AssetPack.TEXTURE_FORMAT_RGBA8, null, buffers, null, 0);
+    }
+
+    private static boolean isSupported(int format, GlCapabilities capabilities) {
+        switch (format) {
+            case AssetPack.TEXTURE_FORMAT_ETC2_RGB8:
+                return capabilities != null && capabilities.supportsEtc2();
+            case AssetPack.TEXTURE_FORMAT_ETC1_RGB8:
+                return capabilities != null && capabilities.supportsEtc1();
+            default:
+                return true;
+        }
+    }
+
+    private static Bitmap decodeBitmap(Context context, int resourceId) {
+        final BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inScaled = false;   // No pre-scaling
+        Bitmap bitmap = BitmapFactory.decodeResource(context.getResources(), resourceId, options);
+        if (bitmap == null) {
+            throw new RuntimeException("Error decoding texture " + resourceId);
+        }
+        return bitmap;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public boolean isPowerOfTwo() {
+        return MipChain.isPowerOfTwo(width) && MipChain.isPowerOfTwo(height);
+    }
+
+    public int getLevelCount() {
+        return bitmap != null ? 1 : levels.length;
+    }
+
+    /**
+     * Copies the largest level out as tightly packed RGBA, for further processing on the CPU. A decoded
+     * bitmap is recycled right away, so only one copy of the pixels stays around.
+     */
+    public byte[] toRgba() {
+        if (isCompressed()) {
+            throw new IllegalStateException("Compressed textures can't be read back");
+        }
+        byte[] rgba = new byte[width * height * 4];
+        if (bitmap != null) {
+            // ARGB_8888 bitmaps store their pixels as R, G, B, A bytes
+            bitmap.copyPixelsToBuffer(ByteBuffer.wrap(rgba));
+            bitmap.recycle();
+        } else {
+            levels[0].duplicate().get(rgba);
+        }
+        return rgba;
+    }
+
+    public boolean isCompressed() {
+        return format != AssetPack.TEXTURE_FORMAT_RGBA8;
+    }
+
+    /**
+     * Compressed textures can't have their mipmaps generated by the driver, unless the upload fell back
+     * to uncompressed pixels.
+     */
+    public boolean canGenerateMipmaps() {
+        return !isCompressed() || fellBack;
+    }
+
+    /**
+     * Uploads the image and the mip levels it comes with to {@code target} of the bound texture.
+     * Call on the GL thread.
+     *
+     * @return the number of levels uploaded
+     */
+    public int texImage2D(Gl gl, int target) {
+        if (bitmap != null) {
+            gl.texImage2D(target, 0, bitmap);
+            uploadedBytes = bitmap.getByteCount();
+            return 1;
+        }
+        uploadedBytes = 0;
+        if (isCompressed()) {
+            int internalFormat = format == AssetPack.TEXTURE_FORMAT_ETC2_RGB8
+                    ? GLES30.GL_COMPRESSED_RGB8_ETC2 : GLES11Ext.GL_ETC1_RGB8_OES;
+            for (int level = 0; level < levels.length; level++) {
+                gl.glCompressedTexImage2D(target, level, internalFormat, MipChain.getLevelSize(width, level),
+                        MipChain.getLevelSize(height, level), 0, levels[level].remaining(), levels[level]);
+                uploadedBytes += levels[level].remaining();
+                int error = gl.glGetError();
+                if (error != GLES20.GL_NO_ERROR) {
+                    // the context claimed support it doesn't have, decode the drawable after all
+                    Log.w(TAG, "Compressed upload failed with " + error + ", falling back to uncompressed pixels");
+                    Bitmap fallback = decodeBitmap(context, resourceId);
+                    gl.texImage2D(target, 0, fallback);
+                    width = fallback.getWidth();
+                    height = fallback.getHeight();
+                    uploadedBytes = fallback.getByteCount();
+                    fallback.recycle();
+                    fellBack = true;
+                    return 1;
+                }
+            }
+            return levels.length;
+        }
+        gl.glPixelStorei(GLES20.GL_UNPACK_ALIGNMENT, 1);
+        for (int level = 0; level < levels.length; level++) {
+            gl.glTexImage2D(target, level, GLES20.GL_RGBA, MipChain.getLevelSize(width, level),
+                    MipChain.getLevelSize(height, level), 0, GLES20.GL_RGBA, GLES20.GL_UNSIGNED_BYTE, levels[level]);
+            uploadedBytes += levels[level].remaining();
+        }
+        return levels.length;
+    }
+
+    /**
+     * @return how much texture memory the last {@link #texImage2D(Gl, int)} took
+     */
+    public int getUploadedBytes() {
+        return uploadedBytes;
+    }
+
+    /**
+     * Frees the decoded bitmap once it has been uploaded.
+     */
+    public void recycle() {
+        if (bitmap != null) {
+            bitmap.recycle();
+        }
+    }
+}
@@ -0,0 +1,381 @@
+package com.example.talkingplayer;
+
+import android.content.Context;
+import android.opengl.GLES20;
+import android.opengl.GLES30;
+import android.util.Log;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import static com.example.talkingplayer.SphereRenderer.checkGLError;
+
+/**
+ * Owns every texture of a GL context. Textures are keyed by their drawables and sampling, so everyone
+ * asking for the same one shares a single GL texture through reference counted {@link Handle}s.
+ * <p>
+ * Textures nobody holds a handle to stay resident, so acquiring them again is free, until the resident
+ * textures exceed the memory budget. Then the unused ones are deleted, those least recently acquired or
+ * released first, as they have gone unused the longest.
+ * <p>
+ * Pixels are decoded on the {@link AssetLoader}; until they are uploaded a handle names a 1x1 placeholder
+ * of the color given to acquire. Use the registry on the GL thread only.
+ */
+public class TextureRegistry {
+    private final static String TAG = TextureRegistry.class.getSimpleName();
+    private final AssetLoader assetLoader;
+    private final GlCapabilities capabilities;
+    private final GlStateCache state;
+    private final Gl gl;
+    private final long budgetBytes;
+    // access ordered, so iteration starts at the texture least recently acquired or released
+    private final Map<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long residentBytes;
+    private int hits;
+    private int misses;
+    private int evictions;
+
+    public TextureRegistry(AssetLoader assetLoader, GlCapabilities capabilities, GlStateCache state,
+                           long budgetBytes) {
+        this.assetLoader = assetLoader;
+        this.capabilities = capabilities;
+        this.state = state;
+        this.gl = state.getGl();
+        this.budgetBytes = budgetBytes;
+    }
+
+    public Handle acquire(Context context, int resourceId, TextureSampling sampling, int placeholderRgba) {
+        return acquire(context, new Key(GLES20.GL_TEXTURE_2D, new int[]{resourceId}, sampling), placeholderRgba);
+    }
+
+    /**
+     * @param faceResourceIds drawables for the +X, -X, +Y, -Y, +Z and -Z faces
+     */
+    public Handle acquireCubeMap(Context context, int[] faceResourceIds, TextureSampling sampling,
+                                 int placeholderRgba) {
+        if (faceResourceIds.length != 6) {
+            throw new IllegalArgumentException("A cube map needs 6 faces, got " + faceResourceIds.length);
+        }
+        return acquire(context, new Key(GLES20.GL_TEXTURE_CUBE_MAP, faceResourceIds.clone(), sampling),
+                placeholderRgba);
+    }
+
+    /**
+     * A cube map resampled from a single equirectangular image, longitude along its width and latitude
+     * down its height.
+     */
+    public Handle acquireEquirectangularCubeMap(Context context, int resourceId, TextureSampling sampling,
+                                                int placeholderRgba) {
+        return acquire(context, new Key(GLES20.GL_TEXTURE_CUBE_MAP, new int[]{resourceId}, sampling),
+                placeholderRgba);
+    }
+
+    private Handle acquire(final Context context, final Key key, int placeholderRgba) {
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            hits++;
+        } else {
+            misses++;
+            entry = new Entry(key);
+            TextureData placeholder = TextureData.solidColor(placeholderRgba);
+            TextureData[] images = new TextureData[key.target == GLES20.GL_TEXTURE_CUBE_MAP
+                    ? CubeMapBuilder.FACE_COUNT : 1];
+            Arrays.fill(images, placeholder);
+            entry.textureId = createTexture(entry, images);
+            entries.put(key, entry);
+            residentBytes += entry.bytes;
+            load(context, entry);
+        }
+        entry.refCount++;
+        return new Handle(entry);
+    }
+
+    private void load(final Context context, final Entry entry) {
+        assetLoader.load(new Callable<TextureData[]>() {
+            @Override
+            public TextureData[] call() {
+                if (entry.key.target != GLES20.GL_TEXTURE_CUBE_MAP) {
+                    return decode(context, entry.key.resourceIds);
+                }
+                return entry.key.resourceIds.length == 1 ? decodeEquirectangular(context, entry.key.resourceIds[0])
+                        : decodeCubeMap(context, entry.key.resourceIds);
+            }
+        }, new AssetLoader.Upload<TextureData[]>() {
+            @Override
+            public void upload(TextureData[] images) {
+                if (!entry.evicted) {
+                    long placeholderBytes = entry.bytes;
+                    state.deleteTexture(entry.textureId);
+                    entry.textureId = createTexture(entry, images);
+                    entry.loaded = true;
+                    residentBytes += entry.bytes - placeholderBytes;
+                    checkGLError(gl, TAG, "Texture Loaded");
+                    trim();
+                    Log.d(TAG, "Loaded " + Arrays.toString(entry.key.resourceIds) + ", " + getStats());
+                }
+                for (TextureData image : images) {
+                    image.recycle();
+                }
+            }
+        });
+    }
+
+    /**
+     * Decodes each distinct drawable once, images that show the same drawable share its data.
+     * Runs on a loader thread.
+     */
+    private TextureData[] decode(Context context, int[] resourceIds) {
+        TextureData[] images = new TextureData[resourceIds.length];
+        for (int i = 0; i < resourceIds.length; i++) {
+            for (int j = 0; j < i && images[i] == null; j++) {
+                if (resourceIds[j] == resourceIds[i]) {
+                    images[i] = images[j];
+                }
+            }
+            if (images[i] == null) {
+                images[i] = TextureData.decode(context, resourceIds[i], capabilities);
+            }
+        }
+        return images;
+    }
+
+    /**
+     * Takes the faces as they are when they come with mipmaps, from the asset pack. Otherwise makes
+     * power of two faces with mipmaps out of the decoded drawables, which ES 2 can't do for arbitrary
+     * sizes. Runs on a loader thread.
+     */
+    private TextureData[] decodeCubeMap(Context context, int[] resourceIds) {
+        TextureData[] faces = decode(context, resourceIds);
+        boolean ready = true;
+        for (TextureData face : faces) {
+            ready &= face.isCompressed() || face.getLevelCount() > 1;
+        }
+        if (ready) {
+            return faces;
+        }
+        byte[][] images = new byte[faces.length][];
+        int[] widths = new int[faces.length];
+        int[] heights = new int[faces.length];
+        for (int face = 0; face < faces.length; face++) {
+            for (int previous = 0; previous < face && images[face] == null; previous++) {
+                if (faces[previous] == faces[face]) {
+                    images[face] = images[previous];
+                    widths[face] = widths[previous];
+                    heights[face] = heights[previous];
+                }
+            }
+            if (images[face] == null) {
+                // pixels to filter can't come compressed
+                TextureData source = faces[face].isCompressed()
+                        ? TextureData.decode(context, resourceIds[face], null) : faces[face];
+                images[face] = source.toRgba();
+                widths[face] = source.getWidth();
+                heights[face] = source.getHeight();
+            }
+        }
+        return toTextureData(new CubeMapBuilder().fromFaces(images, widths, heights));
+    }
+
+    private TextureData[] decodeEquirectangular(Context context, int resourceId) {
+        TextureData image = TextureData.decode(context, resourceId, null);
+        byte[] rgba = image.toRgba();
+        return toTextureData(new CubeMapBuilder().fromEquirectangular(rgba, image.getWidth(), image.getHeight()));
+    }
+
+    private static TextureData[] toTextureData(CubeMapBuilder.CubeMap cubeMap) {
+        TextureData[] faces = new TextureData[CubeMapBuilder.FACE_COUNT];
+        for (int face = 0; face < faces.length; face++) {
+            faces[face] = TextureData.fromRgbaLevels(cubeMap.size, cubeMap.size, cubeMap.faces[face]);
+        }
+        return faces;
+    }
+
+    /**
+     * Uploads one image per face into a new texture and records how much memory it takes.
+     */
+    private int createTexture(Entry entry, TextureData[] images) {
+        final int[] textureHandle = new int[1];
+        gl.glGenTextures(1, textureHandle, 0);
+        if (textureHandle[0] == 0) {
+            throw new RuntimeException("Error loading texture.");
+        }
+        int target = entry.key.target;
+        state.bindTexture(target, textureHandle[0]);
+
+        // Load the pixels and whatever mip levels come with them into the bound texture.
+        int levels = Integer.MAX_VALUE;
+        long bytes = 0;
+        for (int i = 0; i < images.length; i++) {
+            int imageTarget = target == GLES20.GL_TEXTURE_CUBE_MAP ? GLES20.GL_TEXTURE_CUBE_MAP_POSITIVE_X + i : target;
+            levels = Math.min(levels, images[i].texImage2D(gl, imageTarget));
+            bytes += images[i].getUploadedBytes();
+        }
+        TextureSampling sampling = entry.key.sampling;
+        boolean mipmapped = levels > 1;
+        if (!mipmapped && generateMipmaps(target, images[0], sampling)) {
+            mipmapped = true;
+            // a full chain adds a third
+            bytes += bytes / 3;
+        }
+
+        // Set filtering
+        sampling.apply(gl, target, capabilities, mipmapped, images[0].isPowerOfTwo());
+        if (target == GLES20.GL_TEXTURE_CUBE_MAP && capabilities.isEs3()) {
+            gl.glTexParameteri(target, GLES30.GL_TEXTURE_WRAP_R, GLES20.GL_CLAMP_TO_EDGE);
+        }
+        entry.bytes = bytes;
+        return textureHandle[0];
+    }
+
+    /**
+     * Lets the driver build the mip chain of the bound texture if the sampling wants one and the image
+     * didn't come with its own.
+     */
+    private boolean generateMipmaps(int target, TextureData image, TextureSampling sampling) {
+        if (!sampling.usesMipmaps() || !image.canGenerateMipmaps()
+                || !(image.isPowerOfTwo() || capabilities.supportsNpot())) {
+            return false;
+        }
+        gl.glGenerateMipmap(target);
+        return true;
+    }
+
+    /**
+     * Deletes the least recently used textures nobody holds until the rest fits the budget.
+     */
+    public void trim() {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (residentBytes > budgetBytes && iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (entry.refCount == 0) {
+                iterator.remove();
+                delete(entry);
+                evictions++;
+            }
+        }
+    }
+
+    /**
+     * Deletes every texture, held or not. Handles must not be used afterwards.
+     */
+    public void clear() {
+        for (Entry entry : entries.values()) {
+            delete(entry);
+        }
+        entries.clear();
+    }
+
+    private void delete(Entry entry) {
+        state.deleteTexture(entry.textureId);
+        entry.evicted = true;
+        residentBytes -= entry.bytes;
+    }
+
+    public Stats getStats() {
+        return new Stats(hits, misses, evictions, entries.size(), residentBytes);
+    }
+
+    /**
+     * A reference to a shared texture. Release it once it isn't drawn anymore.
+     */
+    public final class Handle {
+        private final Entry entry;
+        private boolean released;
+
+        private Handle(Entry entry) {
+            this.entry = entry;
+        }
+
+        /**
+         * @return the GL texture to bind, a placeholder until the real pixels are uploaded
+         */
+        public int getTextureId() {
+            if (released) {
+                throw new IllegalStateException("Texture handle used after release");
+            }
+            return entry.textureId;
+        }
+
+        public boolean isLoaded() {
+            return entry.loaded;
+        }
+
+        public void release() {
+            if (released) {
+                throw new IllegalStateException("Texture handle released twice");
+            }
+            released = true;
+            entry.refCount--;
+            // it was in use until now, so it goes to the back of the eviction order
+            if (!entry.evicted) {
+                entries.get(entry.key);
+            }
+            trim();
+        }
+    }
+
+    public static final class Stats {
+        public final int hits;
+        public final int misses;
+        public final int evictions;
+        public final int residentTextures;
+        public final long residentBytes;
+
+        Stats(int hits, int misses, int evictions, int residentTextures, long residentBytes) {
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.residentTextures = residentTextures;
+            this.residentBytes = residentBytes;
+        }
+
+        @Override
+        public String toString() {
+            return "hits " + hits + ", misses " + misses + ", evictions " + evictions + ", " + residentTextures
+                    + " textures resident in " + residentBytes / 1024 + " KB";
+        }
+    }
+
+    private static final class Key {
+        final int target;
+        final int[] resourceIds;
+        final TextureSampling sampling;
+
+        Key(int target, int[] resourceIds, TextureSampling sampling) {
+            this.target = target;
+            this.resourceIds = resourceIds;
+            this.sampling = sampling;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return target == other.target && Arrays.equals(resourceIds, other.resourceIds)
+                    && sampling.equals(other.sampling);
+        }
+
+        @Override
+        public int hashCode() {
+            return (31 * target + Arrays.hashCode(resourceIds)) * 31 + sampling.hashCode();
+        }
+    }
+
+    private static final class Entry {
+        final Key key;
+        int textureId;
+        long bytes;
+        int refCount;
+        boolean loaded;
+        boolean evicted;
+
+        Entry(Key key) {
+            this.key = key;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.talkingplayer;
+
+import android.opengl.GLES11Ext;
+import android.opengl.GLES20;
+
+/**
+ * How a texture is filtered and wrapped. Immutable, so textures with equal sampling can be shared.
+ */
+public final class TextureSampling {
+    /**
+     * What textures used to get: no filtering, no mipmaps.
+     */
+    public static final TextureSampling NEAREST = new TextureSampling(GLES20.GL_NEAREST, GLES20.GL_NEAREST,
+            GLES20.GL_CLAMP_TO_EDGE, GLES20.GL_CLAMP_TO_EDGE, 1f);
+
+    public final int minFilter;
+    public final int magFilter;
+    public final int wrapS;
+    public final int wrapT;
+    /**
+     * Requested EXT_texture_filter_anisotropic level, 1 for none. Clamped to what the driver supports.
+     */
+    public final float anisotropy;
+
+    public TextureSampling(int minFilter, int magFilter, int wrapS, int wrapT, float anisotropy) {
+        if (anisotropy < 1f) {
+            throw new IllegalArgumentException("Anisotropy must be at least 1, got " + anisotropy);
+        }
+        this.minFilter = minFilter;
+        this.magFilter = magFilter;
+        this.wrapS = wrapS;
+        this.wrapT = wrapT;
+        this.anisotropy = anisotropy;
+    }
+
+    /**
+     * Linear filtering between and within mip levels.
+     */
+    public static TextureSampling trilinear(int wrapS, int wrapT, float anisotropy) {
+        return new TextureSampling(GLES20.GL_LINEAR_MIPMAP_LINEAR, GLES20.GL_LINEAR, wrapS, wrapT, anisotropy);
+    }
+
+    public boolean usesMipmaps() {
+        return minFilter != GLES20.GL_NEAREST && minFilter != GLES20.GL_LINEAR;
+    }
+
+    /**
+     * Sets the parameters of the texture bound to {@code target}, falling back to what the texture can
+     * do: without mipmaps it isn't minified from them, and ES 2 only repeats power of two textures.
+     */
+    public void apply(Gl gl, int target, GlCapabilities capabilities, boolean mipmapped, boolean powerOfTwo) {
+        int min = minFilter;
+        if (!mipmapped && usesMipmaps()) {
+            min = minFilter == GLES20.GL_NEAREST_MIPMAP_NEAREST || minFilter == GLES20.GL_NEAREST_MIPMAP_LINEAR
+                    ? GLES20.GL_NEAREST : GLES20.GL_LINEAR;
+        }
+        boolean canRepeat = powerOfTwo || capabilities.supportsNpot();
+        gl.glTexParameteri(target, GLES20.GL_TEXTURE_MIN_FILTER, min);
+        gl.glTexParameteri(target, GLES20.GL_TEXTURE_MAG_FILTER, magFilter);
+        gl.glTexParameteri(target, GLES20.GL_TEXTURE_WRAP_S, canRepeat ? wrapS : GLES20.GL_CLAMP_TO_EDGE);
+        gl.glTexParameteri(target, GLES20.GL_TEXTURE_WRAP_T, canRepeat ? wrapT : GLES20.GL_CLAMP_TO_EDGE);
+        float maxAnisotropy = capabilities.getMaxAnisotropy();
+        if (anisotropy > 1f && maxAnisotropy > 1f) {
+            gl.glTexParameterf(target, GLES11Ext.GL_TEXTURE_MAX_ANISOTROPY_EXT,
+                    Math.min(anisotropy, maxAnisotropy));
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof TextureSampling)) {
+            return false;
+        }
+        TextureSampling other = (TextureSampling) o;
+        return minFilter == other.minFilter && magFilter == other.magFilter && wrapS == other.wrapS
+                && wrapT == other.wrapT && Float.compare(anisotropy, other.anisotropy) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = minFilter;
+        result = 31 * result + magFilter;
+        result = 31 * result + wrapS;
+        result = 31 * result + wrapT;
+        result = 31 * result + Float.floatToIntBits(anisotropy);
+        return result;
+    }
+}
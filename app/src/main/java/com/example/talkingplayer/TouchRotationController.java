@@ -0,0 +1,105 @@
+package com.example.talkingplayer;
+
+import android.view.MotionEvent;
+import android.view.View;
+
+/**
+ * Turns dragging across a view into rotation of a {@link Target}. Every touch sample counts, including
+ * the historical ones a move event batches, but they are summed up and applied once per rendered frame
+ * however fast the screen samples. Lifting the finger while dragging flings the target on, slowing down
+ * exponentially.
+ * <p>
+ * Dragging above the view's horizontal mid-line turns the other way than below it, and likewise left and
+ * right of the vertical one, so the target follows the finger around its center.
+ */
+public class TouchRotationController implements RenderScheduler.FrameListener {
+    private final View view;
+    private final RenderScheduler renderScheduler;
+    private final Target target;
+    private final float degreesPerPixel;
+    private final FlingTracker flingTracker;
+    private float previousX;
+    private float previousY;
+
+    /**
+     * @param degreesPerPixel how far dragging turns the target, negative to turn it the other way
+     */
+    public TouchRotationController(View view, RenderScheduler renderScheduler, Target target,
+                                   float degreesPerPixel) {
+        this.view = view;
+        this.renderScheduler = renderScheduler;
+        this.target = target;
+        this.degreesPerPixel = degreesPerPixel;
+        flingTracker = new FlingTracker(view, renderScheduler);
+        renderScheduler.addFrameListener(this);
+    }
+
+    /**
+     * Call from the view's onTouchEvent with every event.
+     */
+    public void onTouchEvent(MotionEvent e) {
+        switch (e.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                flingTracker.down(e);
+                break;
+            case MotionEvent.ACTION_MOVE:
+                for (int i = 0; i < e.getHistorySize(); i++) {
+                    addMovement(e.getHistoricalX(i), e.getHistoricalY(i));
+                }
+                addMovement(e.getX(), e.getY());
+                flingTracker.addMovement(e);
+                renderScheduler.requestFrame();
+                break;
+            case MotionEvent.ACTION_UP:
+                if (flingTracker.up(e)) {
+                    flingTracker.fling(getDegrees(flingTracker.getXVelocity(), flingTracker.getYVelocity(),
+                            e.getX(), e.getY()));
+                }
+                flingTracker.recycle();
+                break;
+            case MotionEvent.ACTION_CANCEL:
+                flingTracker.recycle();
+                break;
+        }
+        previousX = e.getX();
+        previousY = e.getY();
+    }
+
+    private void addMovement(float x, float y) {
+        flingTracker.addDelta(getDegrees(x - previousX, y - previousY, x, y));
+        previousX = x;
+        previousY = y;
+    }
+
+    /**
+     * @return how far moving by {@code dx} and {@code dy} at {@code x}, {@code y} turns the target
+     */
+    private float getDegrees(float dx, float dy, float x, float y) {
+        // reverse direction of rotation above the mid-line
+        if (y > view.getHeight() / 2) {
+            dx = -dx;
+        }
+        // reverse direction of rotation to left of the mid-line
+        if (x < view.getWidth() / 2) {
+            dy = -dy;
+        }
+        return (dx + dy) * degreesPerPixel;
+    }
+
+    @Override
+    public void onFrame(long frameTimeNanos) {
+        float degrees = flingTracker.consume(frameTimeNanos);
+        if (degrees != 0) {
+            target.setAngle(target.getAngle() + degrees);
+        }
+    }
+
+    /**
+     * What the controller rotates, read and written on the main thread.
+     */
+    public interface Target {
+        float getAngle();
+
+        void setAngle(float angle);
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.talkingplayer;
+
+import android.opengl.GLES20;
+
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Describes how float attributes are interleaved inside a single vertex buffer.
+ */
+public class VertexLayout {
+    private static final int BYTES_PER_FLOAT = 4;
+    private final List<Attribute> attributes;
+    private final int strideFloats;
+
+    private VertexLayout(List<Attribute> attributes, int strideFloats) {
+        this.attributes = Collections.unmodifiableList(attributes);
+        this.strideFloats = strideFloats;
+    }
+
+    public List<Attribute> getAttributes() {
+        return attributes;
+    }
+
+    public int getStrideFloats() {
+        return strideFloats;
+    }
+
+    public int getStrideBytes() {
+        return strideFloats * BYTES_PER_FLOAT;
+    }
+
+    public Attribute getAttribute(int location) {
+        for (Attribute attribute : attributes) {
+            if (attribute.location == location) {
+                return attribute;
+            }
+        }
+        throw new IllegalArgumentException("No attribute at location " + location);
+    }
+
+    /**
+     * Scatters the tightly packed data of one attribute into its slots of an interleaved buffer.
+     */
+    public void put(FloatBuffer interleaved, int location, float[] data) {
+        Attribute attribute = getAttribute(location);
+        int vertexCount = data.length / attribute.size;
+        for (int vertex = 0; vertex < vertexCount; vertex++) {
+            int index = vertex * strideFloats + attribute.offset;
+            for (int i = 0; i < attribute.size; i++) {
+                interleaved.put(index + i, data[vertex * attribute.size + i]);
+            }
+        }
+    }
+
+    /**
+     * Enables and points every attribute at the currently bound GL_ARRAY_BUFFER.
+     */
+    public void setAttributePointers(GlStateCache state) {
+        int strideBytes = getStrideBytes();
+        for (Attribute attribute : attributes) {
+            state.enableVertexAttribArray(attribute.location);
+            state.vertexAttribPointer(attribute.location, attribute.size, GLES20.GL_FLOAT, false,
+                    strideBytes, attribute.offset * BYTES_PER_FLOAT);
+        }
+    }
+
+    public static final class Attribute {
+        public final int location;
+        public final int size;
+        public final int offset;
+
+        Attribute(int location, int size, int offset) {
+            this.location = location;
+            this.size = size;
+            this.offset = offset;
+        }
+    }
+
+    public static class Builder {
+        private final List<Attribute> attributes = new ArrayList<>();
+        private int strideFloats;
+
+        /**
+         * Appends an attribute of {@code size} floats after the previous ones.
+         */
+        public Builder add(int location, int size) {
+            return add(location, size, strideFloats);
+        }
+
+        /**
+         * Adds an attribute at an explicit float offset, which lets two attributes read the same data.
+         */
+        public Builder add(int location, int size, int offset) {
+            strideFloats = Math.max(strideFloats, offset + size);
+            // a negative location means the attribute was optimised out of the program, keep its room
+            if (location >= 0) {
+                attributes.add(new Attribute(location, size, offset));
+            }
+            return this;
+        }
+
+        /**
+         * Reserves room for an attribute the current program doesn't read.
+         */
+        public Builder skip(int size) {
+            strideFloats += size;
+            return this;
+        }
+
+        public VertexLayout build() {
+            return new VertexLayout(new ArrayList<>(attributes), strideFloats);
+        }
+    }
+}
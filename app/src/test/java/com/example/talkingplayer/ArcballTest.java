@@ -0,0 +1,116 @@
+package com.example.talkingplayer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ArcballTest {
+    private static final float EPSILON = 1e-4f;
+
+    @Test
+    public void dragRight_turnsFrontToTheRight() {
+        Arcball arcball = new Arcball();
+        arcball.setViewport(200, 200);
+
+        arcball.beginDrag(100, 100);
+        arcball.drag(150, 100);
+
+        // the point facing the viewer follows the finger
+        float[] front = {0f, 0f, 1f};
+        arcball.getOrientation().rotate(front, 0);
+        assertTrue(front[0] > 0.1f);
+        assertEquals(0f, front[1], EPSILON);
+        // the ball turned around the y axis only
+        Quaternion orientation = arcball.getOrientation();
+        assertEquals(0f, orientation.x, EPSILON);
+        assertEquals(0f, orientation.z, EPSILON);
+    }
+
+    @Test
+    public void dragDown_turnsFrontDown() {
+        Arcball arcball = new Arcball();
+        arcball.setViewport(200, 200);
+
+        arcball.beginDrag(100, 100);
+        arcball.drag(100, 160);
+
+        float[] front = {0f, 0f, 1f};
+        arcball.getOrientation().rotate(front, 0);
+        assertTrue(front[1] < -0.1f);
+        assertEquals(0f, front[0], EPSILON);
+    }
+
+    @Test
+    public void manySmallDrags_stayUnitLength() {
+        Arcball arcball = new Arcball();
+        arcball.setViewport(1080, 1920);
+
+        arcball.beginDrag(540, 960);
+        for (int i = 0; i < 10000; i++) {
+            arcball.drag(540 + 400 * (float) Math.cos(i * 0.01), 960 + 700 * (float) Math.sin(i * 0.013));
+        }
+
+        Quaternion q = arcball.getOrientation();
+        assertEquals(1f, q.x * q.x + q.y * q.y + q.z * q.z + q.w * q.w, EPSILON);
+    }
+
+    @Test
+    public void mapToSphere_staysOnTheUnitSphere() {
+        Arcball arcball = new Arcball();
+        arcball.setViewport(100, 100);
+        float[] point = new float[3];
+
+        arcball.mapToSphere(50, 50, point);
+        assertEquals(1f, point[2], EPSILON);
+        arcball.mapToSphere(500, 50, point);
+        assertEquals(1f, point[0], EPSILON);
+        assertEquals(0f, point[2], EPSILON);
+    }
+
+    @Test
+    public void setArc_takesFromOntoTo() {
+        float[] from = {0f, 0f, 1f};
+        float[] to = {0.6f, 0f, 0.8f};
+        Quaternion q = new Quaternion().setArc(from, to);
+
+        q.rotate(from, 0);
+        assertEquals(to[0], from[0], EPSILON);
+        assertEquals(to[1], from[1], EPSILON);
+        assertEquals(to[2], from[2], EPSILON);
+
+        // opposite vectors still give a half turn
+        float[] back = {0f, 0f, 1f};
+        new Quaternion().setArc(back, new float[]{0f, 0f, -1f}).rotate(back, 0);
+        assertEquals(-1f, back[2], EPSILON);
+    }
+
+    @Test
+    public void toMatrix_rotatesLikeTheQuaternion() {
+        Quaternion q = new Quaternion().setAxisAngle(1f, 2f, 3f, 70f);
+        float[] m = new float[16];
+        q.toMatrix(m, 0);
+        float[] v = {0.3f, -1.2f, 0.7f};
+        float[] rotated = v.clone();
+        q.rotate(rotated, 0);
+
+        // column-major, as OpenGL and android.opengl.Matrix expect
+        for (int row = 0; row < 3; row++) {
+            float expected = m[row] * v[0] + m[4 + row] * v[1] + m[8 + row] * v[2] + m[12 + row];
+            assertEquals(expected, rotated[row], EPSILON);
+        }
+        assertEquals(1f, m[15], 0f);
+    }
+
+    @Test
+    public void cameraState_publishesOrientation() {
+        CameraState cameraState = new CameraState();
+        Quaternion orientation = new Quaternion().setAxisAngle(0f, 1f, 0f, 30f);
+        cameraState.setOrientation(orientation);
+
+        CameraState.Snapshot snapshot = new CameraState.Snapshot();
+        cameraState.read(snapshot);
+
+        assertEquals(orientation, snapshot.orientation);
+    }
+}
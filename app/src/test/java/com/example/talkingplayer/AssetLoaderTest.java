@@ -0,0 +1,77 @@
+package com.example.talkingplayer;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AssetLoaderTest {
+    private final Semaphore ready = new Semaphore(0);
+    private final AssetLoader loader = new AssetLoader(new Runnable() {
+        @Override
+        public void run() {
+            ready.release();
+        }
+    });
+    private final List<Integer> uploaded = new ArrayList<>();
+
+    @Test
+    public void uploadsOnlyWhenDrained() throws InterruptedException {
+        load(42);
+        assertTrue(ready.tryAcquire(5, TimeUnit.SECONDS));
+        assertTrue(uploaded.isEmpty());
+        assertFalse(loader.isIdle());
+
+        assertEquals(1, loader.drainUploads(Long.MAX_VALUE));
+        assertEquals(42, (int) uploaded.get(0));
+        assertTrue(loader.isIdle());
+    }
+
+    @Test
+    public void dropsUploadsFromBeforeReset() throws InterruptedException {
+        load(1);
+        assertTrue(ready.tryAcquire(5, TimeUnit.SECONDS));
+        loader.reset();
+        load(2);
+        assertTrue(ready.tryAcquire(5, TimeUnit.SECONDS));
+
+        assertEquals(1, loader.drainUploads(Long.MAX_VALUE));
+        assertEquals(1, uploaded.size());
+        assertEquals(2, (int) uploaded.get(0));
+        assertTrue(loader.isIdle());
+    }
+
+    @Test
+    public void leavesTheRestForTheNextFrameWhenOverBudget() throws InterruptedException {
+        load(1);
+        load(2);
+        assertTrue(ready.tryAcquire(2, 5, TimeUnit.SECONDS));
+
+        assertEquals(1, loader.drainUploads(0));
+        // asks for another frame to upload the rest
+        assertTrue(ready.tryAcquire(5, TimeUnit.SECONDS));
+        assertEquals(1, loader.drainUploads(0));
+        assertEquals(2, uploaded.size());
+    }
+
+    private void load(final int value) {
+        loader.load(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return value;
+            }
+        }, new AssetLoader.Upload<Integer>() {
+            @Override
+            public void upload(Integer payload) {
+                uploaded.add(payload);
+            }
+        });
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.talkingplayer;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+
+import static org.junit.Assert.*;
+
+public class AssetPackTest {
+
+    @Test
+    public void meshAndTexture_roundTrip() throws IOException {
+        SphereLevels.Level level = SphereLevels.build(1);
+        ByteBuffer pixels = ByteBuffer.wrap(new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+        AssetPackWriter writer = new AssetPackWriter();
+        writer.addMesh(SphereLevels.getAssetName(1), level.vertices, level.indices, SphereLevels.STRIDE_FLOATS);
+        writer.addTexture(AssetPack.getTextureName("pixels"), 2, 1, AssetPack.TEXTURE_FORMAT_RGBA8, pixels);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writer.writeTo(out);
+
+        AssetPack pack = AssetPack.wrap(ByteBuffer.wrap(out.toByteArray()));
+
+        AssetPack.Entry mesh = pack.getEntry(SphereLevels.getAssetName(1));
+        assertEquals(0, mesh.offset % AssetPack.DATA_ALIGNMENT);
+        FloatBuffer vertices = pack.getMeshVertices(mesh);
+        ShortBuffer indices = pack.getMeshIndices(mesh);
+        assertEquals(level.vertices.remaining() / SphereLevels.STRIDE_FLOATS, mesh.getVertexCount());
+        assertEquals(level.vertices, vertices);
+        assertEquals(level.indices, indices);
+
+        AssetPack.Entry texture = pack.getEntry(AssetPack.getTextureName("pixels"));
+        assertEquals(2, texture.getWidth());
+        assertEquals(1, texture.getHeight());
+        assertEquals(pixels, pack.getData(texture));
+        assertNull(pack.getEntry("missing"));
+    }
+
+    @Test
+    public void textureLevels_areSlicedBySize() throws IOException {
+        byte[][] levels = MipChain.build(new byte[8 * 4 * 4], 8, 4);
+        levels[3][0] = 42;
+        AssetPackWriter writer = new AssetPackWriter();
+        writer.addTexture("mipmapped", 8, 4, AssetPack.TEXTURE_FORMAT_RGBA8, levels);
+        byte[][] etc = {new byte[EtcCodec.getEncodedSize(8, 4)], new byte[EtcCodec.getEncodedSize(4, 2)]};
+        writer.addTexture("compressed", 8, 4, AssetPack.TEXTURE_FORMAT_ETC1_RGB8, etc);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writer.writeTo(out);
+
+        AssetPack pack = AssetPack.wrap(ByteBuffer.wrap(out.toByteArray()));
+
+        AssetPack.Entry mipmapped = pack.getEntry("mipmapped");
+        assertEquals(4, mipmapped.getLevelCount());
+        assertEquals(4 * 2 * 4, pack.getTextureLevel(mipmapped, 1).remaining());
+        assertEquals(42, pack.getTextureLevel(mipmapped, 3).get(0));
+        AssetPack.Entry compressed = pack.getEntry("compressed");
+        assertEquals(2, compressed.getLevelCount());
+        assertEquals(8, pack.getTextureLevel(compressed, 1).remaining());
+    }
+
+    @Test(expected = IOException.class)
+    public void otherVersion_rejected() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new AssetPackWriter().writeTo(out);
+        byte[] bytes = out.toByteArray();
+        bytes[4] = (byte) (AssetPack.VERSION + 1);
+        AssetPack.wrap(ByteBuffer.wrap(bytes));
+    }
+
+    @Test(expected = IOException.class)
+    public void truncatedIndex_rejected() throws IOException {
+        AssetPackWriter writer = new AssetPackWriter();
+        writer.addTexture(AssetPack.getTextureName("pixels"), 1, 1, AssetPack.TEXTURE_FORMAT_RGBA8,
+                ByteBuffer.wrap(new byte[]{1, 2, 3, 4}));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writer.writeTo(out);
+        // cut off in the middle of the entry's name
+        AssetPack.wrap(ByteBuffer.wrap(out.toByteArray(), 0, AssetPack.HEADER_SIZE + 6).slice());
+    }
+
+    @Test(expected = IOException.class)
+    public void corruptNameLength_rejected() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new AssetPackWriter().writeTo(out);
+        ByteBuffer bytes = ByteBuffer.allocate(AssetPack.HEADER_SIZE + 4).order(ByteOrder.LITTLE_ENDIAN);
+        bytes.put(out.toByteArray(), 0, AssetPack.HEADER_SIZE);
+        bytes.putInt(8, 1);
+        bytes.putInt(AssetPack.HEADER_SIZE, Integer.MAX_VALUE);
+        AssetPack.wrap(bytes);
+    }
+}
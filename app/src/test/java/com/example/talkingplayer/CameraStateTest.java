@@ -0,0 +1,66 @@
+package com.example.talkingplayer;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+
+public class CameraStateTest {
+
+    @Test
+    public void read_seesWhatWasWritten() {
+        CameraState state = new CameraState();
+        CameraState.Snapshot snapshot = new CameraState.Snapshot();
+        state.read(snapshot);
+        assertEquals(0f, snapshot.angle, 0f);
+        assertEquals(1f, snapshot.zoom, 0f);
+
+        state.setAngle(30f);
+        state.setZoom(2f);
+        state.read(snapshot);
+
+        assertEquals(30f, snapshot.angle, 0f);
+        assertEquals(2f, snapshot.zoom, 0f);
+        assertEquals(30f, state.getAngle(), 0f);
+        assertEquals(2f, state.getZoom(), 0f);
+    }
+
+    @Test
+    public void read_neverSeesHalfAWrite() throws InterruptedException {
+        final CameraState state = new CameraState();
+        final AtomicBoolean done = new AtomicBoolean();
+        Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 1; i <= 200000; i++) {
+                    state.beginWrite();
+                    state.setAngle(i);
+                    state.setZoom(i);
+                    state.endWrite();
+                }
+                done.set(true);
+            }
+        });
+        writer.start();
+
+        CameraState.Snapshot snapshot = new CameraState.Snapshot();
+        int reads = 0;
+        while (!done.get() || reads == 0) {
+            state.read(snapshot);
+            if (snapshot.angle != 0) {
+                assertEquals(snapshot.angle, snapshot.zoom, 0f);
+            }
+            reads++;
+        }
+        writer.join();
+
+        state.read(snapshot);
+        assertEquals(200000f, snapshot.angle, 0f);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void endWrite_withoutBeginWrite_throws() {
+        new CameraState().endWrite();
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.talkingplayer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class CubeMapBuilderTest {
+
+    @Test
+    public void getDirection_pointsThroughFaceCenters() {
+        float[] direction = new float[3];
+        float[][] expected = {{1, 0, 0}, {-1, 0, 0}, {0, 1, 0}, {0, -1, 0}, {0, 0, 1}, {0, 0, -1}};
+        for (int face = 0; face < CubeMapBuilder.FACE_COUNT; face++) {
+            // the center of a 1 pixel face
+            CubeMapBuilder.getDirection(face, 0, 0, 1, direction);
+            for (int axis = 0; axis < 3; axis++) {
+                assertEquals("face " + face, expected[face][axis], direction[axis], 1e-6f);
+            }
+        }
+    }
+
+    @Test
+    public void fromFaces_sharedImageIsFilteredOnce() {
+        byte[] image = solid(30, 20, 0x10, 0x80);
+        byte[] other = solid(30, 20, 0x20, 0x40);
+        byte[][] images = {image, image, image, image, image, other};
+        int[] widths = {30, 30, 30, 30, 30, 30};
+        int[] heights = {20, 20, 20, 20, 20, 20};
+
+        CubeMapBuilder.CubeMap cubeMap = new CubeMapBuilder().fromFaces(images, widths, heights);
+
+        assertEquals(32, cubeMap.size);
+        assertSame(cubeMap.faces[0], cubeMap.faces[4]);
+        assertEquals(MipChain.getLevelCount(32, 32), cubeMap.faces[5].length);
+        assertEquals(0x20, cubeMap.faces[5][0][0] & 0xff);
+        assertEquals(0x10, cubeMap.faces[0][5][0] & 0xff);
+    }
+
+    @Test
+    public void fromEquirectangular_mapsLatitudeToUpAndDown() {
+        // top half bright, bottom half dark
+        int width = 64;
+        int height = 32;
+        byte[] image = new byte[width * height * 4];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int pixel = (y * width + x) * 4;
+                byte value = (byte) (y < height / 2 ? 200 : 50);
+                image[pixel] = value;
+                image[pixel + 1] = value;
+                image[pixel + 2] = value;
+                image[pixel + 3] = (byte) 0xff;
+            }
+        }
+
+        CubeMapBuilder.CubeMap cubeMap = new CubeMapBuilder().fromEquirectangular(image, width, height);
+
+        assertEquals(CubeMapBuilder.getFaceSize(width), cubeMap.size);
+        byte[] up = cubeMap.faces[2][0];
+        byte[] down = cubeMap.faces[3][0];
+        for (int pixel = 0; pixel < up.length; pixel += 4) {
+            assertEquals(200, up[pixel] & 0xff);
+            assertEquals(50, down[pixel] & 0xff);
+        }
+        // the side faces show the horizon across their middle
+        byte[] front = cubeMap.faces[4][0];
+        assertEquals(200, front[0] & 0xff);
+        assertEquals(50, front[front.length - 4] & 0xff);
+    }
+
+    private static byte[] solid(int width, int height, int red, int green) {
+        byte[] image = new byte[width * height * 4];
+        for (int pixel = 0; pixel < image.length; pixel += 4) {
+            image[pixel] = (byte) red;
+            image[pixel + 1] = (byte) green;
+            image[pixel + 3] = (byte) 0xff;
+        }
+        return image;
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.talkingplayer;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class EtcCodecTest {
+
+    @Test
+    public void encodedSize_isEightBytesPerBlock() {
+        assertEquals(8, EtcCodec.getEncodedSize(1, 1));
+        assertEquals(241 * 243 * 8, EtcCodec.getEncodedSize(964, 970));
+        assertEquals(1024 * 1024 / 2, EtcCodec.encode(new byte[1024 * 1024 * 4], 1024, 1024, false).length);
+    }
+
+    @Test
+    public void solidColor_staysClose() {
+        byte[] image = fill(8, 8, 0x80, 0x40, 0xc0);
+        for (boolean etc2 : new boolean[]{false, true}) {
+            byte[] decoded = EtcCodec.decode(EtcCodec.encode(image, 8, 8, etc2), 8, 8);
+            assertTrue(EtcCodec.computePsnr(image, decoded) > 37);
+            assertEquals((byte) 0xff, decoded[3]);
+        }
+    }
+
+    @Test
+    public void gradient_etc2BeatsEtc1() {
+        int size = 64;
+        byte[] image = new byte[size * size * 4];
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                int pixel = (y * size + x) * 4;
+                image[pixel] = (byte) (x * 4);
+                image[pixel + 1] = (byte) (y * 4);
+                image[pixel + 2] = (byte) ((x + y) * 2);
+                image[pixel + 3] = (byte) 0xff;
+            }
+        }
+        double etc1 = EtcCodec.computePsnr(image, EtcCodec.decode(EtcCodec.encode(image, size, size, false), size, size));
+        double etc2 = EtcCodec.computePsnr(image, EtcCodec.decode(EtcCodec.encode(image, size, size, true), size, size));
+        assertTrue("ETC1 " + etc1, etc1 > 30);
+        assertTrue("ETC1 " + etc1 + " vs ETC2 " + etc2, etc2 > etc1 + 3);
+    }
+
+    @Test
+    public void noisyImage_withOddSize_keepsReasonableQuality() {
+        int width = 37;
+        int height = 21;
+        byte[] image = new byte[width * height * 4];
+        Random random = new Random(7);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int pixel = (y * width + x) * 4;
+                for (int channel = 0; channel < 3; channel++) {
+                    image[pixel + channel] = (byte) (100 + 3 * x + channel * 20 + random.nextInt(16));
+                }
+                image[pixel + 3] = (byte) 0xff;
+            }
+        }
+        byte[] encoded = EtcCodec.encode(image, width, height, true);
+        assertEquals(EtcCodec.getEncodedSize(width, height), encoded.length);
+        // per channel noise is the worst case for ETC, every pixel of a half shares one hue
+        assertTrue(EtcCodec.computePsnr(image, EtcCodec.decode(encoded, width, height)) > 25);
+    }
+
+    private static byte[] fill(int width, int height, int r, int g, int b) {
+        byte[] image = new byte[width * height * 4];
+        for (int i = 0; i < image.length; i += 4) {
+            image[i] = (byte) r;
+            image[i + 1] = (byte) g;
+            image[i + 2] = (byte) b;
+            image[i + 3] = (byte) 0xff;
+        }
+        return image;
+    }
+}
@@ -0,0 +1,171 @@
+package com.example.talkingplayer;
+
+import android.opengl.GLES30;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Draws the scenes against {@link RecordingGl} and holds their frames to a budget of GL calls.
+ * <p>
+ * RecordingGl answers every limit with 0 and hands out no program binaries unless a test sets them up, so
+ * the scenes take their fallbacks by default: the smallest uniform budget ES 2 guarantees, no anisotropy
+ * and compiled shaders. The tests that need a driver's answers set them explicitly. Loads are queued but
+ * never run, see {@link GlTestContext}, so a frame draws what the test handed in and placeholders.
+ */
+public class FrameBudgetTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    private final FrameUniforms frameUniforms = new FrameUniforms();
+    private final FrameUniforms.Transform transform = frameUniforms.createTransform();
+
+    @Test
+    public void sphereScene_es3_onlySwitchesProgramsAndVertexArrays() {
+        RecordingGl gl = new RecordingGl("OpenGL ES 3.0", "");
+        Scene scene = new Scene(gl);
+
+        scene.draw();
+        gl.reset();
+        scene.draw();
+
+        // the sky's cube map and the sphere's texture, nothing else is left to load with a single level
+        assertEquals(2, scene.context.getQueuedLoads());
+        assertEquals(gl.toString(), 2, gl.getDrawCalls());
+        assertEquals(gl.toString(), 4, gl.getStateChanges());
+        assertEquals(2, gl.getCalls("glUseProgram"));
+        assertEquals(2, gl.getCalls("glBindVertexArray"));
+        assertEquals(0, gl.getUploadedBytes());
+    }
+
+    @Test
+    public void sphereScene_es2_respecifiesOnlyBuffersAndPointers() {
+        RecordingGl gl = new RecordingGl("OpenGL ES 2.0", "");
+        Scene scene = new Scene(gl);
+
+        scene.draw();
+        int firstFrame = gl.getStateChanges();
+        gl.reset();
+        scene.draw();
+
+        assertEquals(gl.toString(), 2, gl.getDrawCalls());
+        assertTrue(gl.toString(), gl.getStateChanges() < firstFrame);
+        // the sky and the sphere each bind their two buffers and point their shared attributes into them,
+        // the sphere's morph target keeps pointing where it did
+        assertEquals(4, gl.getCalls("glBindBuffer"));
+        assertEquals(gl.toString(), 4 + 4, gl.getCalls("glVertexAttribPointer"));
+        assertEquals(0, gl.getCalls("glEnableVertexAttribArray"));
+        assertEquals(gl.toString(), 2 + 4 + 8, gl.getStateChanges());
+    }
+
+    @Test
+    public void sphereScene_released_texturesAreEvictedOverBudget() {
+        RecordingGl gl = new RecordingGl();
+        Scene scene = new Scene(gl);
+        scene.draw();
+        assertEquals(2, scene.textureRegistry.getStats().residentTextures);
+
+        gl.reset();
+        scene.release();
+
+        // nothing may stay resident with a budget of 0 once nobody holds the textures
+        TextureRegistry.Stats stats = scene.textureRegistry.getStats();
+        assertEquals(2, stats.evictions);
+        assertEquals(0, stats.residentTextures);
+        assertEquals(0, stats.residentBytes);
+        assertEquals(2, gl.getCalls("glDeleteTextures"));
+    }
+
+    @Test
+    public void cuboid_uploadsOnlyItsMatrixPerFrame() {
+        RecordingGl gl = new RecordingGl();
+        GlTestContext context = new GlTestContext(gl);
+        Cuboid cuboid = new Cuboid(context.capabilities, context.state, context.shaderCache);
+        assertTrue(gl.getUploadedBytes() > 0);
+
+        float[] mvpMatrix = identity();
+        cuboid.draw(mvpMatrix);
+        gl.reset();
+        mvpMatrix[12] = 1f;
+        cuboid.draw(mvpMatrix);
+
+        assertEquals(gl.toString(), 1, gl.getDrawCalls());
+        assertEquals(36, gl.getDrawnIndices());
+        assertEquals(gl.toString(), 1, gl.getStateChanges());
+        assertEquals(1, gl.getCalls("glUniformMatrix4fv"));
+    }
+
+    @Test
+    public void sphereScene_secondLaunch_loadsProgramBinariesInsteadOfCompiling() {
+        File shaders = new File(folder.getRoot(), "shaders");
+        RecordingGl firstLaunch = new RecordingGl("OpenGL ES 3.0", "")
+                .setInteger(GLES30.GL_NUM_PROGRAM_BINARY_FORMATS, 1);
+        new Scene(firstLaunch, shaders).draw();
+        assertEquals(4, firstLaunch.getCalls("glCompileShader"));
+        assertEquals(2, firstLaunch.getCalls("glGetProgramBinary"));
+
+        RecordingGl gl = new RecordingGl("OpenGL ES 3.0", "")
+                .setInteger(GLES30.GL_NUM_PROGRAM_BINARY_FORMATS, 1);
+        Scene scene = new Scene(gl, shaders);
+        scene.draw();
+        gl.reset();
+        scene.draw();
+
+        assertEquals(0, gl.getCalls("glCompileShader"));
+        // the locations come back with the binaries, so the frame is the same as after compiling
+        assertEquals(gl.toString(), 2, gl.getDrawCalls());
+        assertEquals(gl.toString(), 4, gl.getStateChanges());
+    }
+
+    /**
+     * What {@link SphereRenderer} draws, minus the context: textures keep their placeholders.
+     */
+    private class Scene {
+        private final GlTestContext context;
+        private final TextureRegistry textureRegistry;
+        private final NightSky nightSky;
+        private final SphereBox sphereBox;
+
+        Scene(RecordingGl gl) {
+            this(gl, null);
+        }
+
+        /**
+         * @param shaders where program binaries are kept, null to always compile
+         */
+        Scene(RecordingGl gl, File shaders) {
+            context = new GlTestContext(gl, shaders);
+            frameUniforms.setFrustum(-1f, 1f, -1f, 1f, 1f, 10f);
+            frameUniforms.setLookAt(0f, 0f, 3.5f, 0f, 0f, 2f, 0f, 1f, 0f);
+            textureRegistry = context.createTextureRegistry(0);
+            nightSky = new NightSky(null, context.capabilities, context.state, context.shaderCache, textureRegistry);
+            sphereBox = new SphereBox(null, context.capabilities, context.state, context.shaderCache,
+                    context.assetLoader, textureRegistry, 1);
+        }
+
+        void draw() {
+            context.state.beginFrame();
+            frameUniforms.update();
+            nightSky.draw(transform);
+            sphereBox.draw(transform);
+        }
+
+        void release() {
+            nightSky.release();
+            sphereBox.release();
+        }
+    }
+
+    private static float[] identity() {
+        float[] matrix = new float[16];
+        for (int i = 0; i < 16; i += 5) {
+            matrix[i] = 1f;
+        }
+        return matrix;
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.talkingplayer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FrameHistogramTest {
+
+    @Test
+    public void buckets_coverEveryDurationInOrder() {
+        for (int bucket = 0; bucket < FrameHistogram.BUCKET_COUNT; bucket++) {
+            long lower = FrameHistogram.getBucketLowerBound(bucket);
+            assertEquals(bucket, FrameHistogram.getBucket(lower));
+            if (bucket > 0) {
+                assertEquals(bucket - 1, FrameHistogram.getBucket(lower - 1));
+            }
+        }
+        assertEquals(FrameHistogram.BUCKET_COUNT - 1, FrameHistogram.getBucket(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void percentiles_areWithinBucketPrecision() {
+        FrameHistogram histogram = new FrameHistogram();
+        assertEquals(0, histogram.getPercentileNanos(50));
+
+        // 1 ms to 20 ms in 1 µs steps
+        for (long micros = 1000; micros < 20000; micros++) {
+            histogram.record(micros * 1000 + 500);
+        }
+
+        assertEquals(19000, histogram.getCount());
+        assertEquals(19999500, histogram.getMaxNanos());
+        assertWithin(10.5e6, histogram.getPercentileNanos(50));
+        assertWithin(19.05e6, histogram.getPercentileNanos(95));
+        assertWithin(19.81e6, histogram.getPercentileNanos(99));
+        assertEquals(histogram.getMaxNanos(), histogram.getPercentileNanos(100));
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMaxNanos());
+    }
+
+    @Test
+    public void record_isExactForShortDurations() {
+        FrameHistogram histogram = new FrameHistogram();
+        for (int i = 0; i < 99; i++) {
+            histogram.record(20000);
+        }
+        histogram.record(50000);
+
+        assertEquals(20999, histogram.getPercentileNanos(50));
+        assertEquals(20999, histogram.getPercentileNanos(99));
+        assertEquals(50000, histogram.getPercentileNanos(99.5));
+    }
+
+    private static void assertWithin(double expected, long actual) {
+        assertTrue("expected about " + expected + " but was " + actual,
+                Math.abs(actual - expected) <= expected * 0.035);
+    }
+}
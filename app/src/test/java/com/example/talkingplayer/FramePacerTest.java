@@ -0,0 +1,58 @@
+package com.example.talkingplayer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FramePacerTest {
+
+    @Test
+    public void capsAtEveryCommonRate() {
+        assertEquals(60, countFrames(60, 0));
+        assertEquals(30, countFrames(60, 30));
+        assertEquals(60, countFrames(60, 60));
+        assertEquals(60, countFrames(60, 120));
+        assertEquals(30, countFrames(120, 30));
+        assertEquals(60, countFrames(120, 60));
+        assertEquals(90, countFrames(120, 90));
+        assertEquals(120, countFrames(120, 120));
+        assertEquals(90, countFrames(90, 120));
+    }
+
+    @Test
+    public void rendersRightAwayAfterIdling() {
+        FramePacer pacer = new FramePacer(60);
+        pacer.setMaxFrameRate(30);
+        long vsync = FramePacer.NANOS_PER_SECOND / 60;
+
+        assertTrue(pacer.onVsync(0));
+        assertFalse(pacer.onVsync(vsync));
+        // nothing asked for frames for a while
+        assertTrue(pacer.onVsync(100 * vsync));
+        assertFalse(pacer.onVsync(101 * vsync));
+        assertTrue(pacer.onVsync(102 * vsync));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void setMaxFrameRate_rejectsNegativeRates() {
+        new FramePacer(60).setMaxFrameRate(-1);
+    }
+
+    /**
+     * @return frames rendered during a second of vsyncs, slightly jittered as real ones are
+     */
+    private static int countFrames(int refreshRate, int maxFrameRate) {
+        FramePacer pacer = new FramePacer(refreshRate);
+        pacer.setMaxFrameRate(maxFrameRate);
+        int frames = 0;
+        for (int vsync = 0; vsync < refreshRate; vsync++) {
+            long jitter = (vsync % 3 - 1) * 200000L;
+            if (pacer.onVsync(vsync * FramePacer.NANOS_PER_SECOND / refreshRate + jitter)) {
+                frames++;
+            }
+        }
+        return frames;
+    }
+}
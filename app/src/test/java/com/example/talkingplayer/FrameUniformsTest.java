@@ -0,0 +1,124 @@
+package com.example.talkingplayer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FrameUniformsTest {
+    @Test
+    public void unchangedFrames_rebuildNothing() {
+        FrameUniforms frameUniforms = new FrameUniforms();
+        FrameUniforms.Transform transform = frameUniforms.createTransform();
+
+        for (int frame = 0; frame < 10; frame++) {
+            setCamera(frameUniforms, 1f);
+            assertEquals(frame == 0, frameUniforms.update());
+            transform.getMVMatrix();
+            transform.getMVPMatrix();
+        }
+
+        assertEquals(1, transform.getUpdateCount());
+    }
+
+    @Test
+    public void zooming_rebuildsEveryTransformOnce() {
+        FrameUniforms frameUniforms = new FrameUniforms();
+        FrameUniforms.Transform sphere = frameUniforms.createTransform();
+        FrameUniforms.Transform sky = frameUniforms.createTransform();
+        setCamera(frameUniforms, 1f);
+        frameUniforms.update();
+        sphere.getMVPMatrix();
+        sky.getMVPMatrix();
+
+        setCamera(frameUniforms, 2f);
+        assertTrue(frameUniforms.update());
+        sphere.getMVMatrix();
+        sphere.getMVPMatrix();
+        sky.getMVPMatrix();
+
+        assertEquals(2, sphere.getUpdateCount());
+        assertEquals(2, sky.getUpdateCount());
+    }
+
+    @Test
+    public void modelChanged_rebuildsOnlyThatTransform() {
+        FrameUniforms frameUniforms = new FrameUniforms();
+        FrameUniforms.Transform moving = frameUniforms.createTransform();
+        FrameUniforms.Transform still = frameUniforms.createTransform();
+        setCamera(frameUniforms, 1f);
+        frameUniforms.update();
+        moving.getMVPMatrix();
+        still.getMVPMatrix();
+
+        moving.getModelMatrix()[12] = 1f;
+        moving.modelChanged();
+        assertFalse(frameUniforms.update());
+        moving.getMVPMatrix();
+        still.getMVPMatrix();
+
+        assertEquals(2, moving.getUpdateCount());
+        assertEquals(1, still.getUpdateCount());
+    }
+
+    @Test
+    public void setLookAt_rebuildsTheViewAndEveryTransformButNotTheProjection() {
+        FrameUniforms frameUniforms = new FrameUniforms();
+        FrameUniforms.Transform transform = frameUniforms.createTransform();
+        setCamera(frameUniforms, 1f);
+        frameUniforms.update();
+        transform.getMVPMatrix();
+        // known matrices that don't commute: a projection scaling x, and a view shifting by (1, 2, 3) that
+        // setLookAt replaces where Matrix is more than a stub
+        float[] projection = {3f, 0f, 0f, 0f, 0f, 1f, 0f, 0f, 0f, 0f, 1f, 0f, 0f, 0f, 0f, 1f};
+        float[] view = {1f, 0f, 0f, 0f, 0f, 1f, 0f, 0f, 0f, 0f, 1f, 0f, 1f, 2f, 3f, 1f};
+        System.arraycopy(projection, 0, frameUniforms.getProjectionMatrix(), 0, 16);
+        System.arraycopy(view, 0, frameUniforms.getViewMatrix(), 0, 16);
+
+        frameUniforms.setLookAt(1f, 2f, 5f, 1f, 2f, 0f, 0f, 1f, 0f);
+        assertTrue(frameUniforms.update());
+        assertFalse(frameUniforms.update());
+        assertArrayEquals(projection, frameUniforms.getProjectionMatrix(), 0f);
+        view = frameUniforms.getViewMatrix();
+        assertTransforms(frameUniforms.getViewProjectionMatrix(), projection, view, 4f, 5f, 6f);
+
+        // scale by 2 then shift by (-1, 0, 1)
+        float[] model = transform.getModelMatrix();
+        model[0] = model[5] = model[10] = 2f;
+        model[12] = -1f;
+        model[14] = 1f;
+        transform.modelChanged();
+        float[] mv = transform.getMVMatrix();
+        float[] mvp = transform.getMVPMatrix();
+        assertEquals(2, transform.getUpdateCount());
+        // MV = view * model and MVP = projection * view * model: the model applies first
+        assertTransforms(mv, view, model, 4f, 5f, 6f);
+        assertTransforms(mvp, frameUniforms.getViewProjectionMatrix(), model, 4f, 5f, 6f);
+    }
+
+    /**
+     * Asserts that {@code product} takes a point through {@code second} first, then {@code first}.
+     */
+    private static void assertTransforms(float[] product, float[] first, float[] second, float x, float y, float z) {
+        float[] through = transform(second, x, y, z);
+        assertArrayEquals(transform(first, through[0], through[1], through[2]), transform(product, x, y, z), 1e-4f);
+    }
+
+    /**
+     * @return the column-major {@code matrix} times the point (x, y, z, 1)
+     */
+    private static float[] transform(float[] matrix, float x, float y, float z) {
+        float[] result = new float[4];
+        for (int row = 0; row < 4; row++) {
+            result[row] = matrix[row] * x + matrix[4 + row] * y + matrix[8 + row] * z + matrix[12 + row];
+        }
+        return result;
+    }
+
+    private static void setCamera(FrameUniforms frameUniforms, float zoom) {
+        frameUniforms.setFrustum(-1f / zoom, 1f / zoom, -1f / zoom, 1f / zoom, 1f, 10f);
+        frameUniforms.setLookAt(0f, 0f, 3.5f, 0f, 0f, 2f, 0f, 1f, 0f);
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.talkingplayer;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * What rendering code needs to run on the JVM: a {@link RecordingGl} behind a state cache, a shader cache
+ * and an asset loader that queues its loads without ever running them. Nothing is decoded or read from an
+ * asset pack, so textures keep their placeholders and tests hand meshes and catalogs in themselves.
+ */
+final class GlTestContext {
+    final RecordingGl gl;
+    final GlCapabilities capabilities;
+    final GlStateCache state;
+    final ShaderCache shaderCache;
+    final AssetLoader assetLoader;
+    private final List<Runnable> queuedLoads = new ArrayList<>();
+
+    GlTestContext(RecordingGl gl) {
+        this(gl, null);
+    }
+
+    /**
+     * @param shaders where program binaries are kept, null to always compile
+     */
+    GlTestContext(RecordingGl gl, File shaders) {
+        this.gl = gl;
+        capabilities = GlCapabilities.query(gl);
+        state = new GlStateCache(gl, capabilities);
+        shaderCache = new ShaderCache(gl, shaders, capabilities);
+        assetLoader = new AssetLoader(new Runnable() {
+            @Override
+            public void run() {
+            }
+        }, new Executor() {
+            @Override
+            public void execute(Runnable load) {
+                queuedLoads.add(load);
+            }
+        });
+    }
+
+    TextureRegistry createTextureRegistry(long budgetBytes) {
+        return new TextureRegistry(assetLoader, capabilities, state, budgetBytes);
+    }
+
+    /**
+     * @return how many loads were asked for, none of which ran
+     */
+    int getQueuedLoads() {
+        return queuedLoads.size();
+    }
+}
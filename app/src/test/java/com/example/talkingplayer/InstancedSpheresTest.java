@@ -0,0 +1,93 @@
+package com.example.talkingplayer;
+
+import android.opengl.GLES20;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class InstancedSpheresTest {
+    private final FrameUniforms frameUniforms = new FrameUniforms();
+    private final FrameUniforms.Transform transform = frameUniforms.createTransform();
+
+    @Test
+    public void es3_drawAllInOneCallAndUploadOnlyChanges() {
+        RecordingGl gl = new RecordingGl("OpenGL ES 3.0", "");
+        InstancedSpheres spheres = createSpheres(gl, 2000);
+
+        // the instances placed before the mesh was loaded went up with the first frame
+        assertEquals(2000 * 12 * 4, gl.getUploadedBytes());
+
+        gl.reset();
+        spheres.draw(transform);
+        assertEquals(gl.toString(), 1, gl.getDrawCalls());
+        assertEquals(1, gl.getCalls("glDrawElementsInstanced"));
+        assertEquals(0, gl.getUploadedBytes());
+
+        gl.reset();
+        spheres.setPosition(10, 1f, 2f, 3f);
+        spheres.setPosition(12, 1f, 2f, 3f);
+        spheres.draw(transform);
+        // instances 10 to 12, 12 floats each
+        assertEquals(3 * 12 * 4, gl.getUploadedBytes());
+        assertEquals(2000L * SphereLevels.build(1).indices.remaining(), gl.getDrawnIndices());
+    }
+
+    @Test
+    public void es2_drawBatchesOfInstances() {
+        // no GL_MAX_VERTEX_UNIFORM_VECTORS, so batches fit the 128 vectors every ES 2 driver has
+        RecordingGl gl = new RecordingGl("OpenGL ES 2.0", "");
+        InstancedSpheres spheres = createSpheres(gl, 2000);
+        int batchSize = spheres.getBatchSize();
+        assertTrue(batchSize > 1);
+        int batches = (2000 + batchSize - 1) / batchSize;
+
+        gl.reset();
+        spheres.draw(transform);
+        assertEquals(gl.toString(), batches, gl.getDrawCalls());
+        assertEquals(0, gl.getCalls("glDrawElementsInstanced"));
+        assertEquals(batches, gl.getCalls("glUniform4fv"));
+        assertEquals(0, gl.getUploadedBytes());
+        // the last batch only draws the instances there are
+        assertEquals(2000L * SphereLevels.build(1).indices.remaining(), gl.getDrawnIndices());
+    }
+
+    @Test
+    public void es2_batchAsManyAsTheUniformsHold() {
+        InstancedSpheres fallback = createSpheres(new RecordingGl("OpenGL ES 2.0", ""), 2000);
+        RecordingGl gl = new RecordingGl("OpenGL ES 2.0", "")
+                .setInteger(GLES20.GL_MAX_VERTEX_UNIFORM_VECTORS, 512);
+        InstancedSpheres spheres = createSpheres(gl, 2000);
+        int batchSize = spheres.getBatchSize();
+
+        assertTrue(batchSize + " vs " + fallback.getBatchSize(), batchSize > fallback.getBatchSize());
+        assertTrue(batchSize <= (512 - 16) / 3);
+        assertEquals((2000 + batchSize - 1) / batchSize, gl.getDrawCalls());
+    }
+
+    /**
+     * Draws {@code count} instances once.
+     */
+    private InstancedSpheres createSpheres(RecordingGl gl, int count) {
+        GlTestContext context = new GlTestContext(gl);
+        frameUniforms.setFrustum(-1f, 1f, -1f, 1f, 1f, 10f);
+        frameUniforms.setLookAt(0f, 0f, 3.5f, 0f, 0f, 2f, 0f, 1f, 0f);
+        frameUniforms.update();
+        InstancedSpheres spheres = new InstancedSpheres(null, context.capabilities, context.state,
+                context.shaderCache, context.assetLoader, context.createTextureRegistry(0), count);
+        // its texture and its mesh
+        assertEquals(2, context.getQueuedLoads());
+        Quaternion rotation = new Quaternion();
+        for (int i = 0; i < count; i++) {
+            spheres.add(i * 0.01f, 0f, 0f, 0.02f, rotation, 0xffffffff);
+        }
+        // nothing to draw until the mesh is there, which the loader would hand over
+        spheres.draw(transform);
+        assertEquals(0, gl.getDrawCalls());
+        spheres.setSphere(SphereLevels.build(1));
+        gl.reset();
+        spheres.draw(transform);
+        return spheres;
+    }
+}
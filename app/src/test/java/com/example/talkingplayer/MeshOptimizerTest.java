@@ -0,0 +1,91 @@
+package com.example.talkingplayer;
+
+import org.junit.Test;
+
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class MeshOptimizerTest {
+
+    @Test
+    public void countTriangles_forListsAndStrips() {
+        assertEquals(4, MeshOptimizer.countTriangles(MeshOptimizer.MODE_TRIANGLES, 12));
+        assertEquals(10, MeshOptimizer.countTriangles(MeshOptimizer.MODE_TRIANGLE_STRIP, 12));
+        assertEquals(0, MeshOptimizer.countTriangles(MeshOptimizer.MODE_TRIANGLE_STRIP, 1));
+    }
+
+    @Test
+    public void sphere_keepsItsTrianglesAndLowersAcmr() {
+        SphereMeshGenerator generator = new SphereMeshGenerator(36, 36);
+        int vertexCount = generator.getVertexCount();
+        FloatBuffer vertices = SphereMeshGenerator.allocateFloatBuffer(vertexCount * 3);
+        ShortBuffer indices = SphereMeshGenerator.allocateShortBuffer(generator.getIndexCount());
+        generator.generate(vertices, null, null, null, indices);
+        Map<String, Integer> before = triangles(indices, vertices);
+
+        MeshOptimizer.Report report = MeshOptimizer.optimize(indices, vertices, 3, vertexCount);
+
+        // drawn as a list, the sphere is two triangles per step for every band but the poles
+        assertEquals(2 * 34 * 36, report.triangleCount);
+        assertEquals(report.triangleCount,
+                MeshOptimizer.countTriangles(MeshOptimizer.MODE_TRIANGLES, indices.remaining()));
+        assertEquals(before, triangles(indices, vertices));
+        assertTrue(report.acmrAfter < report.acmrBefore);
+        assertTrue(report.acmrAfter < 1.0f);
+    }
+
+    @Test
+    public void optimizeVertexFetch_numbersVerticesByFirstUse() {
+        ShortBuffer indices = SphereMeshGenerator.allocateShortBuffer(6);
+        indices.put(new short[]{3, 1, 2, 2, 1, 0}).position(0);
+        FloatBuffer vertices = SphereMeshGenerator.allocateFloatBuffer(4);
+        vertices.put(new float[]{10, 11, 12, 13}).position(0);
+
+        int[] remap = MeshOptimizer.optimizeVertexFetch(indices, vertices, 1, 4);
+
+        assertArrayEquals(new int[]{3, 1, 2, 0}, remap);
+        assertEquals(0, indices.get(0));
+        assertEquals(13f, vertices.get(0), 0f);
+        assertEquals(10f, vertices.get(3), 0f);
+    }
+
+    @Test
+    public void weld_mergesSharedCorners() {
+        float[] quad = {
+                0, 0, 1, 0, 1, 1,
+                0, 0, 1, 1, 0, 1};
+        MeshOptimizer.IndexedMesh mesh = MeshOptimizer.weld(quad, 2);
+        assertEquals(4, mesh.getVertexCount());
+        assertEquals(6, mesh.indices.length);
+        assertEquals(2, MeshOptimizer.countTriangles(MeshOptimizer.MODE_TRIANGLES, mesh.indices.length));
+    }
+
+    /**
+     * Triangles as position triples starting from their smallest vertex, so reordering vertices or
+     * rotating a triangle's indices compares equal while flipping its winding does not.
+     */
+    private static Map<String, Integer> triangles(ShortBuffer indices, FloatBuffer vertices) {
+        Map<String, Integer> triangles = new HashMap<>();
+        for (int i = 0; i < indices.remaining(); i += 3) {
+            String[] corners = new String[3];
+            for (int k = 0; k < 3; k++) {
+                int v = indices.get(i + k) & 0xFFFF;
+                corners[k] = vertices.get(3 * v) + "," + vertices.get(3 * v + 1) + "," + vertices.get(3 * v + 2);
+            }
+            int first = 0;
+            for (int k = 1; k < 3; k++) {
+                if (corners[k].compareTo(corners[first]) < 0) {
+                    first = k;
+                }
+            }
+            String key = corners[first] + "|" + corners[(first + 1) % 3] + "|" + corners[(first + 2) % 3];
+            Integer count = triangles.get(key);
+            triangles.put(key, count == null ? 1 : count + 1);
+        }
+        return triangles;
+    }
+}
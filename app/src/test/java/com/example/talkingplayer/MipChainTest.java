@@ -0,0 +1,67 @@
+package com.example.talkingplayer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MipChainTest {
+
+    @Test
+    public void powersOfTwo() {
+        assertTrue(MipChain.isPowerOfTwo(1024));
+        assertFalse(MipChain.isPowerOfTwo(970));
+        assertEquals(1024, MipChain.nearestPowerOfTwo(970));
+        assertEquals(1024, MipChain.nearestPowerOfTwo(768));
+        assertEquals(512, MipChain.nearestPowerOfTwo(700));
+        assertEquals(11, MipChain.getLevelCount(1024, 1024));
+        assertEquals(4, MipChain.getLevelCount(8, 2));
+    }
+
+    @Test
+    public void build_boxFiltersDownToOnePixel() {
+        // black and white checkerboard, every 2x2 box averages to grey
+        int width = 8;
+        int height = 4;
+        byte[] checkerboard = new byte[width * height * 4];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                byte value = (byte) ((x + y) % 2 == 0 ? 0xff : 0);
+                int pixel = (y * width + x) * 4;
+                checkerboard[pixel] = value;
+                checkerboard[pixel + 1] = value;
+                checkerboard[pixel + 2] = value;
+                checkerboard[pixel + 3] = (byte) 0xff;
+            }
+        }
+
+        byte[][] levels = MipChain.build(checkerboard, width, height);
+
+        assertEquals(4, levels.length);
+        assertEquals(4 * 2 * 4, levels[1].length);
+        assertEquals(2 * 1 * 4, levels[2].length);
+        assertEquals(4, levels[3].length);
+        for (int level = 1; level < levels.length; level++) {
+            for (int i = 0; i < levels[level].length; i++) {
+                assertEquals(i % 4 == 3 ? 0xff : 0x80, levels[level][i] & 0xff);
+            }
+        }
+    }
+
+    @Test
+    public void resize_keepsSolidColor() {
+        byte[] solid = new byte[3 * 5 * 4];
+        for (int i = 0; i < solid.length; i += 4) {
+            solid[i] = 10;
+            solid[i + 1] = 20;
+            solid[i + 2] = 30;
+            solid[i + 3] = (byte) 0xff;
+        }
+        byte[] resized = MipChain.resize(solid, 3, 5, 4, 8);
+        assertEquals(4 * 8 * 4, resized.length);
+        assertArrayEquals(new byte[]{10, 20, 30, (byte) 0xff}, new byte[]{resized[60], resized[61], resized[62],
+                resized[63]});
+    }
+}
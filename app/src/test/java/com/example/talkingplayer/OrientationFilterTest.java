@@ -0,0 +1,98 @@
+package com.example.talkingplayer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class OrientationFilterTest {
+    private static final float EPSILON = 1e-3f;
+    private static final float GRAVITY = 9.81f;
+    private static final long STEP_NANOS = 10000000L;
+
+    @Test
+    public void flatFacingNorth_isLevel() {
+        OrientationFilter filter = new OrientationFilter();
+        assertFalse(filter.isInitialized());
+
+        // the field points north and down, as it does in the northern hemisphere
+        filter.onMagnetometer(0f, 20f, -40f);
+        filter.onAccelerometer(0f, 0f, GRAVITY, 0L);
+
+        assertTrue(filter.isInitialized());
+        float[] angles = new float[3];
+        filter.getOrientationAngles(angles);
+        assertEquals(0f, angles[0], EPSILON);
+        assertEquals(0f, angles[1], EPSILON);
+        assertEquals(0f, angles[2], EPSILON);
+    }
+
+    @Test
+    public void flatFacingEast_hasQuarterTurnAzimuth() {
+        OrientationFilter filter = new OrientationFilter();
+        // the top of the device points east, so north is to its left
+        filter.onMagnetometer(-20f, 0f, -40f);
+        filter.onAccelerometer(0f, 0f, GRAVITY, 0L);
+
+        float[] angles = new float[3];
+        filter.getOrientationAngles(angles);
+        assertEquals((float) Math.PI / 2, angles[0], EPSILON);
+    }
+
+    @Test
+    public void gyroscope_isIntegrated() {
+        OrientationFilter filter = new OrientationFilter(0f);
+        filter.onMagnetometer(0f, 20f, -40f);
+        filter.onAccelerometer(0f, 0f, GRAVITY, 0L);
+        filter.onGyroscope(0f, 0f, 0f, 0L);
+
+        // a second counter-clockwise around up, at a radian per second
+        for (int i = 1; i <= 100; i++) {
+            filter.onGyroscope(0f, 0f, 1f, i * STEP_NANOS);
+        }
+
+        float[] angles = new float[3];
+        filter.getOrientationAngles(angles);
+        assertEquals(-1f, angles[0], EPSILON);
+        assertEquals(0f, angles[1], EPSILON);
+    }
+
+    @Test
+    public void gravity_correctsGyroscopeDrift() {
+        OrientationFilter filter = new OrientationFilter();
+        filter.onMagnetometer(0f, 20f, -40f);
+        filter.onAccelerometer(0f, 0f, GRAVITY, 0L);
+        filter.onGyroscope(0f, 0f, 0f, 0L);
+
+        // the gyroscope claims a roll the accelerometer never sees
+        for (int i = 1; i <= 1000; i++) {
+            filter.onAccelerometer(0f, 0f, GRAVITY, i * STEP_NANOS);
+            filter.onGyroscope(0f, 0.05f, 0f, i * STEP_NANOS);
+        }
+
+        float[] angles = new float[3];
+        filter.getOrientationAngles(angles);
+        // a constant bias leaves a constant error of bias / gain, not 0.5 rad
+        assertEquals(0.025f, Math.abs(angles[2]), 0.005f);
+    }
+
+    @Test
+    public void quaternion_setFromMatrix_invertsToMatrix() {
+        float[] m = new float[16];
+        float[][] axes = {{1f, 2f, 3f}, {1f, 0f, 0f}, {0f, 1f, 0f}, {0f, 0f, 1f}};
+        for (float[] axis : axes) {
+            for (float degrees = -170f; degrees <= 180f; degrees += 35f) {
+                Quaternion q = new Quaternion().setAxisAngle(axis[0], axis[1], axis[2], degrees);
+                q.toMatrix(m, 0);
+                Quaternion back = new Quaternion().setFromMatrix(m, 0);
+                // q and -q are the same rotation
+                float sign = Math.signum(q.w * back.w + q.x * back.x + q.y * back.y + q.z * back.z);
+                assertEquals(q.x, sign * back.x, EPSILON);
+                assertEquals(q.y, sign * back.y, EPSILON);
+                assertEquals(q.z, sign * back.z, EPSILON);
+                assertEquals(q.w, sign * back.w, EPSILON);
+            }
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.talkingplayer;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ProgramBinaryStoreTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void getKey_separatesParts() {
+        String key = ProgramBinaryStore.getKey("ab", "c");
+        assertEquals(40, key.length());
+        assertTrue(key.matches("[0-9a-f]+"));
+        assertEquals(key, ProgramBinaryStore.getKey("ab", "c"));
+        assertNotEquals(key, ProgramBinaryStore.getKey("a", "bc"));
+    }
+
+    @Test
+    public void writeAndRead_roundTrip() throws IOException {
+        ProgramBinaryStore store = new ProgramBinaryStore(new File(folder.getRoot(), "shaders"));
+        ByteBuffer binary = ByteBuffer.wrap(new byte[]{9, 8, 7, 6, 5});
+        binary.position(1);
+
+        store.write("key", 0x8741, binary);
+        ProgramBinaryStore.Binary read = store.read("key");
+
+        assertEquals(0x8741, read.format);
+        assertTrue(read.data.isDirect());
+        assertEquals(ByteBuffer.wrap(new byte[]{8, 7, 6, 5}), read.data);
+        // the caller's buffer is left alone
+        assertEquals(1, binary.position());
+
+        store.delete("key");
+        assertNull(store.read("key"));
+    }
+
+    @Test
+    public void read_ignoresMissingAndDamagedFiles() throws IOException {
+        File directory = folder.getRoot();
+        ProgramBinaryStore store = new ProgramBinaryStore(directory);
+        assertNull(store.read("missing"));
+
+        store.write("truncated", 1, ByteBuffer.wrap(new byte[64]));
+        try (RandomAccessFile file = new RandomAccessFile(new File(directory, "truncated.bin"), "rw")) {
+            file.setLength(40);
+        }
+        assertNull(store.read("truncated"));
+
+        store.write("foreign", 1, ByteBuffer.wrap(new byte[8]));
+        try (RandomAccessFile file = new RandomAccessFile(new File(directory, "foreign.bin"), "rw")) {
+            file.writeInt(0);
+        }
+        assertNull(store.read("foreign"));
+    }
+}
@@ -0,0 +1,691 @@
+package com.example.talkingplayer;
+
+import android.graphics.Bitmap;
+import android.opengl.GLES20;
+import android.opengl.GLES30;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A {@link Gl} without a GPU behind it, so rendering code can run on the JVM. It counts every call, the
+ * ones that change state, the bytes uploaded and what was drawn, which lets tests hold a frame to a budget.
+ * <p>
+ * Objects get fresh names, shaders always compile and programs always link. A linked program reports the
+ * attributes and uniforms its sources declare, attributes at their bound locations, so locations resolve
+ * as they would on a device.
+ * <p>
+ * glGetIntegerv and glGetFloatv answer 0 unless told otherwise with {@link #setInteger(int, int)} and
+ * {@link #setFloat(int, float)}, so code that sizes itself by a limit takes its fallback by default. The
+ * same goes for program binaries: with GL_NUM_PROGRAM_BINARY_FORMATS set above 0 a linked program hands
+ * out a binary that glProgramBinary takes back, even from another instance, otherwise there are none.
+ * Every other query answers 0.
+ */
+public class RecordingGl implements Gl {
+    private static final Pattern ATTRIBUTE_PATTERN = Pattern.compile(
+            "\\battribute\\s+(?:(?:lowp|mediump|highp)\\s+)?\\w+\\s+(\\w+)\\s*;");
+    private static final Pattern UNIFORM_PATTERN = Pattern.compile(
+            "\\buniform\\s+(?:(?:lowp|mediump|highp)\\s+)?\\w+\\s+(\\w+)\\s*(\\[\\s*\\d+\\s*\\])?\\s*;");
+    // what the program binaries handed out claim to be
+    public static final int PROGRAM_BINARY_FORMAT = 0x7262;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private final String version;
+    private final String extensions;
+    private int nextName = 1;
+    private final Map<Integer, String> shaderSources = new HashMap<>();
+    private final Map<Integer, List<Integer>> attachedShaders = new HashMap<>();
+    private final Map<Integer, Map<String, Integer>> attribBindings = new HashMap<>();
+    private final Map<Integer, Program> programs = new HashMap<>();
+    private final Map<Integer, Integer> integers = new HashMap<>();
+    private final Map<Integer, Float> floats = new HashMap<>();
+
+    private final Map<String, Integer> calls = new TreeMap<>();
+    private int totalCalls;
+    private int stateChanges;
+    private long uploadedBytes;
+    private int drawCalls;
+    private long drawnIndices;
+    private long drawnVertices;
+
+    /**
+     * Pretends to be an ES 3 context without extensions.
+     */
+    public RecordingGl() {
+        this("OpenGL ES 3.0", "");
+    }
+
+    /**
+     * @param version    as GL_VERSION reports it, e.g. "OpenGL ES 2.0"
+     * @param extensions as GL_EXTENSIONS reports them, separated by spaces
+     */
+    public RecordingGl(String version, String extensions) {
+        this.version = version;
+        this.extensions = extensions;
+    }
+
+    /**
+     * Makes glGetIntegerv answer {@code value} for {@code pname}, e.g. GL_MAX_VERTEX_UNIFORM_VECTORS.
+     */
+    public RecordingGl setInteger(int pname, int value) {
+        integers.put(pname, value);
+        return this;
+    }
+
+    /**
+     * Makes glGetFloatv answer {@code value} for {@code pname}, e.g. GL_MAX_TEXTURE_MAX_ANISOTROPY_EXT.
+     */
+    public RecordingGl setFloat(int pname, float value) {
+        floats.put(pname, value);
+        return this;
+    }
+
+    /**
+     * @return how often {@code name}, e.g. "glBindTexture", was called
+     */
+    public int getCalls(String name) {
+        Integer count = calls.get(name);
+        return count != null ? count : 0;
+    }
+
+    public int getTotalCalls() {
+        return totalCalls;
+    }
+
+    /**
+     * @return calls that change context state: binds, enables, attribute pointers, uniforms, texture
+     * parameters and the like
+     */
+    public int getStateChanges() {
+        return stateChanges;
+    }
+
+    /**
+     * @return bytes handed to buffer and texture uploads
+     */
+    public long getUploadedBytes() {
+        return uploadedBytes;
+    }
+
+    public int getDrawCalls() {
+        return drawCalls;
+    }
+
+    public long getDrawnIndices() {
+        return drawnIndices;
+    }
+
+    /**
+     * @return vertices drawn without indices
+     */
+    public long getDrawnVertices() {
+        return drawnVertices;
+    }
+
+    /**
+     * Starts counting over, e.g. at the start of a frame. The objects created so far stay.
+     */
+    public void reset() {
+        calls.clear();
+        totalCalls = 0;
+        stateChanges = 0;
+        uploadedBytes = 0;
+        drawCalls = 0;
+        drawnIndices = 0;
+        drawnVertices = 0;
+    }
+
+    @Override
+    public String toString() {
+        return totalCalls + " calls, " + stateChanges + " state changes, " + drawCalls + " draws, "
+                + uploadedBytes + " bytes uploaded " + calls;
+    }
+
+    private void call(String name) {
+        Integer count = calls.get(name);
+        calls.put(name, count != null ? count + 1 : 1);
+        totalCalls++;
+    }
+
+    private void changeState(String name) {
+        call(name);
+        stateChanges++;
+    }
+
+    private void generate(int n, int[] names, int offset) {
+        for (int i = 0; i < n; i++) {
+            names[offset + i] = nextName++;
+        }
+    }
+
+    private static long getByteCount(Buffer buffer) {
+        if (buffer == null) {
+            return 0;
+        }
+        if (buffer instanceof ShortBuffer) {
+            return buffer.remaining() * 2L;
+        }
+        if (buffer instanceof FloatBuffer || buffer instanceof IntBuffer) {
+            return buffer.remaining() * 4L;
+        }
+        return buffer instanceof ByteBuffer ? buffer.remaining() : 0;
+    }
+
+    @Override
+    public void glActiveTexture(int texture) {
+        changeState("glActiveTexture");
+    }
+
+    @Override
+    public void glAttachShader(int program, int shader) {
+        call("glAttachShader");
+        List<Integer> shaders = attachedShaders.get(program);
+        if (shaders == null) {
+            shaders = new ArrayList<>();
+            attachedShaders.put(program, shaders);
+        }
+        shaders.add(shader);
+    }
+
+    @Override
+    public void glBeginQuery(int target, int id) {
+        call("glBeginQuery");
+    }
+
+    @Override
+    public void glBindAttribLocation(int program, int index, String name) {
+        call("glBindAttribLocation");
+        Map<String, Integer> bindings = attribBindings.get(program);
+        if (bindings == null) {
+            bindings = new HashMap<>();
+            attribBindings.put(program, bindings);
+        }
+        bindings.put(name, index);
+    }
+
+    @Override
+    public void glBindBuffer(int target, int buffer) {
+        changeState("glBindBuffer");
+    }
+
+    @Override
+    public void glBindTexture(int target, int texture) {
+        changeState("glBindTexture");
+    }
+
+    @Override
+    public void glBindVertexArray(int array) {
+        changeState("glBindVertexArray");
+    }
+
+    @Override
+    public void glBufferData(int target, int size, Buffer data, int usage) {
+        call("glBufferData");
+        uploadedBytes += size;
+    }
+
+    @Override
+    public void glBufferSubData(int target, int offset, int size, Buffer data) {
+        call("glBufferSubData");
+        uploadedBytes += size;
+    }
+
+    @Override
+    public void glClear(int mask) {
+        call("glClear");
+    }
+
+    @Override
+    public void glClearColor(float red, float green, float blue, float alpha) {
+        changeState("glClearColor");
+    }
+
+    @Override
+    public void glCompileShader(int shader) {
+        call("glCompileShader");
+    }
+
+    @Override
+    public void glCompressedTexImage2D(int target, int level, int internalformat, int width, int height,
+                                       int border, int imageSize, Buffer data) {
+        call("glCompressedTexImage2D");
+        uploadedBytes += imageSize;
+    }
+
+    @Override
+    public int glCreateProgram() {
+        call("glCreateProgram");
+        return nextName++;
+    }
+
+    @Override
+    public int glCreateShader(int type) {
+        call("glCreateShader");
+        return nextName++;
+    }
+
+    @Override
+    public void glDeleteProgram(int program) {
+        call("glDeleteProgram");
+        programs.remove(program);
+        attachedShaders.remove(program);
+        attribBindings.remove(program);
+    }
+
+    @Override
+    public void glDeleteShader(int shader) {
+        call("glDeleteShader");
+        shaderSources.remove(shader);
+    }
+
+    @Override
+    public void glDeleteTextures(int n, int[] textures, int offset) {
+        call("glDeleteTextures");
+    }
+
+    @Override
+    public void glDetachShader(int program, int shader) {
+        call("glDetachShader");
+        List<Integer> shaders = attachedShaders.get(program);
+        if (shaders != null) {
+            shaders.remove(Integer.valueOf(shader));
+        }
+    }
+
+    @Override
+    public void glDisableVertexAttribArray(int index) {
+        changeState("glDisableVertexAttribArray");
+    }
+
+    @Override
+    public void glDrawArrays(int mode, int first, int count) {
+        call("glDrawArrays");
+        drawCalls++;
+        drawnVertices += count;
+    }
+
+    @Override
+    public void glDrawElements(int mode, int count, int type, int offset) {
+        call("glDrawElements");
+        drawCalls++;
+        drawnIndices += count;
+    }
+
+    @Override
+    public void glDrawElementsInstanced(int mode, int count, int type, int offset, int instanceCount) {
+        call("glDrawElementsInstanced");
+        drawCalls++;
+        drawnIndices += (long) count * instanceCount;
+    }
+
+    @Override
+    public void glEnable(int cap) {
+        changeState("glEnable");
+    }
+
+    @Override
+    public void glEnableVertexAttribArray(int index) {
+        changeState("glEnableVertexAttribArray");
+    }
+
+    @Override
+    public void glEndQuery(int target) {
+        call("glEndQuery");
+    }
+
+    @Override
+    public void glGenBuffers(int n, int[] buffers, int offset) {
+        call("glGenBuffers");
+        generate(n, buffers, offset);
+    }
+
+    @Override
+    public void glGenerateMipmap(int target) {
+        call("glGenerateMipmap");
+    }
+
+    @Override
+    public void glGenQueries(int n, int[] ids, int offset) {
+        call("glGenQueries");
+        generate(n, ids, offset);
+    }
+
+    @Override
+    public void glGenTextures(int n, int[] textures, int offset) {
+        call("glGenTextures");
+        generate(n, textures, offset);
+    }
+
+    @Override
+    public void glGenVertexArrays(int n, int[] arrays, int offset) {
+        call("glGenVertexArrays");
+        generate(n, arrays, offset);
+    }
+
+    @Override
+    public String glGetActiveAttrib(int program, int index, int[] size, int sizeOffset, int[] type,
+                                    int typeOffset) {
+        call("glGetActiveAttrib");
+        size[sizeOffset] = 1;
+        type[typeOffset] = 0;
+        return new ArrayList<>(programs.get(program).attributes.keySet()).get(index);
+    }
+
+    @Override
+    public String glGetActiveUniform(int program, int index, int[] size, int sizeOffset, int[] type,
+                                     int typeOffset) {
+        call("glGetActiveUniform");
+        size[sizeOffset] = 1;
+        type[typeOffset] = 0;
+        return new ArrayList<>(programs.get(program).uniforms.keySet()).get(index);
+    }
+
+    @Override
+    public int glGetAttribLocation(int program, String name) {
+        call("glGetAttribLocation");
+        Program linked = programs.get(program);
+        Integer location = linked != null ? linked.attributes.get(name) : null;
+        return location != null ? location : -1;
+    }
+
+    @Override
+    public int glGetError() {
+        call("glGetError");
+        return GLES20.GL_NO_ERROR;
+    }
+
+    @Override
+    public void glGetFloatv(int pname, float[] params, int offset) {
+        call("glGetFloatv");
+        Float value = floats.get(pname);
+        params[offset] = value != null ? value : 0f;
+    }
+
+    @Override
+    public void glGetIntegerv(int pname, int[] params, int offset) {
+        call("glGetIntegerv");
+        Integer value = integers.get(pname);
+        params[offset] = value != null ? value : 0;
+    }
+
+    @Override
+    public void glGetProgramBinary(int program, int bufSize, int[] length, int lengthOffset, int[] binaryFormat,
+                                   int binaryFormatOffset, Buffer binary) {
+        call("glGetProgramBinary");
+        byte[] bytes = getBinary(program);
+        if (bytes == null || bytes.length > bufSize) {
+            length[lengthOffset] = 0;
+            binaryFormat[binaryFormatOffset] = 0;
+            return;
+        }
+        ((ByteBuffer) binary).duplicate().put(bytes);
+        length[lengthOffset] = bytes.length;
+        binaryFormat[binaryFormatOffset] = PROGRAM_BINARY_FORMAT;
+    }
+
+    /**
+     * @return the program's attributes and uniforms as text, null without binary formats or a linked program
+     */
+    private byte[] getBinary(int program) {
+        Integer formats = integers.get(GLES30.GL_NUM_PROGRAM_BINARY_FORMATS);
+        Program linked = programs.get(program);
+        if (formats == null || formats <= 0 || linked == null) {
+            return null;
+        }
+        StringBuilder text = new StringBuilder();
+        for (Map.Entry<String, Integer> attribute : linked.attributes.entrySet()) {
+            text.append("attribute ").append(attribute.getKey()).append(' ').append(attribute.getValue()).append('\n');
+        }
+        for (Map.Entry<String, Integer> uniform : linked.uniforms.entrySet()) {
+            text.append("uniform ").append(uniform.getKey()).append(' ').append(uniform.getValue()).append('\n');
+        }
+        return text.toString().getBytes(UTF_8);
+    }
+
+    @Override
+    public String glGetProgramInfoLog(int program) {
+        call("glGetProgramInfoLog");
+        return "";
+    }
+
+    @Override
+    public void glGetProgramiv(int program, int pname, int[] params, int offset) {
+        call("glGetProgramiv");
+        Program linked = programs.get(program);
+        switch (pname) {
+            case GLES20.GL_LINK_STATUS:
+                params[offset] = linked != null ? 1 : 0;
+                break;
+            case GLES20.GL_ACTIVE_ATTRIBUTES:
+                params[offset] = linked != null ? linked.attributes.size() : 0;
+                break;
+            case GLES20.GL_ACTIVE_UNIFORMS:
+                params[offset] = linked != null ? linked.uniforms.size() : 0;
+                break;
+            case GLES30.GL_PROGRAM_BINARY_LENGTH:
+                byte[] bytes = getBinary(program);
+                params[offset] = bytes != null ? bytes.length : 0;
+                break;
+            default:
+                params[offset] = 0;
+        }
+    }
+
+    @Override
+    public void glGetQueryObjectuiv(int id, int pname, int[] params, int offset) {
+        call("glGetQueryObjectuiv");
+        // every query is done at once, having taken no time
+        params[offset] = pname == GLES30.GL_QUERY_RESULT_AVAILABLE ? 1 : 0;
+    }
+
+    @Override
+    public String glGetShaderInfoLog(int shader) {
+        call("glGetShaderInfoLog");
+        return "";
+    }
+
+    @Override
+    public void glGetShaderiv(int shader, int pname, int[] params, int offset) {
+        call("glGetShaderiv");
+        params[offset] = pname == GLES20.GL_COMPILE_STATUS ? 1 : 0;
+    }
+
+    @Override
+    public String glGetString(int name) {
+        call("glGetString");
+        switch (name) {
+            case GLES20.GL_VERSION:
+                return version;
+            case GLES20.GL_EXTENSIONS:
+                return extensions;
+            case GLES20.GL_RENDERER:
+                return RecordingGl.class.getSimpleName();
+            default:
+                return "";
+        }
+    }
+
+    @Override
+    public int glGetUniformLocation(int program, String name) {
+        call("glGetUniformLocation");
+        Program linked = programs.get(program);
+        if (linked == null) {
+            return -1;
+        }
+        Integer location = linked.uniforms.get(name);
+        if (location == null) {
+            location = linked.uniforms.get(name + "[0]");
+        }
+        return location != null ? location : -1;
+    }
+
+    @Override
+    public void glLinkProgram(int program) {
+        call("glLinkProgram");
+        Program linked = new Program();
+        Map<String, Integer> bindings = attribBindings.get(program);
+        List<String> unbound = new ArrayList<>();
+        List<Integer> shaders = attachedShaders.get(program);
+        if (shaders != null) {
+            for (int shader : shaders) {
+                String source = shaderSources.get(shader);
+                if (source == null) {
+                    continue;
+                }
+                Matcher attribute = ATTRIBUTE_PATTERN.matcher(source);
+                while (attribute.find()) {
+                    String name = attribute.group(1);
+                    Integer location = bindings != null ? bindings.get(name) : null;
+                    if (location != null) {
+                        linked.attributes.put(name, location);
+                    } else {
+                        unbound.add(name);
+                    }
+                }
+                Matcher uniform = UNIFORM_PATTERN.matcher(source);
+                while (uniform.find()) {
+                    String name = uniform.group(2) != null ? uniform.group(1) + "[0]" : uniform.group(1);
+                    if (!linked.uniforms.containsKey(name)) {
+                        linked.uniforms.put(name, linked.uniforms.size());
+                    }
+                }
+            }
+        }
+        // attributes without a binding take the lowest locations left
+        int location = 0;
+        for (String name : unbound) {
+            while (linked.attributes.containsValue(location)) {
+                location++;
+            }
+            linked.attributes.put(name, location);
+        }
+        programs.put(program, linked);
+    }
+
+    @Override
+    public void glPixelStorei(int pname, int param) {
+        changeState("glPixelStorei");
+    }
+
+    @Override
+    public void glProgramBinary(int program, int binaryFormat, Buffer binary, int length) {
+        call("glProgramBinary");
+        programs.remove(program);
+        Integer formats = integers.get(GLES30.GL_NUM_PROGRAM_BINARY_FORMATS);
+        if (formats == null || formats <= 0 || binaryFormat != PROGRAM_BINARY_FORMAT) {
+            // not linked, as a driver rejects a binary it doesn't know
+            return;
+        }
+        byte[] bytes = new byte[length];
+        ((ByteBuffer) binary).duplicate().get(bytes);
+        Program linked = new Program();
+        for (String line : new String(bytes, UTF_8).split("\n")) {
+            if (line.isEmpty()) {
+                continue;
+            }
+            String[] fields = line.split(" ");
+            if (fields.length != 3) {
+                return;
+            }
+            (fields[0].equals("attribute") ? linked.attributes : linked.uniforms)
+                    .put(fields[1], Integer.parseInt(fields[2]));
+        }
+        programs.put(program, linked);
+    }
+
+    @Override
+    public void glProgramParameteri(int program, int pname, int value) {
+        call("glProgramParameteri");
+    }
+
+    @Override
+    public void glShaderSource(int shader, String string) {
+        call("glShaderSource");
+        shaderSources.put(shader, string);
+    }
+
+    @Override
+    public void glTexImage2D(int target, int level, int internalformat, int width, int height, int border,
+                             int format, int type, Buffer pixels) {
+        call("glTexImage2D");
+        uploadedBytes += getByteCount(pixels);
+    }
+
+    @Override
+    public void glTexParameterf(int target, int pname, float param) {
+        changeState("glTexParameterf");
+    }
+
+    @Override
+    public void glTexParameteri(int target, int pname, int param) {
+        changeState("glTexParameteri");
+    }
+
+    @Override
+    public void glUniform1f(int location, float x) {
+        changeState("glUniform1f");
+    }
+
+    @Override
+    public void glUniform1i(int location, int x) {
+        changeState("glUniform1i");
+    }
+
+    @Override
+    public void glUniform3f(int location, float x, float y, float z) {
+        changeState("glUniform3f");
+    }
+
+    @Override
+    public void glUniform4fv(int location, int count, float[] v, int offset) {
+        changeState("glUniform4fv");
+    }
+
+    @Override
+    public void glUniformMatrix4fv(int location, int count, boolean transpose, float[] value, int offset) {
+        changeState("glUniformMatrix4fv");
+    }
+
+    @Override
+    public void glUseProgram(int program) {
+        changeState("glUseProgram");
+    }
+
+    @Override
+    public void glVertexAttribDivisor(int index, int divisor) {
+        changeState("glVertexAttribDivisor");
+    }
+
+    @Override
+    public void glVertexAttribPointer(int index, int size, int type, boolean normalized, int stride, int offset) {
+        changeState("glVertexAttribPointer");
+    }
+
+    @Override
+    public void glViewport(int x, int y, int width, int height) {
+        changeState("glViewport");
+    }
+
+    @Override
+    public void texImage2D(int target, int level, Bitmap bitmap) {
+        call("texImage2D");
+        uploadedBytes += bitmap.getByteCount();
+    }
+
+    private static final class Program {
+        // in declaration order, which is the order they are reported as active
+        final Map<String, Integer> attributes = new LinkedHashMap<>();
+        final Map<String, Integer> uniforms = new LinkedHashMap<>();
+    }
+}
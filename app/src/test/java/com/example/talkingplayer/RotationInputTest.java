@@ -0,0 +1,76 @@
+package com.example.talkingplayer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RotationInputTest {
+    private static final long FRAME_NANOS = 16666667L;
+
+    @Test
+    public void consume_handsOutEverythingAddedSinceThePreviousFrame() {
+        RotationInput input = new RotationInput(0.35);
+        input.addDelta(1f);
+        input.addDelta(2.5f);
+        input.addDelta(-0.5f);
+
+        assertEquals(3f, input.consume(0), 1e-6f);
+        assertEquals(0f, input.consume(FRAME_NANOS), 0f);
+    }
+
+    @Test
+    public void fling_decaysExponentiallyAndComesToRest() {
+        double timeConstant = 0.35;
+        RotationInput input = new RotationInput(timeConstant);
+        input.fling(360f);
+        assertTrue(input.isFlinging());
+
+        double total = input.consume(0);
+        long frameTime = 0;
+        float previous = Float.MAX_VALUE;
+        for (int frame = 1; frame <= 600 && input.isFlinging(); frame++) {
+            frameTime += FRAME_NANOS;
+            float degrees = input.consume(frameTime);
+            assertTrue(degrees > 0 && degrees < previous);
+            previous = degrees;
+            total += degrees;
+        }
+
+        assertFalse(input.isFlinging());
+        // the whole fling turns v * tau, less what was left once it came to rest
+        assertEquals(360 * timeConstant, total, 1 * timeConstant + 1e-3);
+        assertEquals(0f, input.consume(frameTime + FRAME_NANOS), 0f);
+    }
+
+    @Test
+    public void fling_turnsTheSameWhateverTheFrameRate() {
+        RotationInput at60 = new RotationInput(0.35);
+        RotationInput at120 = new RotationInput(0.35);
+        at60.fling(-200f);
+        at120.fling(-200f);
+        at60.consume(0);
+        at120.consume(0);
+
+        double turned60 = 0;
+        double turned120 = 0;
+        for (int frame = 1; frame <= 60; frame++) {
+            turned60 += at60.consume(frame * FRAME_NANOS);
+            turned120 += at120.consume(frame * FRAME_NANOS / 2);
+            turned120 += at120.consume(frame * FRAME_NANOS);
+        }
+        assertEquals(turned60, turned120, 1e-3);
+    }
+
+    @Test
+    public void stopFling_stopsRightAway() {
+        RotationInput input = new RotationInput(0.35);
+        input.fling(100f);
+        input.consume(0);
+        input.stopFling();
+
+        assertFalse(input.isFlinging());
+        assertEquals(0f, input.consume(FRAME_NANOS), 0f);
+    }
+}
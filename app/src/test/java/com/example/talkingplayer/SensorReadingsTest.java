@@ -0,0 +1,56 @@
+package com.example.talkingplayer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class SensorReadingsTest {
+
+    @Test
+    public void read_reportsOnlyRowsWrittenSinceLastRead() {
+        SensorReadings readings = new SensorReadings(3);
+        SensorReadings.Snapshot snapshot = new SensorReadings.Snapshot(3);
+
+        readings.setValues(0, new float[]{1f, 2f, 3f});
+        readings.setValues(0, new float[]{4f, 5f, 6f});
+        readings.setAccuracy(2, 3);
+
+        assertEquals(0b101, readings.read(snapshot));
+        assertEquals(4f, snapshot.values[0][0], 0f);
+        assertEquals(6f, snapshot.values[0][2], 0f);
+        assertEquals(3, snapshot.accuracies[2]);
+        assertEquals(SensorReadings.ACCURACY_UNSET, snapshot.accuracies[0]);
+        assertEquals(0, readings.read(snapshot));
+    }
+
+    @Test
+    public void setValues_padsShortReadings() {
+        SensorReadings readings = new SensorReadings(1);
+        SensorReadings.Snapshot snapshot = new SensorReadings.Snapshot(1);
+        readings.setValues(0, new float[]{1f, 2f, 3f});
+
+        readings.setValues(0, new float[]{7f});
+        readings.read(snapshot);
+
+        assertEquals(7f, snapshot.values[0][0], 0f);
+        assertEquals(0f, snapshot.values[0][1], 0f);
+    }
+
+    @Test
+    public void decimalFormatter_roundsToFixedPoint() {
+        assertEquals("0.0000", format(0f, 4));
+        assertEquals("9.8067", format(9.80665f, 4));
+        assertEquals("-0.125", format(-0.125f, 3));
+        assertEquals("1.000", format(0.99995f, 3));
+        // rounding to zero drops the sign
+        assertEquals("0.00", format(-0.001f, 2));
+        assertEquals("-42", format(-42.4f, 0));
+        assertEquals("12.05", format(12.05f, 2));
+        assertEquals("NaN", format(Float.NaN, 2));
+    }
+
+    private static String format(float value, int decimals) {
+        char[] text = new char[DecimalFormatter.MAX_LENGTH];
+        return new String(text, 0, DecimalFormatter.format(value, decimals, text));
+    }
+}
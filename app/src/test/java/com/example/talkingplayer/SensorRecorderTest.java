@@ -0,0 +1,152 @@
+package com.example.talkingplayer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SensorRecorderTest {
+    private static final int ACCELEROMETER = 1;
+    private static final int GYROSCOPE = 4;
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("sensors", ".bin");
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void replay_returnsWhatWasRecorded() throws IOException {
+        // enough samples to go through several windows
+        List<String> recorded = new ArrayList<>();
+        SensorRecorder recorder = new SensorRecorder(file);
+        Random random = new Random(1);
+        float[] values = new float[3];
+        for (int i = 0; i < 60000; i++) {
+            int sensorType = i % 2 == 0 ? ACCELEROMETER : GYROSCOPE;
+            long timestamp = 1000000000L + i * 2500000L + random.nextInt(1000);
+            for (int v = 0; v < 3; v++) {
+                values[v] = 3f * (v + 1) + random.nextFloat() * 0.01f;
+            }
+            if (i == 0 || i == 1 || i == 30000 || i == 30001) {
+                int accuracy = i < 30000 ? 2 : 3;
+                recorder.recordAccuracy(sensorType, accuracy);
+                recorded.add("accuracy " + sensorType + " " + accuracy);
+            }
+            recorder.recordSample(sensorType, timestamp, values);
+            recorded.add(sensorType + " " + timestamp + " " + values[0] + " " + values[1] + " " + values[2]);
+        }
+        recorder.close();
+
+        assertEquals(recorder.getSize(), file.length());
+        // a SensorEvent holds 24 bytes of this
+        assertTrue("bytes per sample " + file.length() / 60000.0, file.length() < 60000 * 16);
+        Capture capture = new Capture();
+        SensorReplayer.Result result = SensorReplayer.map(file).replay(capture, false, 16);
+        assertEquals(recorded, capture.events);
+        assertEquals(60000, result.getSampleCount());
+    }
+
+    @Test
+    public void replay_handsOverTheSameBatchesEveryTime() throws IOException {
+        SensorRecorder recorder = new SensorRecorder(file);
+        for (int i = 0; i < 100; i++) {
+            if (i == 0 || i == 50) {
+                recorder.recordAccuracy(ACCELEROMETER, i < 50 ? 1 : 2);
+            }
+            recorder.recordSample(ACCELEROMETER, i * 1000L, new float[]{i, 0f, 0f});
+        }
+        recorder.close();
+
+        SensorReplayer replayer = SensorReplayer.map(file);
+        SensorReplayer.Result first = replayer.replay(new Capture(), false, 8);
+        SensorReplayer.Result second = replayer.replay(new Capture(), false, 8);
+        SensorReplayer.Result realTime = replayer.replay(new Capture(), true, 8);
+        // 6 full batches and the 2 samples left before the accuracy change, the same after it
+        assertEquals(14, first.getBatchCount());
+        assertEquals(first.getBatchCount(), second.getBatchCount());
+        assertEquals(first.getBatchCount(), realTime.getBatchCount());
+        assertEquals(100, second.getSampleCount());
+        assertEquals(100, realTime.getSampleCount());
+    }
+
+    @Test
+    public void replay_countsWhatAConsumerLeavesNoRoomFor() throws IOException {
+        SensorRecorder recorder = new SensorRecorder(file);
+        for (int i = 0; i < 100; i++) {
+            recorder.recordSample(ACCELEROMETER, i * 1000L, new float[]{i, 0f, 0f});
+        }
+        recorder.close();
+
+        // takes nothing, so the ring stays full after the first batch
+        SensorReplayer.Result result = SensorReplayer.map(file).replay(new SensorAcquisition.Consumer() {
+            @Override
+            public void onSamples(SensorRingBuffer samples) {
+            }
+
+            @Override
+            public void onAccuracyChanged(int sensorType, int accuracy) {
+            }
+        }, false, 8);
+        assertEquals(0, result.getSampleCount());
+        assertEquals(100 - 8, result.getDroppedCount());
+    }
+
+    @Test
+    public void replayInRealTime_takesAsLongAsTheRecording() throws IOException {
+        SensorRecorder recorder = new SensorRecorder(file);
+        recorder.recordAccuracy(GYROSCOPE, 3);
+        for (int i = 0; i < 20; i++) {
+            recorder.recordSample(GYROSCOPE, i * 5000000L, new float[]{0f, 0f, i});
+        }
+        recorder.close();
+
+        Capture capture = new Capture();
+        SensorReplayer.Result result = SensorReplayer.map(file).replay(capture, true, 4);
+        assertTrue(result.getElapsedNanos() >= 19 * 5000000L);
+        assertEquals(20, result.getSampleCount());
+        assertEquals(21, capture.events.size());
+    }
+
+    @Test
+    public void wrap_rejectsWhatIsNoRecording() {
+        try {
+            SensorReplayer.wrap(ByteBuffer.wrap(new byte[]{'R', 'I', 'F', 'F', 1, 0, 0, 0}));
+            fail();
+        } catch (IOException expected) {
+        }
+    }
+
+    private static final class Capture implements SensorAcquisition.Consumer {
+        final List<String> events = new ArrayList<>();
+        private final SensorRingBuffer.Sample sample = new SensorRingBuffer.Sample();
+
+        @Override
+        public void onSamples(SensorRingBuffer samples) {
+            while (samples.poll(sample)) {
+                float[] v = sample.values;
+                events.add(sample.sensorType + " " + sample.timestamp + " " + v[0] + " " + v[1] + " " + v[2]);
+            }
+        }
+
+        @Override
+        public void onAccuracyChanged(int sensorType, int accuracy) {
+            events.add("accuracy " + sensorType + " " + accuracy);
+        }
+    }
+}
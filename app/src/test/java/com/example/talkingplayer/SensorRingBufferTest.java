@@ -0,0 +1,105 @@
+package com.example.talkingplayer;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SensorRingBufferTest {
+
+    @Test
+    public void poll_returnsSamplesInOrder() {
+        SensorRingBuffer buffer = new SensorRingBuffer(4);
+        SensorRingBuffer.Sample sample = new SensorRingBuffer.Sample();
+
+        for (int round = 0; round < 3; round++) {
+            assertTrue(buffer.offer(1, 10L * round, new float[]{round, 2f, 3f}));
+            assertTrue(buffer.offer(4, 10L * round + 5, new float[]{-round}));
+            assertEquals(2, buffer.size());
+
+            assertTrue(buffer.poll(sample));
+            assertEquals(1, sample.sensorType);
+            assertEquals(10L * round, sample.timestamp);
+            assertEquals(round, sample.values[0], 0f);
+            assertTrue(buffer.poll(sample));
+            assertEquals(4, sample.sensorType);
+            assertEquals(-round, sample.values[0], 0f);
+            assertEquals(0f, sample.values[1], 0f);
+            assertFalse(buffer.poll(sample));
+        }
+    }
+
+    @Test
+    public void offer_dropsNewSamplesWhenFull() {
+        SensorRingBuffer buffer = new SensorRingBuffer(2);
+        SensorRingBuffer.Sample sample = new SensorRingBuffer.Sample();
+
+        assertTrue(buffer.offer(1, 1L, new float[]{1f}));
+        assertTrue(buffer.offer(1, 2L, new float[]{2f}));
+        assertFalse(buffer.offer(1, 3L, new float[]{3f}));
+
+        assertEquals(1, buffer.getDroppedCount());
+        assertTrue(buffer.poll(sample));
+        assertEquals(1L, sample.timestamp);
+    }
+
+    @Test
+    public void readerOnAnotherThread_seesEverySampleOnce() throws InterruptedException {
+        final SensorRingBuffer buffer = new SensorRingBuffer(64);
+        final int count = 200000;
+        final AtomicBoolean inOrder = new AtomicBoolean(true);
+        Thread reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                SensorRingBuffer.Sample sample = new SensorRingBuffer.Sample();
+                long expected = 0;
+                while (expected < count) {
+                    if (buffer.poll(sample)) {
+                        if (sample.timestamp != expected || sample.values[0] != expected) {
+                            inOrder.set(false);
+                        }
+                        expected++;
+                    }
+                }
+            }
+        });
+        reader.start();
+        float[] values = new float[3];
+        for (int i = 0; i < count; ) {
+            values[0] = i;
+            if (buffer.offer(1, i, values)) {
+                i++;
+            }
+        }
+        reader.join();
+
+        assertTrue(inOrder.get());
+        assertEquals(0, buffer.size());
+    }
+
+    @Test
+    public void samplingPolicy_speedsUpWhileMovingAndSettlesSlowly() {
+        SamplingPolicy policy = new SamplingPolicy(0.5f, 0.15f, 2000000000L);
+        assertEquals(SamplingPolicy.LEVEL_HIDDEN, policy.getLevel());
+        policy.setVisible(true);
+        assertEquals(SamplingPolicy.LEVEL_STILL, policy.getLevel());
+
+        policy.onMotion(1f, 0L);
+        assertEquals(SamplingPolicy.LEVEL_MOVING, policy.getLevel());
+        // in between the thresholds still counts as moving
+        policy.onMotion(0.3f, 1000000000L);
+        policy.onMotion(0.1f, 2500000000L);
+        assertEquals(SamplingPolicy.LEVEL_MOVING, policy.getLevel());
+        policy.onMotion(0.1f, 3000000000L);
+        assertEquals(SamplingPolicy.LEVEL_STILL, policy.getLevel());
+
+        policy.onMotion(1f, 4000000000L);
+        policy.setVisible(false);
+        assertEquals(SamplingPolicy.LEVEL_HIDDEN, policy.getLevel());
+        assertTrue(SamplingPolicy.getMaxReportLatencyUs(SamplingPolicy.LEVEL_HIDDEN)
+                > SamplingPolicy.getMaxReportLatencyUs(SamplingPolicy.LEVEL_MOVING));
+    }
+}
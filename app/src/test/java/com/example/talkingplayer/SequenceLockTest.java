@@ -0,0 +1,42 @@
+package com.example.talkingplayer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SequenceLockTest {
+
+    @Test
+    public void retryRead_onlyAfterAWrite() {
+        SequenceLock lock = new SequenceLock();
+        int sequence = lock.beginRead();
+        assertFalse(lock.retryRead(sequence));
+
+        lock.beginWrite();
+        assertTrue(lock.retryRead(sequence));
+        lock.endWrite();
+        assertTrue(lock.retryRead(sequence));
+
+        sequence = lock.beginRead();
+        assertFalse(lock.retryRead(sequence));
+    }
+
+    @Test
+    public void beginRead_waitsForTheWriteInProgress() throws InterruptedException {
+        final SequenceLock lock = new SequenceLock();
+        lock.beginWrite();
+        Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                lock.endWrite();
+            }
+        });
+        writer.start();
+        int sequence = lock.beginRead();
+        writer.join();
+
+        assertTrue((sequence & 1) == 0);
+        assertFalse(lock.retryRead(sequence));
+    }
+}
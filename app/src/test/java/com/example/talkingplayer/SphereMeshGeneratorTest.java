@@ -0,0 +1,102 @@
+package com.example.talkingplayer;
+
+import org.junit.Test;
+
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+public class SphereMeshGeneratorTest {
+
+    @Test
+    public void counts_matchTessellation() {
+        SphereMeshGenerator generator = new SphereMeshGenerator(36, 36);
+        assertEquals(34 * 36 + 2, generator.getVertexCount());
+        assertEquals(6 * 34 * 36, generator.getIndexCount());
+    }
+
+    @Test
+    public void positions_lieOnUnitSphere() {
+        SphereMeshGenerator generator = new SphereMeshGenerator(12, 16);
+        FloatBuffer positions = SphereMeshGenerator.allocateFloatBuffer(generator.getVertexCount() * 3);
+        generator.generate(positions, null, null, null, null);
+        for (int i = 0; i < generator.getVertexCount(); i++) {
+            float x = positions.get(3 * i);
+            float y = positions.get(3 * i + 1);
+            float z = positions.get(3 * i + 2);
+            assertEquals(1f, (float) Math.sqrt(x * x + y * y + z * z), 1e-5f);
+        }
+        assertEquals(1f, positions.get(1), 0f);
+        assertEquals(-1f, positions.get(positions.capacity() - 2), 0f);
+    }
+
+    @Test
+    public void indices_referenceEveryVertexAndNoDegenerateTriangles() {
+        SphereMeshGenerator generator = new SphereMeshGenerator(20, 24);
+        ShortBuffer indices = SphereMeshGenerator.allocateShortBuffer(generator.getIndexCount());
+        generator.generate(null, null, null, null, indices);
+        boolean[] used = new boolean[generator.getVertexCount()];
+        for (int i = 0; i < indices.capacity(); i += 3) {
+            int a = indices.get(i) & 0xFFFF;
+            int b = indices.get(i + 1) & 0xFFFF;
+            int c = indices.get(i + 2) & 0xFFFF;
+            assertTrue(a != b && b != c && a != c);
+            used[a] = used[b] = used[c] = true;
+        }
+        for (boolean u : used) {
+            assertTrue(u);
+        }
+    }
+
+    @Test
+    public void parallelGeneration_matchesSerial() {
+        // large enough to be split across the pool
+        SphereMeshGenerator generator = new SphereMeshGenerator(200, 160).setPool(new ForkJoinPool(4));
+        int vertices = generator.getVertexCount();
+        FloatBuffer positions = SphereMeshGenerator.allocateFloatBuffer(vertices * 3);
+        FloatBuffer uvs = SphereMeshGenerator.allocateFloatBuffer(vertices * 2);
+        ShortBuffer indices = SphereMeshGenerator.allocateShortBuffer(generator.getIndexCount());
+        generator.generate(positions, null, uvs, null, indices);
+
+        SphereMeshGenerator serial = new SphereMeshGenerator(200, 160).setPool(new ForkJoinPool(1));
+        FloatBuffer expectedPositions = SphereMeshGenerator.allocateFloatBuffer(vertices * 3);
+        FloatBuffer expectedUvs = SphereMeshGenerator.allocateFloatBuffer(vertices * 2);
+        ShortBuffer expectedIndices = SphereMeshGenerator.allocateShortBuffer(generator.getIndexCount());
+        serial.generate(expectedPositions, null, expectedUvs, null, expectedIndices);
+
+        assertEquals(expectedPositions, positions);
+        assertEquals(expectedUvs, uvs);
+        assertEquals(expectedIndices, indices);
+    }
+
+    @Test
+    public void morphTargets_keepSharedVerticesAndStayInsideSphere() {
+        SphereMeshGenerator generator = new SphereMeshGenerator(
+                SphereLodSelector.getNumVerticalBands(2), SphereLodSelector.getNumStepsInBand(2));
+        assertTrue(generator.hasCoarserLevel());
+        FloatBuffer vertices = SphereMeshGenerator.allocateFloatBuffer(generator.getVertexCount() * 6);
+        generator.generateInterleaved(vertices, 6, 0, -1, -1, -1, null);
+        generator.writeMorphTargets(vertices, 6, 3);
+        for (int band = 0; band < generator.getNumVerticalBands(); band += 2) {
+            for (int step = 0; step < generator.getNumStepsInBand(); step += 2) {
+                int i = generator.getVertexIndex(band, step) * 6;
+                for (int k = 0; k < 3; k++) {
+                    assertEquals(vertices.get(i + k), vertices.get(i + 3 + k), 1e-5f);
+                }
+            }
+        }
+        for (int i = 0; i < generator.getVertexCount(); i++) {
+            float x = vertices.get(6 * i + 3);
+            float y = vertices.get(6 * i + 4);
+            float z = vertices.get(6 * i + 5);
+            assertTrue(x * x + y * y + z * z <= 1f + 1e-5f);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void tooManyVertices_rejected() {
+        new SphereMeshGenerator(1000, 1000);
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.talkingplayer;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class StarCatalogTest {
+
+    @Test
+    public void bucket_sortsStarsByCellThenMagnitude() {
+        StarCatalog catalog = StarCatalog.generate(20000, 7);
+        FloatBuffer stars = catalog.getStars();
+
+        assertEquals(20000, catalog.getStarCount());
+        for (int cell = 0; cell < StarCatalog.CELL_COUNT; cell++) {
+            float previous = Float.NEGATIVE_INFINITY;
+            int end = cell + 1 < StarCatalog.CELL_COUNT ? catalog.getCellStart(cell + 1) : catalog.getStarCount();
+            for (int star = catalog.getCellStart(cell); star < end; star++) {
+                int offset = star * StarCatalog.FLOATS_PER_STAR;
+                assertEquals(cell, StarCatalog.getCell(stars.get(offset), stars.get(offset + 1),
+                        stars.get(offset + 2)));
+                float magnitude = stars.get(offset + StarCatalog.MAGNITUDE_OFFSET);
+                assertTrue(magnitude >= previous);
+                previous = magnitude;
+            }
+        }
+    }
+
+    @Test
+    public void getVisibleCount_countsStarsUpToTheLimit() {
+        float[] stars = new float[4 * StarCatalog.FLOATS_PER_STAR];
+        StarCatalog.putStar(stars, 0, 0, 0, 3f, 0f);
+        StarCatalog.putStar(stars, StarCatalog.FLOATS_PER_STAR, 0.01, 0.01, -1f, 0f);
+        StarCatalog.putStar(stars, 2 * StarCatalog.FLOATS_PER_STAR, 0.02, 0, 6f, 0f);
+        StarCatalog.putStar(stars, 3 * StarCatalog.FLOATS_PER_STAR, Math.PI, 0, 1f, 0f);
+        StarCatalog catalog = StarCatalog.bucket(stars, 4);
+        int cell = StarCatalog.getCell(1f, 0f, 0f);
+
+        assertEquals(0, catalog.getVisibleCount(cell, -2f));
+        assertEquals(1, catalog.getVisibleCount(cell, -1f));
+        assertEquals(2, catalog.getVisibleCount(cell, 5.9f));
+        assertEquals(3, catalog.getVisibleCount(cell, 6f));
+        assertEquals(1, catalog.getVisibleCount(StarCatalog.getCell(-1f, 0f, 0f), 6f));
+    }
+
+    @Test
+    public void isCellWithin_findsTheCellsAroundADirection() {
+        float[] direction = {0.48f, -0.6f, 0.64f};
+        int inside = StarCatalog.getCell(direction[0], direction[1], direction[2]);
+        int visible = 0;
+        for (int cell = 0; cell < StarCatalog.CELL_COUNT; cell++) {
+            if (StarCatalog.isCellWithin(cell, direction[0], direction[1], direction[2], 0.5f)) {
+                visible++;
+            }
+        }
+
+        assertTrue(StarCatalog.isCellWithin(inside, direction[0], direction[1], direction[2], 0f));
+        assertTrue(visible > 1);
+        assertTrue(visible < StarCatalog.CELL_COUNT / 4);
+        assertTrue(StarCatalog.isCellWithin(StarCatalog.getCell(-direction[0], -direction[1], -direction[2]),
+                direction[0], direction[1], direction[2], (float) Math.PI));
+    }
+
+    @Test
+    public void assetPack_roundTrip() throws IOException {
+        StarCatalog catalog = StarCatalog.generate(1000, 3);
+        AssetPackWriter writer = new AssetPackWriter();
+        writer.addStarCatalog(StarCatalog.ASSET_NAME, catalog);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writer.writeTo(out);
+
+        AssetPack pack = AssetPack.wrap(ByteBuffer.wrap(out.toByteArray()));
+        AssetPack.Entry entry = pack.getEntry(StarCatalog.ASSET_NAME);
+        StarCatalog read = new StarCatalog(pack.getStars(entry), pack.getStarCellStarts(entry));
+
+        assertEquals(1000, entry.getStarCount());
+        assertArrayEquals(catalog.getCellStarts(), read.getCellStarts());
+        assertEquals(catalog.getStars(), read.getStars());
+    }
+}
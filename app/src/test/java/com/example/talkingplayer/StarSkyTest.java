@@ -0,0 +1,43 @@
+package com.example.talkingplayer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class StarSkyTest {
+    private final FrameUniforms frameUniforms = new FrameUniforms();
+    private final FrameUniforms.Transform transform = frameUniforms.createTransform();
+
+    @Test
+    public void draw_drawsTheCellsInViewFromOneBuffer() {
+        RecordingGl gl = new RecordingGl("OpenGL ES 3.0", "");
+        GlTestContext context = new GlTestContext(gl);
+        frameUniforms.update();
+        StarSky starSky = new StarSky(null, context.capabilities, context.state, context.shaderCache,
+                context.assetLoader);
+        assertEquals(1, context.getQueuedLoads());
+        StarCatalog catalog = StarCatalog.generate(20000, 1);
+        starSky.setCatalog(catalog);
+        starSky.setView(0.8f, 6f);
+        starSky.draw(transform);
+        int brightStars = starSky.getVisibleStars();
+
+        gl.reset();
+        starSky.setView(0.8f, 8f);
+        starSky.draw(transform);
+
+        int allStars = 0;
+        for (int cell = 0; cell < StarCatalog.CELL_COUNT; cell++) {
+            allStars += catalog.getVisibleCount(cell, 8f);
+        }
+        // fainter stars come in, those out of view stay out
+        assertTrue(starSky.getVisibleStars() > brightStars);
+        assertTrue(starSky.getVisibleStars() <= allStars);
+        assertTrue(allStars < catalog.getStarCount());
+        assertEquals(starSky.getVisibleStars(), gl.getDrawnVertices());
+        assertTrue(gl.toString(), gl.getDrawCalls() <= StarCatalog.CELL_COUNT);
+        assertEquals(0, gl.getUploadedBytes());
+        assertEquals(0, gl.getCalls("glBindTexture"));
+    }
+}
@@ -0,0 +1,156 @@
+package com.example.talkingplayer;
+
+import android.opengl.GLES20;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Loads are queued but never run, so every texture keeps its 1x1 placeholder.
+ */
+public class TextureRegistryTest {
+    private RecordingGl gl;
+    private GlTestContext context;
+    private long textureBytes;
+
+    @Before
+    public void setUp() {
+        gl = new RecordingGl("OpenGL ES 3.0", "");
+        context = new GlTestContext(gl);
+        TextureRegistry measure = context.createTextureRegistry(Long.MAX_VALUE);
+        acquire(measure, 1f);
+        textureBytes = measure.getStats().residentBytes;
+        assertTrue(textureBytes > 0);
+        measure.clear();
+        gl.reset();
+    }
+
+    @Test
+    public void release_evictsTheLeastRecentlyReleasedFirst() {
+        TextureRegistry registry = context.createTextureRegistry(3 * textureBytes);
+        TextureRegistry.Handle first = acquire(registry, 1f);
+        TextureRegistry.Handle second = acquire(registry, 2f);
+        TextureRegistry.Handle third = acquire(registry, 3f);
+        second.release();
+        first.release();
+        third.release();
+        assertEquals(0, registry.getStats().evictions);
+
+        TextureRegistry.Handle fourth = acquire(registry, 4f);
+        registry.trim();
+        TextureRegistry.Stats stats = registry.getStats();
+        assertEquals(1, stats.evictions);
+        assertEquals(1, gl.getCalls("glDeleteTextures"));
+        assertEquals(3, stats.residentTextures);
+        assertEquals(3 * textureBytes, stats.residentBytes);
+
+        // the second went first, though it was acquired after the first
+        int misses = stats.misses;
+        acquire(registry, 1f).release();
+        acquire(registry, 3f).release();
+        assertEquals(misses, registry.getStats().misses);
+        acquire(registry, 2f).release();
+        assertEquals(misses + 1, registry.getStats().misses);
+        fourth.release();
+    }
+
+    @Test
+    public void release_keepsTexturesResidentWithinBudget() {
+        TextureRegistry registry = context.createTextureRegistry(2 * textureBytes);
+        acquire(registry, 1f).release();
+        acquire(registry, 2f).release();
+
+        TextureRegistry.Stats stats = registry.getStats();
+        assertEquals(0, stats.evictions);
+        assertEquals(2, stats.residentTextures);
+        assertEquals(2 * textureBytes, stats.residentBytes);
+        assertEquals(0, gl.getCalls("glDeleteTextures"));
+    }
+
+    @Test
+    public void heldHandle_staysResidentOverBudget() {
+        TextureRegistry registry = context.createTextureRegistry(textureBytes);
+        TextureRegistry.Handle held = acquire(registry, 1f);
+        TextureRegistry.Handle other = acquire(registry, 2f);
+        registry.trim();
+        assertEquals(2, registry.getStats().residentTextures);
+        assertEquals(2 * textureBytes, registry.getStats().residentBytes);
+
+        other.release();
+        acquire(registry, 3f).release();
+        registry.trim();
+        TextureRegistry.Stats stats = registry.getStats();
+        assertEquals(2, stats.evictions);
+        assertEquals(1, stats.residentTextures);
+        assertEquals(textureBytes, stats.residentBytes);
+
+        // whatever the budget, a texture someone draws with is never deleted under them
+        int textureId = held.getTextureId();
+        assertEquals(textureId, acquire(registry, 1f).getTextureId());
+        assertEquals(stats.misses, registry.getStats().misses);
+        held.release();
+    }
+
+    @Test
+    public void sharedTexture_sphereBoxAndInstancedSpheres_loadItOnce() {
+        // room for the placeholder they share, which takes a third more for its mipmaps
+        TextureRegistry registry = context.createTextureRegistry(2 * textureBytes);
+        SphereBox sphereBox = new SphereBox(null, context.capabilities, context.state, context.shaderCache,
+                context.assetLoader, registry, 1);
+        TextureRegistry.Stats stats = registry.getStats();
+        assertEquals(0, stats.hits);
+        assertEquals(1, stats.misses);
+        long bytes = stats.residentBytes;
+        int loads = context.getQueuedLoads();
+
+        InstancedSpheres spheres = new InstancedSpheres(null, context.capabilities, context.state,
+                context.shaderCache, context.assetLoader, registry, 4, 1);
+        stats = registry.getStats();
+        assertEquals(1, stats.hits);
+        assertEquals(1, stats.misses);
+        assertEquals(1, stats.residentTextures);
+        assertEquals(bytes, stats.residentBytes);
+        // the mesh is loaded, the texture isn't loaded again
+        assertEquals(loads + 1, context.getQueuedLoads());
+
+        sphereBox.release();
+        assertEquals(1, registry.getStats().residentTextures);
+        spheres.release();
+        stats = registry.getStats();
+        assertEquals(1, stats.residentTextures);
+        assertEquals(0, stats.evictions);
+        assertEquals(bytes, stats.residentBytes);
+    }
+
+    @Test
+    public void acquire_afterEviction_isAMiss() {
+        TextureRegistry registry = context.createTextureRegistry(0);
+        TextureRegistry.Handle handle = acquire(registry, 1f);
+        assertFalse(handle.isLoaded());
+        handle.release();
+        assertEquals(1, registry.getStats().evictions);
+        assertEquals(0, registry.getStats().residentBytes);
+
+        acquire(registry, 1f).release();
+        TextureRegistry.Stats stats = registry.getStats();
+        assertEquals(0, stats.hits);
+        assertEquals(2, stats.misses);
+        assertEquals(2, stats.evictions);
+        assertEquals(0, stats.residentTextures);
+        assertEquals(2, gl.getCalls("glDeleteTextures"));
+    }
+
+    /**
+     * Textures of the same drawable that only differ in their anisotropy, so each one is its own texture
+     * of the same size.
+     */
+    private static TextureRegistry.Handle acquire(TextureRegistry registry, float anisotropy) {
+        TextureSampling sampling = new TextureSampling(GLES20.GL_NEAREST, GLES20.GL_NEAREST,
+                GLES20.GL_CLAMP_TO_EDGE, GLES20.GL_CLAMP_TO_EDGE, anisotropy);
+        return registry.acquire(null, R.drawable.texture, sampling, 0xffffffff);
+    }
+}
@@ -0,0 +1,194 @@
+package com.example.talkingplayer.tools;
+
+import com.example.talkingplayer.AssetPack;
+import com.example.talkingplayer.AssetPackWriter;
+import com.example.talkingplayer.EtcCodec;
+import com.example.talkingplayer.MipChain;
+import com.example.talkingplayer.SphereLevels;
+import com.example.talkingplayer.SphereLodSelector;
+import com.example.talkingplayer.StarCatalog;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Build-time tool that bakes everything the renderers would otherwise compute or decode on the GL thread
+ * into a single asset pack: every level of the sphere, already morphed and cache optimised, and the
+ * drawables used as textures, decoded to raw pixels or encoded to ETC, and the star catalog, bucketed.
+ * <p>
+ * Usage: {@code AssetPacker [--formats rgba8,etc1,etc2] [--stars <catalog.csv>] <output pack> <image>...},
+ * textures are named
+ * after the image file without its extension, just like the drawable resources they come from. Every
+ * texture is resampled to power of two sides and stored with a full box filtered mip chain, once per
+ * format, ETC1 and ETC2 by default. The app falls back to decoding the
+ * drawable itself when the context can't use any of them. The star catalog is a CSV with a header naming
+ * at least the columns ra (hours), dec (degrees), mag and ci (B-V), like the HYG database. Without one a
+ * sky is made up, as the app would.
+ */
+public class AssetPacker {
+    private static final String USAGE = "Usage: AssetPacker [--formats rgba8,etc1,etc2] [--stars <catalog.csv>] "
+            + "<output pack> <image>...";
+    // what the app's generated sky uses
+    private static final long STAR_SEED = 1;
+    // the sun
+    private static final float BRIGHTEST_STAR_MAGNITUDE = -2f;
+
+    public static void main(String[] args) throws IOException {
+        List<Integer> formats = Arrays.asList(AssetPack.TEXTURE_FORMAT_ETC1_RGB8, AssetPack.TEXTURE_FORMAT_ETC2_RGB8);
+        File stars = null;
+        int first = 0;
+        while (args.length > first + 1 && args[first].startsWith("--")) {
+            if (args[first].equals("--formats")) {
+                formats = parseFormats(args[first + 1]);
+            } else if (args[first].equals("--stars")) {
+                stars = new File(args[first + 1]);
+            } else {
+                throw new IllegalArgumentException("Unknown option " + args[first] + ". " + USAGE);
+            }
+            first += 2;
+        }
+        if (args.length <= first) {
+            System.err.println(USAGE);
+            System.exit(1);
+        }
+        AssetPackWriter writer = new AssetPackWriter();
+        for (int level = 0; level < SphereLodSelector.MAX_LEVEL_COUNT; level++) {
+            SphereLevels.Level data = SphereLevels.build(level);
+            writer.addMesh(SphereLevels.getAssetName(level), data.vertices, data.indices, SphereLevels.STRIDE_FLOATS);
+            System.out.println(SphereLevels.getAssetName(level) + ": " + data.report);
+        }
+        StarCatalog catalog = stars != null ? readStars(stars)
+                : StarCatalog.generate(StarCatalog.GENERATED_STAR_COUNT, STAR_SEED);
+        writer.addStarCatalog(StarCatalog.ASSET_NAME, catalog);
+        System.out.println(StarCatalog.ASSET_NAME + ": " + catalog.getStarCount() + " stars"
+                + (stars != null ? " from " + stars : ", made up"));
+        for (int i = first + 1; i < args.length; i++) {
+            File file = new File(args[i]);
+            BufferedImage image = ImageIO.read(file);
+            if (image == null) {
+                throw new IOException("Can't decode " + file);
+            }
+            // power of two sizes so ES 2 can mipmap and repeat the texture
+            int width = MipChain.nearestPowerOfTwo(image.getWidth());
+            int height = MipChain.nearestPowerOfTwo(image.getHeight());
+            byte[][] mipmaps = MipChain.build(
+                    MipChain.resize(toRgba(image).array(), image.getWidth(), image.getHeight(), width, height),
+                    width, height);
+            for (int format : formats) {
+                String name = AssetPack.getTextureName(stripExtension(file.getName()), format);
+                if (format == AssetPack.TEXTURE_FORMAT_RGBA8) {
+                    writer.addTexture(name, width, height, format, mipmaps);
+                    System.out.println(name + ": " + width + "x" + height + ", " + mipmaps.length + " levels");
+                } else {
+                    byte[][] encoded = new byte[mipmaps.length][];
+                    for (int level = 0; level < mipmaps.length; level++) {
+                        encoded[level] = EtcCodec.encode(mipmaps[level], MipChain.getLevelSize(width, level),
+                                MipChain.getLevelSize(height, level), format == AssetPack.TEXTURE_FORMAT_ETC2_RGB8);
+                    }
+                    writer.addTexture(name, width, height, format, encoded);
+                    System.out.println(String.format(Locale.US, "%s: %dx%d, %d levels, PSNR %.2f dB", name, width,
+                            height, mipmaps.length,
+                            EtcCodec.computePsnr(mipmaps[0], EtcCodec.decode(encoded[0], width, height))));
+                }
+            }
+        }
+        File output = new File(args[first]);
+        File parent = output.getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Can't create " + parent);
+        }
+        writer.write(output);
+    }
+
+    static List<Integer> parseFormats(String formats) {
+        List<Integer> parsed = new ArrayList<>();
+        for (String format : formats.split(",")) {
+            switch (format.trim()) {
+                case "rgba8":
+                    parsed.add(AssetPack.TEXTURE_FORMAT_RGBA8);
+                    break;
+                case "etc1":
+                    parsed.add(AssetPack.TEXTURE_FORMAT_ETC1_RGB8);
+                    break;
+                case "etc2":
+                    parsed.add(AssetPack.TEXTURE_FORMAT_ETC2_RGB8);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown texture format " + format + ". " + USAGE);
+            }
+        }
+        return parsed;
+    }
+
+    static StarCatalog readStars(File file) throws IOException {
+        BufferedReader in = new BufferedReader(new FileReader(file));
+        try {
+            String header = in.readLine();
+            if (header == null) {
+                throw new IOException(file + " is empty");
+            }
+            List<String> columns = Arrays.asList(header.replace("\"", "").split(","));
+            int rightAscensionColumn = getColumn(columns, "ra", file);
+            int declinationColumn = getColumn(columns, "dec", file);
+            int magnitudeColumn = getColumn(columns, "mag", file);
+            int colorIndexColumn = getColumn(columns, "ci", file);
+            float[] stars = new float[1024 * StarCatalog.FLOATS_PER_STAR];
+            int count = 0;
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] fields = line.replace("\"", "").split(",", -1);
+                float magnitude = Float.parseFloat(fields[magnitudeColumn]);
+                if (magnitude < BRIGHTEST_STAR_MAGNITUDE) {
+                    continue;
+                }
+                String colorIndex = fields[colorIndexColumn].trim();
+                if ((count + 1) * StarCatalog.FLOATS_PER_STAR > stars.length) {
+                    stars = Arrays.copyOf(stars, stars.length * 2);
+                }
+                StarCatalog.putStar(stars, count * StarCatalog.FLOATS_PER_STAR,
+                        Math.toRadians(Double.parseDouble(fields[rightAscensionColumn]) * 15),
+                        Math.toRadians(Double.parseDouble(fields[declinationColumn])), magnitude,
+                        colorIndex.isEmpty() ? 0.6f : Float.parseFloat(colorIndex));
+                count++;
+            }
+            return StarCatalog.bucket(stars, count);
+        } finally {
+            in.close();
+        }
+    }
+
+    private static int getColumn(List<String> columns, String name, File file) throws IOException {
+        int column = columns.indexOf(name);
+        if (column < 0) {
+            throw new IOException(file + " has no column " + name);
+        }
+        return column;
+    }
+
+    static String stripExtension(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        return dot < 0 ? fileName : fileName.substring(0, dot);
+    }
+
+    static ByteBuffer toRgba(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] argb = image.getRGB(0, 0, width, height, null, 0, width);
+        ByteBuffer rgba = ByteBuffer.allocate(width * height * 4);
+        for (int pixel : argb) {
+            rgba.put((byte) (pixel >> 16)).put((byte) (pixel >> 8)).put((byte) pixel).put((byte) (pixel >>> 24));
+        }
+        rgba.flip();
+        return rgba;
+    }
+}